@@ -16,6 +16,7 @@
 package org.hippoecm.hst.cache;
 
 
+import java.util.Collection;
 import java.util.concurrent.Callable;
 
 /**
@@ -61,6 +62,23 @@ public interface HstCache {
     boolean remove(Object key);
     
     void clear();
+
+    /**
+     * @return <code>true</code> when this cache keeps track of the repository paths its elements depend on and can
+     * therefore invalidate selectively through {@link #invalidate(Collection)}
+     */
+    default boolean isDependencyTrackingEnabled() {
+        return false;
+    }
+
+    /**
+     * Removes the elements that are affected by changes at the absolute repository paths <code>changedPaths</code>.
+     * Implementations that do not keep track of dependencies clear the entire cache.
+     * @param changedPaths the absolute paths of the changed repository nodes and properties
+     */
+    default void invalidate(Collection<String> changedPaths) {
+        clear();
+    }
     
     int getTimeToIdleSeconds();
     
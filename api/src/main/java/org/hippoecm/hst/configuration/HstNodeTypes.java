@@ -111,6 +111,7 @@ public interface HstNodeTypes {
     String COMPONENT_PROPERTY_LABEL = "hst:label";
     String COMPONENT_PROPERTY_COMPONENT_FILTER_TAG = "hst:componentfiltertag";
     String COMPONENT_PROPERTY_SUPPRESS_WASTE_MESSAGE = "hst:suppresswastemessage";
+    String COMPONENT_PROPERTY_FRAGMENT_CACHEABLE = "hst:fragmentcacheable";
 
     String TEMPLATE_PROPERTY_RENDERPATH = "hst:renderpath";
     String TEMPLATE_PROPERTY_IS_NAMED = "hst:isnamed";
@@ -94,4 +94,15 @@ public interface HstComponentInfo {
      * @return {@code true} when possible waste messages about this component should be suppressed
      */
     boolean isSuppressWasteMessage();
+
+    /**
+     * When fragment cacheable, the rendered output and head contributions of the component, including the output of its
+     * descendants, can be cached and reused for other (live) requests, even when the page as a whole is not cacheable.
+     * The fragment is cached per component, mount, sitemap item, resolved parameters and the key provided by the
+     * component when it implements {@link org.hippoecm.hst.core.component.FragmentCacheKeyContributor}. Response
+     * headers and cookies set by the component are <b>not</b> part of the cached fragment.
+     * @return {@code true} when this component is configured to be fragment cacheable and none of its descendants is
+     * uncacheable
+     */
+    boolean isFragmentCacheable();
 }
@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.component;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ *     An {@link HstComponent} that is configured to be fragment cacheable (see
+ *     {@link org.hippoecm.hst.configuration.components.HstComponentInfo#isFragmentCacheable()}) can implement this
+ *     interface to contribute to the key its rendered fragment is cached with, for example when the output of the
+ *     component depends on a cookie, a request header or the logged in user.
+ * </p>
+ * <p>
+ *     The key is computed <b>before</b> {@link HstComponent#doBeforeRender(HstRequest, HstResponse)} is invoked: when
+ *     a fragment is found in the cache for the key, neither the component nor its descendants are invoked at all.
+ * </p>
+ */
+public interface FragmentCacheKeyContributor {
+
+    /**
+     * @param request the {@link HstRequest} for the component
+     * @return the key fragment to add to the cache key of the rendered fragment of this component, or {@code null}
+     * when the fragment of this component should not be cached for the current request at all. The returned object
+     * must have a decent and efficient {@link Object#hashCode()} and {@link Object#equals(Object)} implementation
+     */
+    Serializable getFragmentCacheKey(HstRequest request);
+
+}
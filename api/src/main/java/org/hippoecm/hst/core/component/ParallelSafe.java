@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.component;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ *     Indicates that the annotated {@link HstComponent#doBeforeRender(HstRequest, HstResponse)} does not depend on the
+ *     <code>doBeforeRender</code> of its sibling component windows, and can therefore be invoked concurrently with
+ *     them when the container is configured to process component windows in parallel.
+ * </p>
+ * <p>
+ *     An annotated <code>doBeforeRender</code> is still invoked after the one of its parent component window, and
+ *     before the ones of its child component windows. It must only use its own {@link HstRequest} and
+ *     {@link HstResponse}, and the {@link org.hippoecm.hst.core.request.HstRequestContext} for fetching content : it
+ *     must not exchange state with other component windows through (request context) attributes.
+ * </p>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface ParallelSafe {
+
+}
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2010-2015 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2010-2017 Hippo B.V. (http://www.onehippo.com)
  *
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -156,6 +156,26 @@ public interface HstMutableRequestContext extends HstRequestContext {
 
     public void clearObjectAndQueryManagers();
 
+    /**
+     * <p>
+     *     Starts a thread scope for the current thread : until {@link #endThreadScope()} is invoked on the current
+     *     thread, {@link #getSession()} returns a session that is not used by any other thread at the same time. This
+     *     is used when the request is processed by multiple threads concurrently, for example when component windows
+     *     are processed in parallel.
+     * </p>
+     * <p>
+     *     The sessions taken for thread scopes are reused by later thread scopes of the same request and are only
+     *     logged out on {@link #dispose()}, since the objects fetched through them can still be used while rendering
+     *     the request.
+     * </p>
+     */
+    public void beginThreadScope();
+
+    /**
+     * Ends the thread scope of the current thread that was started by {@link #beginThreadScope()}
+     */
+    public void endThreadScope();
+
     /**
      * Dispose all the internal objects maintained for the current request processing state.
      * After disposed, this request context will be in an illegal state to use.
@@ -0,0 +1,27 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.jcr;
+
+import javax.jcr.observation.EventListener;
+
+/**
+ * Marks an {@link EventListener} that handles an event of an added or removed node as a change of the entire subtree
+ * of that node. When the {@link EventListenersContainer} dispatches events asynchronously in batches, the events below
+ * a node that is added or removed within the same batch are then left out for this listener.
+ */
+public interface CoalescableEventListener extends EventListener {
+
+}
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -39,6 +39,16 @@ public interface PoolingRepositoryMBean {
      * the request. This option will make the max active count limit meaningless.
      */
     String WHEN_EXHAUSTED_GROW = "grow";
+
+    /**
+     * The pool type backed by the commons-pool <code>GenericObjectPool</code>, synchronizing every borrow and return.
+     */
+    String POOL_TYPE_GENERIC = "generic";
+
+    /**
+     * The pool type without global locks on the borrow and return paths, for pools serving many concurrent threads.
+     */
+    String POOL_TYPE_LOCK_FREE = "lockfree";
     
     /**
      * The key name of the counter which counts session creation.
@@ -260,5 +270,43 @@ public interface PoolingRepositoryMBean {
      * @param whenExhaustedAction the new value for the action when the pool is exhausted
      */
     void setWhenExhaustedAction(String whenExhaustedAction);
+
+    /**
+     * Returns the type of the session pool, {@link #POOL_TYPE_GENERIC} or {@link #POOL_TYPE_LOCK_FREE}. Implementations
+     * that do not offer a choice of pool types return {@link #POOL_TYPE_GENERIC}.
+     */
+    default String getPoolType() {
+        return POOL_TYPE_GENERIC;
+    }
+
+    /**
+     * Returns the 50th percentile of the time in milliseconds it took to obtain a session from the pool, or
+     * <code>0</code> when the implementation does not record these times
+     */
+    default double getBorrowWaitTimeMillis50thPercentile() {
+        return 0;
+    }
+
+    /**
+     * Returns the 95th percentile of the time in milliseconds it took to obtain a session from the pool, or
+     * <code>0</code> when the implementation does not record these times
+     */
+    default double getBorrowWaitTimeMillis95thPercentile() {
+        return 0;
+    }
+
+    /**
+     * Returns the 99th percentile of the time in milliseconds it took to obtain a session from the pool, or
+     * <code>0</code> when the implementation does not record these times
+     */
+    default double getBorrowWaitTimeMillis99thPercentile() {
+        return 0;
+    }
+
+    /**
+     * Resets the recorded times it took to obtain a session from the pool, if any
+     */
+    default void resetBorrowWaitTimes() {
+    }
     
 }
@@ -0,0 +1,240 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.hippoecm.hst.configuration.hosting.VirtualHosts;
+import org.hippoecm.hst.configuration.model.HstManager;
+import org.hippoecm.hst.container.ModifiableRequestContextProvider;
+import org.hippoecm.hst.core.component.HstURLFactory;
+import org.hippoecm.hst.core.container.ComponentManager;
+import org.hippoecm.hst.core.container.ContainerConstants;
+import org.hippoecm.hst.core.container.ContainerException;
+import org.hippoecm.hst.core.container.HstContainerURL;
+import org.hippoecm.hst.core.internal.HstMutableRequestContext;
+import org.hippoecm.hst.core.internal.HstRequestContextComponent;
+import org.hippoecm.hst.core.linking.HstLinkCreator;
+import org.hippoecm.hst.core.request.HstSiteMapMatcher;
+import org.hippoecm.hst.core.request.ResolvedMount;
+import org.hippoecm.hst.mock.core.request.MockHstRequestContext;
+import org.hippoecm.hst.site.HstServices;
+import org.hippoecm.hst.site.container.SpringComponentManager;
+import org.hippoecm.repository.HippoRepository;
+import org.hippoecm.repository.HippoRepositoryFactory;
+import org.onehippo.cms7.services.ServletContextRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.hippoecm.hst.benchmarks.BenchmarkServletContext.CONTEXT_PATH;
+
+/**
+ * The hst container on the unit test repository, extended with the {@link SyntheticConfiguration}, that the
+ * benchmarks of a JMH fork share. Every benchmark state acquires the environment in its trial set up and releases it
+ * in its trial tear down : the container is started by the first and stopped by the last.
+ */
+public final class BenchmarkEnvironment {
+
+    private static final Logger log = LoggerFactory.getLogger(BenchmarkEnvironment.class);
+
+    private static final String[] CONFIGURATIONS = {"org/hippoecm/hst/benchmarks/SpringComponentManager-benchmarks.xml"};
+    private static final long MODEL_RELOAD_TIMEOUT_MILLIS = 120000L;
+
+    private static BenchmarkEnvironment instance;
+    private static int references;
+
+    private final BenchmarkServletContext servletContext = new BenchmarkServletContext();
+    private final ComponentManager componentManager;
+
+    private BenchmarkEnvironment() throws Exception {
+        componentManager = new SpringComponentManager(new PropertiesConfiguration());
+        componentManager.setConfigurationResources(CONFIGURATIONS);
+        ServletContextRegistry.register(servletContext, ServletContextRegistry.WebAppType.HST);
+        componentManager.setServletContext(servletContext);
+        componentManager.initialize();
+        componentManager.start();
+        HstServices.setComponentManager(componentManager);
+
+        final Session session = loginWritable();
+        try {
+            SyntheticConfiguration.install(session);
+        } finally {
+            session.logout();
+        }
+        waitForSyntheticConfiguration();
+    }
+
+    public static synchronized BenchmarkEnvironment acquire() throws Exception {
+        if (instance == null) {
+            instance = new BenchmarkEnvironment();
+        }
+        references++;
+        return instance;
+    }
+
+    public static synchronized void release() throws Exception {
+        if (instance == null || --references > 0) {
+            return;
+        }
+        try {
+            instance.stop();
+        } finally {
+            instance = null;
+        }
+    }
+
+    private void stop() throws Exception {
+        ModifiableRequestContextProvider.clear();
+        try {
+            final Session session = loginWritable();
+            try {
+                SyntheticConfiguration.remove(session);
+            } finally {
+                session.logout();
+            }
+        } finally {
+            componentManager.stop();
+            componentManager.close();
+            ServletContextRegistry.unregister(servletContext);
+            HstServices.setComponentManager(null);
+            final HippoRepository hippoRepository = HippoRepositoryFactory.getHippoRepository();
+            if (hippoRepository != null) {
+                hippoRepository.close();
+            }
+        }
+    }
+
+    /**
+     * The model gets reloaded asynchronously after the changes of the synthetic configuration have been observed
+     */
+    private void waitForSyntheticConfiguration() throws Exception {
+        final String lastHostName = SyntheticConfiguration.getHostName(SyntheticConfiguration.HOSTS - 1);
+        final long timeout = System.currentTimeMillis() + MODEL_RELOAD_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < timeout) {
+            try {
+                final ResolvedMount resolvedMount = getVirtualHosts().matchMount(lastHostName, CONTEXT_PATH, "/");
+                if (resolvedMount != null && lastHostName.equals(resolvedMount.getMount().getVirtualHost().getHostName())) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                log.debug("Synthetic configuration not loaded yet : {}", e.toString());
+            }
+            Thread.sleep(100L);
+        }
+        throw new IllegalStateException("The synthetic configuration did not get loaded within "
+                + MODEL_RELOAD_TIMEOUT_MILLIS + " ms");
+    }
+
+    public <T> T getComponent(final String name) {
+        return componentManager.getComponent(name);
+    }
+
+    public BenchmarkServletContext getServletContext() {
+        return servletContext;
+    }
+
+    public VirtualHosts getVirtualHosts() throws ContainerException {
+        final HstManager hstManager = getComponent(HstManager.class.getName());
+        return hstManager.getVirtualHosts();
+    }
+
+    /**
+     * @return a pooled session of the live site, to log out after use
+     */
+    public Session login() throws RepositoryException {
+        final Repository repository = getComponent(Repository.class.getName());
+        return repository.login(getComponent(Credentials.class.getName() + ".default"));
+    }
+
+    private Session loginWritable() throws RepositoryException {
+        final Repository repository = getComponent(Repository.class.getName());
+        return repository.login(getComponent(Credentials.class.getName() + ".writable"));
+    }
+
+    public MockHttpServletRequest createServletRequest(final String hostName, final String requestPath) {
+        final MockHttpServletRequest request = new MockHttpServletRequest(servletContext);
+        request.setServerName(hostName);
+        request.addHeader("Host", hostName);
+        request.setContextPath(CONTEXT_PATH);
+        request.setPathInfo(requestPath);
+        request.setRequestURI(CONTEXT_PATH + requestPath);
+        return request;
+    }
+
+    /**
+     * @return a mock request context for <code>requestPath</code> on <code>hostName</code>, resolved against the
+     * current model and backed by <code>session</code>
+     */
+    public MockHstRequestContext createRequestContext(final String hostName, final String requestPath,
+                                                      final Session session) throws ContainerException {
+        final MockHttpServletRequest request = createServletRequest(hostName, requestPath);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final ResolvedMount resolvedMount = getVirtualHosts().matchMount(hostName, CONTEXT_PATH, requestPath);
+        final HstURLFactory urlFactory = getComponent(HstURLFactory.class.getName());
+
+        final MockHstRequestContext requestContext = new MockHstRequestContext();
+        requestContext.setServletContext(servletContext);
+        requestContext.setServletRequest(request);
+        requestContext.setServletResponse(response);
+        requestContext.setSession(session);
+        requestContext.setResolvedMount(resolvedMount);
+        requestContext.setVirtualHost(resolvedMount.getMount().getVirtualHost());
+        requestContext.setURLFactory(urlFactory);
+        requestContext.setHstLinkCreator(this.<HstLinkCreator>getComponent(HstLinkCreator.class.getName()));
+        requestContext.setSiteMapMatcher(this.<HstSiteMapMatcher>getComponent(HstSiteMapMatcher.class.getName()));
+        requestContext.setContainerConfiguration(componentManager.getContainerConfiguration());
+        request.setAttribute(ContainerConstants.HST_REQUEST_CONTEXT, requestContext);
+
+        final HstContainerURL baseURL = urlFactory.getContainerURLProvider().parseURL(request, response, resolvedMount);
+        requestContext.setBaseURL(baseURL);
+        if (resolvedMount.getMount().isMapped()) {
+            requestContext.setResolvedSiteMapItem(resolvedMount.matchSiteMapItem(baseURL.getPathInfo()));
+        }
+        return requestContext;
+    }
+
+    /**
+     * @return a new request context for the hst pipelines, resolved for <code>request</code> in the same way as the
+     * hst filter does
+     */
+    public HstMutableRequestContext resolveRequest(final HttpServletRequest request,
+                                                   final HttpServletResponse response) throws ContainerException {
+        final HstRequestContextComponent requestContextComponent =
+                getComponent(HstRequestContextComponent.class.getName());
+        final HstMutableRequestContext requestContext = requestContextComponent.create();
+        requestContext.setServletRequest(request);
+        requestContext.setServletResponse(response);
+        request.setAttribute(ContainerConstants.HST_REQUEST_CONTEXT, requestContext);
+
+        final ResolvedMount resolvedMount = getVirtualHosts().matchMount(request.getServerName(),
+                request.getContextPath(), request.getPathInfo());
+        requestContext.setResolvedMount(resolvedMount);
+        final HstURLFactory urlFactory = getComponent(HstURLFactory.class.getName());
+        final HstContainerURL baseURL = urlFactory.getContainerURLProvider().parseURL(request, response, resolvedMount);
+        requestContext.setBaseURL(baseURL);
+        requestContext.setResolvedSiteMapItem(resolvedMount.matchSiteMapItem(baseURL.getPathInfo()));
+        requestContext.matchingFinished();
+        return requestContext;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.springframework.mock.web.MockServletContext;
+
+/**
+ * Servlet context of the site webapp in which dispatching to a template does not render anything.
+ */
+public class BenchmarkServletContext extends MockServletContext {
+
+    public static final String CONTEXT_PATH = "/site";
+
+    private static final RequestDispatcher NOOP_DISPATCHER = new RequestDispatcher() {
+        @Override
+        public void forward(final ServletRequest request, final ServletResponse response) {
+        }
+
+        @Override
+        public void include(final ServletRequest request, final ServletResponse response) {
+        }
+    };
+
+    public BenchmarkServletContext() {
+        setContextPath(CONTEXT_PATH);
+    }
+
+    @Override
+    public RequestDispatcher getRequestDispatcher(final String path) {
+        return NOOP_DISPATCHER;
+    }
+
+    @Override
+    public RequestDispatcher getNamedDispatcher(final String path) {
+        return NOOP_DISPATCHER;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+
+import org.hippoecm.hst.container.ModifiableRequestContextProvider;
+import org.hippoecm.hst.content.rewriter.impl.SimpleContentRewriter;
+import org.hippoecm.hst.mock.core.request.MockHstRequestContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks {@link SimpleContentRewriter#rewrite(String, Node, org.hippoecm.hst.core.request.HstRequestContext)} of
+ * synthetic rich text with a number of paragraphs, each with an external link, an internal link and an image. The
+ * internal links and images refer to link nodes that do not exist below the html node, hence get rewritten to the
+ * page not found link.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContentRewriterBenchmark {
+
+    @Param({"0", "10", "100"})
+    public int paragraphs;
+
+    private Session session;
+    private MockHstRequestContext requestContext;
+    private Node htmlNode;
+    private SimpleContentRewriter contentRewriter;
+    private String html;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final BenchmarkEnvironment environment = BenchmarkEnvironment.acquire();
+        session = environment.login();
+        requestContext = environment.createRequestContext("localhost", "/news", session);
+        ModifiableRequestContextProvider.set(requestContext);
+        htmlNode = session.getNode("/unittestcontent/documents/unittestproject/common/homepage/homepage/unittestproject:body");
+        contentRewriter = new SimpleContentRewriter();
+        html = createHtml(paragraphs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ModifiableRequestContextProvider.clear();
+        session.logout();
+        BenchmarkEnvironment.release();
+    }
+
+    @Benchmark
+    public String rewrite() {
+        return contentRewriter.rewrite(html, htmlNode, requestContext);
+    }
+
+    private static String createHtml(final int paragraphs) {
+        final StringBuilder builder = new StringBuilder("<html><body><h1>Synthetic rich text</h1>");
+        for (int i = 0; i < paragraphs; i++) {
+            builder.append("<p>Paragraph ").append(i).append(" with <strong>some</strong> text, ")
+                    .append("<a href=\"http://www.example.com/page").append(i).append("\">an external link</a>, ")
+                    .append("<a href=\"link").append(i).append("\">an internal link</a> and an image ")
+                    .append("<img src=\"image").append(i).append("/{_document}/hippogallery:original\" alt=\"\"/>")
+                    .append("</p>");
+        }
+        return builder.append("</body></html>").toString();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.hippoecm.hst.content.beans.index.IndexField;
+import org.hippoecm.hst.content.beans.index.Indexable;
+import org.hippoecm.hst.content.beans.standard.IdentifiableContentBean;
+import org.hippoecm.hst.solr.DocumentObjectBinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks binding the 1000 hits of a solr response to beans with the one {@link DocumentObjectBinder} that a
+ * {@link org.hippoecm.hst.solr.HippoSolrClient} shares between its queries, against a new binder per query that has to
+ * inspect the bean class again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DocumentObjectBinderBenchmark {
+
+    private static final int HITS = 1000;
+
+    private DocumentObjectBinder sharedBinder;
+    private SolrDocumentList documents;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sharedBinder = new DocumentObjectBinder();
+        documents = new SolrDocumentList();
+        final Calendar date = Calendar.getInstance();
+        for (int i = 0; i < HITS; i++) {
+            final BenchmarkBean bean = new BenchmarkBean();
+            bean.setIdentifier("/content/documents/benchmark/news/article" + i);
+            bean.setTitle("Article " + i);
+            bean.setSummary("Summary of article " + i);
+            bean.setDate(date);
+            bean.setPrice(i + 0.95);
+            bean.setAuthors(new String[]{"author" + (i % 10), "author" + (i % 7)});
+
+            final SolrInputDocument inputDocument = sharedBinder.toSolrInputDocument(bean);
+            final SolrDocument document = new SolrDocument();
+            for (SolrInputField field : inputDocument) {
+                document.setField(field.getName(), field.getValue());
+            }
+            documents.add(document);
+        }
+        documents.setNumFound(HITS);
+    }
+
+    @Benchmark
+    public List<IdentifiableContentBean> sharedBinder() {
+        return sharedBinder.getBeans(IdentifiableContentBean.class, documents);
+    }
+
+    @Benchmark
+    public List<IdentifiableContentBean> newBinderPerQuery() {
+        return new DocumentObjectBinder().getBeans(IdentifiableContentBean.class, documents);
+    }
+
+    @Indexable
+    public static class BenchmarkBean implements IdentifiableContentBean {
+
+        private String identifier;
+        private String title;
+        private String summary;
+        private Calendar date;
+        private double price;
+        private String[] authors;
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        @Override
+        public void setIdentifier(final String identifier) {
+            this.identifier = identifier;
+        }
+
+        @IndexField
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(final String title) {
+            this.title = title;
+        }
+
+        @IndexField
+        public String getSummary() {
+            return summary;
+        }
+
+        public void setSummary(final String summary) {
+            this.summary = summary;
+        }
+
+        @IndexField
+        public Calendar getDate() {
+            return date;
+        }
+
+        public void setDate(final Calendar date) {
+            this.date = date;
+        }
+
+        @IndexField
+        public double getPrice() {
+            return price;
+        }
+
+        public void setPrice(final double price) {
+            this.price = price;
+        }
+
+        @IndexField
+        public String[] getAuthors() {
+            return authors;
+        }
+
+        public void setAuthors(final String[] authors) {
+            this.authors = authors;
+        }
+    }
+}
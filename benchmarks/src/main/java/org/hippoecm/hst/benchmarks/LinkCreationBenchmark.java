@@ -0,0 +1,96 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+
+import org.hippoecm.hst.container.ModifiableRequestContextProvider;
+import org.hippoecm.hst.core.linking.HstLink;
+import org.hippoecm.hst.core.linking.HstLinkCreator;
+import org.hippoecm.hst.mock.core.request.MockHstRequestContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks {@link HstLinkCreator#create(Node, org.hippoecm.hst.core.request.HstRequestContext)} of the
+ * {@link org.hippoecm.hst.core.linking.DefaultHstLinkCreator} for documents of the unit test content, and the
+ * rendering of the created links to urls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LinkCreationBenchmark {
+
+    static final String[] DOCUMENT_PATHS = {
+            "/unittestcontent/documents/unittestproject/common/homepage",
+            "/unittestcontent/documents/unittestproject/News/News1",
+            "/unittestcontent/documents/unittestproject/News/News2",
+            "/unittestcontent/documents/unittestproject/News/News3/News3"
+    };
+
+    private Session session;
+    private MockHstRequestContext requestContext;
+    private HstLinkCreator linkCreator;
+    private Node[] nodes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final BenchmarkEnvironment environment = BenchmarkEnvironment.acquire();
+        session = environment.login();
+        requestContext = environment.createRequestContext("localhost", "/news", session);
+        ModifiableRequestContextProvider.set(requestContext);
+        linkCreator = requestContext.getHstLinkCreator();
+
+        nodes = new Node[DOCUMENT_PATHS.length];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = session.getNode(DOCUMENT_PATHS[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ModifiableRequestContextProvider.clear();
+        session.logout();
+        BenchmarkEnvironment.release();
+    }
+
+    @Benchmark
+    public HstLink createDocumentLink() {
+        return linkCreator.create(nextNode(), requestContext);
+    }
+
+    @Benchmark
+    public String createDocumentUrl() {
+        return linkCreator.create(nextNode(), requestContext).toUrlForm(requestContext, false);
+    }
+
+    private Node nextNode() {
+        final Node node = nodes[next];
+        next = (next + 1) % nodes.length;
+        return node;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hippoecm.hst.configuration.hosting.VirtualHosts;
+import org.hippoecm.hst.configuration.model.HstManager;
+import org.hippoecm.hst.configuration.model.HstManagerImpl;
+import org.hippoecm.hst.core.container.ContainerException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks the rebuild of the hst model with the many hosts and mounts of the {@link SyntheticConfiguration}, with
+ * the root virtual hosts loaded one after the other and loaded concurrently, like
+ * <code>model.build.parallel.enabled</code> sets. The hst configuration nodes stay loaded and the hst sites are
+ * reused between builds, as after a change that does not affect them, hence this mainly measures the loading of the
+ * virtual hosts and their mounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ModelBuildBenchmark {
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private HstManagerImpl hstManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        hstManager = BenchmarkEnvironment.acquire().getComponent(HstManager.class.getName());
+        hstManager.setParallelModelBuildEnabled(parallel);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        // back to the default of the container
+        hstManager.setParallelModelBuildEnabled(false);
+        BenchmarkEnvironment.release();
+    }
+
+    @Benchmark
+    public VirtualHosts buildModel() throws ContainerException {
+        hstManager.markStale();
+        return hstManager.getVirtualHosts();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hippoecm.hst.configuration.hosting.VirtualHosts;
+import org.hippoecm.hst.core.request.ResolvedMount;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static org.hippoecm.hst.benchmarks.BenchmarkServletContext.CONTEXT_PATH;
+
+/**
+ * Benchmarks {@link VirtualHosts#matchMount(String, String, String)}, the first step of every request, on the
+ * unit test hosts and on the many hosts and mounts of the {@link SyntheticConfiguration}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MountMatchingBenchmark {
+
+    private VirtualHosts virtualHosts;
+    private String[] hostNames;
+    private String[] requestPaths;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        virtualHosts = BenchmarkEnvironment.acquire().getVirtualHosts();
+
+        hostNames = new String[SyntheticConfiguration.HOSTS];
+        for (int i = 0; i < hostNames.length; i++) {
+            hostNames[i] = SyntheticConfiguration.getHostName(i);
+        }
+        requestPaths = new String[SyntheticConfiguration.MOUNTS_PER_HOST + 1];
+        requestPaths[0] = "/news";
+        for (int i = 1; i < requestPaths.length; i++) {
+            requestPaths[i] = SyntheticConfiguration.getMountPath(i - 1) + "/news";
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkEnvironment.release();
+    }
+
+    @Benchmark
+    public ResolvedMount matchUnitTestMount() {
+        return virtualHosts.matchMount("localhost", CONTEXT_PATH, "/news");
+    }
+
+    @Benchmark
+    public ResolvedMount matchUnitTestSubMount() {
+        return virtualHosts.matchMount("localhost", CONTEXT_PATH, "/subsite/news");
+    }
+
+    /**
+     * Cycles through all synthetic hosts and their mounts, hence does not only hit the most recently resolved hosts
+     */
+    @Benchmark
+    public ResolvedMount matchSyntheticMount() {
+        final int index = next;
+        next = (next + 1) % (hostNames.length * requestPaths.length);
+        final String hostName = hostNames[index / requestPaths.length];
+        return virtualHosts.matchMount(hostName, CONTEXT_PATH, requestPaths[index % requestPaths.length]);
+    }
+}
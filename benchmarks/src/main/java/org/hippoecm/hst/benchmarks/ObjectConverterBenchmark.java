@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+
+import org.hippoecm.hst.content.beans.ObjectBeanManagerException;
+import org.hippoecm.hst.content.beans.manager.ObjectConverter;
+import org.hippoecm.hst.content.beans.standard.HippoBean;
+import org.hippoecm.hst.util.ObjectConverterUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks {@link org.hippoecm.hst.content.beans.manager.ObjectConverterImpl#getObject(Node)} with the built-in
+ * bean mappings, for document handles, folders and html compounds of the unit test content.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ObjectConverterBenchmark {
+
+    private Session session;
+    private ObjectConverter objectConverter;
+    private Node[] handles;
+    private Node folder;
+    private Node html;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        session = BenchmarkEnvironment.acquire().login();
+        objectConverter = ObjectConverterUtils.createObjectConverter(
+                Collections.<Class<? extends HippoBean>>emptyList());
+
+        handles = new Node[LinkCreationBenchmark.DOCUMENT_PATHS.length];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = session.getNode(LinkCreationBenchmark.DOCUMENT_PATHS[i]);
+        }
+        folder = session.getNode("/unittestcontent/documents/unittestproject/News");
+        html = session.getNode("/unittestcontent/documents/unittestproject/common/homepage/homepage/unittestproject:body");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        session.logout();
+        BenchmarkEnvironment.release();
+    }
+
+    @Benchmark
+    public Object getDocument() throws ObjectBeanManagerException {
+        final Node handle = handles[next];
+        next = (next + 1) % handles.length;
+        return objectConverter.getObject(handle);
+    }
+
+    @Benchmark
+    public Object getFolder() throws ObjectBeanManagerException {
+        return objectConverter.getObject(folder);
+    }
+
+    @Benchmark
+    public Object getHtml() throws ObjectBeanManagerException {
+        return objectConverter.getObject(html);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletConfig;
+
+import org.hippoecm.hst.container.HstContainerConfigImpl;
+import org.hippoecm.hst.container.ModifiableRequestContextProvider;
+import org.hippoecm.hst.core.container.ContainerException;
+import org.hippoecm.hst.core.container.HstContainerConfig;
+import org.hippoecm.hst.core.container.Pipeline;
+import org.hippoecm.hst.core.container.Pipelines;
+import org.hippoecm.hst.core.internal.HstMutableRequestContext;
+import org.hippoecm.hst.core.internal.HstRequestContextComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Benchmarks a complete request through the default {@link org.hippoecm.hst.core.container.HstSitePipeline} : the
+ * resolving of the mount and sitemap item as the hst filter does, followed by all valves of the pipeline. The
+ * templates are not rendered, see {@link BenchmarkServletContext}, hence this measures the overhead of the hst itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PipelineBenchmark {
+
+    @Param({"/news", "/news/2009/februari", "/benchmark/section100/item10"})
+    public String requestPath;
+
+    private BenchmarkEnvironment environment;
+    private HstRequestContextComponent requestContextComponent;
+    private Pipeline pipeline;
+    private HstContainerConfig containerConfig;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.acquire();
+        requestContextComponent = environment.getComponent(HstRequestContextComponent.class.getName());
+        final Pipelines pipelines = environment.getComponent(Pipelines.class.getName());
+        pipeline = pipelines.getDefaultPipeline();
+        final ServletConfig servletConfig = environment.getComponent(ServletConfig.class.getName());
+        containerConfig = new HstContainerConfigImpl(servletConfig.getServletContext(), getClass().getClassLoader());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkEnvironment.release();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse invoke() throws ContainerException {
+        final MockHttpServletRequest request = environment.createServletRequest("localhost", requestPath);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        final HstMutableRequestContext requestContext = environment.resolveRequest(request, response);
+        ModifiableRequestContextProvider.set(requestContext);
+        try {
+            pipeline.invoke(containerConfig, requestContext, request, response);
+        } finally {
+            pipeline.cleanup(containerConfig, requestContext, request, response);
+            requestContextComponent.release(requestContext);
+            ModifiableRequestContextProvider.clear();
+        }
+        return response;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+
+import org.hippoecm.hst.container.ModifiableRequestContextProvider;
+import org.hippoecm.hst.content.beans.query.HstQuery;
+import org.hippoecm.hst.content.beans.query.HstQueryManager;
+import org.hippoecm.hst.content.beans.query.HstQueryManagerImpl;
+import org.hippoecm.hst.content.beans.query.exceptions.QueryException;
+import org.hippoecm.hst.content.beans.query.filter.Filter;
+import org.hippoecm.hst.content.beans.standard.HippoBean;
+import org.hippoecm.hst.content.beans.standard.HippoDocument;
+import org.hippoecm.hst.util.ObjectConverterUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks {@link org.hippoecm.hst.content.beans.query.HstQueryImpl#getQueryAsString(boolean)}, which translates an
+ * hst query to an xpath query before every execution, for a query with a typical search filter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryStringBenchmark {
+
+    private Session session;
+    private HstQueryManager queryManager;
+    private Node scope;
+    private HstQuery query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final BenchmarkEnvironment environment = BenchmarkEnvironment.acquire();
+        session = environment.login();
+        ModifiableRequestContextProvider.set(environment.createRequestContext("localhost", "/news", session));
+        queryManager = new HstQueryManagerImpl(session, ObjectConverterUtils.createObjectConverter(
+                Collections.<Class<? extends HippoBean>>emptyList()));
+        scope = session.getNode("/unittestcontent/documents/unittestproject/News");
+        query = createQuery();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ModifiableRequestContextProvider.clear();
+        session.logout();
+        BenchmarkEnvironment.release();
+    }
+
+    @Benchmark
+    public String getQueryAsString() throws QueryException {
+        return query.getQueryAsString(false);
+    }
+
+    @Benchmark
+    public String createQueryAndGetQueryAsString() throws QueryException {
+        return createQuery().getQueryAsString(false);
+    }
+
+    private HstQuery createQuery() throws QueryException {
+        final HstQuery hstQuery = queryManager.createQuery(scope, HippoDocument.class, true);
+        final Filter filter = hstQuery.createFilter();
+        filter.addContains(".", "news article");
+        filter.addEqualTo("hippostd:state", "published");
+        final Calendar since = Calendar.getInstance();
+        since.add(Calendar.YEAR, -10);
+        filter.addGreaterOrEqualThan("unittestproject:date", since);
+        final Filter titleFilter = hstQuery.createFilter();
+        titleFilter.addLike("unittestproject:title", "%News%");
+        filter.addAndFilter(titleFilter);
+        hstQuery.setFilter(filter);
+        hstQuery.addOrderByDescending("unittestproject:date");
+        hstQuery.setLimit(10);
+        return hstQuery;
+    }
+}
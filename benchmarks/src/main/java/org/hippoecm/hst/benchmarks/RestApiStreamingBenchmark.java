@@ -0,0 +1,187 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hippoecm.hst.container.ModifiableRequestContextProvider;
+import org.hippoecm.hst.restapi.NodeVisitor;
+import org.hippoecm.hst.restapi.ResourceContext;
+import org.hippoecm.hst.restapi.ResourceContextFactory;
+import org.hippoecm.hst.restapi.StreamingNodeVisitorAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks writing a document of the content REST API as JSON by visiting it into nested maps first, against
+ * streaming it to a {@link JsonGenerator} while visiting. The <code>*Complete</code> benchmarks write the entire
+ * document, run them with <code>-Djmh.args="-prof gc"</code> to compare the allocation rates. The
+ * <code>*FirstByte</code> benchmarks stop at the first byte that reaches the output stream, which approximates the
+ * time to first byte. Note that the generator buffers about 8KB, hence for small documents the first byte only arrives
+ * when the document is complete.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RestApiStreamingBenchmark {
+
+    private static final FirstByteWritten FIRST_BYTE_WRITTEN = new FirstByteWritten();
+
+    private Session session;
+    private ObjectMapper objectMapper;
+    private ResourceContext resourceContext;
+    private NodeVisitor visitor;
+    private Node handle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final BenchmarkEnvironment environment = BenchmarkEnvironment.acquire();
+        session = environment.login();
+        ModifiableRequestContextProvider.set(environment.createRequestContext("localhost", "/api", session));
+        objectMapper = environment.getComponent("restApiJacksonObjectMapper");
+        final ResourceContextFactory resourceContextFactory = environment.getComponent("resourceContextFactory");
+        resourceContext = resourceContextFactory.createResourceContext();
+        handle = session.getNode("/unittestcontent/documents/unittestproject/News/News1");
+        visitor = resourceContext.getVisitor(handle);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ModifiableRequestContextProvider.clear();
+        session.logout();
+        BenchmarkEnvironment.release();
+    }
+
+    @Benchmark
+    public long mapComplete() throws IOException, RepositoryException {
+        final CountingOutputStream output = new CountingOutputStream(false);
+        writeMap(output);
+        return output.count;
+    }
+
+    @Benchmark
+    public long streamingComplete() throws IOException, RepositoryException {
+        final CountingOutputStream output = new CountingOutputStream(false);
+        writeStreaming(output);
+        return output.count;
+    }
+
+    @Benchmark
+    public boolean mapFirstByte() throws IOException, RepositoryException {
+        try {
+            writeMap(new CountingOutputStream(true));
+            return false;
+        } catch (IOException | RuntimeException e) {
+            return isFirstByteWritten(e);
+        }
+    }
+
+    @Benchmark
+    public boolean streamingFirstByte() throws IOException, RepositoryException {
+        try {
+            writeStreaming(new CountingOutputStream(true));
+            return false;
+        } catch (IOException | RuntimeException e) {
+            return isFirstByteWritten(e);
+        }
+    }
+
+    private void writeMap(final OutputStream output) throws IOException, RepositoryException {
+        final Map<String, Object> response = new LinkedHashMap<>();
+        visitor.visit(resourceContext, handle, response);
+        objectMapper.writeValue(output, response);
+    }
+
+    private void writeStreaming(final OutputStream output) throws IOException, RepositoryException {
+        final JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+        generator.writeStartObject();
+        StreamingNodeVisitorAdapter.adapt(visitor).visit(resourceContext, handle, generator);
+        generator.writeEndObject();
+        generator.close();
+    }
+
+    private static <E extends Exception> boolean isFirstByteWritten(final E e) throws E {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause == FIRST_BYTE_WRITTEN) {
+                return true;
+            }
+        }
+        throw e;
+    }
+
+    /**
+     * Discards and counts the written bytes, or fails at the first byte when <code>failFast</code>
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        private final boolean failFast;
+        private long count;
+
+        private CountingOutputStream(final boolean failFast) {
+            this.failFast = failFast;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            written(1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            written(len);
+        }
+
+        private void written(final int len) throws IOException {
+            if (failFast && len > 0) {
+                throw FIRST_BYTE_WRITTEN;
+            }
+            count += len;
+        }
+    }
+
+    /**
+     * Preallocated without stack trace, hence cheap to throw
+     */
+    private static class FirstByteWritten extends IOException {
+
+        private FirstByteWritten() {
+            super("first byte written", null);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.hippoecm.hst.core.internal.StringPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Benchmarks the throughput of {@link StringPool#get(String)} from 1 up to 32 threads, against the single
+ * synchronized {@link WeakHashMap} that the pool used to be. Every thread pools copies of the same strings, like the
+ * threads that load the hst model do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StringPoolBenchmark {
+
+    private static final int STRINGS = 10000;
+
+    @Param({"segmented", "synchronized"})
+    public String pool;
+
+    private String[] strings;
+    private boolean segmented;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // start every thread at another position
+            next = (int) (Thread.currentThread().getId() * 7919 % STRINGS);
+        }
+
+        int next() {
+            final int index = next;
+            next = (next + 1) % STRINGS;
+            return index;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        segmented = "segmented".equals(pool);
+        StringPool.clear();
+        SynchronizedStringPool.clear();
+        strings = new String[STRINGS];
+        for (int i = 0; i < STRINGS; i++) {
+            strings[i] = "hst:componentconfigurationid-" + i;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String threads1(final Cursor cursor) {
+        return get(cursor);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public String threads2(final Cursor cursor) {
+        return get(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String threads4(final Cursor cursor) {
+        return get(cursor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String threads8(final Cursor cursor) {
+        return get(cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String threads16(final Cursor cursor) {
+        return get(cursor);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public String threads32(final Cursor cursor) {
+        return get(cursor);
+    }
+
+    private String get(final Cursor cursor) {
+        // a copy, as the strings read from the repository are distinct instances
+        final String string = new String(strings[cursor.next()]);
+        return segmented ? StringPool.get(string) : SynchronizedStringPool.get(string);
+    }
+
+    /**
+     * The string pool before it got segmented : a single weak hash map guarded by the class monitor
+     */
+    static final class SynchronizedStringPool {
+
+        private static final WeakHashMap<String, WeakReference<String>> stringPool = new WeakHashMap<>(1000);
+
+        private SynchronizedStringPool() {
+        }
+
+        static synchronized String get(final String string) {
+            if (string == null) {
+                return null;
+            }
+            final WeakReference<String> weakVal = stringPool.get(string);
+            String pooledString;
+            if (weakVal != null && (pooledString = weakVal.get()) != null) {
+                return pooledString;
+            }
+            stringPool.put(string, new WeakReference<>(string));
+            return string;
+        }
+
+        static synchronized void clear() {
+            stringPool.clear();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.benchmarks;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import static org.hippoecm.hst.configuration.HstNodeTypes.MOUNT_HST_ROOTNAME;
+import static org.hippoecm.hst.configuration.HstNodeTypes.MOUNT_PROPERTY_MOUNTPOINT;
+import static org.hippoecm.hst.configuration.HstNodeTypes.MOUNT_PROPERTY_NOCHANNELINFO;
+import static org.hippoecm.hst.configuration.HstNodeTypes.NODETYPE_HST_MOUNT;
+import static org.hippoecm.hst.configuration.HstNodeTypes.NODETYPE_HST_SITEMAPITEM;
+import static org.hippoecm.hst.configuration.HstNodeTypes.NODETYPE_HST_VIRTUALHOST;
+import static org.hippoecm.hst.configuration.HstNodeTypes.NODETYPE_HST_VIRTUALHOSTGROUP;
+import static org.hippoecm.hst.configuration.HstNodeTypes.SITEMAPITEM_PROPERTY_COMPONENTCONFIGURATIONID;
+import static org.hippoecm.hst.configuration.HstNodeTypes.WILDCARD;
+
+/**
+ * Adds a large, synthetic hst configuration to the unit test configuration : a host group with many hosts that each
+ * have several mounts, spread over a number of root hosts, and a sitemap item with many sections of sitemap items
+ * below the sitemap of the 'unittestproject'. The sizes can be set with the system properties
+ * <code>benchmark.hosts</code>, <code>benchmark.mountsPerHost</code>, <code>benchmark.rootHosts</code>,
+ * <code>benchmark.sitemapSections</code> and <code>benchmark.sitemapItemsPerSection</code>.
+ */
+public final class SyntheticConfiguration {
+
+    public static final int HOSTS = Integer.getInteger("benchmark.hosts", 250);
+    public static final int MOUNTS_PER_HOST = Integer.getInteger("benchmark.mountsPerHost", 4);
+    /**
+     * The root hosts are the units in which the virtual hosts of a model are loaded concurrently
+     */
+    public static final int ROOT_HOSTS = Integer.getInteger("benchmark.rootHosts", 10);
+    public static final int SITEMAP_SECTIONS = Integer.getInteger("benchmark.sitemapSections", 400);
+    public static final int SITEMAP_ITEMS_PER_SECTION = Integer.getInteger("benchmark.sitemapItemsPerSection", 25);
+
+    private static final String HOSTS_PATH = "/hst:hst/hst:hosts";
+    private static final String SITEMAP_PATH = "/hst:hst/hst:configurations/unittestproject/hst:sitemap";
+    private static final String MOUNT_POINT = "/hst:hst/hst:sites/unittestproject";
+    private static final String NAME = "benchmark";
+    private static final String COMPONENT_CONFIGURATION_ID = "hst:pages/newsoverview";
+
+    private SyntheticConfiguration() {
+    }
+
+    /**
+     * @return the name of synthetic host <code>index</code>, for example <code>host7.example.benchmark7</code>
+     */
+    public static String getHostName(final int index) {
+        return "host" + index + ".example." + NAME + (index % ROOT_HOSTS);
+    }
+
+    /**
+     * @return the path of a synthetic mount below the root mount of a synthetic host, for example <code>/mount2</code>
+     */
+    public static String getMountPath(final int index) {
+        return "/mount" + index;
+    }
+
+    /**
+     * @return the path info of an explicit synthetic sitemap item
+     */
+    public static String getSiteMapItemPath(final int section, final int item) {
+        return NAME + "/section" + section + "/item" + item;
+    }
+
+    /**
+     * @return a path info that only matches the wildcard sitemap item of a section
+     */
+    public static String getWildcardPath(final int section, final String value) {
+        return NAME + "/section" + section + "/" + value;
+    }
+
+    /**
+     * Replaces the synthetic configuration in the repository, if any, with a new one.
+     */
+    public static void install(final Session session) throws RepositoryException {
+        remove(session);
+
+        final Node group = session.getNode(HOSTS_PATH).addNode(NAME, NODETYPE_HST_VIRTUALHOSTGROUP);
+        final Node[] parentHosts = new Node[ROOT_HOSTS];
+        for (int i = 0; i < ROOT_HOSTS; i++) {
+            parentHosts[i] = group.addNode(NAME + i, NODETYPE_HST_VIRTUALHOST)
+                    .addNode("example", NODETYPE_HST_VIRTUALHOST);
+        }
+        for (int i = 0; i < HOSTS; i++) {
+            final Node parentHost = parentHosts[i % ROOT_HOSTS];
+            final Node root = addMount(parentHost.addNode("host" + i, NODETYPE_HST_VIRTUALHOST), MOUNT_HST_ROOTNAME);
+            for (int j = 0; j < MOUNTS_PER_HOST; j++) {
+                addMount(root, "mount" + j);
+            }
+        }
+
+        final Node benchmarkItem = addSiteMapItem(session.getNode(SITEMAP_PATH), NAME);
+        for (int i = 0; i < SITEMAP_SECTIONS; i++) {
+            final Node section = addSiteMapItem(benchmarkItem, "section" + i);
+            for (int j = 0; j < SITEMAP_ITEMS_PER_SECTION; j++) {
+                addSiteMapItem(section, "item" + j);
+            }
+            addSiteMapItem(section, WILDCARD);
+        }
+
+        session.save();
+    }
+
+    /**
+     * Removes the synthetic configuration from the repository.
+     */
+    public static void remove(final Session session) throws RepositoryException {
+        boolean removed = false;
+        if (session.nodeExists(HOSTS_PATH + "/" + NAME)) {
+            session.getNode(HOSTS_PATH + "/" + NAME).remove();
+            removed = true;
+        }
+        if (session.nodeExists(SITEMAP_PATH + "/" + NAME)) {
+            session.getNode(SITEMAP_PATH + "/" + NAME).remove();
+            removed = true;
+        }
+        if (removed) {
+            session.save();
+        }
+    }
+
+    private static Node addMount(final Node parent, final String name) throws RepositoryException {
+        final Node mount = parent.addNode(name, NODETYPE_HST_MOUNT);
+        mount.setProperty(MOUNT_PROPERTY_MOUNTPOINT, MOUNT_POINT);
+        mount.setProperty(MOUNT_PROPERTY_NOCHANNELINFO, true);
+        return mount;
+    }
+
+    private static Node addSiteMapItem(final Node parent, final String name) throws RepositoryException {
+        final Node item = parent.addNode(name, NODETYPE_HST_SITEMAPITEM);
+        item.setProperty(SITEMAPITEM_PROPERTY_COMPONENTCONFIGURATIONID, COMPONENT_CONFIGURATION_ID);
+        return item;
+    }
+}
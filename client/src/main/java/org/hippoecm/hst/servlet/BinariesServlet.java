@@ -15,8 +15,12 @@
  */
 package org.hippoecm.hst.servlet;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -44,12 +48,15 @@ import org.hippoecm.hst.core.linking.LocationResolver;
 import org.hippoecm.hst.core.linking.ResourceContainer;
 import org.hippoecm.hst.core.linking.ResourceLocationResolver;
 import org.hippoecm.hst.servlet.utils.BinariesCache;
+import org.hippoecm.hst.servlet.utils.BinaryDataStore;
 import org.hippoecm.hst.servlet.utils.BinaryPage;
 import org.hippoecm.hst.servlet.utils.BinaryPage.CacheKey;
 import org.hippoecm.hst.servlet.utils.ByteRange;
 import org.hippoecm.hst.servlet.utils.ByteRangeUtils;
 import org.hippoecm.hst.servlet.utils.ContentDispositionUtils;
 import org.hippoecm.hst.servlet.utils.HeaderUtils;
+import org.hippoecm.hst.servlet.utils.MappedFileBinaryDataStore;
+import org.hippoecm.hst.servlet.utils.OffHeapBinaryDataStore;
 import org.hippoecm.hst.servlet.utils.ResourceUtils;
 import org.hippoecm.hst.servlet.utils.SessionUtils;
 import org.hippoecm.hst.site.HstServices;
@@ -124,6 +131,26 @@ import org.slf4j.LoggerFactory;
  *     &lt;param-value&gt;forceDownload&lt;/param-value&gt;
  * &lt;/init-param&gt;
  * </pre>
+ *
+ * <h2>Binary data store configuration</h2>
+ * By default the data of cached binaries (up to "cache-max-object-size-bytes") is kept on the java heap. To keep it in
+ * direct buffers ("direct") or memory-mapped temporary files ("mapped") instead, set the "binary-data-store" init param.
+ * The "binary-data-store-max-total-bytes" init param bounds the total size of the stored data, the least recently
+ * used data being evicted first, and "binary-data-store-directory" sets the directory for the memory-mapped files,
+ * which defaults to the temporary directory of the web application. Example:
+ *
+ * <pre>
+ * &lt;init-param&gt;
+ *     &lt;param-name&gt;binary-data-store&lt;/param-name&gt;
+ *     &lt;param-value&gt;mapped&lt;/param-value&gt;
+ * &lt;/init-param&gt;
+ * &lt;init-param&gt;
+ *     &lt;param-name&gt;binary-data-store-max-total-bytes&lt;/param-name&gt;
+ *     &lt;param-value&gt;1073741824&lt;/param-value&gt;
+ * &lt;/init-param&gt;
+ * </pre>
+ *
+ * <p>Other stores can be plugged in by overriding {@link #createBinaryDataStore()}.</p>
  */
 public class BinariesServlet extends HttpServlet {
 
@@ -137,6 +164,16 @@ public class BinariesServlet extends HttpServlet {
     
     private static final String VALIDITY_CHECK_INTERVAL_SECONDS = "validity-check-interval-seconds";
 
+    public static final String BINARY_DATA_STORE_INIT_PARAM = "binary-data-store";
+
+    public static final String BINARY_DATA_STORE_MAX_TOTAL_BYTES_INIT_PARAM = "binary-data-store-max-total-bytes";
+
+    public static final String BINARY_DATA_STORE_DIRECTORY_INIT_PARAM = "binary-data-store-directory";
+
+    public static final String DIRECT_BINARY_DATA_STORE = "direct";
+
+    public static final String MAPPED_BINARY_DATA_STORE = "mapped";
+
     private static final String SET_EXPIRES_HEADERS_INIT_PARAM = "set-expires-headers";
 
     public static final String SET_CONTENT_LENGTH_HEADER_INIT_PARAM = "set-content-length-header";
@@ -381,7 +418,13 @@ public class BinariesServlet extends HttpServlet {
         Session session = null;
 
         try {
-            if (page.containsData()) {
+            final ByteBuffer storedData = binariesCache.getStoredBinaryData(page);
+
+            if (storedData != null) {
+                writeStoredData(output, storedData, offset, length);
+                output.flush();
+                return;
+            } else if (page.containsData()) {
                 input = page.getStream();
             } else {
                 session = SessionUtils.getBinariesSession(request);
@@ -422,6 +465,25 @@ public class BinariesServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Writes the range of {@code data} from {@code offset} index up to {@code length} bytes in total through a channel,
+     * such that data outside of the java heap is not copied to the heap as a whole.
+     */
+    private static void writeStoredData(final ServletOutputStream output, final ByteBuffer data,
+                                        final long offset, final long length) throws IOException {
+        if (offset >= 0 || length >= 0) {
+            final long start = Math.min(Math.max(offset, 0L), data.limit());
+            final long end = length >= 0 ? Math.min(start + length, data.limit()) : data.limit();
+            data.limit((int) end);
+            data.position((int) start);
+        }
+        // do not close the channel as it would close the output
+        final WritableByteChannel channel = Channels.newChannel(output);
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
     /**
      * @param session
      * @param page
@@ -610,7 +672,7 @@ public class BinariesServlet extends HttpServlet {
         }
         try {
             InputStream input = resourceNode.getProperty(binaryDataPropName).getBinary().getStream();
-            page.loadDataFromStream(input);
+            binariesCache.loadBinaryData(page, input);
         } catch (RepositoryException e) {
             if (log.isDebugEnabled()) {
                 log.warn("Unable to cache page data for " + page.getResourcePath(), e);
@@ -750,6 +812,46 @@ public class BinariesServlet extends HttpServlet {
                 BinariesCache.DEFAULT_MAX_OBJECT_SIZE_BYTES));
         binariesCache.setValidityCheckIntervalMillis(getLongInitParameter(VALIDITY_CHECK_INTERVAL_SECONDS,
                 BinariesCache.DEFAULT_VALIDITY_CHECK_INTERVAL_MILLIS/ 1000 ));
+        binariesCache.setBinaryDataStore(createBinaryDataStore());
+    }
+
+    /**
+     * Creates the {@link BinaryDataStore} to keep the data of cached binaries in, as configured by the
+     * "binary-data-store" init parameter.
+     * @return the store or <code>null</code> to keep the data of cached binaries on the {@link BinaryPage}s
+     */
+    protected BinaryDataStore createBinaryDataStore() {
+        final String type = StringUtils.trim(getInitParameter(BINARY_DATA_STORE_INIT_PARAM, null));
+        final OffHeapBinaryDataStore store;
+
+        if (StringUtils.isEmpty(type)) {
+            return null;
+        } else if (DIRECT_BINARY_DATA_STORE.equals(type)) {
+            store = new OffHeapBinaryDataStore();
+        } else if (MAPPED_BINARY_DATA_STORE.equals(type)) {
+            final String directory = getInitParameter(BINARY_DATA_STORE_DIRECTORY_INIT_PARAM, null);
+            if (StringUtils.isNotBlank(directory)) {
+                store = new MappedFileBinaryDataStore(new File(directory));
+            } else {
+                store = new MappedFileBinaryDataStore((File) getServletContext().getAttribute("javax.servlet.context.tempdir"));
+            }
+        } else {
+            log.warn("Unknown binary data store '{}' for init parameter '{}', binary data is kept on heap instead",
+                    type, BINARY_DATA_STORE_INIT_PARAM);
+            return null;
+        }
+
+        store.setMaxTotalBytes(getLongInitParameter(BINARY_DATA_STORE_MAX_TOTAL_BYTES_INIT_PARAM,
+                OffHeapBinaryDataStore.DEFAULT_MAX_TOTAL_BYTES));
+        return store;
+    }
+
+    @Override
+    public void destroy() {
+        if (binariesCache != null && binariesCache.getBinaryDataStore() != null) {
+            binariesCache.getBinaryDataStore().clear();
+        }
+        super.destroy();
     }
 
     protected String getInitParameter(String paramName, String defaultValue) {
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2010-2015 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2010-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -15,6 +15,10 @@
  */
 package org.hippoecm.hst.servlet.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
 import org.hippoecm.hst.cache.CacheElement;
 import org.hippoecm.hst.cache.HstCache;
 import org.slf4j.Logger;
@@ -24,7 +28,8 @@ import static org.hippoecm.hst.servlet.utils.BinaryPage.CacheKey;
 
 /**
  * This class provides some convenience methods for
- * caching {@link BinaryPage} objects.
+ * caching {@link BinaryPage} objects. When a {@link BinaryDataStore} is set, the binary
+ * data of cached pages is kept in that store instead of on the pages themselves.
  */
 public class BinariesCache {
 
@@ -43,6 +48,8 @@ public class BinariesCache {
     
 
     private long validityCheckIntervalMillis = DEFAULT_VALIDITY_CHECK_INTERVAL_MILLIS;
+
+    private BinaryDataStore binaryDataStore;
     
     public BinariesCache(HstCache cache) {
         this.cache = cache;
@@ -72,6 +79,54 @@ public class BinariesCache {
         this.maxObjectSizeBytes = maxObjectSizeBytes;
     }
 
+    public BinaryDataStore getBinaryDataStore() {
+        return binaryDataStore;
+    }
+
+    public void setBinaryDataStore(final BinaryDataStore binaryDataStore) {
+        this.binaryDataStore = binaryDataStore;
+    }
+
+    /**
+     * Reads the binary data of <code>page</code> from <code>input</code> into the {@link BinaryDataStore} when there
+     * is one, or into the <code>page</code> itself otherwise. The <code>input</code> is closed when done.
+     * @throws IOException when an error occurs while copying
+     */
+    public void loadBinaryData(final BinaryPage page, final InputStream input) throws IOException {
+        if (binaryDataStore == null) {
+            page.loadDataFromStream(input);
+            return;
+        }
+        try {
+            final String dataStoreKey = createDataStoreKey(page);
+            if (binaryDataStore.put(dataStoreKey, input, page.getLength())) {
+                page.setDataStoreKey(dataStoreKey);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @return a read-only buffer with the binary data of <code>page</code> from the {@link BinaryDataStore}, or
+     * <code>null</code> when the data is not (any more) in the store
+     */
+    public ByteBuffer getStoredBinaryData(final BinaryPage page) {
+        if (binaryDataStore == null || page.getDataStoreKey() == null) {
+            return null;
+        }
+        return binaryDataStore.get(page.getDataStoreKey());
+    }
+
+    /**
+     * The key of the stored data only depends on the binary itself, such that the pages of the same binary for
+     * different users share the stored data.
+     */
+    private static String createDataStoreKey(final BinaryPage page) {
+        final String path = page.getRepositoryPath() != null ? page.getRepositoryPath() : page.getResourcePath();
+        return path + '|' + page.getLastModified() + '|' + page.getLength();
+    }
+
 
     public BinaryPage getPageFromBlockingCache(final CacheKey cacheKey) {
         try {
@@ -146,6 +201,9 @@ public class BinariesCache {
             log.debug("Remove page for {}", page.getResourcePath());
         }
         cache.remove(page.getCacheKey());
+        if (binaryDataStore != null && page.getDataStoreKey() != null) {
+            binaryDataStore.remove(page.getDataStoreKey());
+        }
     }
 
     public boolean isBinaryDataCacheable(BinaryPage page) {
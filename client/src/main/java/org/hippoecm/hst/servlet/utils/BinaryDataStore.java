@@ -0,0 +1,57 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.servlet.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Store for the binary data of cached {@link BinaryPage}s, which keeps the data outside of the {@link BinaryPage}
+ * itself, for example in direct buffers or memory-mapped files. The {@link BinaryPage} only refers to the stored data
+ * through its {@link BinaryPage#getDataStoreKey() data store key}, hence only the meta data of a binary stays on heap.
+ * <p>
+ * Implementations must be thread-safe and are free to evict stored data at any time, in which case {@link #get(String)}
+ * returns <code>null</code> and the binary is streamed from the repository again.
+ * </p>
+ */
+public interface BinaryDataStore {
+
+    /**
+     * Stores <code>length</code> bytes read from <code>input</code> for <code>key</code>, replacing data stored before
+     * for the same <code>key</code>. The <code>input</code> is not closed.
+     * @return <code>true</code> when the data has been stored, <code>false</code> when this store does not accept it,
+     * for example because it is too large
+     * @throws IOException when <code>input</code> cannot be read or does not contain <code>length</code> bytes
+     */
+    boolean put(String key, InputStream input, long length) throws IOException;
+
+    /**
+     * @return a read-only buffer positioned at the start of the data stored for <code>key</code>, not shared with other
+     * callers, or <code>null</code> when there is no data (any more) for <code>key</code>
+     */
+    ByteBuffer get(String key);
+
+    void remove(String key);
+
+    void clear();
+
+    /**
+     * @return the total number of bytes currently stored
+     */
+    long getTotalBytes();
+
+}
@@ -31,6 +31,8 @@ import org.slf4j.LoggerFactory;
  * A {@link Serializable} representation of a resource from the repository as a html page.
  * The binary page uses the absolute resource path as identifier. The binary data
  * is optionally stored in a byte array. When done so the binary must be able to fit in memory.
+ * Alternatively the binary data is kept in a {@link BinaryDataStore}, in which case the page only holds
+ * the {@link #getDataStoreKey() key} of the stored data.
  */
 public class BinaryPage implements Serializable {
 
@@ -49,6 +51,7 @@ public class BinaryPage implements Serializable {
     private long length;
     private boolean cacheable = true;
     private byte[] data = ArrayUtils.EMPTY_BYTE_ARRAY;
+    private String dataStoreKey;
     private CacheKey cacheKey;
 
     /** 
@@ -188,6 +191,22 @@ public class BinaryPage implements Serializable {
         }
     }
 
+    /**
+     * Get the key of the binary data in the {@link BinaryDataStore}.
+     * @return the key or null when the data is not kept in a {@link BinaryDataStore}
+     */
+    public String getDataStoreKey() {
+        return dataStoreKey;
+    }
+
+    /**
+     * Set the key of the binary data in the {@link BinaryDataStore}.
+     * @param dataStoreKey
+     */
+    public void setDataStoreKey(final String dataStoreKey) {
+        this.dataStoreKey = dataStoreKey;
+    }
+
     public boolean isCacheable() {
         return cacheable;
     }
@@ -278,6 +297,7 @@ public class BinaryPage implements Serializable {
         sb.append(" lastmodified=").append(getLastModified());
         sb.append(" size=").append(getLength());
         sb.append(" cacheable=").append(cacheable);
+        sb.append(" dataStoreKey=").append(dataStoreKey);
         sb.append(" cacheKey=").append(cacheKey);
         return sb.toString();
     }
@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.servlet.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link OffHeapBinaryDataStore} keeping the binary data in memory-mapped temporary files, such that the operating
+ * system can page the data out to disk instead of it taking up physical memory. Every file is deleted as soon as it is
+ * mapped : its disk space is released when the mapping is garbage collected.
+ */
+public class MappedFileBinaryDataStore extends OffHeapBinaryDataStore {
+
+    private static final String FILE_PREFIX = "hst-binary-";
+
+    private File directory;
+
+    /**
+     * @param directory the directory to create the files in, or <code>null</code> for the default temporary directory
+     */
+    public MappedFileBinaryDataStore(final File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    protected ByteBuffer allocate(final String key, final int length) throws IOException {
+        final File file = File.createTempFile(FILE_PREFIX, null, directory);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        } finally {
+            if (!file.delete()) {
+                // platforms that do not allow to delete a mapped file
+                file.deleteOnExit();
+            }
+        }
+    }
+}
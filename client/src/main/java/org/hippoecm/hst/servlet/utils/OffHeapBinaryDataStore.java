@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.servlet.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link BinaryDataStore} keeping the binary data in direct {@link ByteBuffer}s, outside of the java heap. When the
+ * total number of stored bytes exceeds {@link #getMaxTotalBytes()}, the least recently used data is evicted.
+ * <p>
+ * Evicted buffers are not freed explicitly but left to the garbage collector, such that a response that is still
+ * writing evicted data is not affected.
+ * </p>
+ */
+public class OffHeapBinaryDataStore implements BinaryDataStore {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapBinaryDataStore.class);
+
+    public static final long DEFAULT_MAX_TOTAL_BYTES = 256L * 1024L * 1024L;
+
+    private final Map<String, ByteBuffer> buffers = new LinkedHashMap<String, ByteBuffer>(16, 0.75f, true);
+
+    private long maxTotalBytes = DEFAULT_MAX_TOTAL_BYTES;
+
+    private long totalBytes;
+
+    public long getMaxTotalBytes() {
+        return maxTotalBytes;
+    }
+
+    public void setMaxTotalBytes(final long maxTotalBytes) {
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    @Override
+    public boolean put(final String key, final InputStream input, final long length) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE || length > maxTotalBytes) {
+            log.debug("Binary data of {} bytes for '{}' does not fit in the store", length, key);
+            return false;
+        }
+
+        final ByteBuffer buffer = allocate(key, (int) length);
+        final ReadableByteChannel channel = Channels.newChannel(input);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Expected " + length + " bytes for '" + key + "' but only got " + buffer.position());
+            }
+        }
+        buffer.flip();
+
+        synchronized (buffers) {
+            final ByteBuffer replaced = buffers.put(key, buffer);
+            if (replaced != null) {
+                totalBytes -= replaced.capacity();
+            }
+            totalBytes += buffer.capacity();
+            evict();
+        }
+        return true;
+    }
+
+    @Override
+    public ByteBuffer get(final String key) {
+        final ByteBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.get(key);
+        }
+        return buffer == null ? null : buffer.asReadOnlyBuffer();
+    }
+
+    @Override
+    public void remove(final String key) {
+        synchronized (buffers) {
+            final ByteBuffer removed = buffers.remove(key);
+            if (removed != null) {
+                totalBytes -= removed.capacity();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (buffers) {
+            buffers.clear();
+            totalBytes = 0L;
+        }
+    }
+
+    @Override
+    public long getTotalBytes() {
+        synchronized (buffers) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * @return a writable buffer with a capacity of <code>length</code> bytes, positioned at <code>0</code>
+     * @throws IOException when the buffer cannot be allocated
+     */
+    protected ByteBuffer allocate(final String key, final int length) throws IOException {
+        return ByteBuffer.allocateDirect(length);
+    }
+
+    /**
+     * Removes the least recently used buffers until the total size does not exceed {@link #getMaxTotalBytes()}. Must
+     * be invoked while holding the lock on {@link #buffers}.
+     */
+    private void evict() {
+        final Iterator<Map.Entry<String, ByteBuffer>> it = buffers.entrySet().iterator();
+        while (totalBytes > maxTotalBytes && it.hasNext()) {
+            final Map.Entry<String, ByteBuffer> eldest = it.next();
+            log.debug("Evicting binary data for '{}'", eldest.getKey());
+            totalBytes -= eldest.getValue().capacity();
+            it.remove();
+        }
+    }
+}
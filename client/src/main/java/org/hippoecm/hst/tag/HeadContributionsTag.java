@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -132,8 +132,8 @@ public class HeadContributionsTag extends TagSupport {
     }
 
     private void outputHeadElement(final Element headElement) throws JspException {
-        final Element clone = (Element)headElement.cloneNode(true);
-        HeadElement outHeadElement = new HeadElementImpl(clone);
+        // a copy already, hence the category hint can be removed without cloning the element first
+        HeadElement outHeadElement = new HeadElementImpl(headElement);
         if (outHeadElement.hasAttribute(ContainerConstants.HEAD_ELEMENT_CONTRIBUTION_CATEGORY_HINT_ATTRIBUTE)) {
             outHeadElement.removeAttribute(ContainerConstants.HEAD_ELEMENT_CONTRIBUTION_CATEGORY_HINT_ATTRIBUTE);
         }
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -15,21 +15,15 @@
  */
 package org.hippoecm.hst.tag;
 
-import java.io.Reader;
-import java.io.StringReader;
-
 import javax.servlet.jsp.JspException;
 import javax.servlet.jsp.tagext.BodyTagSupport;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.hippoecm.hst.core.component.HstResponse;
 import org.hippoecm.hst.core.container.ContainerConstants;
+import org.hippoecm.hst.utils.TagUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.xml.sax.InputSource;
 
 /**
  * SetWrapperElementTag
@@ -57,23 +51,16 @@ public class SetWrapperElementTag extends BodyTagSupport {
             }
 
             if (this.element == null) {
-                Reader reader = null;
-
-                try {
-                    String xmlText = "";
+                String xmlText = "";
 
-                    if (bodyContent != null && bodyContent.getString() != null) {
-                        xmlText = bodyContent.getString().trim();
-                    }
+                if (bodyContent != null && bodyContent.getString() != null) {
+                    xmlText = bodyContent.getString().trim();
+                }
 
-                    DocumentBuilderFactory dbfac = DocumentBuilderFactory.newInstance();
-                    DocumentBuilder docBuilder = dbfac.newDocumentBuilder();
-                    Document doc = docBuilder.parse(new InputSource(new StringReader(xmlText)));
-                    element = doc.getDocumentElement();
+                try {
+                    element = TagUtils.parseElement(xmlText);
                 } catch (Exception ex) {
                     throw new JspException(ex);
-                } finally {
-                    if (reader != null) try { reader.close(); } catch (Exception ce) { }
                 }
             }
 
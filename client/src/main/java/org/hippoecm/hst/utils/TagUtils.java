@@ -27,8 +27,11 @@ import javax.servlet.jsp.JspException;
 import javax.servlet.jsp.JspWriter;
 import javax.servlet.jsp.PageContext;
 import javax.servlet.jsp.jstl.core.Config;
+import javax.xml.parsers.ParserConfigurationException;
 
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
@@ -37,14 +40,19 @@ import org.hippoecm.hst.configuration.hosting.MatchException;
 import org.hippoecm.hst.configuration.hosting.Mount;
 import org.hippoecm.hst.configuration.sitemap.HstSiteMapItem;
 import org.hippoecm.hst.core.component.HstRequest;
+import org.hippoecm.hst.core.component.ImmutableHeadElement;
 import org.hippoecm.hst.core.container.ContainerConstants;
 import org.hippoecm.hst.core.request.ResolvedMount;
 import org.hippoecm.hst.core.request.ResolvedSiteMapItem;
 import org.hippoecm.hst.core.request.ResolvedVirtualHost;
+import org.hippoecm.hst.util.DocumentBuilderUtils;
+import org.hippoecm.hst.util.HeadElementParser;
 import org.hippoecm.hst.util.HstRequestUtils;
 import org.hippoecm.hst.util.QueryStringBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
 
 import static com.google.common.base.Predicates.notNull;
 import static com.google.common.collect.FluentIterable.from;
@@ -55,6 +63,15 @@ public class TagUtils {
 
     private static final char DOUBLE_QUOTE = '"';
 
+    private static final int MAX_PARSED_ELEMENTS = 1000;
+
+    /**
+     * The markup in the body of tags like the head contribution tag is mostly static, hence parsed once per distinct
+     * markup
+     */
+    private static final Cache<String, ImmutableHeadElement> parsedElements = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PARSED_ELEMENTS).build();
+
     /**
      * Returns the given map as a JSON map, with the keys and values in double quotes. Keys and values will be converted
      * to strings by calling {@link Object#toString()}.
@@ -216,6 +233,28 @@ public class TagUtils {
         return queryStringBuilder.toString();
     }
 
+    /**
+     * Parses the markup of a single element, like the body of a head contribution tag, into a new DOM element. Markup
+     * that the {@link HeadElementParser} supports is parsed only once, other markup is parsed by a full XML parser
+     * every time.
+     *
+     * @param xmlText the markup of a single element
+     * @return a new element that the caller is free to modify
+     * @throws SAXException if the markup is not well-formed
+     */
+    public static Element parseElement(final String xmlText) throws ParserConfigurationException, SAXException, IOException {
+        ImmutableHeadElement headElement = parsedElements.getIfPresent(xmlText);
+        if (headElement == null) {
+            headElement = HeadElementParser.parse(xmlText);
+            if (headElement == null) {
+                log.debug("Parsing markup with a full XML parser: {}", xmlText);
+                return DocumentBuilderUtils.parse(xmlText).getDocumentElement();
+            }
+            parsedElements.put(xmlText, headElement);
+        }
+        return headElement.toElement(DocumentBuilderUtils.newDocument());
+    }
+
     public static Locale getLocale(final PageContext pc) {
         Locale locale = (Locale) Config.find(pc, Config.FMT_LOCALE);
         if (locale == null) {
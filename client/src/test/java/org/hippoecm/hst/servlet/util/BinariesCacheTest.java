@@ -15,7 +15,10 @@
  */
 package org.hippoecm.hst.servlet.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,6 +29,7 @@ import org.hippoecm.hst.cache.CompositeHstCache;
 import org.hippoecm.hst.cache.HstCache;
 import org.hippoecm.hst.servlet.utils.BinariesCache;
 import org.hippoecm.hst.servlet.utils.BinaryPage;
+import org.hippoecm.hst.servlet.utils.OffHeapBinaryDataStore;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -33,6 +37,7 @@ import org.junit.Test;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.constructs.blocking.BlockingCache;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -89,6 +94,34 @@ public class BinariesCacheTest {
         assertFalse(bc.isBinaryDataCacheable(page));
     }
     
+    @Test
+    public void testBinaryDataInStore() throws IOException {
+        OffHeapBinaryDataStore store = new OffHeapBinaryDataStore();
+        bc.setBinaryDataStore(store);
+        page.setLength(4L);
+
+        bc.loadBinaryData(page, new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 }));
+        assertFalse(page.containsData());
+        assertNotNull(page.getDataStoreKey());
+        ByteBuffer data = bc.getStoredBinaryData(page);
+        assertEquals(4, data.remaining());
+        assertEquals(4L, store.getTotalBytes());
+
+        bc.putPage(page);
+        bc.removePage(page);
+        assertNull(bc.getStoredBinaryData(page));
+        assertEquals(0L, store.getTotalBytes());
+    }
+
+    @Test
+    public void testBinaryDataOnPageWithoutStore() throws IOException {
+        page.setLength(4L);
+        bc.loadBinaryData(page, new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 }));
+        assertTrue(page.containsData());
+        assertNull(page.getDataStoreKey());
+        assertNull(bc.getStoredBinaryData(page));
+    }
+
     @Test
     public void testExpired() {
         page.setNextValidityCheckTime(System.currentTimeMillis() - 5000L);
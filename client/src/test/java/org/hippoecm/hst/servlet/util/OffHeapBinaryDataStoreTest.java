@@ -0,0 +1,122 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.servlet.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import org.hippoecm.hst.servlet.utils.BinaryDataStore;
+import org.hippoecm.hst.servlet.utils.MappedFileBinaryDataStore;
+import org.hippoecm.hst.servlet.utils.OffHeapBinaryDataStore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OffHeapBinaryDataStoreTest {
+
+    @Test
+    public void testPutGet() throws IOException {
+        assertPutGet(new OffHeapBinaryDataStore());
+    }
+
+    @Test
+    public void testPutGetMappedFile() throws IOException {
+        assertPutGet(new MappedFileBinaryDataStore(null));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDataIsEvictedByTotalBytes() throws IOException {
+        OffHeapBinaryDataStore store = new OffHeapBinaryDataStore();
+        store.setMaxTotalBytes(10L);
+
+        assertTrue(put(store, "a", "1234"));
+        assertTrue(put(store, "b", "1234"));
+        assertNotNull(store.get("a"));
+        assertTrue(put(store, "c", "1234"));
+
+        assertNotNull(store.get("a"));
+        assertNull(store.get("b"));
+        assertNotNull(store.get("c"));
+        assertEquals(8L, store.getTotalBytes());
+
+        assertFalse(put(store, "d", "12345678901"));
+        assertNull(store.get("d"));
+        assertEquals(8L, store.getTotalBytes());
+    }
+
+    @Test
+    public void testReplaceAndRemove() throws IOException {
+        OffHeapBinaryDataStore store = new OffHeapBinaryDataStore();
+
+        put(store, "a", "1234");
+        put(store, "a", "123456");
+        assertEquals(6L, store.getTotalBytes());
+
+        store.remove("a");
+        assertNull(store.get("a"));
+        assertEquals(0L, store.getTotalBytes());
+    }
+
+    @Test
+    public void testTooFewBytes() {
+        OffHeapBinaryDataStore store = new OffHeapBinaryDataStore();
+        try {
+            store.put("a", new ByteArrayInputStream(new byte[3]), 4L);
+            fail("Expected IOException for missing data");
+        } catch (IOException e) {
+            // expected
+        }
+        assertNull(store.get("a"));
+    }
+
+    private static void assertPutGet(BinaryDataStore store) throws IOException {
+        assertTrue(put(store, "a", "binary data"));
+
+        ByteBuffer first = store.get("a");
+        ByteBuffer second = store.get("a");
+        assertEquals("binary data", toString(first));
+        // every get returns an independent buffer
+        assertEquals("binary data", toString(second));
+        try {
+            store.get("a").put((byte) 0);
+            fail("Stored data should be read-only");
+        } catch (ReadOnlyBufferException e) {
+            // expected
+        }
+
+        store.clear();
+        assertNull(store.get("a"));
+        assertEquals(0L, store.getTotalBytes());
+    }
+
+    private static boolean put(BinaryDataStore store, String key, String data) throws IOException {
+        byte[] bytes = data.getBytes("UTF-8");
+        return store.put(key, new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private static String toString(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
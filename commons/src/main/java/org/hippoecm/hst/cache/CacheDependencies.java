@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.cache;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hippoecm.hst.container.RequestContextProvider;
+import org.hippoecm.hst.core.request.HstRequestContext;
+
+/**
+ * <p>
+ *     Collects the repository paths a cached response depends on. Two kinds of dependencies are supported:
+ * </p>
+ * <ul>
+ *     <li><em>node</em> dependencies : the cached response depends on the node itself, its properties and the set of
+ *     its direct children (for example a folder bean listing its documents)</li>
+ *     <li><em>subtree</em> dependencies : the cached response depends on the node and everything below it (for
+ *     example a document handle or the scope of a query)</li>
+ * </ul>
+ * <p>
+ *     During the rendering of a cacheable page, an instance is available as {@link HstRequestContext} attribute
+ *     {@link #ATTRIBUTE_NAME}. Code that fetches repository content can record its dependencies through
+ *     {@link #recordNode(String)} and {@link #recordSubtree(String)} which are no-ops when there is no
+ *     instance present for the current request.
+ * </p>
+ * <p>
+ *     Instances are thread-safe.
+ * </p>
+ */
+public class CacheDependencies implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String ATTRIBUTE_NAME = CacheDependencies.class.getName();
+
+    private final Set<String> nodePaths = ConcurrentHashMap.newKeySet();
+    private final Set<String> subtreePaths = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @return the {@link CacheDependencies} collecting dependencies for the current request or <code>null</code> when
+     * dependencies are not collected for the current request
+     */
+    public static CacheDependencies getCurrent() {
+        final HstRequestContext requestContext = RequestContextProvider.get();
+        if (requestContext == null) {
+            return null;
+        }
+        return (CacheDependencies) requestContext.getAttribute(ATTRIBUTE_NAME);
+    }
+
+    /**
+     * Records a node dependency for the current request, if dependencies are collected for the current request
+     */
+    public static void recordNode(final String absPath) {
+        final CacheDependencies dependencies = getCurrent();
+        if (dependencies != null) {
+            dependencies.addNode(absPath);
+        }
+    }
+
+    /**
+     * Records a subtree dependency for the current request, if dependencies are collected for the current request
+     */
+    public static void recordSubtree(final String absPath) {
+        final CacheDependencies dependencies = getCurrent();
+        if (dependencies != null) {
+            dependencies.addSubtree(absPath);
+        }
+    }
+
+    public void addNode(final String absPath) {
+        if (absPath != null) {
+            nodePaths.add(absPath);
+        }
+    }
+
+    public void addSubtree(final String absPath) {
+        if (absPath != null) {
+            subtreePaths.add(absPath);
+        }
+    }
+
+    /**
+     * Adds all the dependencies of <code>other</code> to this {@link CacheDependencies}
+     */
+    public void addAll(final CacheDependencies other) {
+        if (other != null && other != this) {
+            nodePaths.addAll(other.nodePaths);
+            subtreePaths.addAll(other.subtreePaths);
+        }
+    }
+
+    public Set<String> getNodePaths() {
+        return Collections.unmodifiableSet(nodePaths);
+    }
+
+    public Set<String> getSubtreePaths() {
+        return Collections.unmodifiableSet(subtreePaths);
+    }
+
+    public boolean isEmpty() {
+        return nodePaths.isEmpty() && subtreePaths.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheDependencies{nodePaths=" + nodePaths + ", subtreePaths=" + subtreePaths + '}';
+    }
+}
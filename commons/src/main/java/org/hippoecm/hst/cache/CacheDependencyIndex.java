@@ -0,0 +1,162 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ *     Reverse index from repository paths to the cache keys that depend on them, see {@link CacheDependencies}.
+ *     Given a batch of changed repository paths, {@link #removeAffected(Collection)} returns (and unregisters) the
+ *     keys whose dependencies intersect with the changes:
+ * </p>
+ * <ul>
+ *     <li>a subtree dependency <code>/a/b</code> is affected by a change at <code>/a/b</code>, at any descendant of
+ *     <code>/a/b</code> or at any ancestor of <code>/a/b</code> (moves and removals)</li>
+ *     <li>a node dependency <code>/a/b</code> is affected by a change at <code>/a/b</code>, at a property or direct
+ *     child of <code>/a/b</code> or at any ancestor of <code>/a/b</code></li>
+ * </ul>
+ * <p>
+ *     Keys that were registered without any dependency are considered to depend on everything and are affected by
+ *     any change. All operations are synchronized: registration happens once per cache miss and removal once per
+ *     batch of changes, which both are cheap compared to creating the cached response.
+ * </p>
+ */
+public class CacheDependencyIndex<K> {
+
+    private final NavigableMap<String, Set<K>> nodeDependencies = new TreeMap<>();
+    private final NavigableMap<String, Set<K>> subtreeDependencies = new TreeMap<>();
+    private final Set<K> untrackedKeys = new HashSet<>();
+    private final Map<K, CacheDependencies> keyDependencies = new HashMap<>();
+
+    public synchronized void register(final K key, final CacheDependencies dependencies) {
+        unregister(key);
+        if (dependencies == null || dependencies.isEmpty()) {
+            keyDependencies.put(key, new CacheDependencies());
+            untrackedKeys.add(key);
+            return;
+        }
+        keyDependencies.put(key, dependencies);
+        for (String path : dependencies.getNodePaths()) {
+            nodeDependencies.computeIfAbsent(path, p -> new HashSet<>()).add(key);
+        }
+        for (String path : dependencies.getSubtreePaths()) {
+            subtreeDependencies.computeIfAbsent(path, p -> new HashSet<>()).add(key);
+        }
+    }
+
+    public synchronized void unregister(final K key) {
+        final CacheDependencies dependencies = keyDependencies.remove(key);
+        if (dependencies == null) {
+            return;
+        }
+        untrackedKeys.remove(key);
+        for (String path : dependencies.getNodePaths()) {
+            removeKey(nodeDependencies, path, key);
+        }
+        for (String path : dependencies.getSubtreePaths()) {
+            removeKey(subtreeDependencies, path, key);
+        }
+    }
+
+    /**
+     * @param changedPaths the absolute repository paths of the changed nodes and properties
+     * @return the keys affected by the <code>changedPaths</code>. The returned keys are unregistered from this index
+     */
+    public synchronized Set<K> removeAffected(final Collection<String> changedPaths) {
+        final Set<K> affected = new HashSet<>();
+        if (changedPaths.isEmpty()) {
+            return affected;
+        }
+        affected.addAll(untrackedKeys);
+        for (String changedPath : changedPaths) {
+            collectAffected(changedPath, affected);
+        }
+        for (K key : affected) {
+            unregister(key);
+        }
+        return affected;
+    }
+
+    public synchronized int size() {
+        return keyDependencies.size();
+    }
+
+    public synchronized void clear() {
+        keyDependencies.clear();
+        untrackedKeys.clear();
+        nodeDependencies.clear();
+        subtreeDependencies.clear();
+    }
+
+    private void collectAffected(final String changedPath, final Set<K> affected) {
+        // the changed path itself or any descendant of it (removed or moved ancestors)
+        addAll(nodeDependencies.get(changedPath), affected);
+        addAll(subtreeDependencies.get(changedPath), affected);
+        final String descendantsFrom = changedPath.endsWith("/") ? changedPath : changedPath + "/";
+        // '0' is the character directly after '/'
+        final String descendantsTo = descendantsFrom.substring(0, descendantsFrom.length() - 1) + "0";
+        for (Set<K> keys : nodeDependencies.subMap(descendantsFrom, descendantsTo).values()) {
+            affected.addAll(keys);
+        }
+        for (Set<K> keys : subtreeDependencies.subMap(descendantsFrom, descendantsTo).values()) {
+            affected.addAll(keys);
+        }
+
+        // the parent for node dependencies and all the ancestors for subtree dependencies
+        String ancestor = parentPath(changedPath);
+        if (ancestor != null) {
+            addAll(nodeDependencies.get(ancestor), affected);
+        }
+        while (ancestor != null) {
+            addAll(subtreeDependencies.get(ancestor), affected);
+            ancestor = parentPath(ancestor);
+        }
+    }
+
+    private static String parentPath(final String path) {
+        final int idx = path.lastIndexOf('/');
+        if (idx < 0 || path.length() == 1) {
+            return null;
+        }
+        if (idx == 0) {
+            return "/";
+        }
+        return path.substring(0, idx);
+    }
+
+    private static <K> void addAll(final Set<K> keys, final Set<K> affected) {
+        if (keys != null) {
+            affected.addAll(keys);
+        }
+    }
+
+    private static <K> void removeKey(final Map<String, Set<K>> dependencies, final String path, final K key) {
+        final Set<K> keys = dependencies.get(path);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                dependencies.remove(path);
+            }
+        }
+    }
+}
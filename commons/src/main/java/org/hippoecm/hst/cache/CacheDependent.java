@@ -0,0 +1,30 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.cache;
+
+/**
+ * A cached value that knows the repository paths it depends on, such that a cache with dependency tracking can
+ * invalidate it selectively when those paths change.
+ */
+public interface CacheDependent {
+
+    /**
+     * @return the repository paths this value depends on, or <code>null</code> when dependencies were not tracked while
+     * creating this value
+     */
+    CacheDependencies getCacheDependencies();
+
+}
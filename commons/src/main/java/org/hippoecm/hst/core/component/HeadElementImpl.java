@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -179,7 +179,7 @@ public class HeadElementImpl implements HeadElement
         HeadElementImpl cloned = (HeadElementImpl) super.clone();
         
         cloned.tagName = tagName;
-        cloned.attributes = new LinkedHashMap<String, String>(attributes);
+        cloned.attributes = (attributes != null ? new LinkedHashMap<String, String>(attributes) : null);
         cloned.textContent = textContent;
         
         if (childHeadElements != null) {
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2011-2015 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2011-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -16,10 +16,18 @@
 package org.hippoecm.hst.core.component;
 
 import java.beans.PropertyEditor;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.http.HttpSession;
 
@@ -68,8 +76,7 @@ public class HstParameterInfoProxyFactoryImpl implements HstParameterInfoProxyFa
         InvocationHandler parameterInfoHandler =  createHstParameterInfoInvocationHandler(componentConfig, request, converter, parametersInfoType);
 
         @SuppressWarnings("unchecked")
-        T parametersInfoInterface = (T) Proxy.newProxyInstance(parametersInfoType.getClassLoader(),
-                new Class[] { parametersInfoType }, parameterInfoHandler);
+        T parametersInfoInterface = (T) ParametersInfoType.get(parametersInfoType).newProxyInstance(parameterInfoHandler);
 
         return parametersInfoInterface;
     }
@@ -90,14 +97,19 @@ public class HstParameterInfoProxyFactoryImpl implements HstParameterInfoProxyFa
     }
 
     /**
-     * This class has visibility 'protected' to enable reuse.
+     * This class has visibility 'protected' to enable reuse. The resolved values of getters that return an immutable
+     * type are memoized : as the proxy is bound to a single window of a single request, they cannot change.
      */
     protected static class ParameterInfoInvocationHandler implements InvocationHandler {
 
+        private static final Object NULL_VALUE = new Object();
+
         private final ComponentConfiguration componentConfig;
         private final HstRequest request;
         private final HstParameterValueConverter converter;
         private final Class<?> parametersInfoType;
+        private final ParametersInfoType compiledType;
+        private final Map<Method, Object> memoizedValues = new ConcurrentHashMap<>();
 
         public ParameterInfoInvocationHandler(final ComponentConfiguration componentConfig,final HstRequest request, 
                 final HstParameterValueConverter converter,
@@ -106,11 +118,26 @@ public class HstParameterInfoProxyFactoryImpl implements HstParameterInfoProxyFa
             this.request = request;
             this.converter = converter;
             this.parametersInfoType = parametersInfoType;
+            this.compiledType = ParametersInfoType.get(parametersInfoType);
         }
 
         @Override
         public Object invoke(Object object, Method method, Object[] args) throws Throwable {
 
+            final ParameterGetter getter = compiledType.getGetter(method);
+            if (getter != null) {
+                if (!getter.isMemoizable()) {
+                    return getValue(getter);
+                }
+                final Object memoizedValue = memoizedValues.get(method);
+                if (memoizedValue != null) {
+                    return memoizedValue == NULL_VALUE ? null : memoizedValue;
+                }
+                final Object value = getValue(getter);
+                memoizedValues.put(method, value == null ? NULL_VALUE : value);
+                return value;
+            }
+
             String methodName = method.getName();
             int argCount = (args == null ? 0 : args.length);
 
@@ -132,11 +159,12 @@ public class HstParameterInfoProxyFactoryImpl implements HstParameterInfoProxyFa
                 throw new UnsupportedOperationException("Setter method (" + method.getName() + ") is not supported.");
             }
 
-            if (!isGetter(method, args)) {
-                return null;
-            }
+            return null;
+        }
 
-            Parameter parameterAnnotation = method.getAnnotation(Parameter.class);
+        private Object getValue(final ParameterGetter getter) throws InstantiationException, IllegalAccessException {
+            final Method method = getter.getMethod();
+            final Parameter parameterAnnotation = getter.getParameterAnnotation();
             if (parameterAnnotation == null) {
                 throw new IllegalArgumentException("Component " + componentConfig.getCanonicalPath() + " uses ParametersInfo annotation, but "
                         + method.getDeclaringClass().getSimpleName() + "#" + method.getName() + " is not annotated with " + Parameter.class.getName());
@@ -148,31 +176,20 @@ public class HstParameterInfoProxyFactoryImpl implements HstParameterInfoProxyFa
             }
 
             String parameterValue = getParameterValue(parameterName, componentConfig, request);
-            String defaultValue = null;
             if (parameterValue == null || "".equals(parameterValue)) {
                 // when the parameter value is null or an empty string we return the default value from the annotation
-                defaultValue = parameterAnnotation.defaultValue();
-                parameterValue = defaultValue;
-            }
-            if (parameterValue == null) {
-                return null;
+                return getter.getDefaultValue(converter);
             }
 
-            Class<? extends PropertyEditor> customEditorType = parameterAnnotation.customEditor();
+            Class<? extends PropertyEditor> customEditorType = getter.getCustomEditorType();
             Class<?> returnType = method.getReturnType();
 
-            if (customEditorType == null || customEditorType == EmptyPropertyEditor.class) {
+            if (customEditorType == null) {
                 try {
                     return converter.convert(parameterValue, returnType);
                 } catch (HstParameterValueConversionException e) {
-                    log.warn("Could not convert '"+parameterValue+"' to returnType "+returnType.getName()+ ".. Try to return default value", e.toString());
-                    if(defaultValue == null) {
-                        log.warn("Could not convert '"+parameterValue+"' to returnType "+returnType.getName()+ " and there is no default value configured");
-                        return null;
-                    } else {
-                        // if default value is incorrect, the runtime exception HstParameterValueConversionException is just thrown
-                        return converter.convert(defaultValue, returnType);
-                    }
+                    log.warn("Could not convert '{}' to returnType {} : {}", parameterValue, returnType.getName(), e.toString());
+                    return null;
                 }
             } else {
                 PropertyEditor customEditor = customEditorType.newInstance();
@@ -228,12 +245,154 @@ public class HstParameterInfoProxyFactoryImpl implements HstParameterInfoProxyFa
         }
     }
 
-    private static final boolean isGetter(final Method method, final Object[] args) {
-        if (args == null || args.length == 0) {
-            final String methodName = method.getName();
-            return methodName.startsWith("get") || methodName.startsWith("is");
+    /**
+     * The proxy constructor and the getters of a {@link ParametersInfo} interface, inspected only once per interface
+     */
+    static final class ParametersInfoType {
+
+        /**
+         * Kept with the interface itself instead of in a static map, so that the inspected interfaces of a web
+         * application do not keep its class loader from being garbage collected after an undeploy
+         */
+        private static final ClassValue<ParametersInfoType> types = new ClassValue<ParametersInfoType>() {
+            @Override
+            protected ParametersInfoType computeValue(final Class<?> parametersInfoType) {
+                return new ParametersInfoType(parametersInfoType);
+            }
+        };
+
+        private final Constructor<?> proxyConstructor;
+        private final Map<Method, ParameterGetter> getters;
+
+        static ParametersInfoType get(final Class<?> parametersInfoType) {
+            return types.get(parametersInfoType);
+        }
+
+        private ParametersInfoType(final Class<?> parametersInfoType) {
+            try {
+                proxyConstructor = Proxy.getProxyClass(parametersInfoType.getClassLoader(), parametersInfoType)
+                        .getConstructor(InvocationHandler.class);
+                if (!Modifier.isPublic(parametersInfoType.getModifiers())) {
+                    // the proxy class of a non public interface is not public either
+                    proxyConstructor.setAccessible(true);
+                }
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Cannot create a proxy for " + parametersInfoType.getName(), e);
+            }
+            final Map<Method, ParameterGetter> getters = new HashMap<>();
+            // includes the methods of the extended interfaces
+            for (Method method : parametersInfoType.getMethods()) {
+                if (isGetter(method)) {
+                    getters.put(method, new ParameterGetter(method));
+                }
+            }
+            this.getters = Collections.unmodifiableMap(getters);
+        }
+
+        Object newProxyInstance(final InvocationHandler handler) {
+            try {
+                return proxyConstructor.newInstance(handler);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("Cannot create a proxy for " + proxyConstructor.getDeclaringClass().getName(), e.getCause());
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException("Cannot create a proxy for " + proxyConstructor.getDeclaringClass().getName(), e);
+            }
+        }
+
+        /**
+         * @return the getter for <code>method</code> or <code>null</code> if <code>method</code> is not a getter
+         */
+        ParameterGetter getGetter(final Method method) {
+            return getters.get(method);
+        }
+
+        private static boolean isGetter(final Method method) {
+            if (method.getParameterTypes().length == 0) {
+                final String methodName = method.getName();
+                return methodName.startsWith("get") || methodName.startsWith("is");
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A getter of a {@link ParametersInfo} interface with its {@link Parameter} annotation, and the default value of
+     * the annotation converted to the return type when that type is immutable
+     */
+    static final class ParameterGetter {
+
+        private final Method method;
+        private final Parameter parameterAnnotation;
+        private final Class<? extends PropertyEditor> customEditorType;
+        private final boolean memoizable;
+        private volatile ConvertedDefaultValue convertedDefaultValue;
+
+        private ParameterGetter(final Method method) {
+            this.method = method;
+            parameterAnnotation = method.getAnnotation(Parameter.class);
+            if (parameterAnnotation == null || parameterAnnotation.customEditor() == EmptyPropertyEditor.class) {
+                customEditorType = null;
+            } else {
+                customEditorType = parameterAnnotation.customEditor();
+            }
+            memoizable = customEditorType == null && isImmutable(method.getReturnType());
+        }
+
+        Method getMethod() {
+            return method;
+        }
+
+        Parameter getParameterAnnotation() {
+            return parameterAnnotation;
+        }
+
+        Class<? extends PropertyEditor> getCustomEditorType() {
+            return customEditorType;
+        }
+
+        /**
+         * @return <code>true</code> when the values of this getter can be shared, as callers cannot modify them
+         */
+        boolean isMemoizable() {
+            return memoizable;
+        }
+
+        Object getDefaultValue(final HstParameterValueConverter converter) throws InstantiationException, IllegalAccessException {
+            final String defaultValue = parameterAnnotation.defaultValue();
+            if (customEditorType != null) {
+                PropertyEditor customEditor = customEditorType.newInstance();
+                customEditor.setAsText(defaultValue);
+                return customEditor.getValue();
+            }
+            final ConvertedDefaultValue converted = convertedDefaultValue;
+            if (converted != null && converted.converter == converter) {
+                return converted.value;
+            }
+            // if default value is incorrect, the runtime exception HstParameterValueConversionException is just thrown
+            final Object value = converter.convert(defaultValue, method.getReturnType());
+            if (memoizable) {
+                convertedDefaultValue = new ConvertedDefaultValue(converter, value);
+            }
+            return value;
+        }
+
+        private static boolean isImmutable(final Class<?> type) {
+            return type.isPrimitive() || type.isEnum() || type == String.class || type == Boolean.class
+                    || type == Character.class || type == Byte.class || type == Short.class || type == Integer.class
+                    || type == Long.class || type == Float.class || type == Double.class
+                    || type == BigDecimal.class || type == BigInteger.class;
+        }
+    }
+
+    private static final class ConvertedDefaultValue {
+
+        private final HstParameterValueConverter converter;
+        private final Object value;
+
+        private ConvertedDefaultValue(final HstParameterValueConverter converter, final Object value) {
+            this.converter = converter;
+            this.value = value;
         }
-        return false;
     }
 
     private static final boolean isSetter(final Method method, final Object[] args) {
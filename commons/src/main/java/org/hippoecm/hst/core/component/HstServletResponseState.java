@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -39,9 +39,6 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -50,6 +47,7 @@ import org.hippoecm.hst.core.container.HstComponentWindow;
 import org.hippoecm.hst.core.request.HstRequestContext;
 import org.hippoecm.hst.site.HstServices;
 import org.hippoecm.hst.util.DefaultKeyValue;
+import org.hippoecm.hst.util.DocumentBuilderUtils;
 import org.hippoecm.hst.util.HeadElementUtils;
 import org.hippoecm.hst.util.HstRequestUtils;
 import org.hippoecm.hst.util.JsonSerializer;
@@ -58,7 +56,6 @@ import org.hippoecm.hst.util.WrapperElementUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Comment;
-import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -124,6 +121,8 @@ public class HstServletResponseState implements HstResponseState {
 
     private String forwardPathInfo;
 
+    private Document ownerDocument;
+
     public HstServletResponseState(final HttpServletRequest request,
                                    final HttpServletResponse parentResponse,
                                    final HstComponentWindow window) {
@@ -143,19 +142,17 @@ public class HstServletResponseState implements HstResponseState {
     }
 
     public Element createElement(String tagName) {
-        DocumentBuilderFactory dbfac = DocumentBuilderFactory.newInstance();
-        DocumentBuilder docBuilder;
-
-        try
-        {
-            docBuilder = dbfac.newDocumentBuilder();
-            Document doc = docBuilder.newDocument();
-            return doc.createElement(tagName);
-        }
-        catch (ParserConfigurationException e)
-        {
-            throw new DOMException((short) 0, "Initialization failure");
+        return getOwnerDocument().createElement(tagName);
+    }
+
+    /**
+     * @return the document that owns the elements and comments created for this response
+     */
+    protected Document getOwnerDocument() {
+        if (ownerDocument == null) {
+            ownerDocument = DocumentBuilderUtils.newDocument();
         }
+        return ownerDocument;
     }
 
     protected List<String> getAddedHeaderList(String name, boolean create) {
@@ -985,15 +982,7 @@ public class HstServletResponseState implements HstResponseState {
     }
 
     public Comment createComment(String comment) {
-        DocumentBuilderFactory dbfac = DocumentBuilderFactory.newInstance();
-        DocumentBuilder docBuilder;
-        try {
-            docBuilder = dbfac.newDocumentBuilder();
-            Document doc = docBuilder.newDocument();
-            return doc.createComment(comment);
-        } catch (ParserConfigurationException e) {
-            throw new DOMException((short) 0, "Initialization failure");
-        }
+        return getOwnerDocument().createComment(comment);
     }
 
     protected void setResponseLocale(Locale locale) {
@@ -0,0 +1,198 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Compact, immutable {@link HeadElement}. As it cannot change, it is safe to share between threads and requests. Use
+ * {@link #toElement(Document)} where a DOM {@link Element} is needed.
+ */
+public final class ImmutableHeadElement implements HeadElement {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] NO_ATTRIBUTES = new String[0];
+
+    private static final ImmutableHeadElement[] NO_CHILDREN = new ImmutableHeadElement[0];
+
+    private final String tagName;
+
+    /**
+     * Alternating attribute names and values, in document order
+     */
+    private final String[] attributes;
+
+    private final String textContent;
+
+    private final ImmutableHeadElement[] childHeadElements;
+
+    /**
+     * @param tagName the tag name
+     * @param attributes the attributes, in the order they are written
+     * @param textContent the text content, which for an element with child head elements is the text content of all
+     *                    its descendants like {@link Element#getTextContent()}
+     * @param childHeadElements the child head elements
+     */
+    public ImmutableHeadElement(final String tagName, final Map<String, String> attributes, final String textContent,
+                                final Collection<? extends HeadElement> childHeadElements) {
+        if (tagName == null) {
+            throw new IllegalArgumentException("tag name must not be null");
+        }
+        this.tagName = tagName;
+
+        if (attributes == null || attributes.isEmpty()) {
+            this.attributes = NO_ATTRIBUTES;
+        } else {
+            this.attributes = new String[attributes.size() * 2];
+            int i = 0;
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                this.attributes[i++] = entry.getKey();
+                this.attributes[i++] = entry.getValue();
+            }
+        }
+
+        this.textContent = textContent;
+
+        if (childHeadElements == null || childHeadElements.isEmpty()) {
+            this.childHeadElements = NO_CHILDREN;
+        } else {
+            this.childHeadElements = new ImmutableHeadElement[childHeadElements.size()];
+            int i = 0;
+            for (HeadElement child : childHeadElements) {
+                this.childHeadElements[i++] = copyOf(child);
+            }
+        }
+    }
+
+    /**
+     * @param headElement the head element to copy
+     * @return an immutable copy of <code>headElement</code>, or <code>headElement</code> itself if it is immutable
+     * already
+     */
+    public static ImmutableHeadElement copyOf(final HeadElement headElement) {
+        if (headElement instanceof ImmutableHeadElement) {
+            return (ImmutableHeadElement) headElement;
+        }
+        return new ImmutableHeadElement(headElement.getTagName(), headElement.getAttributeMap(),
+                headElement.getTextContent(), headElement.getChildHeadElements());
+    }
+
+    public String getTagName() {
+        return tagName;
+    }
+
+    public boolean hasAttribute(final String name) {
+        return indexOfAttribute(name) >= 0;
+    }
+
+    public String getAttribute(final String name) {
+        final int index = indexOfAttribute(name);
+        return index < 0 ? null : attributes[index + 1];
+    }
+
+    public Map<String, String> getAttributeMap() {
+        if (attributes.length == 0) {
+            return Collections.emptyMap();
+        }
+        final Map<String, String> attributeMap = new LinkedHashMap<>();
+        for (int i = 0; i < attributes.length; i += 2) {
+            attributeMap.put(attributes[i], attributes[i + 1]);
+        }
+        return Collections.unmodifiableMap(attributeMap);
+    }
+
+    /**
+     * @throws UnsupportedOperationException always
+     */
+    public void setAttribute(final String name, final String value) {
+        throw new UnsupportedOperationException("ImmutableHeadElement cannot be modified");
+    }
+
+    /**
+     * @throws UnsupportedOperationException always
+     */
+    public String removeAttribute(final String name) {
+        throw new UnsupportedOperationException("ImmutableHeadElement cannot be modified");
+    }
+
+    public String getTextContent() {
+        return textContent;
+    }
+
+    /**
+     * @throws UnsupportedOperationException always
+     */
+    public void setTextContent(final String textContent) {
+        throw new UnsupportedOperationException("ImmutableHeadElement cannot be modified");
+    }
+
+    public boolean hasChildHeadElements() {
+        return childHeadElements.length > 0;
+    }
+
+    public Collection<HeadElement> getChildHeadElements() {
+        if (childHeadElements.length == 0) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.<HeadElement>asList(childHeadElements));
+    }
+
+    /**
+     * @return this head element itself, as it cannot be modified
+     */
+    @Override
+    public Object clone() {
+        return this;
+    }
+
+    /**
+     * Creates a new DOM element for this head element, for the APIs that deal with {@link Element}s like
+     * {@link HstResponse#addHeadElement(Element, String)}.
+     * @param ownerDocument the document to create the element with
+     * @return a new element owned by <code>ownerDocument</code>
+     */
+    public Element toElement(final Document ownerDocument) {
+        final Element element = ownerDocument.createElement(tagName);
+        for (int i = 0; i < attributes.length; i += 2) {
+            element.setAttribute(attributes[i], attributes[i + 1]);
+        }
+        if (childHeadElements.length > 0) {
+            for (ImmutableHeadElement child : childHeadElements) {
+                element.appendChild(child.toElement(ownerDocument));
+            }
+        } else if (textContent != null && !textContent.isEmpty()) {
+            element.appendChild(ownerDocument.createTextNode(textContent));
+        }
+        return element;
+    }
+
+    private int indexOfAttribute(final String name) {
+        for (int i = 0; i < attributes.length; i += 2) {
+            if (attributes[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
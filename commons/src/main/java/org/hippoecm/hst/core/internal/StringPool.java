@@ -1,5 +1,5 @@
 /*
- *  Copyright 2011-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2011-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -15,17 +15,33 @@
  */
 package org.hippoecm.hst.core.internal;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A String pool utility that can be used to return an already present String object from the heap instead
  * of creating new Strings for String objects that are equal. 
  * Since the hst configuration object contains many equal strings for multiple sites, this saves lots of memory. 
+ * <p>
+ * The pooled Strings are only weakly referenced, such that they can be garbage collected when not used any more. The
+ * pool is divided in segments that each have their own {@link ConcurrentHashMap} and {@link ReferenceQueue}: looking
+ * up a pooled String does not lock, and adding Strings or purging garbage collected ones only contends within a segment.
+ * </p>
  */
 public class StringPool {
 
-    private static final WeakHashMap<String, WeakReference<String>> stringPool = new WeakHashMap<>(1000);
+    private static final int SEGMENT_BITS = 4;
+
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+
+    private static final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    static {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
 
     /**
      * not allowed to instantiate
@@ -38,27 +54,136 @@ public class StringPool {
      * @param string The {@link String} object for which to get its cached object instance
      * @return the String object from the argument or if their was already and equal object in the pool, the object that was already there.
      */
-    public static synchronized String get(String string) {
+    public static String get(String string) {
         if(string == null) {
             return null;
         }
-        WeakReference<String> weakVal = stringPool.get(string);
-        String pooledString;
-        if (weakVal != null && (pooledString = weakVal.get()) != null) {
-            return pooledString;
-        }
-        stringPool.put(string, new WeakReference<>(string));
-        return string;
+        final int hash = string.hashCode();
+        return segmentFor(hash).get(string, hash);
     }
 
-    public static synchronized int size() {
-        return stringPool.size();
+    public static int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
     }
 
     /**
      * Clears the entire StringPool
      */
-    public static synchronized void clear() {
-        stringPool.clear();
+    public static void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private static Segment segmentFor(final int hash) {
+        // fibonacci hashing : the highest bits of the product depend on all bits of the hash
+        return segments[(hash * 0x9E3779B9) >>> (32 - SEGMENT_BITS)];
+    }
+
+    private static class Segment {
+
+        private final ConcurrentHashMap<Object, PooledString> pool = new ConcurrentHashMap<>(64);
+        private final ReferenceQueue<String> queue = new ReferenceQueue<>();
+
+        String get(final String string, final int hash) {
+            PooledString pooled = pool.get(new LookupKey(string, hash));
+            String pooledString;
+            if (pooled != null && (pooledString = pooled.get()) != null) {
+                return pooledString;
+            }
+            purge();
+            final PooledString added = new PooledString(string, hash, queue);
+            while (true) {
+                pooled = pool.putIfAbsent(added, added);
+                if (pooled == null) {
+                    return string;
+                }
+                if ((pooledString = pooled.get()) != null) {
+                    // added concurrently by another thread
+                    return pooledString;
+                }
+                // garbage collected but not yet purged
+                pool.remove(pooled, pooled);
+            }
+        }
+
+        int size() {
+            purge();
+            return pool.size();
+        }
+
+        void clear() {
+            pool.clear();
+            purge();
+        }
+
+        private void purge() {
+            PooledString collected;
+            while ((collected = (PooledString) queue.poll()) != null) {
+                pool.remove(collected, collected);
+            }
+        }
+    }
+
+    /**
+     * Weakly referenced String in the pool, equal to every {@link PooledString} or {@link LookupKey} of an equal String
+     * as long as it is not garbage collected
+     */
+    private static class PooledString extends WeakReference<String> {
+
+        private final int hash;
+
+        PooledString(final String string, final int hash, final ReferenceQueue<String> queue) {
+            super(string, queue);
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            final String string = get();
+            if (string == null) {
+                return false;
+            }
+            if (obj instanceof LookupKey) {
+                return string.equals(((LookupKey) obj).string);
+            }
+            return obj instanceof PooledString && string.equals(((PooledString) obj).get());
+        }
+    }
+
+    /**
+     * Strongly referenced String only used to look up its {@link PooledString}
+     */
+    private static class LookupKey {
+
+        private final String string;
+        private final int hash;
+
+        LookupKey(final String string, final int hash) {
+            this.string = string;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof PooledString && string.equals(((PooledString) obj).get());
+        }
     }
 }
@@ -0,0 +1,598 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.jcr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decouples the jcr observation event listeners from the repository observation thread. The events the listeners
+ * receive from the repository are copied into one bounded queue, from which a single dispatcher thread takes them in
+ * batches : it waits the coalescing window after the oldest queued event, so that a bulk change like an import
+ * arrives as a few large batches instead of many small ones. Per listener, the batch is deduplicated and, for a
+ * {@link CoalescableEventListener}, the events below added or removed nodes are left out, before the listener gets
+ * the remaining events at once.
+ * <p>
+ * Events of one listener are delivered in the order the repository reported them. When the queue is full, the
+ * repository observation thread waits until the dispatcher caught up, hence no events get lost.
+ */
+public class CoalescingEventDispatcher implements CoalescingEventDispatcherMXBean {
+
+    private static final Logger log = LoggerFactory.getLogger(CoalescingEventDispatcher.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 100000;
+
+    public static final long DEFAULT_COALESCING_WINDOW_MILLIS = 500L;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 10000;
+
+    private String name = "CoalescingEventDispatcher";
+    private boolean enabled;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private long coalescingWindowMillis = DEFAULT_COALESCING_WINDOW_MILLIS;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private volatile BlockingQueue<QueuedEvent> queue;
+    private ExecutorService executor;
+
+    private final AtomicLong receivedEventCount = new AtomicLong();
+    private final AtomicLong dispatchedEventCount = new AtomicLong();
+    private final AtomicLong coalescedEventCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong totalBatchSize = new AtomicLong();
+    private final AtomicInteger maxBatchSizeSeen = new AtomicInteger();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private volatile long lastLagMillis;
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * When not enabled, which is the default, the {@link EventListenersContainer} registers the event listeners with
+     * the repository directly
+     */
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setQueueCapacity(final int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @param coalescingWindowMillis how long to wait for more events after the oldest event of a batch was received
+     */
+    public void setCoalescingWindowMillis(final long coalescingWindowMillis) {
+        this.coalescingWindowMillis = coalescingWindowMillis;
+    }
+
+    /**
+     * @param maxBatchSize the number of queued events after which a batch is dispatched without waiting for the end of
+     *                     the coalescing window
+     */
+    public void setMaxBatchSize(final int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @param eventListener the event listener to dispatch events to
+     * @return the event listener to register with the repository instead of <code>eventListener</code>, which is
+     * equal to any other event listener returned for the same <code>eventListener</code> so that it can be removed
+     * again
+     */
+    public EventListener subscribe(final EventListener eventListener) {
+        return new Subscriber(eventListener);
+    }
+
+    public synchronized void start() {
+        if (!enabled || executor != null) {
+            return;
+        }
+        final BlockingQueue<QueuedEvent> startedQueue = new LinkedBlockingQueue<>(queueCapacity);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        queue = startedQueue;
+        executor.execute(() -> dispatchEvents(startedQueue));
+        log.info("{} started with queue capacity {} and coalescing window {} ms.", name, queueCapacity,
+                coalescingWindowMillis);
+    }
+
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("{} did not stop within 10 seconds.", name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final int discarded = queue.size();
+        if (discarded > 0) {
+            log.info("{} stopped, discarding {} queued events.", name, discarded);
+        }
+        queue = null;
+        executor = null;
+    }
+
+    private void enqueue(final Subscriber subscriber, final EventIterator events) {
+        final BlockingQueue<QueuedEvent> currentQueue = queue;
+        if (currentQueue == null) {
+            // not started (anymore) : deliver on the repository observation thread like without this dispatcher
+            subscriber.deliver(events);
+            return;
+        }
+        try {
+            while (events.hasNext()) {
+                currentQueue.put(new QueuedEvent(subscriber, events.nextEvent()));
+                receivedEventCount.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while queueing events for '{}', remaining events are not dispatched.",
+                    subscriber.delegatee);
+        }
+    }
+
+    private void dispatchEvents(final BlockingQueue<QueuedEvent> fromQueue) {
+        final List<QueuedEvent> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final QueuedEvent oldest = fromQueue.take();
+                batch.add(oldest);
+                final long windowEnd = oldest.receivedMillis + coalescingWindowMillis;
+                long remaining;
+                while (batch.size() < maxBatchSize && (remaining = windowEnd - System.currentTimeMillis()) > 0) {
+                    final QueuedEvent next = fromQueue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    fromQueue.drainTo(batch, maxBatchSize - batch.size());
+                }
+                fromQueue.drainTo(batch, Math.max(0, maxBatchSize - batch.size()));
+                dispatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.debug("{} stops dispatching.", name);
+    }
+
+    private void dispatch(final List<QueuedEvent> batch) {
+        final long lag = System.currentTimeMillis() - batch.get(0).receivedMillis;
+        batchCount.incrementAndGet();
+        totalBatchSize.addAndGet(batch.size());
+        maxBatchSizeSeen.accumulateAndGet(batch.size(), Math::max);
+        lastLagMillis = lag;
+        totalLagMillis.addAndGet(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+
+        final Map<Subscriber, List<QueuedEvent>> eventsBySubscriber = new LinkedHashMap<>();
+        for (QueuedEvent event : batch) {
+            eventsBySubscriber.computeIfAbsent(event.subscriber, subscriber -> new ArrayList<>()).add(event);
+        }
+
+        for (Map.Entry<Subscriber, List<QueuedEvent>> entry : eventsBySubscriber.entrySet()) {
+            final Subscriber subscriber = entry.getKey();
+            final List<QueuedEvent> events = coalesce(entry.getValue(), subscriber.coalescable);
+            coalescedEventCount.addAndGet(entry.getValue().size() - events.size());
+            dispatchedEventCount.addAndGet(events.size());
+            try {
+                subscriber.deliver(new QueuedEventIterator(events));
+            } catch (Throwable e) {
+                // keep the dispatcher thread alive for the other listeners
+                log.error("Event listener '{}' failed to process events.", subscriber.delegatee, e);
+            }
+        }
+        log.debug("{} dispatched a batch of {} events with a lag of {} ms.", name, batch.size(), lag);
+    }
+
+    /**
+     * Of duplicate events, the last one is kept, so that for instance a node that is added, removed and added again
+     * is still reported as added after its removal.
+     * @param events the events of one listener, in the order they were received
+     * @param subtrees whether to leave out the events below the nodes added or removed in <code>events</code>
+     * @return the events without duplicates, still in the order they were received
+     */
+    static List<QueuedEvent> coalesce(final List<QueuedEvent> events, final boolean subtrees) {
+        // an event only covers the events below it with the same user data, as listeners may ignore by user data
+        final Set<String> subtreeKeys = new HashSet<>();
+        if (subtrees) {
+            for (QueuedEvent event : events) {
+                if (event.path != null && (event.type == Event.NODE_ADDED || event.type == Event.NODE_REMOVED)) {
+                    subtreeKeys.add(event.userData + "\n" + event.path);
+                }
+            }
+        }
+
+        final Set<String> seen = new HashSet<>();
+        final List<QueuedEvent> coalesced = new ArrayList<>(events.size());
+        for (int i = events.size() - 1; i >= 0; i--) {
+            final QueuedEvent event = events.get(i);
+            if (event.path == null) {
+                // the path could not be read : leave it to the listener
+                coalesced.add(event);
+                continue;
+            }
+            if (!subtreeKeys.isEmpty() && isBelowAny(event.userData + "\n", event.path, subtreeKeys)) {
+                continue;
+            }
+            if (seen.add(event.type + ":" + event.path + ":" + event.identifier + ":" + event.userData)) {
+                coalesced.add(event);
+            }
+        }
+        Collections.reverse(coalesced);
+        return coalesced;
+    }
+
+    private static boolean isBelowAny(final String keyPrefix, final String path, final Set<String> ancestorKeys) {
+        for (int slash = path.lastIndexOf('/'); slash > 0; slash = path.lastIndexOf('/', slash - 1)) {
+            if (ancestorKeys.contains(keyPrefix + path.substring(0, slash))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public int getQueueSize() {
+        final BlockingQueue<QueuedEvent> currentQueue = queue;
+        return currentQueue == null ? 0 : currentQueue.size();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @Override
+    public long getCoalescingWindowMillis() {
+        return coalescingWindowMillis;
+    }
+
+    @Override
+    public long getReceivedEventCount() {
+        return receivedEventCount.get();
+    }
+
+    @Override
+    public long getDispatchedEventCount() {
+        return dispatchedEventCount.get();
+    }
+
+    @Override
+    public long getCoalescedEventCount() {
+        return coalescedEventCount.get();
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    @Override
+    public double getAverageBatchSize() {
+        final long batches = batchCount.get();
+        return batches == 0 ? 0 : (double) totalBatchSize.get() / batches;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return maxBatchSizeSeen.get();
+    }
+
+    @Override
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    @Override
+    public double getAverageLagMillis() {
+        final long batches = batchCount.get();
+        return batches == 0 ? 0 : (double) totalLagMillis.get() / batches;
+    }
+
+    @Override
+    public long getMaxLagMillis() {
+        return maxLagMillis.get();
+    }
+
+    @Override
+    public void resetStatistics() {
+        receivedEventCount.set(0);
+        dispatchedEventCount.set(0);
+        coalescedEventCount.set(0);
+        batchCount.set(0);
+        totalBatchSize.set(0);
+        maxBatchSizeSeen.set(0);
+        totalLagMillis.set(0);
+        maxLagMillis.set(0);
+        lastLagMillis = 0;
+    }
+
+    /**
+     * The event listener registered with the repository on behalf of the subscribed event listener
+     */
+    class Subscriber implements EventListener {
+
+        private final EventListener delegatee;
+        private final boolean coalescable;
+
+        Subscriber(final EventListener delegatee) {
+            this.delegatee = delegatee;
+            coalescable = delegatee instanceof CoalescableEventListener;
+        }
+
+        @Override
+        public void onEvent(final EventIterator events) {
+            enqueue(this, events);
+        }
+
+        private void deliver(final EventIterator events) {
+            final ClassLoader currentCL = Thread.currentThread().getContextClassLoader();
+            try {
+                Thread.currentThread().setContextClassLoader(CoalescingEventDispatcher.class.getClassLoader());
+                delegatee.onEvent(events);
+            } catch (RuntimeException e) {
+                log.warn("Event listener '{}' failed to process events.", delegatee, e);
+            } finally {
+                Thread.currentThread().setContextClassLoader(currentCL);
+            }
+        }
+
+        /**
+         * equals and hashcode are based on the delegatee, because on a remove of an EventListener a new Subscriber
+         * is created for it
+         */
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            return delegatee.equals(((Subscriber) o).delegatee);
+        }
+
+        @Override
+        public int hashCode() {
+            return delegatee.hashCode();
+        }
+    }
+
+    /**
+     * Copy of an event, as the events of the repository are not meant to be used after the observation call
+     */
+    static class QueuedEvent implements Event {
+
+        private final Subscriber subscriber;
+        private final long receivedMillis;
+
+        private final int type;
+        private final String path;
+        private final RepositoryException pathException;
+        private final String identifier;
+        private final RepositoryException identifierException;
+        private final String userID;
+        private final Map info;
+        private final RepositoryException infoException;
+        private final String userData;
+        private final RepositoryException userDataException;
+        private final long date;
+        private final RepositoryException dateException;
+
+        QueuedEvent(final Subscriber subscriber, final Event event) {
+            this.subscriber = subscriber;
+            receivedMillis = System.currentTimeMillis();
+            type = event.getType();
+            userID = event.getUserID();
+
+            String path = null;
+            RepositoryException pathException = null;
+            try {
+                path = event.getPath();
+            } catch (RepositoryException e) {
+                pathException = e;
+            }
+            this.path = path;
+            this.pathException = pathException;
+
+            String identifier = null;
+            RepositoryException identifierException = null;
+            try {
+                identifier = event.getIdentifier();
+            } catch (RepositoryException e) {
+                identifierException = e;
+            }
+            this.identifier = identifier;
+            this.identifierException = identifierException;
+
+            Map info = null;
+            RepositoryException infoException = null;
+            try {
+                final Map eventInfo = event.getInfo();
+                info = eventInfo == null || eventInfo.isEmpty() ? Collections.emptyMap() : new HashMap(eventInfo);
+            } catch (RepositoryException e) {
+                infoException = e;
+            }
+            this.info = info;
+            this.infoException = infoException;
+
+            String userData = null;
+            RepositoryException userDataException = null;
+            try {
+                userData = event.getUserData();
+            } catch (RepositoryException e) {
+                userDataException = e;
+            }
+            this.userData = userData;
+            this.userDataException = userDataException;
+
+            long date = 0L;
+            RepositoryException dateException = null;
+            try {
+                date = event.getDate();
+            } catch (RepositoryException e) {
+                dateException = e;
+            }
+            this.date = date;
+            this.dateException = dateException;
+        }
+
+        @Override
+        public int getType() {
+            return type;
+        }
+
+        @Override
+        public String getPath() throws RepositoryException {
+            if (pathException != null) {
+                throw pathException;
+            }
+            return path;
+        }
+
+        @Override
+        public String getUserID() {
+            return userID;
+        }
+
+        @Override
+        public String getIdentifier() throws RepositoryException {
+            if (identifierException != null) {
+                throw identifierException;
+            }
+            return identifier;
+        }
+
+        @Override
+        public Map getInfo() throws RepositoryException {
+            if (infoException != null) {
+                throw infoException;
+            }
+            return info;
+        }
+
+        @Override
+        public String getUserData() throws RepositoryException {
+            if (userDataException != null) {
+                throw userDataException;
+            }
+            return userData;
+        }
+
+        @Override
+        public long getDate() throws RepositoryException {
+            if (dateException != null) {
+                throw dateException;
+            }
+            return date;
+        }
+
+        @Override
+        public String toString() {
+            return "QueuedEvent[type=" + type + ", path=" + path + "]";
+        }
+    }
+
+    private static class QueuedEventIterator implements EventIterator {
+
+        private final List<QueuedEvent> events;
+        private int position;
+
+        private QueuedEventIterator(final List<QueuedEvent> events) {
+            this.events = events;
+        }
+
+        @Override
+        public Event nextEvent() {
+            if (position >= events.size()) {
+                throw new NoSuchElementException();
+            }
+            return events.get(position++);
+        }
+
+        @Override
+        public void skip(final long skipNum) {
+            if (skipNum < 0 || position + skipNum > events.size()) {
+                throw new NoSuchElementException();
+            }
+            position += skipNum;
+        }
+
+        @Override
+        public long getSize() {
+            return events.size();
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < events.size();
+        }
+
+        @Override
+        public Object next() {
+            return nextEvent();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
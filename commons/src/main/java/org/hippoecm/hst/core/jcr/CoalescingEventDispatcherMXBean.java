@@ -0,0 +1,70 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.jcr;
+
+/**
+ * Statistics of the {@link CoalescingEventDispatcher}
+ */
+public interface CoalescingEventDispatcherMXBean {
+
+    boolean isEnabled();
+
+    /**
+     * @return the number of events waiting in the queue to be dispatched
+     */
+    int getQueueSize();
+
+    int getQueueCapacity();
+
+    long getCoalescingWindowMillis();
+
+    /**
+     * @return the number of events received from the repository since the start or the last reset
+     */
+    long getReceivedEventCount();
+
+    /**
+     * @return the number of events passed on to the event listeners since the start or the last reset, which is
+     * lower than the number of received events times the listeners the more events are coalesced
+     */
+    long getDispatchedEventCount();
+
+    /**
+     * @return the number of events that were left out as duplicates or because they are below an added or removed
+     * node, since the start or the last reset
+     */
+    long getCoalescedEventCount();
+
+    /**
+     * @return the number of batches dispatched since the start or the last reset
+     */
+    long getBatchCount();
+
+    double getAverageBatchSize();
+
+    int getMaxBatchSize();
+
+    /**
+     * @return the time between receiving the oldest event of the last batch and dispatching that batch
+     */
+    long getLastLagMillis();
+
+    double getAverageLagMillis();
+
+    long getMaxLagMillis();
+
+    void resetStatistics();
+}
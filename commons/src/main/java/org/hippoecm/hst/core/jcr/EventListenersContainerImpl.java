@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -57,6 +57,8 @@ public class EventListenersContainerImpl implements EventListenersContainer {
     protected ObservationManager observationManager;
     protected List<EventListenerItem> eventListenerItems = Collections.synchronizedList(new LinkedList<EventListenerItem>());
 
+    protected CoalescingEventDispatcher eventDispatcher;
+
     protected boolean firstInitializationDone;
     protected EventListenersContainerSessionChecker eventListenersContainerSessionChecker;
     protected volatile boolean stopped;
@@ -111,6 +113,14 @@ public class EventListenersContainerImpl implements EventListenersContainer {
         return eventListenerItems.remove(eventListenerItem);
     }
     
+    /**
+     * Sets the optional dispatcher through which the event listeners receive their events asynchronously in coalesced
+     * batches, when it is enabled. Without it, the event listeners are invoked by the repository directly.
+     */
+    public void setEventDispatcher(CoalescingEventDispatcher eventDispatcher) {
+        this.eventDispatcher = eventDispatcher;
+    }
+
     public void setSessionLiveCheck(boolean sessionLiveCheck) {
         this.sessionLiveCheck = sessionLiveCheck;
     }
@@ -124,6 +134,9 @@ public class EventListenersContainerImpl implements EventListenersContainer {
     }
 
     public synchronized void start() {
+        if (eventDispatcher != null) {
+            eventDispatcher.start();
+        }
         if (!this.sessionLiveCheck) {
             this.stopped = false;
             doDeinit();
@@ -195,7 +208,7 @@ public class EventListenersContainerImpl implements EventListenersContainer {
                 }
 
                 try {
-                    observationManager.addEventListener(new ClassLoaderDecoratingEventListener(eventListener), eventTypes, absolutePath, isDeep, uuids,
+                    observationManager.addEventListener(createObservationEventListener(eventListener), eventTypes, absolutePath, isDeep, uuids,
                             nodeTypeNames, noLocal);
                 } catch (RepositoryException e) {
                     if (log.isDebugEnabled()) {
@@ -350,8 +363,23 @@ public class EventListenersContainerImpl implements EventListenersContainer {
                 }
             }
         }
+
+        if (eventDispatcher != null) {
+            eventDispatcher.stop();
+        }
     }
     
+    /**
+     * @return the event listener to register with the repository for <code>eventListener</code>, which must be equal
+     * for the same <code>eventListener</code> to be able to remove it again
+     */
+    protected EventListener createObservationEventListener(EventListener eventListener) {
+        if (eventDispatcher != null && eventDispatcher.isEnabled()) {
+            return eventDispatcher.subscribe(eventListener);
+        }
+        return new ClassLoaderDecoratingEventListener(eventListener);
+    }
+
     protected void doDeinit() {
         if (this.observationManager != null) {
             for (EventListenerItem item : getEventListenerItems()) {
@@ -366,7 +394,7 @@ public class EventListenersContainerImpl implements EventListenersContainer {
                         }
                     }
                     else {
-                        observationManager.removeEventListener(new ClassLoaderDecoratingEventListener(eventListener));
+                        observationManager.removeEventListener(createObservationEventListener(eventListener));
                     }
                 } catch (Exception e) {
                     if (log.isWarnEnabled()) {
@@ -0,0 +1,83 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Provides DOM documents without looking up a {@link DocumentBuilderFactory} implementation through JAXP every time:
+ * the factory is looked up once and every thread reuses its own {@link DocumentBuilder}, as builders are not thread
+ * safe.
+ */
+public class DocumentBuilderUtils {
+
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<>();
+
+    private DocumentBuilderUtils() {
+    }
+
+    /**
+     * @return a new empty document, for instance the owner document of created head elements
+     * @throws DOMException if no document builder can be configured
+     */
+    public static Document newDocument() throws DOMException {
+        try {
+            return getDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new DOMException((short) 0, "Initialization failure");
+        }
+    }
+
+    /**
+     * @param xmlText the XML to parse
+     * @return the parsed document
+     * @throws ParserConfigurationException if no document builder can be configured
+     * @throws SAXException if the XML is not well-formed
+     * @throws IOException if the XML cannot be read
+     */
+    public static Document parse(final String xmlText) throws ParserConfigurationException, SAXException, IOException {
+        final DocumentBuilder documentBuilder = getDocumentBuilder();
+        try {
+            return documentBuilder.parse(new InputSource(new StringReader(xmlText)));
+        } finally {
+            documentBuilder.reset();
+        }
+    }
+
+    private static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+        DocumentBuilder documentBuilder = DOCUMENT_BUILDER.get();
+        if (documentBuilder == null) {
+            // the factory itself is not thread safe
+            synchronized (DOCUMENT_BUILDER_FACTORY) {
+                documentBuilder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+            }
+            DOCUMENT_BUILDER.set(documentBuilder);
+        }
+        return documentBuilder;
+    }
+}
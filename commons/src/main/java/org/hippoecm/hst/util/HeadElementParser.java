@@ -0,0 +1,387 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hippoecm.hst.core.component.ImmutableHeadElement;
+
+/**
+ * Small streaming parser for the markup of a single head contribution, like the body of a head contribution tag.
+ * It reads the markup in one pass straight into an {@link ImmutableHeadElement}, without the setup of a JAXP parser
+ * and without building a DOM document in between.
+ * <p>
+ * It understands elements, attributes, text, the predefined and character entity references, CDATA sections,
+ * comments and an XML declaration, which covers the markup that is contributed in practice. For anything else,
+ * for instance a DOCTYPE, processing instructions, mixed content or markup that is not well-formed, {@link
+ * #parse(String)} returns <code>null</code> : the caller then falls back to a full XML parser, which also reports the
+ * errors in the markup as before.
+ */
+public class HeadElementParser {
+
+    private static final String XML_DECLARATION_START = "<?xml";
+    private static final String COMMENT_START = "<!--";
+    private static final String COMMENT_END = "-->";
+    private static final String CDATA_START = "<![CDATA[";
+    private static final String CDATA_END = "]]>";
+
+    private final String markup;
+    private final int length;
+    private int pos;
+
+    private HeadElementParser(final String markup) {
+        // end-of-line normalization like an XML parser does
+        this.markup = markup.indexOf('\r') < 0 ? markup : markup.replace("\r\n", "\n").replace('\r', '\n');
+        length = this.markup.length();
+    }
+
+    /**
+     * @param markup the markup of a single element
+     * @return the parsed head element, or <code>null</code> if the markup is not supported by this parser
+     */
+    public static ImmutableHeadElement parse(final String markup) {
+        if (markup == null) {
+            return null;
+        }
+        try {
+            return new HeadElementParser(markup).parseDocument();
+        } catch (UnsupportedMarkupException e) {
+            return null;
+        }
+    }
+
+    private ImmutableHeadElement parseDocument() throws UnsupportedMarkupException {
+        skipWhitespace();
+        if (markup.startsWith(XML_DECLARATION_START, pos)) {
+            skipPast("?>");
+        }
+        skipMisc();
+        if (pos >= length || markup.charAt(pos) != '<') {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        final ImmutableHeadElement element = parseElement();
+        skipMisc();
+        if (pos < length) {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        return element;
+    }
+
+    /**
+     * Parses an element, starting at its <code>&lt;</code>
+     */
+    private ImmutableHeadElement parseElement() throws UnsupportedMarkupException {
+        pos++;
+        final String tagName = parseName();
+        Map<String, String> attributes = null;
+
+        while (true) {
+            final boolean whitespace = skipWhitespace();
+            if (pos >= length) {
+                throw UnsupportedMarkupException.INSTANCE;
+            }
+            final char c = markup.charAt(pos);
+            if (c == '/') {
+                expect("/>");
+                return new ImmutableHeadElement(tagName, attributes, null, null);
+            }
+            if (c == '>') {
+                pos++;
+                break;
+            }
+            if (!whitespace) {
+                throw UnsupportedMarkupException.INSTANCE;
+            }
+            final String name = parseName();
+            skipWhitespace();
+            expect("=");
+            skipWhitespace();
+            final String value = parseAttributeValue();
+            if (attributes == null) {
+                attributes = new LinkedHashMap<>();
+            }
+            if (attributes.put(name, value) != null) {
+                throw UnsupportedMarkupException.INSTANCE;
+            }
+        }
+
+        final StringBuilder textContent = new StringBuilder();
+        boolean textOnlyWhitespace = true;
+        List<ImmutableHeadElement> childHeadElements = null;
+
+        while (true) {
+            if (pos >= length) {
+                throw UnsupportedMarkupException.INSTANCE;
+            }
+            final char c = markup.charAt(pos);
+            if (c == '<') {
+                if (markup.startsWith("</", pos)) {
+                    pos += 2;
+                    if (!tagName.equals(parseName())) {
+                        throw UnsupportedMarkupException.INSTANCE;
+                    }
+                    skipWhitespace();
+                    expect(">");
+                    break;
+                } else if (markup.startsWith(COMMENT_START, pos)) {
+                    skipComment();
+                } else if (markup.startsWith(CDATA_START, pos)) {
+                    final int start = pos + CDATA_START.length();
+                    final int end = markup.indexOf(CDATA_END, start);
+                    if (end < 0) {
+                        throw UnsupportedMarkupException.INSTANCE;
+                    }
+                    appendChars(textContent, start, end);
+                    textOnlyWhitespace &= isWhitespace(start, end);
+                    pos = end + CDATA_END.length();
+                } else {
+                    final ImmutableHeadElement child = parseElement();
+                    if (childHeadElements == null) {
+                        childHeadElements = new ArrayList<>();
+                    }
+                    childHeadElements.add(child);
+                    if (child.getTextContent() != null) {
+                        textContent.append(child.getTextContent());
+                    }
+                }
+            } else if (c == '&') {
+                final int start = textContent.length();
+                appendReference(textContent);
+                textOnlyWhitespace &= isWhitespace(textContent, start);
+            } else {
+                if (c == '>' && markup.startsWith(CDATA_END, pos - 2)) {
+                    throw UnsupportedMarkupException.INSTANCE;
+                }
+                checkLegalCharacter(c);
+                textContent.append(c);
+                textOnlyWhitespace &= isWhitespace(c);
+                pos++;
+            }
+        }
+
+        if (childHeadElements != null && !textOnlyWhitespace) {
+            // mixed content is left to the DOM
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        return new ImmutableHeadElement(tagName, attributes, textContent.length() == 0 ? null : textContent.toString(),
+                childHeadElements);
+    }
+
+    private String parseName() throws UnsupportedMarkupException {
+        final int start = pos;
+        if (pos < length && isNameStartChar(markup.charAt(pos))) {
+            pos++;
+            while (pos < length && isNameChar(markup.charAt(pos))) {
+                pos++;
+            }
+        }
+        if (pos == start) {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        return markup.substring(start, pos);
+    }
+
+    private String parseAttributeValue() throws UnsupportedMarkupException {
+        if (pos >= length) {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        final char quote = markup.charAt(pos);
+        if (quote != '"' && quote != '\'') {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        pos++;
+        final StringBuilder value = new StringBuilder();
+        while (true) {
+            if (pos >= length) {
+                throw UnsupportedMarkupException.INSTANCE;
+            }
+            final char c = markup.charAt(pos);
+            if (c == quote) {
+                pos++;
+                return value.toString();
+            } else if (c == '<') {
+                throw UnsupportedMarkupException.INSTANCE;
+            } else if (c == '&') {
+                appendReference(value);
+            } else {
+                checkLegalCharacter(c);
+                // attribute value normalization, which does not apply to character references
+                value.append(c == '\n' || c == '\t' ? ' ' : c);
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Appends the character of the entity or character reference at the current position
+     */
+    private void appendReference(final StringBuilder builder) throws UnsupportedMarkupException {
+        final int end = markup.indexOf(';', pos);
+        if (end < 0) {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        final String reference = markup.substring(pos + 1, end);
+        switch (reference) {
+            case "lt":
+                builder.append('<');
+                break;
+            case "gt":
+                builder.append('>');
+                break;
+            case "amp":
+                builder.append('&');
+                break;
+            case "quot":
+                builder.append('"');
+                break;
+            case "apos":
+                builder.append('\'');
+                break;
+            default:
+                builder.appendCodePoint(parseCharacterReference(reference));
+        }
+        pos = end + 1;
+    }
+
+    private static int parseCharacterReference(final String reference) throws UnsupportedMarkupException {
+        if (reference.length() < 2 || reference.charAt(0) != '#') {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        final boolean hex = reference.charAt(1) == 'x';
+        final String digits = reference.substring(hex ? 2 : 1);
+        if (digits.isEmpty() || digits.length() > 8 || digits.charAt(0) == '-' || digits.charAt(0) == '+') {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        final int codePoint;
+        try {
+            codePoint = Integer.parseInt(digits, hex ? 16 : 10);
+        } catch (NumberFormatException e) {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        if (!Character.isValidCodePoint(codePoint) || (codePoint < 0x10000 && !isLegalCharacter((char) codePoint))) {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        return codePoint;
+    }
+
+    /**
+     * Skips whitespace and comments
+     */
+    private void skipMisc() throws UnsupportedMarkupException {
+        skipWhitespace();
+        while (markup.startsWith(COMMENT_START, pos)) {
+            skipComment();
+            skipWhitespace();
+        }
+    }
+
+    private void skipComment() throws UnsupportedMarkupException {
+        final int start = pos + COMMENT_START.length();
+        final int end = markup.indexOf("--", start);
+        if (end < 0 || !markup.startsWith(COMMENT_END, end)) {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        pos = end + COMMENT_END.length();
+    }
+
+    private void skipPast(final String terminator) throws UnsupportedMarkupException {
+        final int end = markup.indexOf(terminator, pos);
+        if (end < 0) {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        pos = end + terminator.length();
+    }
+
+    private boolean skipWhitespace() {
+        final int start = pos;
+        while (pos < length && isWhitespace(markup.charAt(pos))) {
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private void expect(final String expected) throws UnsupportedMarkupException {
+        if (!markup.startsWith(expected, pos)) {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+        pos += expected.length();
+    }
+
+    private void appendChars(final StringBuilder builder, final int start, final int end)
+            throws UnsupportedMarkupException {
+        for (int i = start; i < end; i++) {
+            checkLegalCharacter(markup.charAt(i));
+        }
+        builder.append(markup, start, end);
+    }
+
+    private boolean isWhitespace(final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (!isWhitespace(markup.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(final CharSequence chars, final int start) {
+        for (int i = start; i < chars.length(); i++) {
+            if (!isWhitespace(chars.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\n' || c == '\t';
+    }
+
+    private static boolean isNameStartChar(final char c) {
+        return Character.isLetter(c) || c == '_' || c == ':';
+    }
+
+    private static boolean isNameChar(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '-' || c == '.';
+    }
+
+    private static void checkLegalCharacter(final char c) throws UnsupportedMarkupException {
+        if (!isLegalCharacter(c)) {
+            throw UnsupportedMarkupException.INSTANCE;
+        }
+    }
+
+    private static boolean isLegalCharacter(final char c) {
+        return c >= 0x20 ? c != 0xFFFE && c != 0xFFFF : c == '\n' || c == '\t' || c == '\r';
+    }
+
+    /**
+     * Preallocated without stack trace, as it only signals the fallback to a full XML parser
+     */
+    private static final class UnsupportedMarkupException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final UnsupportedMarkupException INSTANCE = new UnsupportedMarkupException();
+
+        private UnsupportedMarkupException() {
+            super("unsupported markup", null, false, false);
+        }
+    }
+}
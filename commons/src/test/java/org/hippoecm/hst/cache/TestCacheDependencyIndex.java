@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestCacheDependencyIndex {
+
+    private CacheDependencyIndex<String> index;
+
+    @Before
+    public void setUp() {
+        index = new CacheDependencyIndex<>();
+
+        final CacheDependencies newsPage = new CacheDependencies();
+        newsPage.addNode("/content/documents/site/news");
+        newsPage.addSubtree("/content/documents/site/news/article");
+        index.register("newsPage", newsPage);
+
+        final CacheDependencies aboutPage = new CacheDependencies();
+        aboutPage.addSubtree("/content/documents/site/about");
+        index.register("aboutPage", aboutPage);
+    }
+
+    @Test
+    public void change_below_subtree_dependency_affects_only_dependent_keys() {
+        final Set<String> affected = index.removeAffected(
+                Collections.singletonList("/content/documents/site/about/about/myproject:title"));
+        assertEquals(Collections.singleton("aboutPage"), affected);
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void added_child_affects_node_dependency_but_deeper_changes_do_not() {
+        assertTrue(index.removeAffected(
+                Collections.singletonList("/content/documents/site/news/other/other/myproject:title")).isEmpty());
+        assertEquals(Collections.singleton("newsPage"),
+                index.removeAffected(Collections.singletonList("/content/documents/site/news/other")));
+    }
+
+    @Test
+    public void removed_ancestor_affects_all_descendant_dependencies() {
+        final Set<String> affected = index.removeAffected(Collections.singletonList("/content/documents/site"));
+        assertEquals(2, affected.size());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void siblings_with_common_name_prefix_are_not_affected() {
+        assertTrue(index.removeAffected(Arrays.asList("/content/documents/site/aboutus",
+                "/content/documents/site/news/article-2/article-2/myproject:title")).isEmpty());
+    }
+
+    @Test
+    public void keys_without_dependencies_are_affected_by_any_change() {
+        index.register("untracked", new CacheDependencies());
+        assertEquals(Collections.singleton("untracked"),
+                index.removeAffected(Collections.singletonList("/content/gallery/image.png")));
+    }
+
+    @Test
+    public void reregistering_key_replaces_dependencies() {
+        final CacheDependencies moved = new CacheDependencies();
+        moved.addSubtree("/content/documents/site/contact");
+        index.register("aboutPage", moved);
+        assertTrue(index.removeAffected(Collections.singletonList("/content/documents/site/about")).isEmpty());
+        assertEquals(Collections.singleton("aboutPage"),
+                index.removeAffected(Collections.singletonList("/content/documents/site/contact/contact")));
+    }
+}
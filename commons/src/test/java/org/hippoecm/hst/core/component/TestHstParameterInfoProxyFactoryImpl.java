@@ -1,5 +1,5 @@
 /*
- *  Copyright 2012-2015 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2012-2017 Hippo B.V. (http://www.onehippo.com)
  *
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -34,6 +34,7 @@ import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -138,6 +139,25 @@ public class TestHstParameterInfoProxyFactoryImpl {
         assertEquals(params.get("name"), combinedInfo.getName());
     }
 
+    @Test
+    public void resolved_values_are_memoized_per_proxy() {
+        ComponentConfiguration config = createNiceMock(ComponentConfiguration.class);
+        expect(config.getParameter("queryOption", resolvedSiteMapItem)).andReturn("queryOptionValue").once();
+        expect(config.getParameter("cellWidth", resolvedSiteMapItem)).andReturn("400").once();
+        replay(mocks);
+        replay(config);
+
+        ParametersInfo parametersInfo = component.getClass().getAnnotation(ParametersInfo.class);
+        CombinedInfo combinedInfo = paramInfoProxyFactory.createParameterInfoProxy(parametersInfo, config, request, converter);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("queryOptionValue", combinedInfo.getQueryOption());
+            assertEquals(400, combinedInfo.getCellWidth());
+            assertEquals("", combinedInfo.getName());
+        }
+        verify(config);
+    }
+
     @Test
     public void component_rendering_request_parameters_have_precedence() {
 
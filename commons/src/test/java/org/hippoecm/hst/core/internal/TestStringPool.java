@@ -16,8 +16,18 @@
 
 package org.hippoecm.hst.core.internal;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -72,5 +82,44 @@ public class TestStringPool {
         assertTrue("GC should had kicked in to reduce memory of weak references.", evictionTookPlace);
     }
 
+    @Test
+    public void testNull() {
+        assertNull(StringPool.get(null));
+    }
+
+    @Test
+    public void testConcurrentThreadsGetSameInstance() throws Exception {
+        final int threadCount = 8;
+        final int stringCount = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<String[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                futures.add(executor.submit(new Callable<String[]>() {
+                    @Override
+                    public String[] call() throws Exception {
+                        start.await();
+                        final String[] pooled = new String[stringCount];
+                        for (int i = 0; i < stringCount; i++) {
+                            pooled[i] = StringPool.get(new String("concurrent-" + i));
+                        }
+                        return pooled;
+                    }
+                }));
+            }
+            start.countDown();
+            final String[] expected = futures.get(0).get();
+            for (Future<String[]> future : futures) {
+                final String[] pooled = future.get();
+                for (int i = 0; i < stringCount; i++) {
+                    assertEquals("concurrent-" + i, pooled[i]);
+                    assertSame(expected[i], pooled[i]);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
 }
@@ -0,0 +1,291 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.jcr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestCoalescingEventDispatcher {
+
+    private CoalescingEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new CoalescingEventDispatcher();
+        dispatcher.setEnabled(true);
+        dispatcher.setCoalescingWindowMillis(500L);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dispatcher.stop();
+    }
+
+    @Test
+    public void duplicate_events_are_delivered_once_in_one_batch() throws Exception {
+        dispatcher.start();
+        final RecordingEventListener listener = new RecordingEventListener(1);
+        final EventListener subscriber = dispatcher.subscribe(listener);
+
+        final EventIterator first = events(event(Event.PROPERTY_CHANGED, "/content/documents/a/title", null),
+                event(Event.PROPERTY_CHANGED, "/content/documents/b/title", null));
+        final EventIterator second = events(event(Event.PROPERTY_CHANGED, "/content/documents/a/title", null));
+        subscriber.onEvent(first);
+        subscriber.onEvent(second);
+
+        assertTrue(listener.await());
+        assertEquals(Arrays.asList("/content/documents/b/title", "/content/documents/a/title"), listener.paths());
+        assertEquals(3L, dispatcher.getReceivedEventCount());
+        assertEquals(2L, dispatcher.getDispatchedEventCount());
+        assertEquals(1L, dispatcher.getCoalescedEventCount());
+        assertEquals(1L, dispatcher.getBatchCount());
+        assertEquals(3, dispatcher.getMaxBatchSize());
+        assertTrue(dispatcher.getLastLagMillis() >= 0L);
+        assertEquals(0, dispatcher.getQueueSize());
+    }
+
+    @Test
+    public void events_below_added_nodes_are_left_out_for_coalescable_listeners_only() throws Exception {
+        dispatcher.start();
+        final RecordingEventListener listener = new RecordingEventListener(1);
+        final RecordingEventListener coalescableListener = new CoalescableRecordingEventListener(1);
+        final EventListener subscriber = dispatcher.subscribe(listener);
+        final EventListener coalescableSubscriber = dispatcher.subscribe(coalescableListener);
+
+        final EventIterator events = importEvents();
+        final EventIterator coalescableEvents = importEvents();
+        subscriber.onEvent(events);
+        coalescableSubscriber.onEvent(coalescableEvents);
+
+        assertTrue(listener.await());
+        assertTrue(coalescableListener.await());
+        assertEquals(Arrays.asList("/content/documents/news", "/content/documents/news/article",
+                "/content/documents/news/article/title", "/content/documents/newsletter/title",
+                "/content/documents/other"), listener.paths());
+        assertEquals(Arrays.asList("/content/documents/news", "/content/documents/newsletter/title",
+                "/content/documents/other"), coalescableListener.paths());
+    }
+
+    @Test
+    public void events_with_other_user_data_are_not_left_out() throws Exception {
+        final List<CoalescingEventDispatcher.QueuedEvent> events = new ArrayList<>();
+        final EventListener subscriber = dispatcher.subscribe(new CoalescableRecordingEventListener(1));
+        for (Event event : Arrays.asList(
+                event(Event.NODE_ADDED, "/content/documents/news", "hippo:ignorable"),
+                event(Event.PROPERTY_ADDED, "/content/documents/news/title", null),
+                event(Event.PROPERTY_ADDED, "/content/documents/news/date", "hippo:ignorable"))) {
+            events.add(queuedEvent(subscriber, event));
+        }
+
+        final List<CoalescingEventDispatcher.QueuedEvent> coalesced = CoalescingEventDispatcher.coalesce(events, true);
+        assertEquals(2, coalesced.size());
+        assertEquals("/content/documents/news/title", coalesced.get(1).getPath());
+    }
+
+    @Test
+    public void last_of_duplicate_events_is_kept() throws Exception {
+        final List<CoalescingEventDispatcher.QueuedEvent> events = new ArrayList<>();
+        final EventListener subscriber = dispatcher.subscribe(new RecordingEventListener(1));
+        for (Event event : Arrays.asList(
+                event(Event.NODE_ADDED, "/content/documents/news", null),
+                event(Event.NODE_REMOVED, "/content/documents/news", null),
+                event(Event.NODE_ADDED, "/content/documents/news", null))) {
+            events.add(queuedEvent(subscriber, event));
+        }
+
+        final List<CoalescingEventDispatcher.QueuedEvent> coalesced = CoalescingEventDispatcher.coalesce(events, false);
+        assertEquals(2, coalesced.size());
+        assertEquals(Event.NODE_REMOVED, coalesced.get(0).getType());
+        assertEquals(Event.NODE_ADDED, coalesced.get(1).getType());
+    }
+
+    @Test
+    public void dispatching_continues_after_a_listener_throws_an_error() throws Exception {
+        dispatcher.setCoalescingWindowMillis(0L);
+        dispatcher.start();
+        final EventListener failingSubscriber = dispatcher.subscribe(events -> {
+            throw new AssertionError("failing listener");
+        });
+        final RecordingEventListener listener = new RecordingEventListener(1);
+        final EventListener subscriber = dispatcher.subscribe(listener);
+
+        failingSubscriber.onEvent(events(event(Event.NODE_ADDED, "/content/documents/a", null)));
+        subscriber.onEvent(events(event(Event.NODE_ADDED, "/content/documents/b", null)));
+
+        assertTrue(listener.await());
+        assertEquals(Collections.singletonList("/content/documents/b"), listener.paths());
+    }
+
+    @Test
+    public void events_are_delivered_synchronously_when_not_started() throws Exception {
+        final RecordingEventListener listener = new RecordingEventListener(1);
+        dispatcher.subscribe(listener).onEvent(events(event(Event.NODE_REMOVED, "/content/documents/a", null)));
+
+        assertEquals(0L, listener.latch.getCount());
+        assertEquals(Collections.singletonList("/content/documents/a"), listener.paths());
+        assertEquals(0L, dispatcher.getReceivedEventCount());
+    }
+
+    @Test
+    public void subscribers_of_the_same_listener_are_equal() throws Exception {
+        final RecordingEventListener listener = new RecordingEventListener(1);
+        assertEquals(dispatcher.subscribe(listener), dispatcher.subscribe(listener));
+        assertEquals(dispatcher.subscribe(listener).hashCode(), dispatcher.subscribe(listener).hashCode());
+        assertNotEquals(dispatcher.subscribe(listener), dispatcher.subscribe(new RecordingEventListener(1)));
+    }
+
+    @Test
+    public void failing_getters_are_rethrown_by_the_queued_events() throws Exception {
+        final Event event = createNiceMock(Event.class);
+        expect(event.getType()).andReturn(Event.NODE_MOVED).anyTimes();
+        expect(event.getPath()).andThrow(new RepositoryException("gone")).anyTimes();
+        replay(event);
+
+        final CoalescingEventDispatcher.QueuedEvent queuedEvent =
+                queuedEvent(dispatcher.subscribe(new RecordingEventListener(1)), event);
+        try {
+            queuedEvent.getPath();
+            fail("Expected the RepositoryException of the original event");
+        } catch (RepositoryException e) {
+            assertEquals("gone", e.getMessage());
+        }
+        // without a path, events are never coalesced
+        assertEquals(2, CoalescingEventDispatcher.coalesce(Arrays.asList(queuedEvent, queuedEvent), true).size());
+    }
+
+    private static EventIterator importEvents() throws RepositoryException {
+        return events(event(Event.NODE_ADDED, "/content/documents/news", null),
+                event(Event.NODE_ADDED, "/content/documents/news/article", null),
+                event(Event.PROPERTY_ADDED, "/content/documents/news/article/title", null),
+                event(Event.PROPERTY_CHANGED, "/content/documents/newsletter/title", null),
+                event(Event.NODE_REMOVED, "/content/documents/other", null));
+    }
+
+    private static Event event(final int type, final String path, final String userData) throws RepositoryException {
+        final Event event = createNiceMock(Event.class);
+        expect(event.getType()).andReturn(type).anyTimes();
+        expect(event.getPath()).andReturn(path).anyTimes();
+        expect(event.getUserData()).andReturn(userData).anyTimes();
+        replay(event);
+        return event;
+    }
+
+    private static CoalescingEventDispatcher.QueuedEvent queuedEvent(final EventListener subscriber, final Event event) {
+        return new CoalescingEventDispatcher.QueuedEvent((CoalescingEventDispatcher.Subscriber) subscriber, event);
+    }
+
+    private static EventIterator events(final Event... events) {
+        return new ListEventIterator(Arrays.asList(events));
+    }
+
+    private static class RecordingEventListener implements EventListener {
+
+        private final List<String> paths = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch latch;
+
+        private RecordingEventListener(final int expectedBatches) {
+            latch = new CountDownLatch(expectedBatches);
+        }
+
+        @Override
+        public void onEvent(final EventIterator events) {
+            try {
+                while (events.hasNext()) {
+                    paths.add(events.nextEvent().getPath());
+                }
+            } catch (RepositoryException e) {
+                throw new IllegalStateException(e);
+            }
+            latch.countDown();
+        }
+
+        private boolean await() throws InterruptedException {
+            return latch.await(10, TimeUnit.SECONDS);
+        }
+
+        private List<String> paths() {
+            return new ArrayList<>(paths);
+        }
+    }
+
+    private static class CoalescableRecordingEventListener extends RecordingEventListener implements CoalescableEventListener {
+
+        private CoalescableRecordingEventListener(final int expectedBatches) {
+            super(expectedBatches);
+        }
+    }
+
+    private static class ListEventIterator implements EventIterator {
+
+        private final List<Event> events;
+        private int position;
+
+        private ListEventIterator(final List<Event> events) {
+            this.events = events;
+        }
+
+        @Override
+        public Event nextEvent() {
+            return events.get(position++);
+        }
+
+        @Override
+        public void skip(final long skipNum) {
+            position += skipNum;
+        }
+
+        @Override
+        public long getSize() {
+            return events.size();
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < events.size();
+        }
+
+        @Override
+        public Object next() {
+            return nextEvent();
+        }
+    }
+}
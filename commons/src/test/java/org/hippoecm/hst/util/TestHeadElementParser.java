@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.util;
+
+import org.hippoecm.hst.core.component.HeadElement;
+import org.hippoecm.hst.core.component.HeadElementImpl;
+import org.hippoecm.hst.core.component.ImmutableHeadElement;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TestHeadElementParser {
+
+    private static final String[] SUPPORTED_MARKUP = {
+            "<title>Hello World! Homepage</title>",
+            "<script type=\"text/javascript\" src=\"/site/js/jquery.js\"></script>",
+            "<link rel='stylesheet' href=\"/site/css/style.css?a=1&amp;b=2\" />",
+            "<?xml version=\"1.0\"?>\n<meta name=\"description\" content=\"line\nbreak&#10;ref\"/>",
+            "<script>\n//<![CDATA[\nif (a < b && b > c) { alert('&'); }\n//]]>\n</script>",
+            "<style>body &gt; p { color: red }</style>",
+            "<!-- leading comment --><script><!-- inner comment -->var x = 1;</script>",
+            "<noscript>\n  <img src=\"/pixel.gif\" alt=\"&#x263A;\"/>\n  <p class=\"x\">text</p>\n</noscript>",
+            "<script src=\"a.js\"\r\n        type=\"text/javascript\"></script >"
+    };
+
+    @Test
+    public void parsed_head_elements_equal_those_of_a_full_xml_parser() throws Exception {
+        for (String markup : SUPPORTED_MARKUP) {
+            final ImmutableHeadElement parsed = HeadElementParser.parse(markup);
+            assertNotNull(markup, parsed);
+            final HeadElement expected = new HeadElementImpl(DocumentBuilderUtils.parse(markup).getDocumentElement());
+
+            assertEquals(markup, expected.getTagName(), parsed.getTagName());
+            assertEquals(markup, expected.getAttributeMap(), parsed.getAttributeMap());
+            assertEquals(markup, emptyToNull(expected.getTextContent()), parsed.getTextContent());
+            assertEquals(markup, expected.getChildHeadElements().size(), parsed.getChildHeadElements().size());
+
+            final HeadElement fromElement = new HeadElementImpl(parsed.toElement(DocumentBuilderUtils.newDocument()));
+            assertEquals(markup, HeadElementUtils.toHtmlString(expected), HeadElementUtils.toHtmlString(fromElement));
+        }
+    }
+
+    @Test
+    public void unsupported_or_malformed_markup_is_left_to_a_full_xml_parser() throws Exception {
+        final String[] unsupportedMarkup = {
+                "",
+                "just text",
+                "<!DOCTYPE html><title>x</title>",
+                "<title>&nbsp;</title>",
+                "<title>a & b</title>",
+                "<title>unclosed",
+                "<title>x</titel>",
+                "<meta name=\"a\" name=\"b\"/>",
+                "<meta name=\"a<b\"/>",
+                "<meta name=a/>",
+                "<p>mixed <b>content</b></p>",
+                "<title>a</title><title>b</title>",
+                "<title><?pi x?></title>"
+        };
+        for (String markup : unsupportedMarkup) {
+            assertNull(markup, HeadElementParser.parse(markup));
+        }
+    }
+
+    @Test
+    public void parsed_head_elements_are_serialized() throws Exception {
+        final ImmutableHeadElement parsed = HeadElementParser.parse("<script type=\"text/javascript\">var x = 1;</script>");
+
+        assertEquals("<script type=\"text/javascript\">var x = 1;</script>", HeadElementUtils.toHtmlString(parsed));
+        assertEquals("<script type=\"text/javascript\"><![CDATA[var x = 1;]]></script>",
+                HeadElementUtils.toXhtmlString(parsed));
+    }
+
+    @Test
+    public void converted_elements_can_be_modified() throws Exception {
+        final ImmutableHeadElement parsed = HeadElementParser.parse("<script src=\"a.js\"></script>");
+        final Element element = parsed.toElement(DocumentBuilderUtils.newDocument());
+        element.setAttribute("category", "scripts");
+
+        assertEquals("scripts", element.getAttribute("category"));
+        assertNull(parsed.getAttribute("category"));
+        assertEquals("<script src=\"a.js\"></script>", HeadElementUtils.toHtmlString(parsed));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable_head_elements_cannot_be_modified() throws Exception {
+        HeadElementParser.parse("<script src=\"a.js\"></script>").setAttribute("type", "text/javascript");
+    }
+
+    private static String emptyToNull(final String text) {
+        return text == null || text.isEmpty() ? null : text;
+    }
+}
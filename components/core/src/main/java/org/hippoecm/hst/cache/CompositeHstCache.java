@@ -15,7 +15,9 @@
  */
 package org.hippoecm.hst.cache;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
 import org.apache.commons.collections.map.LRUMap;
@@ -29,6 +31,7 @@ import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.config.InvalidConfigurationException;
 import net.sf.ehcache.config.PersistenceConfiguration;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
 
 public class CompositeHstCache implements HstCache {
 
@@ -50,6 +53,14 @@ public class CompositeHstCache implements HstCache {
 
     private volatile int invalidationCounter;
 
+    private boolean dependencyTrackingEnabled;
+
+    /**
+     * Reverse index from the repository paths to the keys of the cached pages depending on them. Only used when
+     * {@link #dependencyTrackingEnabled} is <code>true</code>
+     */
+    final CacheDependencyIndex<Object> dependencyIndex = new CacheDependencyIndex<>();
+
     CacheStats cacheStats = new CacheStats();
 
     public CompositeHstCache(final Ehcache ehcache) {
@@ -71,6 +82,24 @@ public class CompositeHstCache implements HstCache {
         cacheStats.setFirstLevelCache(ehcache);
     }
 
+    /**
+     * When <code>true</code>, the repository paths every cached {@link CacheDependent} value, like an
+     * {@link HstPageInfo} or {@link HstComponentFragment}, depends on are tracked and {@link #invalidate(Collection)} only evicts the affected entries instead of flushing
+     * the entire cache
+     */
+    public void setDependencyTrackingEnabled(final boolean dependencyTrackingEnabled) {
+        if (dependencyTrackingEnabled && !this.dependencyTrackingEnabled) {
+            // keep the dependency index in sync with elements that get evicted, expired or removed by ehcache itself
+            ehcache.getCacheEventNotificationService().registerListener(new DependencyIndexCleanupListener());
+        }
+        this.dependencyTrackingEnabled = dependencyTrackingEnabled;
+    }
+
+    @Override
+    public boolean isDependencyTrackingEnabled() {
+        return dependencyTrackingEnabled;
+    }
+
     @SuppressWarnings("unused")
     public void setStaleCache(final Cache staleCache) {
         this.staleCache = staleCache;
@@ -166,13 +195,13 @@ public class CompositeHstCache implements HstCache {
                                 " recreating the element to be cached which will later on replace the stale item in primary cache" +
                                 " and stale page cache.");
                         cacheStats.incrementFirstLevelCacheHits();
-                        ehcache.put(elementBasedOnKeyInstance);
+                        putInPrimaryCache(key, elementBasedOnKeyInstance);
                     }
                     return null;
                 }
                 elementBasedOnKeyInstance.setTimeToLive((int)newTTL);
                 cacheStats.incrementFirstLevelCachePuts();
-                ehcache.put(elementBasedOnKeyInstance);
+                putInPrimaryCache(key, elementBasedOnKeyInstance);
                 return new CacheElementEhCacheImpl(elementBasedOnKeyInstance);
             }
         }
@@ -191,7 +220,7 @@ public class CompositeHstCache implements HstCache {
                 // use key instance to clear the lock on the key instance
                 final Element elementBasedOnKeyInstance = new Element(key, staleElement.getObjectValue(), 1, staleElement.getCreationTime(), 0, 0, 0);
                 cacheStats.incrementFirstLevelCachePuts();
-                ehcache.put(elementBasedOnKeyInstance);
+                putInPrimaryCache(key, elementBasedOnKeyInstance);
                 return null;
             }
         }
@@ -264,7 +293,7 @@ public class CompositeHstCache implements HstCache {
         }
         CacheElementEhCacheImpl cacheElem = (CacheElementEhCacheImpl)element;
         cacheStats.incrementFirstLevelCachePuts();
-        ehcache.put(cacheElem.getElement());
+        putInPrimaryCache(cacheElem.getKey(), cacheElem.getElement());
         if (secondLevelCache != null) {
             try {
                 // clone the element to cache first because the second level cache might change the TTL of the
@@ -300,6 +329,54 @@ public class CompositeHstCache implements HstCache {
     public void clear() {
         invalidationCounter++;
         ehcache.removeAll();
+        dependencyIndex.clear();
+        cacheStats.incrementFullInvalidations();
+    }
+
+    /**
+     * When dependency tracking is enabled, only the cached pages that depend on any of the <code>changedPaths</code>
+     * are removed. Otherwise, the entire cache is cleared.
+     */
+    @Override
+    public void invalidate(final Collection<String> changedPaths) {
+        if (!dependencyTrackingEnabled) {
+            clear();
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        // pages that are being created right now cannot be known to be unaffected : they won't be cached
+        invalidationCounter++;
+        final Set<Object> affectedKeys = dependencyIndex.removeAffected(changedPaths);
+        for (Object key : affectedKeys) {
+            ehcache.remove(key);
+        }
+        final long duration = System.currentTimeMillis() - start;
+        cacheStats.registerSelectiveInvalidation(affectedKeys.size(), duration);
+        log.info("Invalidated '{}' cached pages for '{}' changed paths in '{}' ms.", affectedKeys.size(),
+                changedPaths.size(), duration);
+    }
+
+    /**
+     * Registers the dependencies of <code>element</code> before putting it in the primary cache, such that an
+     * invalidation from then on finds the element. An invalidation that runs while doing so might have unregistered
+     * the dependencies already, in which case the element is removed again.
+     */
+    private void putInPrimaryCache(final Object key, final Element element) {
+        final int preRegistrationInvalidationCounter = invalidationCounter;
+        registerDependencies(key, element.getObjectValue());
+        ehcache.put(element);
+        if (dependencyTrackingEnabled && preRegistrationInvalidationCounter != invalidationCounter) {
+            ehcache.remove(key);
+        }
+    }
+
+    private void registerDependencies(final Object key, final Object content) {
+        if (!dependencyTrackingEnabled) {
+            return;
+        }
+        final CacheDependencies dependencies =
+                content instanceof CacheDependent ? ((CacheDependent) content).getCacheDependencies() : null;
+        dependencyIndex.register(key, dependencies);
     }
 
     public int getSize() {
@@ -310,4 +387,27 @@ public class CompositeHstCache implements HstCache {
         return new Long(ehcache.getCacheConfiguration().getMaxEntriesLocalHeap()).intValue()
                 + (int)ehcache.getCacheConfiguration().getMaxEntriesLocalDisk();
     }
+
+    private class DependencyIndexCleanupListener extends CacheEventListenerAdapter {
+
+        @Override
+        public void notifyElementRemoved(final Ehcache cache, final Element element) {
+            dependencyIndex.unregister(element.getObjectKey());
+        }
+
+        @Override
+        public void notifyElementExpired(final Ehcache cache, final Element element) {
+            dependencyIndex.unregister(element.getObjectKey());
+        }
+
+        @Override
+        public void notifyElementEvicted(final Ehcache cache, final Element element) {
+            dependencyIndex.unregister(element.getObjectKey());
+        }
+
+        @Override
+        public void notifyRemoveAll(final Ehcache cache) {
+            dependencyIndex.clear();
+        }
+    }
 }
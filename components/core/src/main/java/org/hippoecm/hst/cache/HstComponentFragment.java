@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hippoecm.hst.core.component.HstResponse;
+import org.w3c.dom.Element;
+
+/**
+ * <p>
+ *     The cacheable rendering result of a fragment cacheable component window, including the output of its
+ *     descendant windows : the rendered body as flushed to the parent window and the head elements contributed by the
+ *     window and its descendants.
+ * </p>
+ * <p>
+ *     While the fragment is captured, it is only accessed by the request rendering the fragment. Once it is put in
+ *     the fragment cache it is not modified anymore and can be replayed by multiple requests concurrently.
+ * </p>
+ */
+public class HstComponentFragment implements Serializable, CacheDependent {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String CAPTURE_ATTRIBUTE_NAME = HstComponentFragment.class.getName() + ".capture";
+
+    private final Object key;
+    private final CacheDependencies cacheDependencies = new CacheDependencies();
+    private final List<HeadContribution> headContributions = new ArrayList<>();
+    private String body;
+    private boolean uncacheable;
+
+    public HstComponentFragment(final Object key) {
+        this.key = key;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    @Override
+    public CacheDependencies getCacheDependencies() {
+        return cacheDependencies;
+    }
+
+    /**
+     * Records a head element contributed by the captured window or one of its descendants. A private clone of the
+     * element is kept since the contributed element instance belongs to the current request.
+     */
+    public synchronized void addHeadElement(final Element element, final String keyHint) {
+        if (element == null) {
+            return;
+        }
+        headContributions.add(new HeadContribution((Element) element.cloneNode(true), keyHint));
+    }
+
+    /**
+     * Sets the body as flushed to the parent window. Only the first flushed body is kept.
+     */
+    public synchronized void setBody(final String body) {
+        if (this.body == null) {
+            this.body = body;
+        }
+    }
+
+    public synchronized String getBody() {
+        return body;
+    }
+
+    public synchronized void markUncacheable() {
+        uncacheable = true;
+    }
+
+    /**
+     * @return {@code true} when the body got captured and nothing happened during rendering that prevents caching
+     */
+    public synchronized boolean isCacheable() {
+        return !uncacheable && body != null;
+    }
+
+    /**
+     * Adds clones of the cached head elements to <code>response</code>
+     */
+    public synchronized void replayHeadElements(final HstResponse response) {
+        for (HeadContribution headContribution : headContributions) {
+            response.addHeadElement((Element) headContribution.element.cloneNode(true), headContribution.keyHint);
+        }
+    }
+
+    private static class HeadContribution implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Element element;
+        private final String keyHint;
+
+        private HeadContribution(final Element element, final String keyHint) {
+            this.element = element;
+            this.keyHint = keyHint;
+        }
+    }
+}
@@ -41,7 +41,7 @@ import net.sf.ehcache.constructs.web.PageInfo;
  * Default HST implementation of PageInfo extending {@link net.sf.ehcache.constructs.web.PageInfo},
  * a Serializable representation of a {@link HttpServletResponse}.
  */
-public class HstPageInfo extends PageInfo {
+public class HstPageInfo extends PageInfo implements CacheDependent {
 
     private static final Logger log = LoggerFactory.getLogger(HstPageInfo.class);
 
@@ -49,6 +49,7 @@ public class HstPageInfo extends PageInfo {
 
     private String characterEncoding;
     private Boolean isNoCachePresentOrExpiresImmediately;
+    private CacheDependencies cacheDependencies;
 
     public HstPageInfo() {
         super(HttpServletResponse.SC_OK, null, null, null, false, 0, null);
@@ -77,6 +78,19 @@ public class HstPageInfo extends PageInfo {
         this.characterEncoding = characterEncoding;
     }
 
+    /**
+     * @return the repository paths this page depends on, or <code>null</code> when dependencies were not tracked while
+     * creating this page
+     */
+    @Override
+    public CacheDependencies getCacheDependencies() {
+        return cacheDependencies;
+    }
+
+    public void setCacheDependencies(final CacheDependencies cacheDependencies) {
+        this.cacheDependencies = cacheDependencies;
+    }
+
     /**
      * Returns true 
      * @return
@@ -15,7 +15,11 @@
  */
 package org.hippoecm.hst.cache;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
 import javax.jcr.observation.EventIterator;
 
 import org.hippoecm.hst.core.jcr.EventListenersContainerListener;
@@ -29,25 +33,65 @@ public class PageCacheEventListener extends GenericEventListener implements Even
 
     private HstCache pageCache;
 
+    private HstCache fragmentCache;
+
+    private HstCache rewrittenContentCache;
+
     public void setPageCache(CompositeHstCache pageCache) {
         this.pageCache = pageCache;
     }
 
+    /**
+     * The optional cache of component fragments which is invalidated for the same events as the page cache
+     */
+    public void setFragmentCache(CompositeHstCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * The optional cache of rewritten rich text which is invalidated for the same events as the page cache
+     */
+    public void setRewrittenContentCache(CompositeHstCache rewrittenContentCache) {
+        this.rewrittenContentCache = rewrittenContentCache;
+    }
+
     @Override
     public void onEvent(EventIterator events) {
-        // we cannot do better than flush entire cache on content changes.
+        final Set<String> changedPaths = new HashSet<>();
         while (events.hasNext()) {
             try {
-                if (eventIgnorable(events.nextEvent())) {
+                final Event event = events.nextEvent();
+                if (eventIgnorable(event)) {
                     continue;
                 }
-                pageCache.clear();
-                return;
-
+                changedPaths.add(event.getPath());
             } catch (RepositoryException e) {
-               log.error("Error processing event");
+                log.warn("Error processing event, clearing entire page cache : {}", e.toString());
+                clearCaches();
+                return;
             }
         }
+        if (changedPaths.isEmpty()) {
+            return;
+        }
+        // without dependency tracking a cache cannot do better than flush entirely on content changes.
+        pageCache.invalidate(changedPaths);
+        if (fragmentCache != null) {
+            fragmentCache.invalidate(changedPaths);
+        }
+        if (rewrittenContentCache != null) {
+            rewrittenContentCache.invalidate(changedPaths);
+        }
+    }
+
+    private void clearCaches() {
+        pageCache.clear();
+        if (fragmentCache != null) {
+            fragmentCache.clear();
+        }
+        if (rewrittenContentCache != null) {
+            rewrittenContentCache.clear();
+        }
     }
 
     @Override
@@ -57,7 +101,7 @@ public class PageCacheEventListener extends GenericEventListener implements Even
 
     @Override
     public void onEventListenersContainerRefreshed() {
-        pageCache.clear();
+        clearCaches();
     }
     @Override
     public void onEventListenersContainerStopped() {
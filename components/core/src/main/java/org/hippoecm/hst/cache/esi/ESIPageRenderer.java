@@ -17,13 +17,23 @@ package org.hippoecm.hst.cache.esi;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
@@ -36,6 +46,7 @@ import org.apache.james.mime4j.util.MimeUtil;
 import org.hippoecm.hst.configuration.hosting.MatchException;
 import org.hippoecm.hst.configuration.model.HstManager;
 import org.hippoecm.hst.container.HstContainerConfigImpl;
+import org.hippoecm.hst.container.RequestContextPropagator;
 import org.hippoecm.hst.container.RequestContextProvider;
 import org.hippoecm.hst.core.container.ComponentManager;
 import org.hippoecm.hst.core.container.ComponentManagerAware;
@@ -65,6 +76,12 @@ public class ESIPageRenderer implements ComponentManagerAware {
     private ComponentManager componentManager;
     private String esiIncludePipelineName;
     private HstContainerConfig requestContainerConfig;
+    private boolean remoteIncludeEnabled;
+    private ExecutorService remoteIncludeExecutor;
+    private ESIRemoteFragmentCache remoteFragmentCache;
+    private int remoteIncludeConnectTimeout = 2000;
+    private int remoteIncludeReadTimeout = 5000;
+    private long remoteIncludeTimeout = 5000L;
 
     public ESIPageRenderer() {
     }
@@ -82,6 +99,42 @@ public class ESIPageRenderer implements ComponentManagerAware {
         this.esiIncludePipelineName = esiIncludePipelineName;
     }
 
+    /**
+     * When <code>true</code>, include tags with a src URL that is not served by this container are fetched over HTTP.
+     * Otherwise they are ignored.
+     */
+    public void setRemoteIncludeEnabled(boolean remoteIncludeEnabled) {
+        this.remoteIncludeEnabled = remoteIncludeEnabled;
+    }
+
+    /**
+     * Sets the executor on which the remote includes of a page are fetched concurrently with each other and with the
+     * local includes. When not set, remote includes are fetched sequentially by the request processing thread.
+     */
+    public void setRemoteIncludeExecutor(ExecutorService remoteIncludeExecutor) {
+        this.remoteIncludeExecutor = remoteIncludeExecutor;
+    }
+
+    public void setRemoteFragmentCache(ESIRemoteFragmentCache remoteFragmentCache) {
+        this.remoteFragmentCache = remoteFragmentCache;
+    }
+
+    public void setRemoteIncludeConnectTimeout(int remoteIncludeConnectTimeout) {
+        this.remoteIncludeConnectTimeout = remoteIncludeConnectTimeout;
+    }
+
+    public void setRemoteIncludeReadTimeout(int remoteIncludeReadTimeout) {
+        this.remoteIncludeReadTimeout = remoteIncludeReadTimeout;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds the rendering of a page waits for its concurrently fetched remote includes,
+     * after which the alt text of the pending includes is rendered instead.
+     */
+    public void setRemoteIncludeTimeout(long remoteIncludeTimeout) {
+        this.remoteIncludeTimeout = remoteIncludeTimeout;
+    }
+
     public void render(Writer writer, HttpServletRequest request, ESIHstPageInfo pageInfo) {
         HstRequestContext requestContext = RequestContextProvider.get();
 
@@ -155,70 +208,134 @@ public class ESIPageRenderer implements ComponentManagerAware {
     }
 
     private void fetchESIIncludeElementContents(List<ESIFragmentInfo> fragmentInfos, PropertyParser propertyParser, Map<ESIElementFragment, String> esiIncludeElementContents) {
+        List<ResolvedInclude> remoteIncludes = new ArrayList<ResolvedInclude>();
+
+        for (ESIElementFragment elementFragment : collectIncludeElementFragments(fragmentInfos)) {
+            String onerror = elementFragment.getElement().getAttribute("onerror");
+
+            if (StringUtils.isNotEmpty(onerror) && !StringUtils.equals("continue", onerror)) {
+                log.warn("The onerror attribute of <esi:include/> currently support only 'continue'. Other values ('{}') are NOT YET SUPPORTED.", onerror);
+            }
+
+            ResolvedInclude include = resolveInclude(elementFragment, propertyParser);
+
+            if (include == null) {
+                continue;
+            }
+
+            // local includes are processed by the request processing thread since they share the request context,
+            // remote includes are fetched concurrently meanwhile if possible
+            if (include.isRemote() && remoteIncludeEnabled && remoteIncludeExecutor != null) {
+                include.remoteContent = submitRemoteInclude(include);
+
+                if (include.remoteContent != null) {
+                    remoteIncludes.add(include);
+                    continue;
+                }
+            }
+
+            putIncludeContent(esiIncludeElementContents, include, fetchIncludeContent(include));
+        }
+
+        if (remoteIncludes.isEmpty()) {
+            return;
+        }
+
+        long deadline = System.currentTimeMillis() + remoteIncludeTimeout;
+
+        for (ResolvedInclude include : remoteIncludes) {
+            String content = null;
+
+            try {
+                content = include.remoteContent.get(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                include.remoteContent.cancel(true);
+                log.warn("Timeout after {} ms while fetching ESI include element for the source, '{}'.", remoteIncludeTimeout, include.uri);
+                content = include.alt;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                include.remoteContent.cancel(true);
+                content = include.alt;
+            } catch (ExecutionException e) {
+                if (log.isDebugEnabled()) {
+                    log.warn("Failed to fetch ESI include element for the source, '" + include.uri + "'.", e.getCause());
+                } else {
+                    log.warn("Failed to fetch ESI include element for the source, '{}'. {}", include.uri, e.getCause());
+                }
+            }
+
+            putIncludeContent(esiIncludeElementContents, include, content);
+        }
+    }
+
+    /**
+     * @return the include element fragments of <code>fragmentInfos</code>, including the ones embedded in comment
+     * blocks, in document order
+     */
+    private static List<ESIElementFragment> collectIncludeElementFragments(List<ESIFragmentInfo> fragmentInfos) {
+        List<ESIElementFragment> includeElementFragments = new ArrayList<ESIElementFragment>();
+
         for (ESIFragmentInfo fragmentInfo : fragmentInfos) {
             ESIFragment fragment = fragmentInfo.getFragment();
             ESIFragmentType type = fragment.getType();
 
             if (type == ESIFragmentType.COMMENT_BLOCK) {
                 if (((ESICommentFragmentInfo) fragmentInfo).hasAnyFragmentInfo()) {
-                    List<ESIFragmentInfo> embeddedFragmentInfos = ((ESICommentFragmentInfo) fragmentInfo).getFragmentInfos();
-
-                    for (ESIFragmentInfo embeddedFragmentInfo : embeddedFragmentInfos) {
-                        ESIFragment embeddedFragment = embeddedFragmentInfo.getFragment();
-                        ESIFragmentType embeddedFragmentType = embeddedFragment.getType();
-
-                        if (embeddedFragmentType == ESIFragmentType.INCLUDE_TAG) {
-                            ESIElementFragment embeddedElementFragment = (ESIElementFragment) embeddedFragment;
-                            String onerror = embeddedElementFragment.getElement().getAttribute("onerror");
-
-                            if (StringUtils.isNotEmpty(onerror) && !StringUtils.equals("continue", onerror)) {
-                                log.warn("The onerror attribute of <esi:include/> currently support only 'continue'. Other values ('{}') are NOT YET SUPPORTED.", onerror);
-                            }
-
-                            StringWriter writer = null;
-
-                            try {
-                                writer = new StringWriter(512);
-                                writeIncludeElementFragment(writer, embeddedElementFragment, propertyParser);
-
-                                if (writer.getBuffer().length() > 0) {
-                                    esiIncludeElementContents.put(embeddedElementFragment, writer.toString());
-                                }
-                            } catch (IOException e) {
-                                if (!StringUtils.equals("continue", onerror)) {
-                                    //
-                                }
-                            } finally {
-                                IOUtils.closeQuietly(writer);
-                            }
+                    for (ESIFragmentInfo embeddedFragmentInfo : ((ESICommentFragmentInfo) fragmentInfo).getFragmentInfos()) {
+                        if (embeddedFragmentInfo.getFragment().getType() == ESIFragmentType.INCLUDE_TAG) {
+                            includeElementFragments.add((ESIElementFragment) embeddedFragmentInfo.getFragment());
                         }
                     }
                 }
             } else if (type == ESIFragmentType.INCLUDE_TAG) {
-                ESIElementFragment elementFragment = (ESIElementFragment) fragment;
-                String onerror = elementFragment.getElement().getAttribute("onerror");
+                includeElementFragments.add((ESIElementFragment) fragment);
+            }
+        }
+
+        return includeElementFragments;
+    }
+
+    private Future<String> submitRemoteInclude(final ResolvedInclude include) {
+        final HstRequestContext requestContext = RequestContextProvider.get();
 
-                if (StringUtils.isNotEmpty(onerror) && !StringUtils.equals("continue", onerror)) {
-                    log.warn("The onerror attribute of <esi:include/> currently support only 'continue'. Other values ('{}') are NOT YET SUPPORTED.", onerror);
+        try {
+            return remoteIncludeExecutor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return RequestContextPropagator.call(requestContext, new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            return fetchIncludeContent(include);
+                        }
+                    });
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Remote ESI include executor is busy, fetching '{}' on the request processing thread.", include.uri);
+            return null;
+        }
+    }
 
-                StringWriter writer = null;
+    /**
+     * @return the content of <code>include</code> or <code>null</code> if it could not be included
+     */
+    private String fetchIncludeContent(ResolvedInclude include) {
+        StringWriter writer = null;
 
-                try {
-                    writer = new StringWriter(512);
-                    writeIncludeElementFragment(writer, elementFragment, propertyParser);
+        try {
+            writer = new StringWriter(512);
+            writeInclude(writer, include);
+            return writer.toString();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+    }
 
-                    if (writer.getBuffer().length() > 0) {
-                        esiIncludeElementContents.put(elementFragment, writer.toString());
-                    }
-                } catch (IOException e) {
-                    if (!StringUtils.equals("continue", onerror)) {
-                        //
-                    }
-                } finally {
-                    IOUtils.closeQuietly(writer);
-                }
-            }
+    private static void putIncludeContent(Map<ESIElementFragment, String> esiIncludeElementContents, ResolvedInclude include, String content) {
+        if (StringUtils.isNotEmpty(content)) {
+            esiIncludeElementContents.put(include.fragment, content);
         }
     }
 
@@ -231,6 +348,19 @@ public class ESIPageRenderer implements ComponentManagerAware {
     }
 
     protected void writeIncludeElementFragment(Writer writer, ESIElementFragment fragment, PropertyParser propertyParser) throws IOException {
+        ResolvedInclude include = resolveInclude(fragment, propertyParser);
+
+        if (include != null) {
+            writeInclude(writer, include);
+        }
+    }
+
+    /**
+     * Resolves the src and alt attributes of the include element <code>fragment</code> and whether its src is served
+     * by this container. Must be invoked by the request processing thread.
+     * @return the resolved include or <code>null</code> if the src attribute is not a valid URI
+     */
+    private ResolvedInclude resolveInclude(ESIElementFragment fragment, PropertyParser propertyParser) {
         String src = fragment.getElement().getAttribute("src");
         String alt = fragment.getElement().getAttribute("alt");
 
@@ -248,7 +378,7 @@ public class ESIPageRenderer implements ComponentManagerAware {
             uri = URI.create(src);
         } catch (Exception e) {
             log.warn("Invalid ESI include url: '{}'.", src);
-            return;
+            return null;
         }
 
         HstContainerURL localContainerURL = null;
@@ -279,9 +409,16 @@ public class ESIPageRenderer implements ComponentManagerAware {
             }
         }
 
+        return new ResolvedInclude(fragment, uri, alt, localContainerURL);
+    }
+
+    private void writeInclude(Writer writer, ResolvedInclude include) throws IOException {
+        URI uri = include.uri;
+        String alt = include.alt;
+
         try {
-            if (localContainerURL != null) {
-                includeLocalURL(writer, uri, localContainerURL);
+            if (!include.isRemote()) {
+                includeLocalURL(writer, uri, include.localContainerURL);
             } else {
                 includeRemoteURL(writer, uri);
             }
@@ -419,7 +556,68 @@ public class ESIPageRenderer implements ComponentManagerAware {
     }
 
     protected void includeRemoteURL(Writer writer, URI uri) throws IOException {
-        log.warn("Ignoring ESI Include Tag. ESI Include Tag for remote URL is not supported yet: '{}'.", uri);
+        if (!remoteIncludeEnabled) {
+            log.warn("Ignoring ESI Include Tag. ESI Include Tag for remote URL is not enabled: '{}'.", uri);
+            return;
+        }
+
+        if (!uri.isAbsolute() || !StringUtils.equalsIgnoreCase("http", uri.getScheme()) && !StringUtils.equalsIgnoreCase("https", uri.getScheme())) {
+            log.warn("Ignoring ESI Include Tag. ESI Include Tag for remote URL requires an absolute http(s) URL: '{}'.", uri);
+            return;
+        }
+
+        String content = null;
+
+        if (remoteFragmentCache != null) {
+            content = remoteFragmentCache.get(uri.toString());
+        }
+
+        if (content == null) {
+            content = fetchRemoteURL(uri);
+        }
+
+        writer.write(content);
+    }
+
+    /**
+     * Fetches the content of the remote <code>uri</code> with the configured connect and read timeouts, and caches it
+     * in the remote fragment cache as long as its response headers allow.
+     * @throws IOException if the content cannot be fetched or the response status is not <code>200</code>
+     */
+    protected String fetchRemoteURL(URI uri) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
+        conn.setConnectTimeout(remoteIncludeConnectTimeout);
+        conn.setReadTimeout(remoteIncludeReadTimeout);
+        conn.setUseCaches(false);
+
+        InputStream is = null;
+
+        try {
+            int status = conn.getResponseCode();
+
+            if (status != HttpURLConnection.HTTP_OK) {
+                IOUtils.closeQuietly(conn.getErrorStream());
+                throw new IOException("Unexpected response status " + status + " for remote ESI include URL: " + uri);
+            }
+
+            String charset = null;
+
+            if (conn.getContentType() != null) {
+                charset = MimeUtil.getHeaderParams(conn.getContentType()).get("charset");
+            }
+
+            is = conn.getInputStream();
+            String content = IOUtils.toString(is, StringUtils.defaultIfEmpty(charset, "UTF-8"));
+
+            if (remoteFragmentCache != null) {
+                remoteFragmentCache.put(uri.toString(), content,
+                        ESIRemoteFragmentCache.getTimeToLiveMillis(conn.getHeaderField("Cache-Control"), conn.getExpiration(), conn.getDate()));
+            }
+
+            return content;
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
     }
 
     protected void writeVarsElementFragment(Writer writer, ESIElementFragment fragment, PropertyParser propertyParser) {
@@ -459,6 +657,26 @@ public class ESIPageRenderer implements ComponentManagerAware {
         }
     }
 
+    private static class ResolvedInclude {
+
+        private final ESIElementFragment fragment;
+        private final URI uri;
+        private final String alt;
+        private final HstContainerURL localContainerURL;
+        private Future<String> remoteContent;
+
+        private ResolvedInclude(final ESIElementFragment fragment, final URI uri, final String alt, final HstContainerURL localContainerURL) {
+            this.fragment = fragment;
+            this.uri = uri;
+            this.alt = alt;
+            this.localContainerURL = localContainerURL;
+        }
+
+        private boolean isRemote() {
+            return localContainerURL == null;
+        }
+    }
+
     private static class ContentBufferingResponseWrapper extends GenericResponseWrapper {
 
         private static final long serialVersionUID = 1L;
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.cache.esi;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+
+/**
+ * <p>
+ *     Cache of the contents of remote ESI include URLs. Every entry lives as long as the remote server allows through
+ *     the <code>Cache-Control</code> (<code>s-maxage</code> or <code>max-age</code>) or <code>Expires</code> response
+ *     headers of the fragment : fragments that are not allowed to be shared (<code>no-store</code>,
+ *     <code>no-cache</code> or <code>private</code>) or that do not have an expiration are not cached at all.
+ * </p>
+ * <p>
+ *     The cache is configured with a {@link com.google.common.cache.CacheBuilderSpec} string, for example
+ *     <code>maximumSize=1000</code>, which bounds the number of cached fragments.
+ * </p>
+ */
+public class ESIRemoteFragmentCache {
+
+    private final Cache<String, CachedFragment> fragments;
+
+    public ESIRemoteFragmentCache(final String cacheSpec) {
+        fragments = CacheBuilder.from(cacheSpec).build();
+    }
+
+    /**
+     * @return the cached content of <code>url</code> or <code>null</code> when not cached or expired
+     */
+    public String get(final String url) {
+        final CachedFragment fragment = fragments.getIfPresent(url);
+
+        if (fragment == null) {
+            return null;
+        }
+
+        if (fragment.expires <= System.currentTimeMillis()) {
+            fragments.asMap().remove(url, fragment);
+            return null;
+        }
+
+        return fragment.content;
+    }
+
+    /**
+     * Caches <code>content</code> for <code>url</code> during <code>timeToLiveMillis</code>, unless
+     * <code>timeToLiveMillis</code> is not positive.
+     */
+    public void put(final String url, final String content, final long timeToLiveMillis) {
+        if (timeToLiveMillis > 0) {
+            fragments.put(url, new CachedFragment(content, System.currentTimeMillis() + timeToLiveMillis));
+        }
+    }
+
+    public void clear() {
+        fragments.invalidateAll();
+    }
+
+    public long size() {
+        return fragments.size();
+    }
+
+    /**
+     * Returns how long a fragment may be cached according to its response headers.
+     * @param cacheControl the <code>Cache-Control</code> response header, possibly <code>null</code>
+     * @param expires the <code>Expires</code> response header in milliseconds since the epoch, or <code>0</code> if
+     *                missing or invalid
+     * @param date the <code>Date</code> response header in milliseconds since the epoch, or <code>0</code> if missing
+     * @return the time to live in milliseconds, <code>0</code> when the fragment must not be cached
+     */
+    public static long getTimeToLiveMillis(final String cacheControl, final long expires, final long date) {
+        long maxAge = -1L;
+        long sharedMaxAge = -1L;
+
+        if (StringUtils.isNotBlank(cacheControl)) {
+            for (String directive : StringUtils.split(cacheControl, ',')) {
+                final String name = StringUtils.lowerCase(StringUtils.trim(StringUtils.substringBefore(directive, "=")));
+                final String value = StringUtils.remove(StringUtils.trim(StringUtils.substringAfter(directive, "=")), '"');
+
+                if ("no-store".equals(name) || "no-cache".equals(name) || "private".equals(name)) {
+                    return 0L;
+                } else if ("max-age".equals(name)) {
+                    maxAge = NumberUtils.toLong(value, -1L);
+                } else if ("s-maxage".equals(name)) {
+                    sharedMaxAge = NumberUtils.toLong(value, -1L);
+                }
+            }
+        }
+
+        if (sharedMaxAge >= 0L) {
+            return sharedMaxAge * 1000L;
+        }
+
+        if (maxAge >= 0L) {
+            return maxAge * 1000L;
+        }
+
+        if (expires > 0L) {
+            final long now = (date > 0L ? date : System.currentTimeMillis());
+            return Math.max(0L, expires - now);
+        }
+
+        return 0L;
+    }
+
+    private static final class CachedFragment {
+
+        private final String content;
+        private final long expires;
+
+        private CachedFragment(final String content, final long expires) {
+            this.content = content;
+            this.expires = expires;
+        }
+    }
+}
@@ -41,6 +41,13 @@ public class CacheStats implements CacheStatsMXBean {
     private AtomicLong staleCacheHits = new AtomicLong();
     private AtomicLong staleCacheMisses = new AtomicLong();
 
+    private AtomicLong fullInvalidations = new AtomicLong();
+    private AtomicLong selectiveInvalidations = new AtomicLong();
+    private AtomicLong selectivelyInvalidatedEntries = new AtomicLong();
+    private AtomicLong selectiveInvalidationTimeMillis = new AtomicLong();
+    private AtomicLong cacheHitsSinceLastInvalidation = new AtomicLong();
+    private AtomicLong cacheMissesSinceLastInvalidation = new AtomicLong();
+
     private Ehcache firstLevelCache;
 
     public void setFirstLevelCache(final Ehcache firstLevelCache) {
@@ -72,6 +79,52 @@ public class CacheStats implements CacheStatsMXBean {
         cacheMisses.set(0);
     }
 
+    @Override
+    public long getFullInvalidations() {
+        return fullInvalidations.get();
+    }
+
+    @Override
+    public long getSelectiveInvalidations() {
+        return selectiveInvalidations.get();
+    }
+
+    @Override
+    public long getSelectivelyInvalidatedEntries() {
+        return selectivelyInvalidatedEntries.get();
+    }
+
+    @Override
+    public double getAverageSelectivelyInvalidatedEntries() {
+        long invalidations = selectiveInvalidations.get();
+        if (invalidations == 0) {
+            return 0;
+        }
+        return (selectivelyInvalidatedEntries.get() * 1.0D) / invalidations;
+    }
+
+    @Override
+    public double getAverageSelectiveInvalidationTimeMillis() {
+        long invalidations = selectiveInvalidations.get();
+        if (invalidations == 0) {
+            return 0;
+        }
+        return (selectiveInvalidationTimeMillis.get() * 1.0D) / invalidations;
+    }
+
+    @Override
+    public double getCacheHitRateSinceLastInvalidation() {
+        return hitRate(cacheHitsSinceLastInvalidation, cacheMissesSinceLastInvalidation);
+    }
+
+    @Override
+    public void resetInvalidations() {
+        fullInvalidations.set(0);
+        selectiveInvalidations.set(0);
+        selectivelyInvalidatedEntries.set(0);
+        selectiveInvalidationTimeMillis.set(0);
+    }
+
     @Override
     public long getFirstLevelCachePuts() {
         return firstLevelCachePuts.get();
@@ -190,11 +243,32 @@ public class CacheStats implements CacheStatsMXBean {
     public void incrementCacheHits() {
         log.debug("Increment cache hit");
         cacheHits.incrementAndGet();
+        cacheHitsSinceLastInvalidation.incrementAndGet();
     }
 
     public void incrementCacheMisses() {
         log.debug("Increment cache miss");
         cacheMisses.incrementAndGet();
+        cacheMissesSinceLastInvalidation.incrementAndGet();
+    }
+
+    public void incrementFullInvalidations() {
+        log.debug("Increment full invalidations");
+        fullInvalidations.incrementAndGet();
+        resetSinceLastInvalidation();
+    }
+
+    public void registerSelectiveInvalidation(final long invalidatedEntries, final long durationMillis) {
+        log.debug("Register selective invalidation of {} entries in {} ms", invalidatedEntries, durationMillis);
+        selectiveInvalidations.incrementAndGet();
+        selectivelyInvalidatedEntries.addAndGet(invalidatedEntries);
+        selectiveInvalidationTimeMillis.addAndGet(durationMillis);
+        resetSinceLastInvalidation();
+    }
+
+    private void resetSinceLastInvalidation() {
+        cacheHitsSinceLastInvalidation.set(0);
+        cacheMissesSinceLastInvalidation.set(0);
     }
 
     public void incrementFirstLevelCachePuts() {
@@ -266,5 +340,6 @@ public class CacheStats implements CacheStatsMXBean {
         resetFirstLevelCache();
         resetSecondLevelCache();
         resetStaleCache();
+        resetInvalidations();
     }
 }
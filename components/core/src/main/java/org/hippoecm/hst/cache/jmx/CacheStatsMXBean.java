@@ -29,6 +29,19 @@ public interface CacheStatsMXBean {
     double getCacheMissRate();
     void reset();
 
+    /**
+     * Invalidation stats : a full invalidation flushes the entire cache while a selective invalidation only removes
+     * the cached pages depending on the changed repository paths (only when dependency tracking is enabled for
+     * the page cache). The hit rate since last invalidation shows how well the cache recovers after a publication.
+     */
+    long getFullInvalidations();
+    long getSelectiveInvalidations();
+    long getSelectivelyInvalidatedEntries();
+    double getAverageSelectivelyInvalidatedEntries();
+    double getAverageSelectiveInvalidationTimeMillis();
+    double getCacheHitRateSinceLastInvalidation();
+    void resetInvalidations();
+
     /**
      * end methods for first, second and stale combined
      */
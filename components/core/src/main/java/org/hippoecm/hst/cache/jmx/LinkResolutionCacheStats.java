@@ -0,0 +1,83 @@
+/**
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.cache.jmx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hippoecm.hst.core.linking.LinkResolutionCache;
+
+public class LinkResolutionCacheStats implements LinkResolutionCacheStatsMXBean {
+
+    private AtomicLong cacheHits = new AtomicLong();
+    private AtomicLong cacheMisses = new AtomicLong();
+    private AtomicLong evictions = new AtomicLong();
+
+    private volatile LinkResolutionCache currentCache;
+
+    public void setCurrentCache(final LinkResolutionCache currentCache) {
+        this.currentCache = currentCache;
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        long hitNr = cacheHits.get();
+        long missNr = cacheMisses.get();
+        if (hitNr == 0 && missNr == 0) {
+            return 0;
+        }
+        return ( (hitNr * 1.0D) / (hitNr + missNr));
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public long getCacheSize() {
+        final LinkResolutionCache cache = currentCache;
+        return cache == null ? 0 : cache.size();
+    }
+
+    @Override
+    public void reset() {
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        evictions.set(0);
+    }
+
+    public void incrementCacheHits() {
+        cacheHits.incrementAndGet();
+    }
+
+    public void incrementCacheMisses() {
+        cacheMisses.incrementAndGet();
+    }
+
+    public void incrementEvictions() {
+        evictions.incrementAndGet();
+    }
+}
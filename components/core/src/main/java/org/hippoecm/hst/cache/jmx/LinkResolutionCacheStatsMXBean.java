@@ -0,0 +1,32 @@
+/**
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.cache.jmx;
+
+public interface LinkResolutionCacheStatsMXBean {
+
+    /**
+     * A hit is counted when a content path is resolved from the cache, regardless whether it is cached as resolvable
+     * or not. Evictions are the entries removed because the cache reached its maximum size or because they expired,
+     * not the entries dropped because a new hst model was loaded.
+     */
+    long getCacheHits();
+    long getCacheMisses();
+    double getCacheHitRate();
+    long getEvictions();
+    long getCacheSize();
+
+    void reset();
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.cache.jmx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WebFilesCacheStats extends CacheStats implements WebFilesCacheStatsMXBean {
+
+    private AtomicLong identityEncodingResponses = new AtomicLong();
+    private AtomicLong gzipEncodingResponses = new AtomicLong();
+    private AtomicLong notModifiedResponses = new AtomicLong();
+
+    @Override
+    public long getIdentityEncodingResponses() {
+        return identityEncodingResponses.get();
+    }
+
+    @Override
+    public long getGzipEncodingResponses() {
+        return gzipEncodingResponses.get();
+    }
+
+    @Override
+    public long getNotModifiedResponses() {
+        return notModifiedResponses.get();
+    }
+
+    @Override
+    public void resetEncodingResponses() {
+        identityEncodingResponses.set(0);
+        gzipEncodingResponses.set(0);
+        notModifiedResponses.set(0);
+    }
+
+    @Override
+    public void resetAll() {
+        super.resetAll();
+        resetEncodingResponses();
+    }
+
+    public void incrementIdentityEncodingResponses() {
+        identityEncodingResponses.incrementAndGet();
+    }
+
+    public void incrementGzipEncodingResponses() {
+        gzipEncodingResponses.incrementAndGet();
+    }
+
+    public void incrementNotModifiedResponses() {
+        notModifiedResponses.incrementAndGet();
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.cache.jmx;
+
+public interface WebFilesCacheStatsMXBean extends CacheStatsMXBean {
+
+    /**
+     * The number of web files served per content encoding, regardless whether they were served from the cache. A not
+     * modified response is only counted as such and not as a response for its encoding.
+     */
+    long getIdentityEncodingResponses();
+    long getGzipEncodingResponses();
+    long getNotModifiedResponses();
+    void resetEncodingResponses();
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2015 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2014-2017 Hippo B.V. (http://www.onehippo.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.hippoecm.hst.cache.webfiles;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 
 import org.apache.commons.io.IOUtils;
@@ -40,12 +41,28 @@ public class CacheableBinary implements Binary, Serializable {
         }
     }
 
+    CacheableBinary(final byte[] data) {
+        this.data = data;
+    }
+
     @Override
     public InputStream getStream() {
         // don't use a buffered stream since the data is already buffered in memory
         return new ByteArrayInputStream(data);
     }
 
+    /**
+     * Writes the in-memory data directly to <code>outputStream</code>, without copying it through an intermediate
+     * buffer like reading from {@link #getStream()} does
+     */
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        outputStream.write(data);
+    }
+
+    byte[] getData() {
+        return data;
+    }
+
     @Override
     public long getSize() {
         return data.length;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2016 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2014-2017 Hippo B.V. (http://www.onehippo.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,19 +15,37 @@
  */
 package org.hippoecm.hst.cache.webfiles;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Calendar;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
 import org.onehippo.cms7.services.webfiles.Binary;
 import org.onehippo.cms7.services.webfiles.WebFile;
 
 
 /**
- * Serializable web file that is stored in memory and can be cached.
+ * Serializable web file that is stored in memory and can be cached. Text based web files are gzipped once when they
+ * are created, such that the gzip encoding can be served without compressing the web file for every request.
  */
 public class CacheableWebFile implements WebFile, Serializable {
 
+    /**
+     * Web files smaller than this number of bytes are not gzipped as the gain does not outweigh the overhead
+     */
+    public static final int MINIMUM_GZIP_SIZE = 256;
+
+    private static final String[] COMPRESSIBLE_MIME_TYPE_PREFIXES = {"text/"};
+    private static final String[] COMPRESSIBLE_MIME_TYPES = {"application/javascript", "application/x-javascript",
+            "application/ecmascript", "application/json", "application/xml", "application/vnd.ms-fontobject",
+            "application/x-font-ttf", "application/x-font-otf", "font/ttf", "font/otf", "image/x-icon",
+            "image/vnd.microsoft.icon"};
+    private static final String[] COMPRESSIBLE_MIME_TYPE_SUFFIXES = {"+xml", "+json"};
+
     private final String path;
     private final String name;
     private final String encoding;
@@ -35,15 +53,51 @@ public class CacheableWebFile implements WebFile, Serializable {
     private final String mimeType;
     private final Binary binary;
     private final String version;
+    private final CacheableBinary gzipBinary;
+    private final String eTag;
 
     public CacheableWebFile(final WebFile resource, final String version) throws IOException {
+        this(resource, version, true);
+    }
+
+    /**
+     * @param gzip whether to create the gzip encoding of the web file when it has a compressible mime type
+     */
+    public CacheableWebFile(final WebFile resource, final String version, final boolean gzip) throws IOException {
         path = resource.getPath();
         name = resource.getName();
         encoding = resource.getEncoding();
         lastModified = resource.getLastModified();
         mimeType = resource.getMimeType();
-        binary = new CacheableBinary(resource.getBinary());
+        final CacheableBinary cacheableBinary = new CacheableBinary(resource.getBinary());
+        binary = cacheableBinary;
         this.version = version;
+        gzipBinary = gzip && isCompressible(mimeType) ? createGzipBinary(cacheableBinary.getData()) : null;
+        eTag = DigestUtils.md5Hex(cacheableBinary.getData());
+    }
+
+    private static CacheableBinary createGzipBinary(final byte[] data) throws IOException {
+        if (data.length < MINIMUM_GZIP_SIZE) {
+            return null;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(bytes)) {
+            gzipOutputStream.write(data);
+        }
+        if (bytes.size() >= data.length) {
+            return null;
+        }
+        return new CacheableBinary(bytes.toByteArray());
+    }
+
+    static boolean isCompressible(final String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        final String type = StringUtils.substringBefore(mimeType, ";").trim().toLowerCase();
+        return StringUtils.startsWithAny(type, COMPRESSIBLE_MIME_TYPE_PREFIXES)
+                || StringUtils.endsWithAny(type, COMPRESSIBLE_MIME_TYPE_SUFFIXES)
+                || ArrayUtils.contains(COMPRESSIBLE_MIME_TYPES, type);
     }
 
     @Override
@@ -79,4 +133,26 @@ public class CacheableWebFile implements WebFile, Serializable {
     public String getVersion() {
         return version;
     }
+
+    /**
+     * @return the gzip encoding of the binary, or <code>null</code> if the web file is not worth compressing
+     */
+    public Binary getGzipBinary() {
+        return gzipBinary;
+    }
+
+    /**
+     * @return the strong entity tag of the binary, including the surrounding quotes
+     */
+    public String getETag() {
+        return "\"" + eTag + "\"";
+    }
+
+    /**
+     * @return the strong entity tag of the gzip encoding, which differs from {@link #getETag()} as both encodings are
+     * different representations
+     */
+    public String getGzipETag() {
+        return "\"" + eTag + "-gzip\"";
+    }
 }
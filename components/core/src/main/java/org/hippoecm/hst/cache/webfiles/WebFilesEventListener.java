@@ -37,6 +37,7 @@ public class WebFilesEventListener extends GenericEventListener {
     private static final Logger log = LoggerFactory.getLogger(PageCacheEventListener.class);
 
     private HstCache pageCache;
+    private HstCache fragmentCache;
     private WebFileValve webFileValve;
     private RequestInfoCacheKeyFragmentCreator requestInfoCacheKeyFragmentCreator;
 
@@ -44,6 +45,10 @@ public class WebFilesEventListener extends GenericEventListener {
         this.pageCache = pageCache;
     }
 
+    public void setFragmentCache(CompositeHstCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
     public void setWebFileValve(final WebFileValve webFileValve) {
         this.webFileValve = webFileValve;
     }
@@ -63,6 +68,9 @@ public class WebFilesEventListener extends GenericEventListener {
                 if (!pageCacheCleared) {
                     pageCacheCleared = true;
                     pageCache.clear();
+                    if (fragmentCache != null) {
+                        fragmentCache.clear();
+                    }
                 }
                 if (requestInfoCacheKeyFragmentCreator != null) {
                     requestInfoCacheKeyFragmentCreator.reset();
@@ -42,17 +42,26 @@ import static org.hippoecm.hst.configuration.HstNodeTypes.NODENAME_HST_CHANNEL;
 
 /**
  * <p>
- *   Note that this class is <strong>not</strong> thread-safe : It should not be accessed by concurrent threads
+ *   The loading methods {@link #loadChannel(String, boolean, String, String)},
+ *   {@link #getComponentsConfiguration(String, boolean)}, {@link #getSiteMapItemHandlersConfiguration(String, boolean)}
+ *   and {@link #getCompositeConfigurationNodes(String, String...)} can be invoked concurrently, since the hst sites of
+ *   a model can be loaded in parallel, see
+ *   {@link org.hippoecm.hst.configuration.model.HstManagerImpl#setParallelModelBuildEnabled(boolean)}. Concurrent loads
+ *   of the same configuration return the same cached instance.
+ * </p>
+ * <p>
+ *   {@link #handleEvents(Set)} and the setters are <strong>not</strong> meant to run concurrently with the loading
+ *   methods : they are invoked by the model building thread before it loads a new model
  * </p>
  */
 public class HstConfigurationLoadingCache implements HstEventConsumer {
 
     private static final Logger log = LoggerFactory.getLogger(HstConfigurationLoadingCache.class);
 
-    private WeakTaggedCache<List<UUID>, Channel, String> liveChannelsCache = new WeakTaggedCache<>();
-    private WeakTaggedCache<List<UUID>, Channel, String> previewChannelsCache = new WeakTaggedCache<>();
-    private WeakTaggedCache<List<UUID>, HstComponentsConfiguration, String> componentsConfigurationCache = new WeakTaggedCache<>();
-    private WeakTaggedCache<List<UUID>, HstSiteMapItemHandlersConfiguration, String> siteMapItemHandlerConfigurationCache = new WeakTaggedCache<>();
+    private final WeakTaggedCache<List<UUID>, Channel, String> liveChannelsCache = new WeakTaggedCache<>();
+    private final WeakTaggedCache<List<UUID>, Channel, String> previewChannelsCache = new WeakTaggedCache<>();
+    private final WeakTaggedCache<List<UUID>, HstComponentsConfiguration, String> componentsConfigurationCache = new WeakTaggedCache<>();
+    private final WeakTaggedCache<List<UUID>, HstSiteMapItemHandlersConfiguration, String> siteMapItemHandlerConfigurationCache = new WeakTaggedCache<>();
 
     private HstNodeLoadingCache hstNodeLoadingCache;
     private String rootConfigurationsPrefix;
@@ -61,7 +70,7 @@ public class HstConfigurationLoadingCache implements HstEventConsumer {
     /*
      * The List of all common catalog items. These have a fixed location at rootConfigurationsPrefix + "/hst:catalog"
      */
-    private Optional<List<HstComponentConfiguration>> commonCatalogItems = null;
+    private volatile Optional<List<HstComponentConfiguration>> commonCatalogItems = null;
 
 
     public void setHstNodeLoadingCache(final HstNodeLoadingCache hstNodeLoadingCache) {
@@ -220,26 +229,35 @@ public class HstConfigurationLoadingCache implements HstEventConsumer {
             return null;
         }
 
-        if (commonCatalogItems == null) {
-            HstNode commonCatalogNode = hstNodeLoadingCache.getNode(commonCatalogPath);
-            if (commonCatalogNode == null) {
-                commonCatalogItems = Optional.absent();
-            } else {
-                commonCatalogItems = Optional.of(getCommonCatalog(commonCatalogNode));
-            }
-        }
-
-
-        hstComponentsConfiguration = new HstComponentsConfigurationService(ccn, commonCatalogItems.orNull());
+        hstComponentsConfiguration = new HstComponentsConfigurationService(ccn, getCommonCatalogItems().orNull());
         final List<String> events = ccn.getCompositeConfigurationDependencyPaths();
 
         // the commmon catalog, default at /hst:hst/hst:configurations/hst:catalog is a special node that is always included
         // as all the hstComponentsConfiguration need a reload after a change in there
         events.add(commonCatalogPath);
 
-        componentsConfigurationCache.put(cachekey, hstComponentsConfiguration, events.toArray(new String[events.size()]));
+        // another thread might have loaded the same configuration in the meantime
+        return componentsConfigurationCache.putIfAbsent(cachekey, hstComponentsConfiguration, events.toArray(new String[events.size()]));
+    }
 
-        return hstComponentsConfiguration;
+    private Optional<List<HstComponentConfiguration>> getCommonCatalogItems() {
+        Optional<List<HstComponentConfiguration>> catalogItems = commonCatalogItems;
+        if (catalogItems != null) {
+            return catalogItems;
+        }
+        synchronized (this) {
+            catalogItems = commonCatalogItems;
+            if (catalogItems == null) {
+                HstNode commonCatalogNode = hstNodeLoadingCache.getNode(commonCatalogPath);
+                if (commonCatalogNode == null) {
+                    catalogItems = Optional.absent();
+                } else {
+                    catalogItems = Optional.of(getCommonCatalog(commonCatalogNode));
+                }
+                commonCatalogItems = catalogItems;
+            }
+            return catalogItems;
+        }
     }
 
     public HstSiteMapItemHandlersConfiguration getSiteMapItemHandlersConfiguration(final String configurationPath,
@@ -267,9 +285,7 @@ public class HstConfigurationLoadingCache implements HstEventConsumer {
         }
         siteMapItemHandlerConfiguration = new HstSiteMapItemHandlersConfigurationService(compositeSiteMapItemHandlersNode);
         final List<String> events = ccn.getCompositeConfigurationDependencyPaths();
-        siteMapItemHandlerConfigurationCache.put(cachekey, siteMapItemHandlerConfiguration, events.toArray(new String[events.size()]));
-
-        return siteMapItemHandlerConfiguration;
+        return siteMapItemHandlerConfigurationCache.putIfAbsent(cachekey, siteMapItemHandlerConfiguration, events.toArray(new String[events.size()]));
     }
 
 
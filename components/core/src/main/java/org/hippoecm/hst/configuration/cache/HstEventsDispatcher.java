@@ -42,12 +42,16 @@ public class HstEventsDispatcher {
         return hstEventsCollector;
     }
 
-    public void dispatchHstEvents() {
+    /**
+     * @return the (unmodifiable) set of dispatched {@link HstEvent}s
+     */
+    public Set<HstEvent> dispatchHstEvents() {
         long start = System.currentTimeMillis();
         Set<HstEvent> events = hstEventsCollector.getAndClearEvents();
         for (HstEventConsumer consumer : hstEventConsumers) {
             consumer.handleEvents(events);
         }
         log.info("Dispatching '{}' events took '{}' ms.", events.size(), (System.currentTimeMillis() - start));
+        return events;
     }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2013-2017 Hippo B.V. (http://www.onehippo.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -30,7 +30,8 @@ import org.slf4j.LoggerFactory;
 
 /*
  * <p>
- *   Note that this class is <strong>not</strong> thread-safe : It should not be accessed by concurrent threads
+ *   Note that this class is thread-safe because all its methods are synchronized : the hst sites of a model can be
+ *   loaded concurrently, see {@link org.hippoecm.hst.configuration.model.HstManagerImpl#setParallelModelBuildEnabled(boolean)}
  * </p>
  */
 public class WeakTaggedCache<K, V, U> {
@@ -42,7 +43,7 @@ public class WeakTaggedCache<K, V, U> {
     private ReferenceQueue<V> cleanupQueue = new ReferenceQueue<>();
     WeakKeyTagRegistry<U, K> weakKeyTagRegistry = new WeakKeyTagRegistry();
 
-    public void evictKeysByTag(final U tag) {
+    public synchronized void evictKeysByTag(final U tag) {
         try {
             final List<K> evictKeys = weakKeyTagRegistry.get(tag);
             for (K evictKey : evictKeys) {
@@ -56,20 +57,33 @@ public class WeakTaggedCache<K, V, U> {
         }
     }
 
-    public void put(K key, V value, U tag) {
+    public synchronized void put(K key, V value, U tag) {
         expungeStaleEntries();
         store(key, value);
         weakKeyTagRegistry.put(tag, key);
     }
 
 
-    public void put(K key, V value, U[] tags) {
+    public synchronized void put(K key, V value, U[] tags) {
         expungeStaleEntries();
         store(key, value);
         weakKeyTagRegistry.put(tags, key);
     }
 
-    public V get(K key) {
+    /**
+     * @return the value already cached for <code>key</code> if any, and otherwise <code>value</code> after storing it
+     * such that concurrent loaders of the same key end up with the same instance
+     */
+    public synchronized V putIfAbsent(K key, V value, U[] tags) {
+        final V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        put(key, value, tags);
+        return value;
+    }
+
+    public synchronized V get(K key) {
         expungeStaleEntries();
         final WeakReference<V> weakRef = keyValueMap.get(key);
         if (weakRef == null) {
@@ -78,7 +92,7 @@ public class WeakTaggedCache<K, V, U> {
         return weakRef.get();
     }
 
-    public V remove(K key) {
+    public synchronized V remove(K key) {
         expungeStaleEntries();
         final WeakReference<V> weakRef = keyValueMap.remove(key);
         if (weakRef == null) {
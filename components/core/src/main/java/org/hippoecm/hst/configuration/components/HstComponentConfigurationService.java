@@ -36,6 +36,7 @@ import org.hippoecm.hst.core.internal.StringPool;
 import org.slf4j.LoggerFactory;
 
 import static org.hippoecm.hst.configuration.ConfigurationUtils.createPrefixedParameterName;
+import static org.hippoecm.hst.configuration.HstNodeTypes.COMPONENT_PROPERTY_FRAGMENT_CACHEABLE;
 import static org.hippoecm.hst.configuration.HstNodeTypes.COMPONENT_PROPERTY_SUPPRESS_WASTE_MESSAGE;
 
 public class HstComponentConfigurationService implements HstComponentConfiguration, ConfigurationLockInfo {
@@ -151,6 +152,8 @@ public class HstComponentConfigurationService implements HstComponentConfigurati
 
     private Boolean suppressWasteMessage = null;
 
+    private Boolean fragmentCacheable = null;
+
     /**
      * Optional iconPath relative to webapp for sites. If not configured, it is <code>null</code>. It does not inherit
      * from ancestor components
@@ -343,6 +346,10 @@ public class HstComponentConfigurationService implements HstComponentConfigurati
             this.suppressWasteMessage = node.getValueProvider().getBoolean(COMPONENT_PROPERTY_SUPPRESS_WASTE_MESSAGE);
         }
 
+        if (node.getValueProvider().hasProperty(COMPONENT_PROPERTY_FRAGMENT_CACHEABLE)) {
+            this.fragmentCacheable = node.getValueProvider().getBoolean(COMPONENT_PROPERTY_FRAGMENT_CACHEABLE);
+        }
+
         if (type == Type.CONTAINER_COMPONENT) {
             lockedBy = node.getValueProvider().getString(HstNodeTypes.GENERAL_PROPERTY_LOCKED_BY);
             lockedOn = node.getValueProvider().getDate(HstNodeTypes.GENERAL_PROPERTY_LOCKED_ON);
@@ -663,6 +670,12 @@ public class HstComponentConfigurationService implements HstComponentConfigurati
         return suppressWasteMessage == null ? false : suppressWasteMessage;
     }
 
+    @Override
+    public boolean isFragmentCacheable() {
+        // a fragment containing uncacheable descendants can never be cached
+        return fragmentCacheable != null && fragmentCacheable && compositeCacheable;
+    }
+
     @Override
     public String getLabel() {
         return label;
@@ -727,6 +740,7 @@ public class HstComponentConfigurationService implements HstComponentConfigurati
         copy.asyncMode = child.asyncMode;
         copy.cacheable = child.cacheable;
         copy.suppressWasteMessage = child.suppressWasteMessage;
+        copy.fragmentCacheable = child.fragmentCacheable;
         copy.parameters = new LinkedHashMap<String, String>(child.parameters);
         copy.parameterNamePrefixSet = new HashSet<String>(child.parameterNamePrefixSet);
         // localParameters have no merging, but for copy, the localParameters are copied 
@@ -835,6 +849,9 @@ public class HstComponentConfigurationService implements HstComponentConfigurati
                 if (suppressWasteMessage == null) {
                     this.suppressWasteMessage = referencedComp.suppressWasteMessage;
                 }
+                if (fragmentCacheable == null) {
+                    this.fragmentCacheable = referencedComp.fragmentCacheable;
+                }
 
                 if (this.lockedBy == null) {
                     this.lockedBy = referencedComp.lockedBy;
@@ -973,6 +990,9 @@ public class HstComponentConfigurationService implements HstComponentConfigurati
         if (this.suppressWasteMessage == null) {
             this.suppressWasteMessage = childToMerge.suppressWasteMessage;
         }
+        if (this.fragmentCacheable == null) {
+            this.fragmentCacheable = childToMerge.fragmentCacheable;
+        }
         if (this.lockedBy == null) {
             this.lockedBy = childToMerge.lockedBy;
         }
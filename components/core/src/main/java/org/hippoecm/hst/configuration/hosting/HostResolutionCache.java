@@ -0,0 +1,110 @@
+/**
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.configuration.hosting;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+
+import org.hippoecm.hst.cache.jmx.HostResolutionCacheStats;
+import org.hippoecm.hst.core.request.ResolvedVirtualHost;
+
+/**
+ * <p>
+ *     Bounded and thread-safe cache from (lower-cased) host names, possibly including a port number, to their
+ *     {@link ResolvedVirtualHost}. Host names that cannot be resolved, or that only resolve through the default host
+ *     fallback, are kept in a separate negative cache such that requests with random host headers can only push out
+ *     other unknown host names.
+ * </p>
+ * <p>
+ *     Both caches are configured with a {@link com.google.common.cache.CacheBuilderSpec} string, for example
+ *     <code>maximumSize=1000</code>. An instance belongs to a single hst model and is discarded together with it.
+ * </p>
+ */
+public class HostResolutionCache {
+
+    private final Cache<String, ResolvedVirtualHost> resolvedHosts;
+    private final Cache<String, Optional<ResolvedVirtualHost>> unknownHosts;
+    private final HostResolutionCacheStats stats;
+
+    public HostResolutionCache(final String cacheSpec, final String negativeCacheSpec,
+                               final HostResolutionCacheStats stats) {
+        this.stats = stats;
+        resolvedHosts = CacheBuilder.from(cacheSpec)
+                .removalListener((RemovalListener<String, ResolvedVirtualHost>) notification -> {
+                    if (notification.wasEvicted()) {
+                        stats.incrementEvictions();
+                    }
+                }).build();
+        unknownHosts = CacheBuilder.from(negativeCacheSpec)
+                .removalListener((RemovalListener<String, Optional<ResolvedVirtualHost>>) notification -> {
+                    if (notification.wasEvicted()) {
+                        stats.incrementNegativeEvictions();
+                    }
+                }).build();
+    }
+
+    /**
+     * @return <code>null</code> when there is nothing cached for <code>hostName</code>, {@link Optional#absent()} when
+     * <code>hostName</code> is cached as unresolvable and the cached {@link ResolvedVirtualHost}, possibly the one of the
+     * default host, otherwise
+     */
+    public Optional<ResolvedVirtualHost> get(final String hostName) {
+        final ResolvedVirtualHost resolvedVirtualHost = resolvedHosts.getIfPresent(hostName);
+        if (resolvedVirtualHost != null) {
+            stats.incrementCacheHits();
+            return Optional.of(resolvedVirtualHost);
+        }
+        final Optional<ResolvedVirtualHost> unknownHost = unknownHosts.getIfPresent(hostName);
+        if (unknownHost != null) {
+            stats.incrementNegativeCacheHits();
+            return unknownHost;
+        }
+        stats.incrementCacheMisses();
+        return null;
+    }
+
+    /**
+     * @param resolvedVirtualHost the {@link ResolvedVirtualHost} for <code>hostName</code>, or <code>null</code> when
+     *                            <code>hostName</code> cannot be resolved
+     */
+    public void put(final String hostName, final ResolvedVirtualHost resolvedVirtualHost) {
+        if (resolvedVirtualHost == null) {
+            unknownHosts.put(hostName, Optional.absent());
+        } else {
+            resolvedHosts.put(hostName, resolvedVirtualHost);
+        }
+    }
+
+    /**
+     * Stores the result of the default host fallback for a <code>hostName</code> that has no mapping of its own. The
+     * result is kept in the negative cache since <code>hostName</code> can be any random host header.
+     * @param defaultVirtualHost the {@link ResolvedVirtualHost} of the default host, or <code>null</code> when even
+     *                           the default host cannot be resolved
+     */
+    public void putFallback(final String hostName, final ResolvedVirtualHost defaultVirtualHost) {
+        unknownHosts.put(hostName, Optional.fromNullable(defaultVirtualHost));
+    }
+
+    public long size() {
+        return resolvedHosts.size();
+    }
+
+    public long negativeSize() {
+        return unknownHosts.size();
+    }
+}
@@ -27,9 +27,17 @@ import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.servlet.http.HttpServletResponse;
 
+import com.google.common.base.Optional;
+
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.hippoecm.hst.configuration.HstNodeTypes;
@@ -88,6 +96,12 @@ public class VirtualHostsService implements MutableVirtualHosts {
 
     private List<Mount> registeredMounts = new ArrayList<>();
 
+    /**
+     * Collects the mounts added by a root virtual host that is being loaded on the current thread, see
+     * {@link #addMount(Mount)}
+     */
+    private final ThreadLocal<List<Mount>> loadingHostMounts = new ThreadLocal<>();
+
     private String defaultHostName;
 
     public static final String DEFAULT_HOMEPAGE_SITEMAP_ITEM = "root";
@@ -165,11 +179,7 @@ public class VirtualHostsService implements MutableVirtualHosts {
      */
     private String channelMngrSitesNodeName = DEFAULT_CHANNEL_MNGR_SITES_NODE_NAME;
 
-    /*
-     * Note, this cache does not need to be synchronized at all, because worst case scenario one entry would be
-     * computed twice and overriden.
-     */
-    private Map<String, ResolvedVirtualHost> resolvedMapCache = new HashMap<>();
+    private final HostResolutionCache hostResolutionCache;
 
     private String channelsRoot;
 
@@ -182,6 +192,7 @@ public class VirtualHostsService implements MutableVirtualHosts {
         long start = System.currentTimeMillis();
         this.hstNodeLoadingCache = hstNodeLoadingCache;
         this.hstManager = hstManager;
+        hostResolutionCache = hstManager.createHostResolutionCache();
         channelsRoot = hstNodeLoadingCache.getRootPath() + "/" + HstNodeTypes.NODENAME_HST_CHANNELS + "/";
         virtualHostsConfigured = true;
 
@@ -311,6 +322,7 @@ public class VirtualHostsService implements MutableVirtualHosts {
 
         defaultResourceBundleIds = StringUtils.split(vHostConfValueProvider.getString(HstNodeTypes.GENERAL_PROPERTY_DEFAULT_RESOURCE_BUNDLE_ID), " ,\t\f\r\n");
 
+        final List<HostLoadingTask> hostLoadingTasks = new ArrayList<>();
         // now we loop through the hst:hostgroup nodes first:
         for(HstNode hostGroupNode : vhostsNode.getNodes()) {
             // assert node is of type virtualhostgroup
@@ -352,22 +364,46 @@ public class VirtualHostsService implements MutableVirtualHosts {
             }
 
             for(HstNode virtualHostNode : hostGroupNode.getNodes()) {
+                hostLoadingTasks.add(new HostLoadingTask(virtualHostNode, hostGroupNode.getValueProvider().getName(),
+                        validCmsLocations, defaultPort, rootVirtualHosts));
+            }
+        }
 
+        // the root virtual hosts, including their mounts and hst sites, do not depend on each other and are loaded
+        // concurrently when the hst manager has a model build executor. The loaded hosts and their mounts are added
+        // in the order of the configuration, such that the model is the same as when loaded sequentially
+        long startHostLoading = System.currentTimeMillis();
+        final List<Future<VirtualHostService>> loadedHosts = startHostLoading(hostLoadingTasks);
+        try {
+            for (int i = 0; i < hostLoadingTasks.size(); i++) {
+                final HostLoadingTask hostLoadingTask = hostLoadingTasks.get(i);
+                final HstNode virtualHostNode = hostLoadingTask.virtualHostNode;
                 try {
-                    VirtualHostService virtualHost = new VirtualHostService(this, virtualHostNode, null,
-                            hostGroupNode.getValueProvider().getName(),
-                            validCmsLocations , defaultPort, hstNodeLoadingCache);
-                    rootVirtualHosts.put(virtualHost.getName(), virtualHost);
+                    final VirtualHostService virtualHost = getLoadedHost(loadedHosts.get(i));
+                    hostLoadingTask.addLoadedMounts();
+                    hostLoadingTask.rootVirtualHosts.put(virtualHost.getName(), virtualHost);
                 } catch (ModelLoadingException e) {
+                    hostLoadingTask.addLoadedMounts();
                     log.error("Unable to add virtualhost with name '"+virtualHostNode.getValueProvider().getName()+"'. Fix the configuration. This virtualhost will be skipped.", e);
                     // continue to next virtualHost
                 } catch (IllegalArgumentException e) {
+                    hostLoadingTask.addLoadedMounts();
                     log.error("VirtualHostMap is not allowed to have duplicate hostnames. This problem might also result from having two hosts configured"
                             + "something like 'preview.mycompany.org' and 'www.mycompany.org'. This results in 'mycompany.org' being a duplicate in a hierarchical presentation which the model makes from hosts splitted by dots. "
                             + "In this case, make sure to configure them hierarchically as org -> mycompany -> (preview , www)");
                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModelLoadingException("Interrupted while waiting for the virtual hosts to be loaded", e);
+        } finally {
+            for (Future<VirtualHostService> loadedHost : loadedHosts) {
+                // only does something when loading failed with an unexpected exception
+                loadedHost.cancel(false);
+            }
         }
+        log.info("Loading '{}' virtual hosts took '{}' ms", hostLoadingTasks.size(),
+                (System.currentTimeMillis() - startHostLoading));
 
         long startChannelLoading = System.currentTimeMillis();
         loadChannelsMap();
@@ -378,6 +414,92 @@ public class VirtualHostsService implements MutableVirtualHosts {
         log.info("VirtualHostsService loading took '{}' ms.", String.valueOf(System.currentTimeMillis() - start));
     }
 
+    private List<Future<VirtualHostService>> startHostLoading(final List<HostLoadingTask> hostLoadingTasks) {
+        final ExecutorService executor = hostLoadingTasks.size() > 1 ? hstManager.getModelBuildExecutor() : null;
+        final List<Future<VirtualHostService>> loadedHosts = new ArrayList<>(hostLoadingTasks.size());
+        for (HostLoadingTask hostLoadingTask : hostLoadingTasks) {
+            final FutureTask<VirtualHostService> loadedHost = new FutureTask<>(hostLoadingTask);
+            loadedHosts.add(loadedHost);
+            if (executor == null) {
+                loadedHost.run();
+                continue;
+            }
+            try {
+                executor.execute(loadedHost);
+            } catch (RejectedExecutionException e) {
+                log.debug("Model build executor rejected loading host '{}'. Load it on the current thread.",
+                        hostLoadingTask.virtualHostNode.getValueProvider().getPath());
+                loadedHost.run();
+            }
+        }
+        return loadedHosts;
+    }
+
+    /**
+     * @return the loaded host, or throws the exception its loading failed with, as if it was loaded on this thread
+     */
+    private static VirtualHostService getLoadedHost(final Future<VirtualHostService> loadedHost)
+            throws InterruptedException {
+        try {
+            return loadedHost.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ModelLoadingException("Could not load virtual host", cause);
+        }
+    }
+
+    /**
+     * Loads a root virtual host with its descendant hosts and mounts. The mounts are collected instead of added to
+     * the lookup maps right away, as the tasks of multiple hosts may run concurrently.
+     */
+    private class HostLoadingTask implements Callable<VirtualHostService> {
+
+        private final HstNode virtualHostNode;
+        private final String hostGroupName;
+        private final List<String> cmsLocations;
+        private final int defaultPort;
+        private final Map<String, MutableVirtualHost> rootVirtualHosts;
+        private final List<Mount> loadedMounts = new ArrayList<>();
+
+        private HostLoadingTask(final HstNode virtualHostNode, final String hostGroupName,
+                                final List<String> cmsLocations, final int defaultPort,
+                                final Map<String, MutableVirtualHost> rootVirtualHosts) {
+            this.virtualHostNode = virtualHostNode;
+            this.hostGroupName = hostGroupName;
+            this.cmsLocations = cmsLocations;
+            this.defaultPort = defaultPort;
+            this.rootVirtualHosts = rootVirtualHosts;
+        }
+
+        @Override
+        public VirtualHostService call() throws ModelLoadingException {
+            loadingHostMounts.set(loadedMounts);
+            try {
+                return new VirtualHostService(VirtualHostsService.this, virtualHostNode, null, hostGroupName,
+                        cmsLocations, defaultPort, hstNodeLoadingCache);
+            } finally {
+                loadingHostMounts.remove();
+            }
+        }
+
+        /**
+         * Adds the mounts in the order they were loaded, also when loading the host failed halfway, just like when
+         * they would have been added right away
+         */
+        private void addLoadedMounts() {
+            for (Mount mount : loadedMounts) {
+                addMount(mount);
+            }
+            loadedMounts.clear();
+        }
+    }
+
     private void loadChannelsMap() {
         for (String hostGroupName : getHostGroupNames()) {
             if (!channelsByHostGroup.containsKey(hostGroupName)) {
@@ -466,6 +588,10 @@ public class VirtualHostsService implements MutableVirtualHosts {
         return hstManager;
     }
 
+    public HostResolutionCache getHostResolutionCache() {
+        return hostResolutionCache;
+    }
+
     @Deprecated
     @Override
     public boolean isExcluded(final String pathInfo) {
@@ -496,6 +622,12 @@ public class VirtualHostsService implements MutableVirtualHosts {
      * @param mount
      */
     public void addMount(Mount mount) {
+        final List<Mount> hostMounts = loadingHostMounts.get();
+        if (hostMounts != null) {
+            // added while loading a root virtual host, see HostLoadingTask
+            hostMounts.add(mount);
+            return;
+        }
         if(registeredMounts.contains(mount)) {
             log.debug(" Mount '{}' already added. Return", mount);
             return;
@@ -585,48 +717,66 @@ public class VirtualHostsService implements MutableVirtualHosts {
         //  hostname matching is always done lower-cased
         hostName =  hostName.toLowerCase();
 
-        // NOTE : the resolvedMapCache does not need synchronization. Theoretically it would need it as it is used concurrent.
-        // In practice it won't happen ever. Trust me
-        ResolvedVirtualHost rvHost = resolvedMapCache.get(hostName);
-        if(rvHost != null) {
-            return rvHost;
+        final Optional<ResolvedVirtualHost> cached = hostResolutionCache.get(hostName);
+        if (cached != null) {
+            return cached.orNull();
         }
 
-        int portNumber = 0;
-        String portStrippedHostName = hostName;
-        int offset = portStrippedHostName.lastIndexOf(':');
-        if (offset != -1) {
-            try {
-                portNumber = Integer.parseInt(portStrippedHostName.substring(offset+1));
-            }
-            catch (NumberFormatException nfe) {
-                throw new MatchException("The hostName '"+portStrippedHostName+"' contains an invalid portnumber");
-            }
-            // strip off portNumber
-           portStrippedHostName = portStrippedHostName.substring(0, offset);
-        }
+        int portNumber = getPortNumber(hostName);
+        String portStrippedHostName = stripPortNumber(hostName);
         ResolvedVirtualHost host = findMatchingVirtualHost(portStrippedHostName, portNumber);
+        if (host != null) {
+            hostResolutionCache.put(hostName, host);
+            return host;
+        }
 
         // no host found. Let's try the default host, if there is one configured:
-        if(host == null && getDefaultHostName() != null && !getDefaultHostName().equals(portStrippedHostName)) {
+        if(getDefaultHostName() != null && !getDefaultHostName().equals(portStrippedHostName)) {
             log.debug("Cannot find a mapping for servername '{}'. We try the default servername '{}'", portStrippedHostName, getDefaultHostName());
-            if (portNumber != 0) {
-                host = matchVirtualHost(getDefaultHostName()+":"+Integer.toString(portNumber));
-            }
-            else {
-                host = matchVirtualHost(getDefaultHostName());
+            host = matchDefaultVirtualHost(portNumber);
+            if(host == null) {
+                log.info("We cannot find a servername mapping for '{}'. Even the default servername '{}' cannot be found. Return null", portStrippedHostName , getDefaultHostName());
             }
+            // 'hostName' can be any random host header: keep the fallback result in the bounded negative cache only
+            hostResolutionCache.putFallback(hostName, host);
+            return host;
         }
-        if(host == null) {
-           log.info("We cannot find a servername mapping for '{}'. Even the default servername '{}' cannot be found. Return null", portStrippedHostName , getDefaultHostName());
 
-        }
-        // store in the resolvedMap
-        resolvedMapCache.put(hostName, host);
+        log.info("We cannot find a servername mapping for '{}'. Even the default servername '{}' cannot be found. Return null", portStrippedHostName , getDefaultHostName());
+        hostResolutionCache.put(hostName, null);
+        return null;
+    }
 
+    /**
+     * Resolves the default host for <code>portNumber</code> without going through the cached entry point of
+     * {@link #matchVirtualHost(String)} such that the host resolution statistics are not counted twice. The result is
+     * cached under the default host name itself.
+     */
+    private ResolvedVirtualHost matchDefaultVirtualHost(final int portNumber) {
+        final String defaultHostName = getDefaultHostName().toLowerCase();
+        final String cacheKey = portNumber != 0 ? defaultHostName + ":" + portNumber : defaultHostName;
+        ResolvedVirtualHost host = findMatchingVirtualHost(defaultHostName, portNumber);
+        hostResolutionCache.put(cacheKey, host);
         return host;
     }
 
+    private static int getPortNumber(final String hostName) throws MatchException {
+        int offset = hostName.lastIndexOf(':');
+        if (offset == -1) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(hostName.substring(offset+1));
+        }
+        catch (NumberFormatException nfe) {
+            throw new MatchException("The hostName '"+hostName+"' contains an invalid portnumber");
+        }
+    }
+
+    private static String stripPortNumber(final String hostName) {
+        int offset = hostName.lastIndexOf(':');
+        return offset == -1 ? hostName : hostName.substring(0, offset);
+    }
 
     /**
      * Override this method if you want a different algorithm to resolve hostName
@@ -675,7 +825,7 @@ public class VirtualHostsService implements MutableVirtualHosts {
             return null;
         }
 
-        return new ResolvedVirtualHostImpl(host, hostName, portMount);
+        return new ResolvedVirtualHostImpl(host, hostName, portMount, hstManager.getMountResolutionCacheSpec());
 
     }
 
@@ -16,18 +16,28 @@
 package org.hippoecm.hst.configuration.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import javax.servlet.ServletContext;
 
 import org.hippoecm.hst.cache.HstCache;
+import org.hippoecm.hst.cache.jmx.HostResolutionCacheStats;
+import org.hippoecm.hst.configuration.HstNodeTypes;
+import org.hippoecm.hst.configuration.cache.HstEvent;
 import org.hippoecm.hst.configuration.cache.HstEventsDispatcher;
 import org.hippoecm.hst.configuration.cache.HstNodeLoadingCache;
+import org.hippoecm.hst.configuration.hosting.HostResolutionCache;
 import org.hippoecm.hst.configuration.hosting.VirtualHosts;
 import org.hippoecm.hst.configuration.hosting.VirtualHostsService;
+import org.hippoecm.hst.configuration.site.HstSiteCache;
 import org.hippoecm.hst.core.component.HstURLFactory;
 import org.hippoecm.hst.core.container.ContainerException;
 import org.hippoecm.hst.core.container.HstComponentRegistry;
+import org.hippoecm.hst.core.linking.HstLinkCreator;
 import org.hippoecm.hst.core.request.HstSiteMapMatcher;
 import org.hippoecm.hst.core.sitemapitemhandler.HstSiteMapItemHandlerFactory;
 import org.hippoecm.hst.core.sitemapitemhandler.HstSiteMapItemHandlerRegistry;
@@ -67,11 +77,31 @@ public class HstManagerImpl implements HstManager, ServletContextAware {
     private HstComponentRegistry componentRegistry;
     private HstSiteMapItemHandlerRegistry siteMapItemHandlerRegistry;
     private HstCache pageCache;
+    private HstCache fragmentCache;
+    private HstCache rewrittenContentCache;
+    private HstLinkCreator linkCreator;
     private boolean clearPageCacheAfterModelLoad;
 
 
     private HstNodeLoadingCache hstNodeLoadingCache;
     private HstEventsDispatcher hstEventsDispatcher;
+    private HstSiteCache hstSiteCache;
+
+    private String hostResolutionCacheSpec = "maximumSize=1000";
+    private String negativeHostResolutionCacheSpec = "maximumSize=1000";
+    private String mountResolutionCacheSpec = "maximumSize=1000";
+    private HostResolutionCacheStats hostResolutionCacheStats = new HostResolutionCacheStats();
+
+    private boolean parallelModelBuildEnabled;
+    private ExecutorService modelBuildExecutor;
+
+    /**
+     * The hst configuration changes that resulted in the last model build
+     */
+    private Set<HstEvent> lastBuildHstEvents = Collections.emptySet();
+
+    private static final String CONTAINERS_PATH_SEGMENT = "/" + HstNodeTypes.NODENAME_HST_WORKSPACE + "/"
+            + HstNodeTypes.NODENAME_HST_CONTAINERS + "/";
 
     /**
      *
@@ -112,6 +142,69 @@ public class HstManagerImpl implements HstManager, ServletContextAware {
         this.hstEventsDispatcher = hstEventsDispatcher;
     }
 
+    public void setHstSiteCache(final HstSiteCache hstSiteCache) {
+        this.hstSiteCache = hstSiteCache;
+    }
+
+    /**
+     * @param hostResolutionCacheSpec the {@link com.google.common.cache.CacheBuilderSpec} for the cache of resolved
+     *                                host names
+     */
+    public void setHostResolutionCacheSpec(final String hostResolutionCacheSpec) {
+        this.hostResolutionCacheSpec = hostResolutionCacheSpec;
+    }
+
+    /**
+     * @param negativeHostResolutionCacheSpec the {@link com.google.common.cache.CacheBuilderSpec} for the cache of
+     *                                        host names that cannot be resolved
+     */
+    public void setNegativeHostResolutionCacheSpec(final String negativeHostResolutionCacheSpec) {
+        this.negativeHostResolutionCacheSpec = negativeHostResolutionCacheSpec;
+    }
+
+    /**
+     * @param mountResolutionCacheSpec the {@link com.google.common.cache.CacheBuilderSpec} for the cache of matched
+     *                                 mounts per resolved host
+     */
+    public void setMountResolutionCacheSpec(final String mountResolutionCacheSpec) {
+        this.mountResolutionCacheSpec = mountResolutionCacheSpec;
+    }
+
+    public String getMountResolutionCacheSpec() {
+        return mountResolutionCacheSpec;
+    }
+
+    public void setHostResolutionCacheStats(final HostResolutionCacheStats hostResolutionCacheStats) {
+        this.hostResolutionCacheStats = hostResolutionCacheStats;
+    }
+
+    /**
+     * When enabled, the root virtual hosts of a new model, including their mounts and hst sites, are loaded
+     * concurrently on the {@link #setModelBuildExecutor(ExecutorService) model build executor}
+     */
+    public void setParallelModelBuildEnabled(final boolean parallelModelBuildEnabled) {
+        this.parallelModelBuildEnabled = parallelModelBuildEnabled;
+    }
+
+    public void setModelBuildExecutor(final ExecutorService modelBuildExecutor) {
+        this.modelBuildExecutor = modelBuildExecutor;
+    }
+
+    /**
+     * @return the executor to load the independent parts of a new model with, or <code>null</code> when the model
+     * must be loaded on the building thread only
+     */
+    public ExecutorService getModelBuildExecutor() {
+        return parallelModelBuildEnabled ? modelBuildExecutor : null;
+    }
+
+    /**
+     * @return a new (empty) {@link HostResolutionCache} for a new model
+     */
+    public HostResolutionCache createHostResolutionCache() {
+        return new HostResolutionCache(hostResolutionCacheSpec, negativeHostResolutionCacheSpec, hostResolutionCacheStats);
+    }
+
     public void setComponentRegistry(HstComponentRegistry componentRegistry) {
         this.componentRegistry = componentRegistry;
     }
@@ -124,6 +217,25 @@ public class HstManagerImpl implements HstManager, ServletContextAware {
         this.pageCache = pageCache;
     }
 
+    public void setFragmentCache(final HstCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * @param rewrittenContentCache the cache of rewritten rich text, which is cleared when a new model is loaded since
+     *                              the links in it depend on the model
+     */
+    public void setRewrittenContentCache(final HstCache rewrittenContentCache) {
+        this.rewrittenContentCache = rewrittenContentCache;
+    }
+
+    /**
+     * @param linkCreator the {@link HstLinkCreator} whose caches are cleared when a new model is loaded
+     */
+    public void setLinkCreator(final HstLinkCreator linkCreator) {
+        this.linkCreator = linkCreator;
+    }
+
     public void setClearPageCacheAfterModelLoad(final boolean clearPageCacheAfterModelLoad) {
         this.clearPageCacheAfterModelLoad = clearPageCacheAfterModelLoad;
     }
@@ -332,9 +444,18 @@ public class HstManagerImpl implements HstManager, ServletContextAware {
                         // do not flush pageCache but return old prev virtual host instance instead
                         return prevVirtualHostsModel;
                     }
+                    if (linkCreator != null) {
+                        // cached link resolutions refer to the sitemaps of the previous model
+                        linkCreator.clear();
+                    }
+                    if (rewrittenContentCache != null) {
+                        rewrittenContentCache.clear();
+                    }
                     if (clearPageCacheAfterModelLoad) {
-                        log.info("Clearing page cache after new model is loaded");
-                        pageCache.clear();
+                        invalidateCache(pageCache, "page cache", lastBuildHstEvents);
+                        if (fragmentCache != null) {
+                            invalidateCache(fragmentCache, "fragment cache", lastBuildHstEvents);
+                        }
                     } else {
                         log.debug("Page cache won't be cleared because 'clearPageCacheAfterModelLoad = false'");
                     }
@@ -349,6 +470,31 @@ public class HstManagerImpl implements HstManager, ServletContextAware {
         return virtualHostsModel;
     }
 
+    /**
+     * Changes to workspace containers (the typical result of editing a channel) only affect the pages that contain
+     * those containers : when the (page or fragment) cache tracks dependencies, only those pages are evicted. Any
+     * other hst configuration change (sitemap, hosts, inheritance, etc) can affect the matching or composition of any
+     * page and results in clearing the entire cache.
+     */
+    private void invalidateCache(final HstCache cache, final String cacheName, final Set<HstEvent> hstEvents) {
+        if (!cache.isDependencyTrackingEnabled() || hstEvents.isEmpty()) {
+            log.info("Clearing {} after new model is loaded", cacheName);
+            cache.clear();
+            return;
+        }
+        final Set<String> changedPaths = new HashSet<>();
+        for (HstEvent hstEvent : hstEvents) {
+            if (!hstEvent.getNodePath().contains(CONTAINERS_PATH_SEGMENT)) {
+                log.info("Clearing {} after new model is loaded because of change at '{}'", cacheName, hstEvent.getNodePath());
+                cache.clear();
+                return;
+            }
+            changedPaths.add(hstEvent.getNodePath());
+        }
+        log.info("Invalidating {} for changed containers '{}' after new model is loaded", cacheName, changedPaths);
+        cache.invalidate(changedPaths);
+    }
+
     private long computeReloadDelay(final int consecutiveBuildFailCounter) {
         switch (consecutiveBuildFailCounter) {
             case 0 : return 0L;
@@ -363,12 +509,15 @@ public class HstManagerImpl implements HstManager, ServletContextAware {
 
     private void buildSites() {
 
-        hstEventsDispatcher.dispatchHstEvents();
+        lastBuildHstEvents = hstEventsDispatcher.dispatchHstEvents();
 
         log.info("Start building in memory hst configuration model");
 
         try {
             long start = System.currentTimeMillis();
+            if (hstSiteCache != null) {
+                hstSiteCache.buildStarted();
+            }
             VirtualHostsService newModel = new VirtualHostsService(this, hstNodeLoadingCache);
 
             for (HstConfigurationAugmenter configurationAugmenter : hstConfigurationAugmenters) {
@@ -379,8 +528,12 @@ public class HstManagerImpl implements HstManager, ServletContextAware {
             componentRegistry.unregisterAllComponents();
             siteMapItemHandlerRegistry.unregisterAllSiteMapItemHandlers();
 
+            if (hstSiteCache != null) {
+                hstSiteCache.buildFinished();
+            }
             log.info("Finished build in memory hst configuration model in '{}' ms.", (System.currentTimeMillis() - start));
             virtualHostsModel = newModel;
+            hostResolutionCacheStats.setCurrentCache(newModel.getHostResolutionCache());
         } catch (ModelLoadingException e) {
             throw e;
         } catch (Exception e) {
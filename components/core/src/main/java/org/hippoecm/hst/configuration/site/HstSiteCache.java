@@ -0,0 +1,293 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.configuration.site;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hippoecm.hst.cache.CacheDependencies;
+import org.hippoecm.hst.cache.CacheDependencyIndex;
+import org.hippoecm.hst.configuration.cache.HstEvent;
+import org.hippoecm.hst.configuration.cache.HstEventConsumer;
+import org.hippoecm.hst.configuration.cache.HstNodeLoadingCache;
+import org.hippoecm.hst.configuration.hosting.Mount;
+import org.hippoecm.hst.configuration.hosting.VirtualHost;
+import org.hippoecm.hst.configuration.model.HstNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.hippoecm.hst.configuration.HstNodeTypes.BRANCH_PROPERTY_BRANCH_OF;
+
+/**
+ * <p>
+ *     Keeps the {@link HstSite} instances of the current model such that the next model build can reuse the instances
+ *     that are not affected by the hst configuration changes since the previous build. A reused {@link HstSite} keeps
+ *     its already loaded sitemap, site menus, components configuration and location map trees, hence the time to build a
+ *     new model scales with the size of the change instead of with the number of sites.
+ * </p>
+ * <p>
+ *     An {@link HstSite} is evicted when there is an event for its hst:site node, for the root configuration node (or
+ *     below) of its master, preview or branch configurations or for any configuration inherited by those. An event
+ *     for a root configuration node that is a branch also evicts the sites of the configuration it is a branch of. All
+ *     the other mount specific input for an {@link HstSite} is part of its {@link Key}.
+ * </p>
+ * <p>
+ *     Instances that are not used during a successful model build are evicted at the end of that build
+ * </p>
+ */
+public class HstSiteCache implements HstEventConsumer {
+
+    private static final Logger log = LoggerFactory.getLogger(HstSiteCache.class);
+
+    private final Map<Key, HstSite> sites = new ConcurrentHashMap<>();
+    private final CacheDependencyIndex<Key> dependencyIndex = new CacheDependencyIndex<>();
+    private final Set<Key> usedKeys = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger reusedSites = new AtomicInteger();
+    private final AtomicInteger createdSites = new AtomicInteger();
+    private final AtomicLong creationTimeMillis = new AtomicLong();
+
+    private HstNodeLoadingCache hstNodeLoadingCache;
+    private String rootConfigurationsPrefix;
+    private boolean enabled = true;
+
+    public void setHstNodeLoadingCache(final HstNodeLoadingCache hstNodeLoadingCache) {
+        this.hstNodeLoadingCache = hstNodeLoadingCache;
+    }
+
+    public void setRootConfigurationsPrefix(final String rootConfigurationsPrefix) {
+        this.rootConfigurationsPrefix = rootConfigurationsPrefix;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void handleEvents(final Set<HstEvent> events) {
+        if (events == null || events.isEmpty() || sites.isEmpty()) {
+            return;
+        }
+        final Set<String> eventPaths = new HashSet<>();
+        for (HstEvent event : events) {
+            final String eventPath = event.getNodePath();
+            eventPaths.add(eventPath);
+            final String branchOf = getBranchOf(eventPath);
+            if (branchOf != null) {
+                // a (possibly new) branch changes the set of branches of its master
+                eventPaths.add(rootConfigurationsPrefix + branchOf);
+                eventPaths.add(rootConfigurationsPrefix + branchOf + "-preview");
+            }
+        }
+        final Set<Key> affected = dependencyIndex.removeAffected(eventPaths);
+        for (Key key : affected) {
+            sites.remove(key);
+        }
+        log.info("Evicted '{}' hst sites because of '{}' events. '{}' hst sites remain available for reuse.",
+                affected.size(), events.size(), sites.size());
+    }
+
+    /**
+     * @return the value of the hst:branchof property if <code>eventPath</code> is the path of a root configuration node
+     * that is a branch and <code>null</code> otherwise
+     */
+    private String getBranchOf(final String eventPath) {
+        if (rootConfigurationsPrefix == null || !eventPath.startsWith(rootConfigurationsPrefix)
+                || eventPath.indexOf('/', rootConfigurationsPrefix.length()) != -1) {
+            return null;
+        }
+        final HstNode configurationNode = hstNodeLoadingCache.getNode(eventPath);
+        if (configurationNode == null || !configurationNode.getValueProvider().hasProperty(BRANCH_PROPERTY_BRANCH_OF)) {
+            return null;
+        }
+        return configurationNode.getValueProvider().getString(BRANCH_PROPERTY_BRANCH_OF);
+    }
+
+    /**
+     * @return the cached {@link HstSite} for <code>key</code> or <code>null</code> if not present
+     */
+    public HstSite get(final Key key) {
+        if (!enabled) {
+            return null;
+        }
+        final HstSite site = sites.get(key);
+        if (site != null) {
+            usedKeys.add(key);
+            reusedSites.incrementAndGet();
+        }
+        return site;
+    }
+
+    /**
+     * @param dependencies the repository paths the <code>site</code> depends on, see {@link CacheDependencies}
+     * @param creationTime the time it took to create the <code>site</code> in milliseconds
+     */
+    public void put(final Key key, final HstSite site, final CacheDependencies dependencies, final long creationTime) {
+        createdSites.incrementAndGet();
+        creationTimeMillis.addAndGet(creationTime);
+        if (!enabled) {
+            return;
+        }
+        dependencyIndex.register(key, dependencies);
+        sites.put(key, site);
+        usedKeys.add(key);
+    }
+
+    /**
+     * Marks the start of a model build : only the {@link HstSite}s that are used during the build will be kept by
+     * {@link #buildFinished()}
+     */
+    public void buildStarted() {
+        usedKeys.clear();
+        reusedSites.set(0);
+        createdSites.set(0);
+        creationTimeMillis.set(0);
+    }
+
+    /**
+     * Evicts the {@link HstSite}s that have not been used by the model build that just finished successfully
+     */
+    public void buildFinished() {
+        int evicted = 0;
+        for (Iterator<Key> keys = sites.keySet().iterator(); keys.hasNext(); ) {
+            final Key key = keys.next();
+            if (!usedKeys.contains(key)) {
+                keys.remove();
+                dependencyIndex.unregister(key);
+                evicted++;
+            }
+        }
+        usedKeys.clear();
+        log.info("Model build reused '{}' hst sites and created '{}' hst sites in '{}' ms. Evicted '{}' unused hst sites.",
+                reusedSites.get(), createdSites.get(), creationTimeMillis.get(), evicted);
+    }
+
+    public void clear() {
+        sites.clear();
+        usedKeys.clear();
+        dependencyIndex.clear();
+    }
+
+    /**
+     * The key of a cached {@link HstSite} : All the input of an {@link HstSite} that is not stored below the hst:site
+     * node or below the hst configurations it depends on.
+     */
+    public static final class Key {
+
+        private final String sitePath;
+        private final String siteIdentifier;
+        private final boolean preview;
+        private final MountSiteMapConfiguration mountSiteMapConfiguration;
+        private final String mountIdentifier;
+        private final String mountPath;
+        private final String mountPoint;
+        private final String contextPath;
+        private final boolean noChannelInfo;
+        private final boolean portInUrl;
+        private final int port;
+        private final String hostName;
+        private final boolean contextPathInUrl;
+        private final String cmsPreviewPrefix;
+        private final int hashCode;
+
+        public Key(final HstNode site, final Mount mount, final MountSiteMapConfiguration mountSiteMapConfiguration,
+                   final boolean preview) {
+            sitePath = site.getValueProvider().getPath();
+            siteIdentifier = site.getValueProvider().getIdentifier();
+            this.preview = preview;
+            this.mountSiteMapConfiguration = mountSiteMapConfiguration;
+            mountIdentifier = mount.getIdentifier();
+            mountPath = mount.getMountPath();
+            mountPoint = mount.getMountPoint();
+            contextPath = mount.getContextPath();
+            noChannelInfo = mount.hasNoChannelInfo();
+            portInUrl = mount.isPortInUrl();
+            port = mount.getPort();
+            final VirtualHost virtualHost = mount.getVirtualHost();
+            hostName = virtualHost.getHostName();
+            contextPathInUrl = virtualHost.isContextPathInUrl();
+            cmsPreviewPrefix = virtualHost.getVirtualHosts().getCmsPreviewPrefix();
+            hashCode = computeHashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key that = (Key) o;
+            return hashCode == that.hashCode
+                    && preview == that.preview
+                    && noChannelInfo == that.noChannelInfo
+                    && portInUrl == that.portInUrl
+                    && port == that.port
+                    && contextPathInUrl == that.contextPathInUrl
+                    && equal(sitePath, that.sitePath)
+                    && equal(siteIdentifier, that.siteIdentifier)
+                    && equal(mountSiteMapConfiguration, that.mountSiteMapConfiguration)
+                    && equal(mountIdentifier, that.mountIdentifier)
+                    && equal(mountPath, that.mountPath)
+                    && equal(mountPoint, that.mountPoint)
+                    && equal(contextPath, that.contextPath)
+                    && equal(hostName, that.hostName)
+                    && equal(cmsPreviewPrefix, that.cmsPreviewPrefix);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        private int computeHashCode() {
+            int result = sitePath != null ? sitePath.hashCode() : 0;
+            result = 31 * result + (siteIdentifier != null ? siteIdentifier.hashCode() : 0);
+            result = 31 * result + (preview ? 1 : 0);
+            result = 31 * result + (mountSiteMapConfiguration != null ? mountSiteMapConfiguration.hashCode() : 0);
+            result = 31 * result + (mountIdentifier != null ? mountIdentifier.hashCode() : 0);
+            result = 31 * result + (mountPath != null ? mountPath.hashCode() : 0);
+            result = 31 * result + (mountPoint != null ? mountPoint.hashCode() : 0);
+            result = 31 * result + (contextPath != null ? contextPath.hashCode() : 0);
+            result = 31 * result + (noChannelInfo ? 1 : 0);
+            result = 31 * result + (portInUrl ? 1 : 0);
+            result = 31 * result + port;
+            result = 31 * result + (hostName != null ? hostName.hashCode() : 0);
+            result = 31 * result + (contextPathInUrl ? 1 : 0);
+            result = 31 * result + (cmsPreviewPrefix != null ? cmsPreviewPrefix.hashCode() : 0);
+            return result;
+        }
+
+        private static boolean equal(final Object o1, final Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+
+        @Override
+        public String toString() {
+            return "Key{sitePath='" + sitePath + "', preview=" + preview + ", mountIdentifier='" + mountIdentifier + "'}";
+        }
+    }
+}
@@ -19,10 +19,13 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
+import org.hippoecm.hst.cache.CacheDependencies;
+import org.hippoecm.hst.configuration.cache.HstConfigurationLoadingCache;
 import org.hippoecm.hst.configuration.cache.HstNodeLoadingCache;
 import org.hippoecm.hst.configuration.hosting.Mount;
 import org.hippoecm.hst.configuration.model.HstNode;
 import org.hippoecm.hst.configuration.model.ModelLoadingException;
+import org.hippoecm.hst.site.HstServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,14 +42,82 @@ public class HstSiteFactory {
                                                        final Mount mount,
                                                        final MountSiteMapConfiguration mountSiteMapConfiguration,
                                                        final HstNodeLoadingCache hstNodeLoadingCache) throws ModelLoadingException {
-        return createSiteService(site, mount, mountSiteMapConfiguration, hstNodeLoadingCache, false);
+        return getOrCreateSiteService(site, mount, mountSiteMapConfiguration, hstNodeLoadingCache, false);
     }
 
     public HstSite createPreviewSiteService(final HstNode site,
                                                           final Mount mount,
                                                           final MountSiteMapConfiguration mountSiteMapConfiguration,
                                                           final HstNodeLoadingCache hstNodeLoadingCache) throws ModelLoadingException {
-        return createSiteService(site, mount, mountSiteMapConfiguration, hstNodeLoadingCache, true);
+        return getOrCreateSiteService(site, mount, mountSiteMapConfiguration, hstNodeLoadingCache, true);
+    }
+
+    private HstSite getOrCreateSiteService(final HstNode site,
+                                           final Mount mount,
+                                           final MountSiteMapConfiguration mountSiteMapConfiguration,
+                                           final HstNodeLoadingCache hstNodeLoadingCache,
+                                           final boolean isPreviewSite) {
+        final HstSiteCache siteCache = HstServices.getComponentManager().getComponent(HstSiteCache.class.getName());
+        if (siteCache == null) {
+            return createSiteService(site, mount, mountSiteMapConfiguration, hstNodeLoadingCache, isPreviewSite);
+        }
+
+        final HstSiteCache.Key key = new HstSiteCache.Key(site, mount, mountSiteMapConfiguration, isPreviewSite);
+        final HstSite cached = siteCache.get(key);
+        if (cached != null) {
+            log.info("Reusing {} hst site for '{}' and mount '{}' from previous model.",
+                    isPreviewSite ? "preview" : "live", site.getValueProvider().getPath(), mount);
+            return cached;
+        }
+
+        final long start = System.currentTimeMillis();
+        final HstSite created = createSiteService(site, mount, mountSiteMapConfiguration, hstNodeLoadingCache, isPreviewSite);
+        final long creationTime = System.currentTimeMillis() - start;
+        siteCache.put(key, created, getDependencies(site, created), creationTime);
+        log.info("Created {} hst site for '{}' and mount '{}' in '{}' ms.",
+                isPreviewSite ? "preview" : "live", site.getValueProvider().getPath(), mount, creationTime);
+        return created;
+    }
+
+    /**
+     * @return the repository paths <code>hstSite</code> depends on : the hst:site node and the root configuration
+     * nodes of the master, its branches, their preview configurations and all the configurations they inherit from
+     */
+    private CacheDependencies getDependencies(final HstNode site, final HstSite hstSite) {
+        final CacheDependencies dependencies = new CacheDependencies();
+        dependencies.addSubtree(site.getValueProvider().getPath());
+        if (hstSite instanceof CompositeHstSite) {
+            // do not use the composite its #getConfigurationPath() as that one depends on the current request
+            final CompositeHstSite compositeHstSite = (CompositeHstSite) hstSite;
+            addConfigurationDependencies(compositeHstSite.getMaster().getConfigurationPath(), dependencies);
+            for (HstSite branch : compositeHstSite.getBranches().values()) {
+                addConfigurationDependencies(branch.getConfigurationPath(), dependencies);
+            }
+        } else {
+            addConfigurationDependencies(hstSite.getConfigurationPath(), dependencies);
+        }
+        return dependencies;
+    }
+
+    private void addConfigurationDependencies(final String configurationPath, final CacheDependencies dependencies) {
+        final String liveConfigurationPath = StringUtils.removeEnd(configurationPath, "-preview");
+        dependencies.addSubtree(liveConfigurationPath);
+        // a preview configuration that gets created or removed changes the site
+        dependencies.addSubtree(liveConfigurationPath + "-preview");
+
+        final HstConfigurationLoadingCache configLoadingCache =
+                HstServices.getComponentManager().getComponent(HstConfigurationLoadingCache.class.getName());
+        final String configurationsPath = StringUtils.substringBeforeLast(configurationPath, "/");
+        for (String dependencyPath : configLoadingCache.getCompositeConfigurationNodes(configurationPath)
+                .getCompositeConfigurationDependencyPaths()) {
+            // depend on the entire inherited configuration, also when only a part of it is inherited
+            final String relPath = StringUtils.substringAfter(dependencyPath, configurationsPath + "/");
+            if (relPath.isEmpty()) {
+                dependencies.addSubtree(dependencyPath);
+            } else {
+                dependencies.addSubtree(configurationsPath + "/" + StringUtils.substringBefore(relPath, "/"));
+            }
+        }
     }
 
 
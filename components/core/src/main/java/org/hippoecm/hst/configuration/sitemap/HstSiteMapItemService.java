@@ -783,6 +783,14 @@ public class HstSiteMapItemService implements HstSiteMapItem, CanonicalInfo, Con
         return match(remainder.toString(), containsAnyChildSiteMapItems, excludeList);
     }
 
+    List<HstSiteMapItemService> getWildCardPatternChildren() {
+        return containsWildCardChildSiteMapItems;
+    }
+
+    List<HstSiteMapItemService> getAnyPatternChildren() {
+        return containsAnyChildSiteMapItems;
+    }
+
 
     public boolean patternMatch(String value, String prefix, String postfix ) {
      // postFix must match
@@ -62,6 +62,8 @@ public class HstSiteMapService implements HstSiteMap, CanonicalInfo {
      * map. When duplicate key's are tried to be put, an error is logged
      */
     private Map<String, HstSiteMapItem> siteMapDescendantsByRefId = new HashMap<String, HstSiteMapItem>();
+
+    private final SiteMapMatchingTree matchingTree;
     
     public HstSiteMapService(final HstSite hstSite,
                              final CompositeConfigurationNodes.CompositeConfigurationNode siteMapNode,
@@ -100,7 +102,8 @@ public class HstSiteMapService implements HstSiteMap, CanonicalInfo {
         for(HstSiteMapItem child : this.rootSiteMapItems.values()) {
             ((HstSiteMapItemService)child).optimize();
         }
-        
+
+        matchingTree = new SiteMapMatchingTree(getSiteMapItems());
     }
 
     private void populateDescendants(HstSiteMapItem hstSiteMapItem)  throws ModelLoadingException {
@@ -161,4 +164,11 @@ public class HstSiteMapService implements HstSiteMap, CanonicalInfo {
         return this.hstSite;
     }
 
+    /**
+     * @return the {@link SiteMapMatchingTree} compiled from the sitemap items of this sitemap
+     */
+    public SiteMapMatchingTree getMatchingTree() {
+        return matchingTree;
+    }
+
 }
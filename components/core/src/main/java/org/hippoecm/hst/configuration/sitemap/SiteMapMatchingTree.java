@@ -0,0 +1,295 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.configuration.sitemap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.hippoecm.hst.configuration.HstNodeTypes.ANY;
+import static org.hippoecm.hst.configuration.HstNodeTypes.WILDCARD;
+
+/**
+ * <p>
+ *     Immutable matching structure for the {@link HstSiteMapItem}s of an {@link HstSiteMap}, compiled once when the
+ *     sitemap is loaded. Every node keeps its explicit children in a hash map and its wildcard children in arrays, such
+ *     that matching a path takes time proportional to the number of path elements (plus backtracking over wildcards)
+ *     and does not depend on the number of sitemap items.
+ * </p>
+ * <p>
+ *     For every path element, the children of a sitemap item are tried in the following order, backtracking to the
+ *     next alternative when a subtree does not result in a match:
+ * </p>
+ * <ol>
+ *     <li>the explicit child with the same name</li>
+ *     <li>the partial wildcard children (<code>*.xxx</code>), in configuration order</li>
+ *     <li>the <code>_default_</code> child</li>
+ *     <li>the partial any children (<code>**.xxx</code>) matching the remainder of the path, in configuration order</li>
+ *     <li>the <code>_any_</code> child matching the remainder of the path</li>
+ * </ol>
+ * <p>
+ *     Sitemap items that are marked deleted are never matched. The <code>_index_</code> handling is left to the
+ *     {@link org.hippoecm.hst.core.request.HstSiteMapMatcher} as it depends on the content of the current request.
+ * </p>
+ */
+public class SiteMapMatchingTree {
+
+    private static final Node[] NO_NODES = new Node[0];
+
+    private final Node root;
+
+    public SiteMapMatchingTree(final List<HstSiteMapItem> rootSiteMapItems) {
+        root = new Node(null, rootSiteMapItems, rootSiteMapItems, rootSiteMapItems);
+    }
+
+    /**
+     * @param pathInfo the normalized path (without leading or trailing slash) to match
+     * @return the {@link MatchResult} for <code>pathInfo</code> or <code>null</code> if there is no matching sitemap
+     * item
+     */
+    public MatchResult match(final String pathInfo) {
+        final String[] elements = pathInfo.split("/");
+        final Parameters parameters = new Parameters();
+        final HstSiteMapItem matched = root.match(elements, 0, parameters);
+        if (matched == null) {
+            return null;
+        }
+        return new MatchResult(matched, parameters);
+    }
+
+    public static final class MatchResult {
+
+        private final HstSiteMapItem siteMapItem;
+        private final Parameters parameters;
+
+        private MatchResult(final HstSiteMapItem siteMapItem, final Parameters parameters) {
+            this.siteMapItem = siteMapItem;
+            this.parameters = parameters;
+        }
+
+        public HstSiteMapItem getSiteMapItem() {
+            return siteMapItem;
+        }
+
+        /**
+         * @return the matched wildcard values, the first one at index 0
+         */
+        public String[] getParameterValues() {
+            return parameters.toArray();
+        }
+
+        /**
+         * @return a new {@link Properties} object containing the matched wildcard values with keys "1", "2", etc
+         */
+        public Properties getParameters() {
+            return parameters.toProperties();
+        }
+    }
+
+    private static final class Node {
+
+        private final HstSiteMapItem item;
+        private final String prefix;
+        private final String postfix;
+        private final Map<String, Node> children;
+        private final Node[] wildCardPatternChildren;
+        private final Node wildCardChild;
+        private final Node[] anyPatternChildren;
+        private final Node anyChild;
+
+        private Node(final HstSiteMapItem item) {
+            this(item, item.getChildren(), wildCardPatternChildren(item), anyPatternChildren(item));
+        }
+
+        private Node(final HstSiteMapItem item,
+                     final List<HstSiteMapItem> childItems,
+                     final List<? extends HstSiteMapItem> wildCardPatternItems,
+                     final List<? extends HstSiteMapItem> anyPatternItems) {
+            this.item = item;
+            if (item != null && (item.containsWildCard() || item.containsAny())) {
+                final String value = item.getValue();
+                final String wildcard = item.containsWildCard() ? WILDCARD : ANY;
+                prefix = value.substring(0, value.indexOf(wildcard));
+                postfix = value.substring(value.indexOf(wildcard) + wildcard.length());
+            } else {
+                prefix = null;
+                postfix = null;
+            }
+
+            final Map<String, Node> nodesByValue = new HashMap<>();
+            for (HstSiteMapItem childItem : childItems) {
+                if (!childItem.isMarkedDeleted()) {
+                    nodesByValue.put(childItem.getValue(), new Node(childItem));
+                }
+            }
+            children = nodesByValue.isEmpty() ? Collections.emptyMap() : nodesByValue;
+            wildCardPatternChildren = patternNodes(wildCardPatternItems, true);
+            anyPatternChildren = patternNodes(anyPatternItems, false);
+            wildCardChild = children.get(WILDCARD);
+            anyChild = children.get(ANY);
+        }
+
+        private Node[] patternNodes(final List<? extends HstSiteMapItem> patternItems, final boolean wildCardPatterns) {
+            final List<Node> nodes = new ArrayList<>();
+            for (HstSiteMapItem patternItem : patternItems) {
+                if (wildCardPatterns ? !patternItem.containsWildCard() : !patternItem.containsAny()) {
+                    continue;
+                }
+                final Node node = children.get(patternItem.getValue());
+                if (node != null) {
+                    nodes.add(node);
+                }
+            }
+            return nodes.isEmpty() ? NO_NODES : nodes.toArray(new Node[nodes.size()]);
+        }
+
+        private HstSiteMapItem match(final String[] elements, final int position, final Parameters parameters) {
+            if (position == elements.length) {
+                return item;
+            }
+            final String element = elements[position];
+            final int mark = parameters.size();
+
+            final Node child = children.get(element);
+            if (child != null) {
+                if (item != null && (child.item.isWildCard() || child.item.isAny())) {
+                    // this can happen when the pathInfo to match contains _default_ or _any_ : It is a corner case
+                    parameters.add(element);
+                }
+                final HstSiteMapItem matched = child.match(elements, position + 1, parameters);
+                if (matched != null) {
+                    return matched;
+                }
+                parameters.truncate(mark);
+            }
+
+            for (Node patternChild : wildCardPatternChildren) {
+                if (patternChild.patternMatch(element)) {
+                    parameters.add(patternChild.strip(element));
+                    final HstSiteMapItem matched = patternChild.match(elements, position + 1, parameters);
+                    if (matched != null) {
+                        return matched;
+                    }
+                    parameters.truncate(mark);
+                }
+            }
+
+            if (wildCardChild != null) {
+                parameters.add(element);
+                final HstSiteMapItem matched = wildCardChild.match(elements, position + 1, parameters);
+                if (matched != null) {
+                    return matched;
+                }
+                parameters.truncate(mark);
+            }
+
+            if (anyPatternChildren.length == 0 && anyChild == null) {
+                return null;
+            }
+            final String remainder = remainder(elements, position);
+            for (Node patternChild : anyPatternChildren) {
+                if (patternChild.patternMatch(remainder)) {
+                    parameters.add(patternChild.strip(remainder));
+                    return patternChild.item;
+                }
+            }
+            if (anyChild != null) {
+                parameters.add(remainder);
+                return anyChild.item;
+            }
+            return null;
+        }
+
+        private boolean patternMatch(final String value) {
+            // the prefix and postfix must not overlap and leave a non empty parameter in between
+            if (prefix.length() + postfix.length() >= value.length()) {
+                return false;
+            }
+            return value.startsWith(prefix) && value.endsWith(postfix);
+        }
+
+        private String strip(final String value) {
+            return value.substring(prefix.length(), value.length() - postfix.length());
+        }
+
+        private static String remainder(final String[] elements, final int position) {
+            if (position == elements.length - 1) {
+                return elements[position];
+            }
+            final StringBuilder remainder = new StringBuilder(elements[position]);
+            for (int i = position + 1; i < elements.length; i++) {
+                remainder.append('/').append(elements[i]);
+            }
+            return remainder.toString();
+        }
+
+        private static List<? extends HstSiteMapItem> wildCardPatternChildren(final HstSiteMapItem item) {
+            if (item instanceof HstSiteMapItemService) {
+                // keeps the configuration order
+                return ((HstSiteMapItemService) item).getWildCardPatternChildren();
+            }
+            return item.getChildren();
+        }
+
+        private static List<? extends HstSiteMapItem> anyPatternChildren(final HstSiteMapItem item) {
+            if (item instanceof HstSiteMapItemService) {
+                // keeps the configuration order
+                return ((HstSiteMapItemService) item).getAnyPatternChildren();
+            }
+            return item.getChildren();
+        }
+    }
+
+    /**
+     * Array backed list of matched wildcard values which can be truncated again when backtracking
+     */
+    private static final class Parameters {
+
+        private String[] values = new String[4];
+        private int size;
+
+        private int size() {
+            return size;
+        }
+
+        private void add(final String value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private void truncate(final int newSize) {
+            size = newSize;
+        }
+
+        private String[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        private Properties toProperties() {
+            final Properties properties = new Properties();
+            for (int i = 0; i < size; i++) {
+                properties.put(String.valueOf(i + 1), values[i]);
+            }
+            return properties;
+        }
+    }
+}
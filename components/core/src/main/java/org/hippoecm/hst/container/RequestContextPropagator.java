@@ -0,0 +1,49 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.container;
+
+import java.util.concurrent.Callable;
+
+import org.hippoecm.hst.core.request.HstRequestContext;
+
+/**
+ * Propagates the {@link HstRequestContext} of a request to work that is done for the request on another thread than
+ * the request processing thread : during the work, {@link RequestContextProvider#get()} returns the request context
+ * on that thread as well.
+ */
+public final class RequestContextPropagator {
+
+    private RequestContextPropagator() {
+    }
+
+    /**
+     * Invokes <code>callable</code> with <code>requestContext</code> as the request context of the current thread,
+     * and restores the previous request context of the current thread afterwards
+     */
+    public static <V> V call(final HstRequestContext requestContext, final Callable<V> callable) throws Exception {
+        final HstRequestContext previous = RequestContextProvider.get();
+        RequestContextProvider.set(requestContext);
+        try {
+            return callable.call();
+        } finally {
+            if (previous == null) {
+                RequestContextProvider.clear();
+            } else {
+                RequestContextProvider.set(previous);
+            }
+        }
+    }
+}
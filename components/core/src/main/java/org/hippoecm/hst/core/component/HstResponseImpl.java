@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -16,7 +16,9 @@
 package org.hippoecm.hst.core.component;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.util.HashMap;
 import java.util.List;
@@ -30,6 +32,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 
 import org.apache.commons.lang.ArrayUtils;
+import org.hippoecm.hst.cache.HstComponentFragment;
 import org.hippoecm.hst.core.container.HstComponentWindow;
 import org.hippoecm.hst.core.container.HstContainerURL;
 import org.hippoecm.hst.core.request.HstRequestContext;
@@ -327,6 +330,11 @@ public class HstResponseImpl extends HttpServletResponseWrapper implements HstRe
     
     public void addHeadElement(Element element, String keyHint) {
         this.responseState.addHeadElement(element, keyHint);
+        // head elements of descendants pass through here as well, hence they end up in the captured fragment too
+        final HstComponentFragment fragment = getCapturedFragment(componentWindow);
+        if (fragment != null) {
+            fragment.addHeadElement(element, keyHint);
+        }
     }
     
     public List<Element> getHeadElements() {
@@ -431,8 +439,40 @@ public class HstResponseImpl extends HttpServletResponseWrapper implements HstRe
         if (childWindow == null) {
             log.debug("Cannot find child window with name '{}' for current window '{}'. Skip child.", name, this.componentWindow.getName());
         } else {
-            childWindow.getResponseState().flush(writer);
+            final HstComponentFragment fragment = getCapturedFragment(childWindow);
+            if (fragment == null || childWindow.getResponseState().isFlushed()) {
+                childWindow.getResponseState().flush(writer);
+                return;
+            }
+            // the child window is rendered for the fragment cache : capture what it flushes to this window
+            final StringWriter captureWriter = new StringWriter();
+            childWindow.getResponseState().flush(captureWriter);
+            final String body = captureWriter.toString();
+            fragment.setBody(body);
+            writeFlushedChildContent(body, writer);
+        }
+    }
+
+    private HstComponentFragment getCapturedFragment(final HstComponentWindow window) {
+        return (HstComponentFragment) window.getAttribute(HstComponentFragment.CAPTURE_ATTRIBUTE_NAME);
+    }
+
+    private void writeFlushedChildContent(final String content, final Writer writer) throws IOException {
+        if (writer != null) {
+            writer.write(content);
+            writer.flush();
+            return;
+        }
+        Writer parentWriter;
+        try {
+            parentWriter = getWriter();
+        } catch (IllegalStateException e) {
+            final String characterEncoding = responseState.getCharacterEncoding();
+            parentWriter = characterEncoding != null ? new OutputStreamWriter(getOutputStream(), characterEncoding)
+                    : new OutputStreamWriter(getOutputStream());
         }
+        parentWriter.write(content);
+        parentWriter.flush();
     }
     
     public List<String> getChildContentNames() {
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -17,7 +17,11 @@ package org.hippoecm.hst.core.container;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Serializable;
 import java.io.Writer;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -25,6 +29,16 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
@@ -34,15 +48,28 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang.StringUtils;
+import org.hippoecm.hst.cache.CacheDependencies;
+import org.hippoecm.hst.cache.CacheElement;
+import org.hippoecm.hst.cache.HstCache;
+import org.hippoecm.hst.cache.HstComponentFragment;
+import org.hippoecm.hst.configuration.components.HstComponentConfiguration;
+import org.hippoecm.hst.container.RequestContextPropagator;
 import org.hippoecm.hst.container.RequestContextProvider;
 import org.hippoecm.hst.core.channelmanager.ComponentWindowResponseAppender;
+import org.hippoecm.hst.core.component.FragmentCacheKeyContributor;
+import org.hippoecm.hst.core.component.HstComponentMetadata;
 import org.hippoecm.hst.core.component.HstRequest;
 import org.hippoecm.hst.core.component.HstRequestImpl;
 import org.hippoecm.hst.core.component.HstResponse;
 import org.hippoecm.hst.core.component.HstResponseImpl;
 import org.hippoecm.hst.core.component.HstResponseState;
 import org.hippoecm.hst.core.component.HstURL;
+import org.hippoecm.hst.core.component.ParallelSafe;
+import org.hippoecm.hst.core.internal.HstMutableRequestContext;
 import org.hippoecm.hst.core.request.HstRequestContext;
+import org.hippoecm.hst.core.request.ResolvedSiteMapItem;
+import org.hippoecm.hst.diagnosis.HDC;
+import org.hippoecm.hst.diagnosis.Task;
 import org.hippoecm.hst.site.HstServices;
 import org.w3c.dom.Comment;
 import org.w3c.dom.Element;
@@ -59,10 +86,30 @@ public class AggregationValve extends AbstractBaseOrderableValve {
      */
     private static final String ASYNC_RENDERED_BY_ANCESTOR_FLAG_ATTR_NAME = AggregationValve.class.getName() + ".asyncByAncestor";
 
+    /**
+     * Window attribute name for the {@link HstComponentFragment} that is rendered from the fragment cache instead of
+     * invoking the window
+     */
+    private static final String FRAGMENT_SERVED_ATTR_NAME = AggregationValve.class.getName() + ".fragmentServed";
+
+    /**
+     * Window attribute name to indicate the window is not invoked at all because an ancestor is rendered from the
+     * fragment cache
+     */
+    private static final String FRAGMENT_SERVED_BY_ANCESTOR_ATTR_NAME = AggregationValve.class.getName() + ".fragmentServedByAncestor";
+
     private Map<String, AsynchronousComponentWindowRenderer> asynchronousComponentWindowRendererMap;
 
     private List<ComponentWindowResponseAppender> componentWindowResponseAppenders;
 
+    private HstCache fragmentCache;
+
+    private boolean fragmentCachingEnabled;
+
+    private ExecutorService parallelBeforeRenderExecutor;
+
+    private boolean parallelBeforeRenderEnabled;
+
     public void setAsynchronousComponentWindowRendererMap(Map<String, AsynchronousComponentWindowRenderer> asynchronousComponentWindowRendererMap) {
         this.asynchronousComponentWindowRendererMap = asynchronousComponentWindowRendererMap;
     }
@@ -71,6 +118,31 @@ public class AggregationValve extends AbstractBaseOrderableValve {
         this.componentWindowResponseAppenders = componentWindowResponseAppenders;
     }
 
+    public void setFragmentCache(final HstCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * When <code>true</code>, the rendered output of fragment cacheable components (see
+     * {@link org.hippoecm.hst.configuration.components.HstComponentInfo#isFragmentCacheable()}) is cached in the
+     * fragment cache for live requests, and on a cache hit, the component and its descendants are not invoked at all
+     */
+    public void setFragmentCachingEnabled(final boolean fragmentCachingEnabled) {
+        this.fragmentCachingEnabled = fragmentCachingEnabled;
+    }
+
+    public void setParallelBeforeRenderExecutor(final ExecutorService parallelBeforeRenderExecutor) {
+        this.parallelBeforeRenderExecutor = parallelBeforeRenderExecutor;
+    }
+
+    /**
+     * When <code>true</code>, the doBeforeRender of sibling windows whose components are annotated with
+     * {@link ParallelSafe} are invoked concurrently on the <code>parallelBeforeRenderExecutor</code>
+     */
+    public void setParallelBeforeRenderEnabled(final boolean parallelBeforeRenderEnabled) {
+        this.parallelBeforeRenderEnabled = parallelBeforeRenderEnabled;
+    }
+
     @Override
     public void invoke(ValveContext context) throws ContainerException {
         HstRequestContext requestContext = context.getRequestContext();
@@ -134,6 +206,11 @@ public class AggregationValve extends AbstractBaseOrderableValve {
 
         HstContainerConfig requestContainerConfig = context.getRequestContainerConfig();
 
+        final boolean fragmentCaching = isFragmentCachingApplicable(requestContext, rootWindow, rootRenderingWindow);
+        if (fragmentCaching) {
+            lookupComponentFragments(sortedComponentWindows, requestMap);
+        }
+
         // process prepareBeforeRender() of each component
         boolean redirectedOrForwarded = processWindowsPrepareBeforeRender(requestContainerConfig, rootWindow,
                 rootRenderingWindow, sortedComponentWindows, requestMap, responseMap);
@@ -244,6 +321,9 @@ public class AggregationValve extends AbstractBaseOrderableValve {
         } else {
             // process doRender() of each component as reversed sort order, child first.
             processWindowsRender(requestContainerConfig, sortedComponentRenderingWindows, requestMap, responseMap);
+            if (fragmentCaching) {
+                storeComponentFragments(requestContext, sortedComponentWindows);
+            }
             // page error handling...
             pageErrors = getPageErrors(sortedComponentWindows, true);
 
@@ -374,8 +454,9 @@ public class AggregationValve extends AbstractBaseOrderableValve {
             HstRequest request = requestMap.get(window);
             HstResponse response = responseMap.get(window);
 
-            if (window.isVisible() && !isAsync(window, request)) {
-                getComponentInvoker().invokePrepareBeforeRender(requestContainerConfig, request, response);
+            if (window.isVisible() && !isAsync(window, request) && !isServedFromFragmentCache(window)) {
+                invokeTrackingFragmentDependencies(window, request,
+                        () -> getComponentInvoker().invokePrepareBeforeRender(requestContainerConfig, request, response));
             }
 
             if (window.getResponseState().getRedirectLocation() != null) {
@@ -401,27 +482,23 @@ public class AggregationValve extends AbstractBaseOrderableValve {
             final Map<HstComponentWindow, HstResponse> responseMap)
             throws ContainerException {
 
+        Set<HstComponentWindow> processedWindows = null;
+        if (isParallelBeforeRenderApplicable(rootWindow)) {
+            // all doBeforeRender invocations are done up front, the response appenders are processed below in the
+            // same order as when processing the windows sequentially
+            processedWindows = new ParallelBeforeRender(requestContainerConfig, rootWindow, requestMap, responseMap).process();
+        }
+
         for (HstComponentWindow window : sortedComponentWindows) {
             HstRequest request = requestMap.get(window);
             HstResponse response = responseMap.get(window);
 
-            if (window.isVisible()) {
-                if (isAsync(window, request)) {
-                    if (request.getAttribute(ASYNC_RENDERED_BY_ANCESTOR_FLAG_ATTR_NAME) == Boolean.TRUE) {
-                        // we are done with this component because one of its ancestors is loaded async
-                        continue;
-                    }
-
-                    AsynchronousComponentWindowRenderer asynchronousComponentWindowRenderer = getAsynchronousComponentWindowRenderer(window);
-
-                    if (asynchronousComponentWindowRenderer != null) {
-                        asynchronousComponentWindowRenderer.processWindowBeforeRender(window, request, response);
-                    } else {
-                        log.error("Asynchronous component window rendering skipped! No asynchronousComponentWindowRenderer found for mode, '{}'.", defaultAsynchronousComponentWindowRenderingMode);
-                    }
-                } else {
-                    getComponentInvoker().invokeBeforeRender(requestContainerConfig, request, response);
+            if (processedWindows == null) {
+                if (!processWindowBeforeRender(requestContainerConfig, window, request, response)) {
+                    continue;
                 }
+            } else if (!processedWindows.contains(window)) {
+                continue;
             }
             if (window.getResponseState().getRedirectLocation() != null) {
                 break;
@@ -438,6 +515,41 @@ public class AggregationValve extends AbstractBaseOrderableValve {
         }
     }
 
+    /**
+     * Invokes the doBeforeRender of <code>window</code>, or processes it for asynchronous rendering
+     * @return <code>false</code> when <code>window</code> is skipped because it is rendered from the fragment cache or
+     * asynchronously by an ancestor
+     */
+    private boolean processWindowBeforeRender(final HstContainerConfig requestContainerConfig,
+                                              final HstComponentWindow window,
+                                              final HstRequest request,
+                                              final HstResponse response) throws ContainerException {
+        if (isServedFromFragmentCache(window)) {
+            return false;
+        }
+
+        if (window.isVisible()) {
+            if (isAsync(window, request)) {
+                if (request.getAttribute(ASYNC_RENDERED_BY_ANCESTOR_FLAG_ATTR_NAME) == Boolean.TRUE) {
+                    // we are done with this component because one of its ancestors is loaded async
+                    return false;
+                }
+
+                AsynchronousComponentWindowRenderer asynchronousComponentWindowRenderer = getAsynchronousComponentWindowRenderer(window);
+
+                if (asynchronousComponentWindowRenderer != null) {
+                    asynchronousComponentWindowRenderer.processWindowBeforeRender(window, request, response);
+                } else {
+                    log.error("Asynchronous component window rendering skipped! No asynchronousComponentWindowRenderer found for mode, '{}'.", defaultAsynchronousComponentWindowRenderingMode);
+                }
+            } else {
+                invokeTrackingFragmentDependencies(window, request,
+                        () -> getComponentInvoker().invokeBeforeRender(requestContainerConfig, request, response));
+            }
+        }
+        return true;
+    }
+
     protected void processWindowsRender(final HstContainerConfig requestContainerConfig,
                                         final HstComponentWindow[] sortedComponentWindows, final Map<HstComponentWindow, HstRequest> requestMap,
                                         final Map<HstComponentWindow, HstResponse> responseMap) throws ContainerException {
@@ -453,12 +565,503 @@ public class AggregationValve extends AbstractBaseOrderableValve {
                 continue;
             }
             HstResponse response = responseMap.get(window);
-            getComponentInvoker().invokeRender(requestContainerConfig, request, response);
+
+            final HstComponentFragment servedFragment = (HstComponentFragment) window.getAttribute(FRAGMENT_SERVED_ATTR_NAME);
+            if (servedFragment != null) {
+                invokeTrackingFragmentDependencies(window, request, () -> renderFragment(window, servedFragment, request, response));
+                continue;
+            }
+            if (window.getAttribute(FRAGMENT_SERVED_BY_ANCESTOR_ATTR_NAME) != null) {
+                continue;
+            }
+
+            invokeTrackingFragmentDependencies(window, request,
+                    () -> getComponentInvoker().invokeRender(requestContainerConfig, request, response));
 
             logPossibleWaste(responseMap, window);
         }
     }
 
+    private boolean isFragmentCachingApplicable(final HstRequestContext requestContext,
+                                                final HstComponentWindow rootWindow,
+                                                final HstComponentWindow rootRenderingWindow) {
+        if (!fragmentCachingEnabled || fragmentCache == null) {
+            return false;
+        }
+        // component rendering urls only render a sub tree and are out of scope, just like preview, cms and non GET
+        // requests which are never cached either
+        return rootWindow == rootRenderingWindow
+                && "GET".equals(requestContext.getServletRequest().getMethod())
+                && !requestContext.isCmsRequest()
+                && !requestContext.isPreview()
+                && requestContext.getResolvedSiteMapItem() != null;
+    }
+
+    /**
+     * Looks up the fragments of all fragment cacheable windows : a window for which a fragment is found is rendered from
+     * the fragment cache while its descendants are not invoked at all. A window for which no fragment is found gets a
+     * {@link HstComponentFragment} attribute to capture its rendered output in.
+     */
+    private void lookupComponentFragments(final HstComponentWindow[] sortedComponentWindows,
+                                          final Map<HstComponentWindow, HstRequest> requestMap) {
+        for (HstComponentWindow window : sortedComponentWindows) {
+            final HstComponentWindow parent = window.getParentWindow();
+            if (parent == null) {
+                // caching the entire page is the concern of the page cache
+                continue;
+            }
+            if (isServedFromFragmentCache(parent)) {
+                window.setAttribute(FRAGMENT_SERVED_BY_ANCESTOR_ATTR_NAME, Boolean.TRUE);
+                continue;
+            }
+            final HstRequest request = requestMap.get(window);
+            if (!window.isVisible() || !window.getComponentInfo().isFragmentCacheable() || isAsync(window, request)) {
+                continue;
+            }
+            final ComponentFragmentCacheKey key = createFragmentCacheKey(window, request);
+            if (key == null) {
+                continue;
+            }
+            final CacheElement cached = fragmentCache.get(key);
+            if (cached != null && cached.getContent() instanceof HstComponentFragment) {
+                log.debug("Rendering window '{}' from fragment cache.", window.getReferenceNamespace());
+                window.setAttribute(FRAGMENT_SERVED_ATTR_NAME, cached.getContent());
+            } else {
+                window.setAttribute(HstComponentFragment.CAPTURE_ATTRIBUTE_NAME, new HstComponentFragment(key));
+            }
+        }
+    }
+
+    /**
+     * @return the key for the fragment of <code>window</code> or <code>null</code> when the component does not want
+     * its fragment to be cached for the current request
+     */
+    private ComponentFragmentCacheKey createFragmentCacheKey(final HstComponentWindow window, final HstRequest request) {
+        Serializable contributedKey = null;
+        if (window.getComponent() instanceof FragmentCacheKeyContributor) {
+            contributedKey = ((FragmentCacheKeyContributor) window.getComponent()).getFragmentCacheKey(request);
+            if (contributedKey == null) {
+                log.debug("Component '{}' does not want its fragment to be cached for the current request.",
+                        window.getComponentName());
+                return null;
+            }
+        }
+
+        final HstRequestContext requestContext = request.getRequestContext();
+        final ResolvedSiteMapItem resolvedSiteMapItem = requestContext.getResolvedSiteMapItem();
+
+        final HashMap<String, String> siteMapItemParameters = new HashMap<>();
+        final Properties resolvedParameters = resolvedSiteMapItem.getParameters();
+        for (String name : resolvedParameters.stringPropertyNames()) {
+            siteMapItemParameters.put(name, resolvedParameters.getProperty(name));
+        }
+
+        final String componentId;
+        final HashMap<String, String> componentParameters = new HashMap<>();
+        if (window.getComponentInfo() instanceof HstComponentConfiguration) {
+            final HstComponentConfiguration componentConfiguration = (HstComponentConfiguration) window.getComponentInfo();
+            componentId = componentConfiguration.getCanonicalIdentifier();
+            componentParameters.putAll(componentConfiguration.getParameters());
+        } else {
+            componentId = window.getComponentInfo().getId();
+        }
+
+        final HashMap<String, ArrayList<String>> requestParameters = new HashMap<>();
+        for (Map.Entry<String, String[]> entry : request.getParameterMap().entrySet()) {
+            requestParameters.put(entry.getKey(), new ArrayList<>(Arrays.asList(entry.getValue())));
+        }
+
+        // fragments of components that render per user markup must never be served to another user
+        final Principal userPrincipal = requestContext.getServletRequest().getUserPrincipal();
+        final String userName = userPrincipal == null ? null : userPrincipal.getName();
+
+        // the reference namespace is part of the key since it ends up in the urls rendered by the component
+        return new ComponentFragmentCacheKey(componentId,
+                window.getReferenceNamespace(),
+                requestContext.getResolvedMount().getMount().getIdentifier(),
+                resolvedSiteMapItem.getHstSiteMapItem().getQualifiedId(),
+                siteMapItemParameters,
+                componentParameters,
+                requestParameters,
+                requestContext.getServletRequest().getQueryString(),
+                String.valueOf(requestContext.getPreferredLocale()),
+                userName,
+                contributedKey);
+    }
+
+    private boolean isServedFromFragmentCache(final HstComponentWindow window) {
+        return window.getAttribute(FRAGMENT_SERVED_ATTR_NAME) != null
+                || window.getAttribute(FRAGMENT_SERVED_BY_ANCESTOR_ATTR_NAME) != null;
+    }
+
+    private HstComponentFragment getEnclosingCapturedFragment(HstComponentWindow window) {
+        while (window != null) {
+            final HstComponentFragment fragment = (HstComponentFragment) window.getAttribute(HstComponentFragment.CAPTURE_ATTRIBUTE_NAME);
+            if (fragment != null) {
+                return fragment;
+            }
+            window = window.getParentWindow();
+        }
+        return null;
+    }
+
+    /**
+     * When <code>window</code> is (a descendant of) a window that is captured for the fragment cache, the
+     * {@link CacheDependencies} recorded during the invocation are collected for the nearest captured fragment. They
+     * end up in the dependencies of the enclosing fragments and of the page via {@link #storeComponentFragments}.
+     */
+    private void invokeTrackingFragmentDependencies(final HstComponentWindow window, final HstRequest request,
+                                                    final WindowInvocation invocation) throws ContainerException {
+        final HstComponentFragment capturedFragment = getEnclosingCapturedFragment(window);
+        if (capturedFragment == null) {
+            invocation.invoke();
+            return;
+        }
+        final HstRequestContext requestContext = request.getRequestContext();
+        final Object pageDependencies = requestContext.getAttribute(CacheDependencies.ATTRIBUTE_NAME);
+        requestContext.setAttribute(CacheDependencies.ATTRIBUTE_NAME, capturedFragment.getCacheDependencies());
+        try {
+            invocation.invoke();
+        } finally {
+            if (pageDependencies == null) {
+                requestContext.removeAttribute(CacheDependencies.ATTRIBUTE_NAME);
+            } else {
+                requestContext.setAttribute(CacheDependencies.ATTRIBUTE_NAME, pageDependencies);
+            }
+            if (window.hasComponentExceptions()) {
+                markEnclosingCapturedFragmentsUncacheable(window);
+            }
+        }
+    }
+
+    private void markEnclosingCapturedFragmentsUncacheable(HstComponentWindow window) {
+        while (window != null) {
+            final HstComponentFragment fragment = (HstComponentFragment) window.getAttribute(HstComponentFragment.CAPTURE_ATTRIBUTE_NAME);
+            if (fragment != null) {
+                fragment.markUncacheable();
+            }
+            window = window.getParentWindow();
+        }
+    }
+
+    private void renderFragment(final HstComponentWindow window, final HstComponentFragment fragment,
+                                final HstRequest request, final HstResponse response) throws ContainerException {
+        try {
+            window.getResponseState().getWriter().write(fragment.getBody());
+        } catch (IOException e) {
+            throw new ContainerException(e);
+        }
+        fragment.replayHeadElements(response);
+        // whatever includes the fragment depends on what the fragment depends on
+        final CacheDependencies dependencies = (CacheDependencies) request.getRequestContext().getAttribute(CacheDependencies.ATTRIBUTE_NAME);
+        if (dependencies != null) {
+            dependencies.addAll(fragment.getCacheDependencies());
+        }
+    }
+
+    /**
+     * Stores the captured fragments that rendered successfully in the fragment cache and adds their dependencies to
+     * the enclosing fragments or the page
+     */
+    private void storeComponentFragments(final HstRequestContext requestContext, final HstComponentWindow[] sortedComponentWindows) {
+        final CacheDependencies pageDependencies = (CacheDependencies) requestContext.getAttribute(CacheDependencies.ATTRIBUTE_NAME);
+        // reversed order such that descendant fragments are complete before they are added to their ancestor fragments
+        for (int i = sortedComponentWindows.length - 1; i >= 0; i--) {
+            final HstComponentWindow window = sortedComponentWindows[i];
+            final HstComponentFragment fragment = (HstComponentFragment) window.removeAttribute(HstComponentFragment.CAPTURE_ATTRIBUTE_NAME);
+            if (fragment == null) {
+                continue;
+            }
+            final CacheDependencies dependencies = fragment.getCacheDependencies();
+            if (window.getComponentInfo() instanceof HstComponentConfiguration) {
+                ((HstComponentConfiguration) window.getComponentInfo()).flattened()
+                        .map(HstComponentConfiguration::getCanonicalStoredLocation)
+                        .forEach(dependencies::addSubtree);
+            }
+            final HstComponentFragment enclosingFragment = getEnclosingCapturedFragment(window.getParentWindow());
+            if (enclosingFragment != null) {
+                enclosingFragment.getCacheDependencies().addAll(dependencies);
+            } else if (pageDependencies != null) {
+                pageDependencies.addAll(dependencies);
+            }
+            if (fragment.isCacheable()) {
+                fragmentCache.put(fragmentCache.createElement(fragment.getKey(), fragment));
+            } else {
+                log.debug("Fragment of window '{}' is not cached because it failed to render or never got flushed.",
+                        window.getReferenceNamespace());
+            }
+        }
+    }
+
+    private boolean isParallelBeforeRenderApplicable(final HstComponentWindow rootWindow) {
+        return parallelBeforeRenderEnabled
+                && parallelBeforeRenderExecutor != null
+                && rootWindow.getChildWindowMap() != null
+                && RequestContextProvider.get() instanceof HstMutableRequestContext;
+    }
+
+    /**
+     * <p>
+     *     Invokes the doBeforeRender of the component windows parent first, like when processing them sequentially,
+     *     but processes the subtrees of sibling windows concurrently when all the windows in the subtree are
+     *     {@link ParallelSafe}. Such a subtree is processed sequentially on a thread of the
+     *     <code>parallelBeforeRenderExecutor</code> with its own (pooled) session, see
+     *     {@link HstMutableRequestContext#beginThreadScope()}, while the other subtrees are processed on the request
+     *     processing thread.
+     * </p>
+     * <p>
+     *     Windows within a fragment that is captured for the fragment cache are never processed concurrently, since the
+     *     dependencies of the fragment are tracked through a request context attribute, see
+     *     {@link AggregationValve#invokeTrackingFragmentDependencies}.
+     * </p>
+     */
+    private class ParallelBeforeRender {
+
+        private final HstContainerConfig requestContainerConfig;
+        private final HstComponentWindow rootWindow;
+        private final Map<HstComponentWindow, HstRequest> requestMap;
+        private final Map<HstComponentWindow, HstResponse> responseMap;
+        private final HstMutableRequestContext requestContext;
+        private final Set<HstComponentWindow> processedWindows = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean redirectedOrForwarded = new AtomicBoolean();
+
+        private ParallelBeforeRender(final HstContainerConfig requestContainerConfig,
+                                     final HstComponentWindow rootWindow,
+                                     final Map<HstComponentWindow, HstRequest> requestMap,
+                                     final Map<HstComponentWindow, HstResponse> responseMap) {
+            this.requestContainerConfig = requestContainerConfig;
+            this.rootWindow = rootWindow;
+            this.requestMap = requestMap;
+            this.responseMap = responseMap;
+            this.requestContext = (HstMutableRequestContext) RequestContextProvider.get();
+        }
+
+        /**
+         * @return the windows that got processed and were not skipped, see {@link AggregationValve#processWindowBeforeRender}
+         */
+        private Set<HstComponentWindow> process() throws ContainerException {
+            processSubtree(rootWindow);
+            return processedWindows;
+        }
+
+        private void processSubtree(final HstComponentWindow window) throws ContainerException {
+            processWindow(window);
+            final Map<String, HstComponentWindow> childWindowMap = window.getChildWindowMap();
+            if (childWindowMap == null || redirectedOrForwarded.get()) {
+                return;
+            }
+
+            final List<SubtreeTask> subtreeTasks = new ArrayList<>();
+            Throwable failure = null;
+            try {
+                final List<HstComponentWindow> sequentialChildren = new ArrayList<>();
+                for (HstComponentWindow child : childWindowMap.values()) {
+                    if (!isParallelSafeSubtree(child)) {
+                        sequentialChildren.add(child);
+                        continue;
+                    }
+                    final SubtreeTask subtreeTask = submit(child);
+                    if (subtreeTask != null) {
+                        subtreeTasks.add(subtreeTask);
+                    }
+                }
+                for (HstComponentWindow child : sequentialChildren) {
+                    if (redirectedOrForwarded.get()) {
+                        break;
+                    }
+                    processSubtree(child);
+                }
+            } catch (ContainerException | RuntimeException e) {
+                failure = e;
+            }
+
+            // always wait for all subtrees, the request and responses can't be used after this valve otherwise
+            for (SubtreeTask subtreeTask : subtreeTasks) {
+                final Throwable subtreeFailure = subtreeTask.await();
+                if (failure == null) {
+                    failure = subtreeFailure;
+                }
+            }
+
+            if (failure instanceof ContainerException) {
+                throw (ContainerException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new ContainerException(failure);
+            }
+        }
+
+        private void processSubtreeSequentially(final HstComponentWindow window) throws ContainerException {
+            if (redirectedOrForwarded.get()) {
+                return;
+            }
+            processWindow(window);
+            final Map<String, HstComponentWindow> childWindowMap = window.getChildWindowMap();
+            if (childWindowMap != null) {
+                for (HstComponentWindow child : childWindowMap.values()) {
+                    processSubtreeSequentially(child);
+                }
+            }
+        }
+
+        private void processWindow(final HstComponentWindow window) throws ContainerException {
+            if (processWindowBeforeRender(requestContainerConfig, window, requestMap.get(window), responseMap.get(window))) {
+                processedWindows.add(window);
+            }
+            if (window.getResponseState().getRedirectLocation() != null
+                    || rootWindow.getResponseState().getForwardPathInfo() != null) {
+                redirectedOrForwarded.set(true);
+            }
+        }
+
+        private boolean isParallelSafeSubtree(final HstComponentWindow window) {
+            if (!isParallelSafe(window)) {
+                return false;
+            }
+            final Map<String, HstComponentWindow> childWindowMap = window.getChildWindowMap();
+            if (childWindowMap != null) {
+                for (HstComponentWindow child : childWindowMap.values()) {
+                    if (!isParallelSafeSubtree(child)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private boolean isParallelSafe(final HstComponentWindow window) {
+            if (isServedFromFragmentCache(window) || !window.isVisible()) {
+                // the window is not invoked at all
+                return true;
+            }
+            if (isAsync(window, requestMap.get(window)) || getEnclosingCapturedFragment(window) != null) {
+                return false;
+            }
+            final HstComponentMetadata componentMetadata = window.getComponentMetadata();
+            return componentMetadata != null
+                    && componentMetadata.hasMethodAnnotatedBy(ParallelSafe.class.getName(), "doBeforeRender");
+        }
+
+        /**
+         * @return the {@link SubtreeTask} processing the subtree of <code>window</code>, or <code>null</code> when the
+         * executor rejected the task and the subtree got processed on the current thread instead
+         */
+        private SubtreeTask submit(final HstComponentWindow window) throws ContainerException {
+            final SubtreeTask subtreeTask = new SubtreeTask(window);
+            try {
+                subtreeTask.future = parallelBeforeRenderExecutor.submit(subtreeTask);
+                return subtreeTask;
+            } catch (RejectedExecutionException e) {
+                log.debug("Processing window '{}' on the request processing thread since the executor is saturated.",
+                        window.getReferenceNamespace());
+            }
+            try {
+                processSubtreeSequentially(window);
+            } finally {
+                subtreeTask.stopDiagnostics();
+            }
+            return null;
+        }
+
+        private class SubtreeTask implements Callable<Void> {
+
+            private final HstComponentWindow window;
+            private final Task diagnosticsTask;
+            private final long submitted = System.nanoTime();
+            private Future<Void> future;
+            private long started;
+            private long finished;
+            private String threadName;
+
+            private SubtreeTask(final HstComponentWindow window) {
+                this.window = window;
+                this.diagnosticsTask = startDiagnostics(window);
+            }
+
+            @Override
+            public Void call() throws Exception {
+                started = System.nanoTime();
+                threadName = Thread.currentThread().getName();
+                try {
+                    return RequestContextPropagator.call(requestContext, () -> {
+                        requestContext.beginThreadScope();
+                        try {
+                            processSubtreeSequentially(window);
+                        } finally {
+                            requestContext.endThreadScope();
+                        }
+                        return null;
+                    });
+                } finally {
+                    finished = System.nanoTime();
+                }
+            }
+
+            /**
+             * Waits for the subtree to be processed
+             * @return the failure of the processing or <code>null</code>
+             */
+            private Throwable await() {
+                boolean interrupted = false;
+                Throwable failure = null;
+                try {
+                    while (true) {
+                        try {
+                            future.get();
+                            break;
+                        } catch (InterruptedException e) {
+                            // the subtree is still being processed with the request and responses of this request
+                            interrupted = true;
+                        } catch (ExecutionException e) {
+                            failure = e.getCause();
+                            break;
+                        }
+                    }
+                } finally {
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                stopDiagnostics();
+                return failure;
+            }
+
+            private Task startDiagnostics(final HstComponentWindow window) {
+                if (!HDC.isStarted()) {
+                    return null;
+                }
+                final Task currentTask = HDC.getCurrentTask();
+                final Task task = currentTask.startSubtask("ParallelBeforeRender");
+                task.setAttribute("window", window.getName());
+                task.setAttribute("component", window.getComponentName());
+                task.setAttribute("ref", "".equals(window.getReferenceNamespace()) ? "root" : window.getReferenceNamespace());
+                // the subtask is only stopped once the subtree has been processed on another thread
+                HDC.setCurrentTask(currentTask);
+                return task;
+            }
+
+            private void stopDiagnostics() {
+                if (diagnosticsTask == null) {
+                    return;
+                }
+                if (threadName != null) {
+                    diagnosticsTask.setAttribute("thread", threadName);
+                    diagnosticsTask.setAttribute("queueTimeMillis", TimeUnit.NANOSECONDS.toMillis(started - submitted));
+                    diagnosticsTask.setAttribute("processingTimeMillis", TimeUnit.NANOSECONDS.toMillis(finished - started));
+                }
+                diagnosticsTask.stop();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface WindowInvocation {
+        void invoke() throws ContainerException;
+    }
+
     /**
      * Note that HstServletResponseState#flushUnflushedChildrenHeaders(org.hippoecm.hst.core.container.HstComponentWindow) always
      * flushes all components in the end, resulting in finally HstServletResponseState#isFlushed to always return {@code true},
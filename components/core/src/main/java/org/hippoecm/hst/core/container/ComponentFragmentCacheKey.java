@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.container;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Immutable key of a cached {@link org.hippoecm.hst.cache.HstComponentFragment}. The key consists of the ordered
+ * fragments the fragment output depends on, see {@link AggregationValve}
+ */
+final class ComponentFragmentCacheKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Serializable[] keyFragments;
+    private final int hashCode;
+
+    ComponentFragmentCacheKey(final Serializable... keyFragments) {
+        this.keyFragments = keyFragments;
+        this.hashCode = Arrays.hashCode(keyFragments);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ComponentFragmentCacheKey)) {
+            return false;
+        }
+        final ComponentFragmentCacheKey other = (ComponentFragmentCacheKey) o;
+        return hashCode == other.hashCode && Arrays.equals(keyFragments, other.keyFragments);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentFragmentCacheKey" + Arrays.toString(keyFragments);
+    }
+}
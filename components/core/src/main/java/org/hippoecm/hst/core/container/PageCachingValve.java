@@ -18,12 +18,15 @@ package org.hippoecm.hst.core.container;
 import java.io.Serializable;
 import java.util.concurrent.Callable;
 
+import org.hippoecm.hst.cache.CacheDependencies;
 import org.hippoecm.hst.cache.CacheElement;
 import org.hippoecm.hst.cache.HstCache;
 import org.hippoecm.hst.cache.HstCacheException;
 import org.hippoecm.hst.cache.HstPageInfo;
 import org.hippoecm.hst.cache.UncacheableHstPageInfo;
+import org.hippoecm.hst.configuration.components.HstComponentConfiguration;
 import org.hippoecm.hst.core.request.HstRequestContext;
+import org.hippoecm.hst.core.request.ResolvedSiteMapItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -94,7 +97,7 @@ public class PageCachingValve extends AbstractBaseOrderableValve {
         CacheElement element =  pageCache.get(keyPage, new Callable<CacheElement>() {
             @Override
             public CacheElement call() throws Exception {
-                HstPageInfo pageInfo = createHstPageInfoByInvokingNextValve(context, pageCache.getTimeToLiveSeconds());
+                HstPageInfo pageInfo = createHstPageInfoTrackingDependencies(context);
 
                 if (pageInfo.isOk()) {
                     if (pageInfo.isNoCachePresentOrExpiresImmediately()) {
@@ -122,4 +125,35 @@ public class PageCachingValve extends AbstractBaseOrderableValve {
         return (HstPageInfo) element.getContent();
     }
 
+    /**
+     * Creates the {@link HstPageInfo} and, when the page cache supports it, records the repository content and hst
+     * configuration paths the page depends on
+     */
+    private HstPageInfo createHstPageInfoTrackingDependencies(final ValveContext context) throws Exception {
+        if (!pageCache.isDependencyTrackingEnabled()) {
+            return createHstPageInfoByInvokingNextValve(context, pageCache.getTimeToLiveSeconds());
+        }
+        final HstRequestContext requestContext = context.getRequestContext();
+        final CacheDependencies dependencies = new CacheDependencies();
+        requestContext.setAttribute(CacheDependencies.ATTRIBUTE_NAME, dependencies);
+        try {
+            final HstPageInfo pageInfo = createHstPageInfoByInvokingNextValve(context, pageCache.getTimeToLiveSeconds());
+            addComponentConfigurationDependencies(requestContext.getResolvedSiteMapItem(), dependencies);
+            pageInfo.setCacheDependencies(dependencies);
+            return pageInfo;
+        } finally {
+            requestContext.removeAttribute(CacheDependencies.ATTRIBUTE_NAME);
+        }
+    }
+
+    private void addComponentConfigurationDependencies(final ResolvedSiteMapItem resolvedSiteMapItem,
+                                                       final CacheDependencies dependencies) {
+        if (resolvedSiteMapItem == null || resolvedSiteMapItem.getHstComponentConfiguration() == null) {
+            return;
+        }
+        resolvedSiteMapItem.getHstComponentConfiguration().flattened()
+                .map(HstComponentConfiguration::getCanonicalStoredLocation)
+                .forEach(dependencies::addSubtree);
+    }
+
 }
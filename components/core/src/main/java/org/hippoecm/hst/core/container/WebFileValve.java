@@ -1,5 +1,5 @@
 /*
- *  Copyright 2014-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2014-2017 Hippo B.V. (http://www.onehippo.com)
  *
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -33,6 +33,8 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.hippoecm.hst.cache.CacheElement;
 import org.hippoecm.hst.cache.HstCache;
+import org.hippoecm.hst.cache.jmx.WebFilesCacheStats;
+import org.hippoecm.hst.cache.webfiles.CacheableBinary;
 import org.hippoecm.hst.cache.webfiles.CacheableWebFile;
 import org.hippoecm.hst.core.request.HstRequestContext;
 import org.hippoecm.hst.core.webfiles.WhitelistReader;
@@ -60,10 +62,26 @@ public class WebFileValve extends AbstractBaseOrderableValve {
 
     Cache negativeWebFileCache;
 
+    private boolean gzipEnabled = true;
+
+    private WebFilesCacheStats webFilesCacheStats;
+
     public void setWebFileCache(final HstCache webFileCache) {
         this.webFileCache = webFileCache;
     }
 
+    /**
+     * @param gzipEnabled whether to cache a gzip encoding of compressible web files and serve it to the clients that
+     *                    accept it. Default <code>true</code>
+     */
+    public void setGzipEnabled(final boolean gzipEnabled) {
+        this.gzipEnabled = gzipEnabled;
+    }
+
+    public void setWebFilesCacheStats(final WebFilesCacheStats webFilesCacheStats) {
+        this.webFilesCacheStats = webFilesCacheStats;
+    }
+
     public void setNegativeWebFileCacheBuilder(final CacheBuilder negativeWebFileCacheBuilder) {
         this.negativeWebFileCache = negativeWebFileCacheBuilder.build();
     }
@@ -71,16 +89,33 @@ public class WebFileValve extends AbstractBaseOrderableValve {
     @Override
     public void invoke(final ValveContext context) throws ContainerException {
         final HstRequestContext requestContext = context.getRequestContext();
+        final HttpServletRequest request = context.getServletRequest();
         final HttpServletResponse response = context.getServletResponse();
 
         try {
             final CacheableWebFile webFile = getWebFile(requestContext);
             // only set client cache headers in case version was present in request
             final boolean includeCacheHeaders = webFile.getVersion() != null;
-            setHeaders(response, webFile, includeCacheHeaders);
-            writeWebFile(response, webFile);
+            final boolean gzip = webFile.getGzipBinary() != null && acceptsGzip(request.getHeader("Accept-Encoding"));
+            final String eTag = gzip ? webFile.getGzipETag() : webFile.getETag();
+            if (isNotModified(request.getHeader("If-None-Match"), eTag)) {
+                setNotModifiedHeaders(response, webFile, eTag, includeCacheHeaders);
+                if (webFilesCacheStats != null) {
+                    webFilesCacheStats.incrementNotModifiedResponses();
+                }
+            } else {
+                final Binary binary = gzip ? webFile.getGzipBinary() : webFile.getBinary();
+                setHeaders(response, webFile, binary, eTag, gzip, includeCacheHeaders);
+                writeWebFile(response, binary);
+                if (webFilesCacheStats != null) {
+                    if (gzip) {
+                        webFilesCacheStats.incrementGzipEncodingResponses();
+                    } else {
+                        webFilesCacheStats.incrementIdentityEncodingResponses();
+                    }
+                }
+            }
         } catch (WebFileException e) {
-            final HttpServletRequest request = context.getServletRequest();
             if (log.isDebugEnabled()) {
                 log.info("Cannot serve binary '{}'", request.getPathInfo(), e);
             } else {
@@ -198,7 +233,7 @@ public class WebFileValve extends AbstractBaseOrderableValve {
     private CacheableWebFile cacheWebFile(final WebFileBundle webFileBundle, final String contentPath, final String version, final String cacheKey) throws IOException {
         try {
             final WebFile webFile = getWebFileFromBundle(webFileBundle, contentPath, version);
-            final CacheableWebFile cacheableWebFile = new CacheableWebFile(webFile, version);
+            final CacheableWebFile cacheableWebFile = new CacheableWebFile(webFile, version, gzipEnabled);
             final CacheElement element = webFileCache.createElement(cacheKey, cacheableWebFile);
             webFileCache.put(element);
             return cacheableWebFile;
@@ -236,11 +271,86 @@ public class WebFileValve extends AbstractBaseOrderableValve {
         webFileCache.put(element);
     }
 
-    private static void setHeaders(final HttpServletResponse response, final WebFile webFile,
-                                   final boolean includeCacheHeaders) throws RepositoryException {
-        // no need for ETag since expires 1 year
-        response.setHeader("Content-Length", Long.toString(webFile.getBinary().getSize()));
+    /**
+     * @return <code>true</code> when the <code>Accept-Encoding</code> header value contains <code>gzip</code> or
+     * <code>x-gzip</code> without a zero quality value, or, when neither of them is listed, contains <code>*</code>
+     * without a zero quality value. Like in RFC 7231, an explicit <code>gzip;q=0</code> overrides <code>*</code>.
+     */
+    static boolean acceptsGzip(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean gzipListed = false;
+        boolean gzipAccepted = false;
+        boolean wildcardAccepted = false;
+        for (String coding : StringUtils.split(acceptEncoding, ',')) {
+            final String[] parts = StringUtils.split(coding, ';');
+            if (parts.length == 0) {
+                continue;
+            }
+            final String name = parts[0].trim().toLowerCase();
+            if ("gzip".equals(name) || "x-gzip".equals(name)) {
+                gzipListed = true;
+                gzipAccepted |= !isZeroQuality(parts);
+            } else if ("*".equals(name)) {
+                wildcardAccepted |= !isZeroQuality(parts);
+            }
+        }
+        return gzipListed ? gzipAccepted : wildcardAccepted;
+    }
+
+    private static boolean isZeroQuality(final String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            final String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(parameter.substring(2).trim()) <= 0f;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean isNotModified(final String ifNoneMatch, final String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : StringUtils.split(ifNoneMatch, ',')) {
+            candidate = candidate.trim();
+            if ("*".equals(candidate) || eTag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void setNotModifiedHeaders(final HttpServletResponse response, final CacheableWebFile webFile,
+                                              final String eTag, final boolean includeCacheHeaders) {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        setValidationAndCacheHeaders(response, webFile, eTag, includeCacheHeaders);
+    }
+
+    private static void setHeaders(final HttpServletResponse response, final CacheableWebFile webFile,
+                                   final Binary binary, final String eTag, final boolean gzip,
+                                   final boolean includeCacheHeaders) {
+        response.setHeader("Content-Length", Long.toString(binary.getSize()));
         response.setContentType(webFile.getMimeType());
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        setValidationAndCacheHeaders(response, webFile, eTag, includeCacheHeaders);
+    }
+
+    private static void setValidationAndCacheHeaders(final HttpServletResponse response, final CacheableWebFile webFile,
+                                                     final String eTag, final boolean includeCacheHeaders) {
+        // the ETag allows revalidation of web files requested without version, which do not get cache headers
+        response.setHeader("ETag", eTag);
+        if (webFile.getGzipBinary() != null) {
+            // shared caches must not serve the gzip encoding to clients that do not accept it
+            response.setHeader("Vary", "Accept-Encoding");
+        }
         if (includeCacheHeaders) {
             // one year ahead max, see http://www.w3.org/Protocols/rfc2616/rfc2616-sec14.html#sec14.21
             response.setDateHeader("Expires", ONE_YEAR_MILLISECONDS + System.currentTimeMillis());
@@ -248,10 +358,13 @@ public class WebFileValve extends AbstractBaseOrderableValve {
         }
     }
 
-    private static void writeWebFile(final HttpServletResponse response, final WebFile webFile) throws IOException {
-        final Binary binary = webFile.getBinary();
+    private static void writeWebFile(final HttpServletResponse response, final Binary binary) throws IOException {
         try (ServletOutputStream outputStream = response.getOutputStream()) {
-            IOUtils.copy(binary.getStream(), outputStream);
+            if (binary instanceof CacheableBinary) {
+                ((CacheableBinary) binary).writeTo(outputStream);
+            } else {
+                IOUtils.copy(binary.getStream(), outputStream);
+            }
             outputStream.flush();
         }
     }
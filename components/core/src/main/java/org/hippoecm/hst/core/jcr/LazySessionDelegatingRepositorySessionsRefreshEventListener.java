@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -24,7 +24,7 @@ import javax.jcr.observation.EventIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class LazySessionDelegatingRepositorySessionsRefreshEventListener extends GenericEventListener {
+public class LazySessionDelegatingRepositorySessionsRefreshEventListener extends GenericEventListener implements CoalescableEventListener {
     
     static Logger log = LoggerFactory.getLogger(LazySessionDelegatingRepositorySessionsRefreshEventListener.class);
     
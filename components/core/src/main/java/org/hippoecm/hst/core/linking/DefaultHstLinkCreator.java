@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2015 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -61,6 +61,8 @@ public class DefaultHstLinkCreator implements HstLinkCreator {
 
     private RewriteContextResolver rewriteContextResolver;
 
+    private LinkResolutionCache linkResolutionCache;
+
     public void setRewriteContextResolver(RewriteContextResolver rewriteContextResolver) {
         this.rewriteContextResolver = rewriteContextResolver;
     }
@@ -89,6 +91,10 @@ public class DefaultHstLinkCreator implements HstLinkCreator {
     public void setLinkProcessor(HstLinkProcessor linkProcessor) {
         this.linkProcessor = linkProcessor;
     }
+
+    public HstLinkProcessor getLinkProcessor() {
+        return linkProcessor;
+    }
     
     public void setLocationResolvers(List<LocationResolver> locationResolvers){
         this.locationResolvers = locationResolvers;
@@ -102,8 +108,18 @@ public class DefaultHstLinkCreator implements HstLinkCreator {
         this.pageNotFoundPath = PathUtils.normalizePath(pageNotFoundPath);
     }
 
+    /**
+     * @param linkResolutionCache the cache for the resolution of content paths to sitemap items, or <code>null</code>
+     *                            to resolve every link through the location map trees
+     */
+    public void setLinkResolutionCache(final LinkResolutionCache linkResolutionCache) {
+        this.linkResolutionCache = linkResolutionCache;
+    }
+
     public void clear() {
-        // nothing to clear for now
+        if (linkResolutionCache != null) {
+            linkResolutionCache.clear();
+        }
     }
     
     /**
@@ -1088,6 +1104,7 @@ public class DefaultHstLinkCreator implements HstLinkCreator {
                     subResolver.setResolvedSiteMapItem(resolverProperties.resolvedSiteMapItem);
                     subResolver.setCanonical(resolverProperties.canonicalLink);
                     subResolver.setSubResolver(true);
+                    subResolver.setResolutionCache(linkResolutionCache);
                     resolvedLocation = subResolver.resolve(path);
                     if ((resolvedLocation == null || resolvedLocation.getPath() == null) && !resolverProperties.fallback) {
                         log.debug("Could not resolve path '{}' for preferredItem '{}' for mount '{}'. Fallback is false. " +
@@ -1101,6 +1118,7 @@ public class DefaultHstLinkCreator implements HstLinkCreator {
                     resolver.setRepresentsDocument(resolverProperties.representsDocument);
                     resolver.setCanonical(resolverProperties.canonicalLink);
                     resolver.setResolvedSiteMapItem(resolverProperties.resolvedSiteMapItem);
+                    resolver.setResolutionCache(linkResolutionCache);
                     resolvedLocation = resolver.resolve(path);
                 }
                 if (resolvedLocation != null && resolvedLocation.getPath() != null) {
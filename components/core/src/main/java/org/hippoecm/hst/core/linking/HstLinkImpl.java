@@ -118,6 +118,20 @@ public class HstLinkImpl implements HstLink {
         this(path, mount, siteMapItem, containerResource ? Type.CONTAINER_RESOURCE : Type.MOUNT_RESOURCE, rewriteHomePagePath);
     }
 
+    /**
+     * Creates a copy of <code>link</code> that can be modified without affecting <code>link</code>, for example to hand
+     * out a link that has been created once to every request
+     */
+    public HstLinkImpl(final HstLinkImpl link) {
+        this.path = link.path;
+        this.subPath = link.subPath;
+        this.mount = link.mount;
+        this.siteMapItem = link.siteMapItem;
+        this.notFound = link.notFound;
+        this.type = link.type;
+        this.contentType = link.contentType;
+    }
+
     private HstLinkImpl(final String path, final Mount mount, final HstSiteMapItem siteMapItem, final Type type, boolean rewriteHomePagePath) {
 
         if (path != null && path.startsWith("//")) {
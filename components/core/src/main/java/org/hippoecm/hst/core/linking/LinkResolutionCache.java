@@ -0,0 +1,164 @@
+/**
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.core.linking;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+
+import org.hippoecm.hst.cache.jmx.LinkResolutionCacheStats;
+import org.hippoecm.hst.configuration.sitemap.HstSiteMapItem;
+import org.hippoecm.hst.core.request.ResolvedSiteMapItem;
+
+/**
+ * <p>
+ *     Bounded and thread-safe cache of the {@link ResolvedLocationMapTreeItem}s that a {@link LocationMapResolver}
+ *     resolves content paths to. The outcome of {@link LocationMapResolver#resolve(String)} only depends on the
+ *     location map trees of the resolver (hence on the hst model), the content path relative to the mount and the
+ *     resolver settings, which together make up the {@link Key}. It does not depend on the repository content, hence
+ *     the cache does not need to be invalidated for content changes : a moved document simply has another content path.
+ * </p>
+ * <p>
+ *     The cache is configured with a {@link com.google.common.cache.CacheBuilderSpec} string, for example
+ *     <code>maximumSize=10000</code>, and must be {@link #clear() cleared} when a new hst model is loaded.
+ * </p>
+ */
+public class LinkResolutionCache {
+
+    private final Cache<Key, Optional<ResolvedLocationMapTreeItem>> resolvedLocations;
+    private final LinkResolutionCacheStats stats;
+
+    public LinkResolutionCache(final String cacheSpec, final LinkResolutionCacheStats stats) {
+        this.stats = stats;
+        resolvedLocations = CacheBuilder.from(cacheSpec)
+                .removalListener((RemovalListener<Key, Optional<ResolvedLocationMapTreeItem>>) notification -> {
+                    if (notification.wasEvicted()) {
+                        stats.incrementEvictions();
+                    }
+                }).build();
+        stats.setCurrentCache(this);
+    }
+
+    /**
+     * @return <code>null</code> when there is nothing cached for <code>key</code>, {@link Optional#absent()} when
+     * the path of <code>key</code> is cached as not resolvable and the cached {@link ResolvedLocationMapTreeItem}
+     * otherwise
+     */
+    public Optional<ResolvedLocationMapTreeItem> get(final Key key) {
+        final Optional<ResolvedLocationMapTreeItem> resolvedLocation = resolvedLocations.getIfPresent(key);
+        if (resolvedLocation == null) {
+            stats.incrementCacheMisses();
+        } else {
+            stats.incrementCacheHits();
+        }
+        return resolvedLocation;
+    }
+
+    /**
+     * @param resolvedLocation the {@link ResolvedLocationMapTreeItem} for <code>key</code>, or <code>null</code> when
+     *                         the path of <code>key</code> cannot be resolved
+     */
+    public void put(final Key key, final ResolvedLocationMapTreeItem resolvedLocation) {
+        resolvedLocations.put(key, Optional.fromNullable(resolvedLocation));
+    }
+
+    public void clear() {
+        resolvedLocations.invalidateAll();
+    }
+
+    public long size() {
+        return resolvedLocations.size();
+    }
+
+    /**
+     * Key of a resolved location. The location map trees and sitemap items are compared by identity, such that entries
+     * of another hst model never match.
+     */
+    static final class Key {
+
+        private final LocationMapTree locationMapTreeSiteMap;
+        private final LocationMapTree locationMapTreeComponentDocuments;
+        private final String path;
+        private final boolean representsDocument;
+        private final boolean canonical;
+        private final boolean subResolver;
+        private final HstSiteMapItem contextSiteMapItem;
+        private final String contextPathInfo;
+        private final int hashCode;
+
+        /**
+         * @param resolvedSiteMapItem the resolved sitemap item of the current request, only taken into account when
+         *                            the link is not <code>canonical</code>, since only then the resolution depends on it
+         */
+        Key(final LocationMapTree locationMapTreeSiteMap,
+            final LocationMapTree locationMapTreeComponentDocuments,
+            final String path,
+            final boolean representsDocument,
+            final boolean canonical,
+            final boolean subResolver,
+            final ResolvedSiteMapItem resolvedSiteMapItem) {
+            this.locationMapTreeSiteMap = locationMapTreeSiteMap;
+            this.locationMapTreeComponentDocuments = locationMapTreeComponentDocuments;
+            this.path = path;
+            this.representsDocument = representsDocument;
+            this.canonical = canonical;
+            this.subResolver = subResolver;
+            if (canonical || resolvedSiteMapItem == null) {
+                contextSiteMapItem = null;
+                contextPathInfo = null;
+            } else {
+                contextSiteMapItem = resolvedSiteMapItem.getHstSiteMapItem();
+                contextPathInfo = resolvedSiteMapItem.getPathInfo();
+            }
+
+            int result = System.identityHashCode(locationMapTreeSiteMap);
+            result = 31 * result + System.identityHashCode(locationMapTreeComponentDocuments);
+            result = 31 * result + path.hashCode();
+            result = 31 * result + (representsDocument ? 1 : 0);
+            result = 31 * result + (canonical ? 1 : 0);
+            result = 31 * result + (subResolver ? 1 : 0);
+            result = 31 * result + System.identityHashCode(contextSiteMapItem);
+            result = 31 * result + (contextPathInfo == null ? 0 : contextPathInfo.hashCode());
+            hashCode = result;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return hashCode == other.hashCode
+                    && locationMapTreeSiteMap == other.locationMapTreeSiteMap
+                    && locationMapTreeComponentDocuments == other.locationMapTreeComponentDocuments
+                    && representsDocument == other.representsDocument
+                    && canonical == other.canonical
+                    && subResolver == other.subResolver
+                    && contextSiteMapItem == other.contextSiteMapItem
+                    && path.equals(other.path)
+                    && (contextPathInfo == null ? other.contextPathInfo == null : contextPathInfo.equals(other.contextPathInfo));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2009-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2009-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.Sets;
 
 import org.apache.commons.lang.StringUtils;
@@ -60,6 +61,8 @@ public class LocationMapResolver {
      */
     private ResolvedSiteMapItem resolvedSiteMapItem;
 
+    private LinkResolutionCache resolutionCache;
+
     private Set<LocationMapTreeItem> checkedLocationMapTreeItems = Sets.newIdentityHashSet();
 
     public LocationMapResolver(final LocationMapTree locationMapTreeSiteMap,
@@ -83,6 +86,14 @@ public class LocationMapResolver {
     public void setSubResolver(boolean isSubResolver) {
         this.isSubResolver = isSubResolver;
     }
+
+    /**
+     * @param resolutionCache the cache {@link #resolve(String)} looks up and stores its results in, or <code>null</code>
+     *                        to always resolve from the location map trees
+     */
+    public void setResolutionCache(final LinkResolutionCache resolutionCache) {
+        this.resolutionCache = resolutionCache;
+    }
     
     /**
      * Tries to find the best match for the <code>path</code> within this <code>LocationMapTree</code> belonging to <code>HstSite</code>.
@@ -108,9 +119,24 @@ public class LocationMapResolver {
      * HstSiteMapItem that returned the best match. If no match can be made, <code>null</code> is returned 
      */ 
     public ResolvedLocationMapTreeItem resolve(String path) {
-        long start = System.nanoTime();
         // normalize leading and trailing slashes
         path = PathUtils.normalizePath(path);
+        if (resolutionCache == null) {
+            return resolveNormalized(path);
+        }
+        final LinkResolutionCache.Key key = new LinkResolutionCache.Key(locationMapTreeSiteMap,
+                subLocationMapTreeComponentDocuments, path, representsDocument, canonical, isSubResolver, resolvedSiteMapItem);
+        final Optional<ResolvedLocationMapTreeItem> cached = resolutionCache.get(key);
+        if (cached != null) {
+            return cached.orNull();
+        }
+        final ResolvedLocationMapTreeItem resolved = resolveNormalized(path);
+        resolutionCache.put(key, resolved);
+        return resolved;
+    }
+
+    private ResolvedLocationMapTreeItem resolveNormalized(final String path) {
+        long start = System.nanoTime();
 
         String[] elements = path.split("/");
 
@@ -21,6 +21,7 @@ import org.apache.commons.lang.StringUtils;
 import org.hippoecm.hst.content.beans.manager.ObjectConverter;
 import org.hippoecm.hst.content.beans.query.HstQueryManager;
 import org.hippoecm.hst.content.beans.query.HstQueryManagerImpl;
+import org.hippoecm.hst.content.beans.query.HstQueryResultCache;
 import org.hippoecm.repository.util.DateTools;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,12 +30,13 @@ public class HstQueryManagerFactoryImpl implements HstQueryManagerFactory {
 
     private static final Logger log = LoggerFactory.getLogger(HstQueryManagerFactoryImpl.class);
     private String defaultQueryDateRangeResolution;
+    private HstQueryResultCache queryResultCache;
 
     @Override
     public HstQueryManager createQueryManager(Session session, ObjectConverter objectConverter) {
         DateTools.Resolution resolution = fromString(defaultQueryDateRangeResolution);
         log.info("Default query date range resolution is : {}", resolution);
-        HstQueryManager mngr = new HstQueryManagerImpl(session, objectConverter, resolution);
+        HstQueryManager mngr = new HstQueryManagerImpl(session, objectConverter, resolution, queryResultCache);
         return mngr;
     }
 
@@ -42,6 +44,10 @@ public class HstQueryManagerFactoryImpl implements HstQueryManagerFactory {
         this.defaultQueryDateRangeResolution = defaultQueryDateRangeResolution;
     }
 
+    public void setQueryResultCache(final HstQueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
     /**
      * @param resolution the name of the resolution, for example, year, Year,YEAR. if resolution is <code>null</code>,
      *            {@link org.hippoecm.repository.util.DateTools.Resolution#MILLISECOND} is returned.
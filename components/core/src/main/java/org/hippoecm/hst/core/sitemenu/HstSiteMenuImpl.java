@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -19,7 +19,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.hippoecm.hst.configuration.sitemenu.HstSiteMenuConfiguration;
-import org.hippoecm.hst.configuration.sitemenu.HstSiteMenuItemConfiguration;
 import org.hippoecm.hst.core.request.HstRequestContext;
 
 public class HstSiteMenuImpl extends AbstractMenu implements HstSiteMenu {
@@ -31,16 +30,16 @@ public class HstSiteMenuImpl extends AbstractMenu implements HstSiteMenu {
     private HstSiteMenuItem selectedSiteMenuItem;
 
     public HstSiteMenuImpl(HstSiteMenus hstSiteMenus, HstSiteMenuConfiguration siteMenuConfiguration, HstRequestContext hstRequestContext) {
+        this(hstSiteMenus, new PrecomputedSiteMenus.Menu(siteMenuConfiguration, hstRequestContext), hstRequestContext,
+                HstSiteMenuUtils.isMenuVisibleRegardlessRoles(hstRequestContext));
+    }
+
+    HstSiteMenuImpl(HstSiteMenus hstSiteMenus, PrecomputedSiteMenus.Menu menu, HstRequestContext hstRequestContext, boolean menuVisibleRegardlessRoles) {
         this.hstSiteMenus = hstSiteMenus;
-        this.name = siteMenuConfiguration.getName();
-        final boolean menuVisibleRegardlessRoles = hstRequestContext.isCmsRequest() && hstRequestContext.getResolvedMount().getMount().getVirtualHost().getVirtualHosts().isChannelMngrSiteAuthenticationSkipped();
-        for(HstSiteMenuItemConfiguration hstSiteMenuItemConfiguration : siteMenuConfiguration.getSiteMenuConfigurationItems()) {
-            if (hstSiteMenuItemConfiguration.getRoles() == null || menuVisibleRegardlessRoles) {
-                hstSiteMenuItems.add(new HstSiteMenuItemImpl(this, null, hstSiteMenuItemConfiguration , hstRequestContext));
-            } else {
-                if (HstSiteMenuUtils.isUserInRole(hstSiteMenuItemConfiguration, hstRequestContext)) {
-                    hstSiteMenuItems.add(new HstSiteMenuItemImpl(this, null, hstSiteMenuItemConfiguration , hstRequestContext));
-                }
+        this.name = menu.getName();
+        for (PrecomputedSiteMenus.Item item : menu.getItems()) {
+            if (HstSiteMenuUtils.isVisible(item.getConfiguration(), hstRequestContext, menuVisibleRegardlessRoles)) {
+                hstSiteMenuItems.add(new HstSiteMenuItemImpl(this, null, item, hstRequestContext, menuVisibleRegardlessRoles));
             }
         }
     }
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -21,16 +21,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.hippoecm.hst.configuration.hosting.Mount;
-import org.hippoecm.hst.configuration.sitemap.HstSiteMapItem;
 import org.hippoecm.hst.configuration.sitemenu.HstSiteMenuItemConfiguration;
 import org.hippoecm.hst.core.linking.HstLink;
 import org.hippoecm.hst.core.linking.HstLinkCreator;
 import org.hippoecm.hst.core.request.HstRequestContext;
 import org.hippoecm.hst.core.request.ResolvedSiteMapItem;
 import org.hippoecm.hst.core.util.PropertyParser;
-import org.hippoecm.hst.util.HstSiteMapUtils;
-import org.hippoecm.hst.util.PathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,64 +40,42 @@ public class HstSiteMenuItemImpl extends AbstractMenuItem implements HstSiteMenu
     private HstLinkCreator linkCreator;
     private ResolvedSiteMapItem resolvedSiteMapItem;
     private HstSiteMenuItemConfiguration hstSiteMenuItemConfiguration;
-    private String hstSiteMapItemRefId;
-    private String hstSiteMapItemPath;
+    private PrecomputedSiteMenus.Item precomputedItem;
     private String externalLink;
-    private Mount targetMount;
     
     
     public HstSiteMenuItemImpl(HstSiteMenu hstSiteMenu, HstSiteMenuItem parent, HstSiteMenuItemConfiguration hstSiteMenuItemConfiguration, HstRequestContext hstRequestContext) {
+        this(hstSiteMenu, parent, new PrecomputedSiteMenus.Item(hstSiteMenu.getName(), hstSiteMenuItemConfiguration, hstRequestContext),
+                hstRequestContext, HstSiteMenuUtils.isMenuVisibleRegardlessRoles(hstRequestContext));
+    }
+
+    /**
+     * Creates the item for the current request from the request independent <code>precomputedItem</code> : only the
+     * visibility of the child items and whether the item is selected or expanded depend on the request
+     */
+    HstSiteMenuItemImpl(HstSiteMenu hstSiteMenu, HstSiteMenuItem parent, PrecomputedSiteMenus.Item precomputedItem, HstRequestContext hstRequestContext,
+                        boolean menuVisibleRegardlessRoles) {
         this.hstSiteMenu = hstSiteMenu;
         this.parent = parent;
-        this.hstSiteMenuItemConfiguration = hstSiteMenuItemConfiguration;
+        this.precomputedItem = precomputedItem;
+        this.hstSiteMenuItemConfiguration = precomputedItem.getConfiguration();
         this.externalLink = hstSiteMenuItemConfiguration.getExternalLink();
         this.linkCreator = hstRequestContext.getHstLinkCreator();
         this.name = hstSiteMenuItemConfiguration.getName();
         this.depth = hstSiteMenuItemConfiguration.getDepth();
         this.repositoryBased = hstSiteMenuItemConfiguration.isRepositoryBased();
         this.properties = hstSiteMenuItemConfiguration.getProperties();
-        // if there is an hst:mountalias, we use the mount belonging to that alias. If there is no mount alias defined,
-        // we use the mount from the request context
-        
-        if (hstSiteMenuItemConfiguration.getMountAlias() != null) {
-            targetMount = hstRequestContext.getMount(hstSiteMenuItemConfiguration.getMountAlias());
-            if(targetMount == null) {
-                log.warn("Cannot create links for sitemenu item '"+name+"' of menu '"+hstSiteMenu.getName()+"' because could not lookup mount with alias '{}' for current mount '{}'", hstSiteMenuItemConfiguration.getMountAlias(), hstRequestContext.getResolvedMount().getMount());
-            }
-        } else {
-            targetMount = hstRequestContext.getResolvedMount().getMount();
-        }
-        String siteMapItemRefIdOrPath = PathUtils.normalizePath(hstSiteMenuItemConfiguration.getSiteMapItemPath());
-        
-        if (targetMount != null) {
-            HstSiteMapItem siteMapItemByRefId = targetMount.getHstSite().getSiteMap().getSiteMapItemByRefId(siteMapItemRefIdOrPath);
-            
-            if (siteMapItemByRefId != null) {
-                hstSiteMapItemRefId = siteMapItemRefIdOrPath;
-                hstSiteMapItemPath = HstSiteMapUtils.getPath(siteMapItemByRefId);
-
-                log.debug("sitemapitem of sitemenu, '{}', found by refid, '{}'. sitemapitem path: " + hstSiteMapItemPath, name, siteMapItemRefIdOrPath);
-            } else {
-                hstSiteMapItemPath = siteMapItemRefIdOrPath;
-
-                log.debug("sitemapitem of sitemenu, '{}', will be found by path, '{}'.", name, siteMapItemRefIdOrPath);
-            }
-        }
 
-        final boolean menuVisibleRegardlessRoles = hstRequestContext.isCmsRequest() && hstRequestContext.getResolvedMount().getMount().getVirtualHost().getVirtualHosts().isChannelMngrSiteAuthenticationSkipped();
-        for(HstSiteMenuItemConfiguration childItemConfiguration : hstSiteMenuItemConfiguration.getChildItemConfigurations()) {
-            if (childItemConfiguration.getRoles() == null || menuVisibleRegardlessRoles) {
-                hstSiteMenuItems.add(new HstSiteMenuItemImpl(hstSiteMenu, this, childItemConfiguration, hstRequestContext));
-            } else {
-                if (HstSiteMenuUtils.isUserInRole(childItemConfiguration, hstRequestContext)) {
-                    hstSiteMenuItems.add(new HstSiteMenuItemImpl(hstSiteMenu, this, childItemConfiguration, hstRequestContext));
-                }
+        for(PrecomputedSiteMenus.Item childItem : precomputedItem.getChildItems()) {
+            if (HstSiteMenuUtils.isVisible(childItem.getConfiguration(), hstRequestContext, menuVisibleRegardlessRoles)) {
+                hstSiteMenuItems.add(new HstSiteMenuItemImpl(hstSiteMenu, this, childItem, hstRequestContext, menuVisibleRegardlessRoles));
             }
         }
 
         resolvedSiteMapItem = hstRequestContext.getResolvedSiteMapItem();
         
         String currentPathInfo = resolvedSiteMapItem.getPathInfo();
+        String hstSiteMapItemPath = precomputedItem.getSiteMapItemPath();
         
         if (hstSiteMapItemPath != null && currentPathInfo != null) {
             
@@ -134,14 +108,12 @@ public class HstSiteMenuItemImpl extends AbstractMenuItem implements HstSiteMenu
     }
 
     public HstLink getHstLink() {
-        if (targetMount == null) {
+        if (precomputedItem.getTargetMount() == null) {
             log.warn("Cannot create link for sitemenu item '{}' of menu '{}' because target mount is null. Return null", name, hstSiteMenu.getName());
             return null;
         }
-        if (hstSiteMapItemRefId != null) {
-            return linkCreator.createByRefId(hstSiteMapItemRefId, targetMount);
-        } else if (hstSiteMapItemPath != null) {
-            return linkCreator.create(hstSiteMapItemPath, targetMount);
+        if (precomputedItem.hasSiteMapItemLink()) {
+            return precomputedItem.getHstLink(linkCreator);
         }
         if (externalLink == null) {
             log.debug("Sitemenu item '{}' of menu '{}' does not contain an hstSiteMapItemRefId, an hstSiteMapItemPath or an externalLink. Cannot create link for sitemenu item, return null", name, hstSiteMenu.getName());
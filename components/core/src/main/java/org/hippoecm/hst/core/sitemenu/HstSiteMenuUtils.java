@@ -1,5 +1,5 @@
 /*
- *  Copyright 2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2013-2017 Hippo B.V. (http://www.onehippo.com)
  *
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -28,6 +28,20 @@ public class HstSiteMenuUtils {
 
     }
 
+    /**
+     * @return <code>true</code> when the roles of the site menu items do not apply to the request, which is the case
+     * for channel manager requests that skip the site authentication
+     */
+    public static boolean isMenuVisibleRegardlessRoles(final HstRequestContext hstRequestContext) {
+        return hstRequestContext.isCmsRequest() && hstRequestContext.getResolvedMount().getMount().getVirtualHost().getVirtualHosts().isChannelMngrSiteAuthenticationSkipped();
+    }
+
+    static boolean isVisible(final HstSiteMenuItemConfiguration hstSiteMenuItemConfiguration, final HstRequestContext hstRequestContext,
+                             final boolean menuVisibleRegardlessRoles) {
+        return hstSiteMenuItemConfiguration.getRoles() == null || menuVisibleRegardlessRoles
+                || isUserInRole(hstSiteMenuItemConfiguration, hstRequestContext);
+    }
+
     public static boolean isUserInRole(final HstSiteMenuItemConfiguration hstSiteMenuItemConfiguration, final HstRequestContext hstRequestContext) {
         for (String role : hstSiteMenuItemConfiguration.getRoles()) {
             if (hstRequestContext.getServletRequest().isUserInRole(role)) {
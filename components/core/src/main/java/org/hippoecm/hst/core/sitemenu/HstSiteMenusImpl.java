@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2015 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -19,7 +19,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.hippoecm.hst.configuration.sitemap.HstSiteMapItem;
-import org.hippoecm.hst.configuration.sitemenu.HstSiteMenuConfiguration;
 import org.hippoecm.hst.configuration.sitemenu.HstSiteMenusConfiguration;
 import org.hippoecm.hst.core.request.HstRequestContext;
 import org.slf4j.Logger;
@@ -34,22 +33,42 @@ public class HstSiteMenusImpl implements HstSiteMenus {
    
     
     public HstSiteMenusImpl(HstRequestContext hstRequestContext) {
+        this(hstRequestContext, null);
+    }
+
+    /**
+     * @param precomputedSiteMenus the precomputed menus for the {@link HstSiteMenusConfiguration} of the site of the
+     *                             resolved sitemap item, or <code>null</code> to compute them for this request only
+     */
+    HstSiteMenusImpl(HstRequestContext hstRequestContext, PrecomputedSiteMenus precomputedSiteMenus) {
         if (hstRequestContext.getResolvedSiteMapItem() == null) {
             log.info("'{}' does not resolve to a siteMap item hence no siteMenus can be provided", hstRequestContext.getServletRequest());
             return;
         }
-        // find currently selected hstSiteMenuItemConfiguration's
-        HstSiteMapItem selectedSiteMapItem = hstRequestContext.getResolvedSiteMapItem().getHstSiteMapItem();
-        HstSiteMenusConfiguration siteMenusConfiguration = selectedSiteMapItem.getHstSiteMap().getSite().getSiteMenusConfiguration();
-        if(siteMenusConfiguration != null) {
-          
-            for(HstSiteMenuConfiguration siteMenuConfiguration : siteMenusConfiguration.getSiteMenuConfigurations().values()) {
-                HstSiteMenuImpl siteMenu = new HstSiteMenuImpl(this, siteMenuConfiguration, hstRequestContext);
-                siteMenus.put(siteMenu.getName(), siteMenu);
+        if (precomputedSiteMenus == null) {
+            // find currently selected hstSiteMenuItemConfiguration's
+            HstSiteMenusConfiguration siteMenusConfiguration = getSiteMenusConfiguration(hstRequestContext);
+            if (siteMenusConfiguration == null) {
+                return;
             }
+            precomputedSiteMenus = new PrecomputedSiteMenus(siteMenusConfiguration, hstRequestContext);
+        }
+        final boolean menuVisibleRegardlessRoles = HstSiteMenuUtils.isMenuVisibleRegardlessRoles(hstRequestContext);
+        for (PrecomputedSiteMenus.Menu menu : precomputedSiteMenus.getSiteMenus()) {
+            HstSiteMenuImpl siteMenu = new HstSiteMenuImpl(this, menu, hstRequestContext, menuVisibleRegardlessRoles);
+            siteMenus.put(siteMenu.getName(), siteMenu);
         }
     }
 
+    /**
+     * @return the {@link HstSiteMenusConfiguration} of the site of the resolved sitemap item of
+     * <code>hstRequestContext</code>, or <code>null</code> if there is none
+     */
+    static HstSiteMenusConfiguration getSiteMenusConfiguration(HstRequestContext hstRequestContext) {
+        HstSiteMapItem selectedSiteMapItem = hstRequestContext.getResolvedSiteMapItem().getHstSiteMapItem();
+        return selectedSiteMapItem.getHstSiteMap().getSite().getSiteMenusConfiguration();
+    }
+
     public HstSiteMenu getSiteMenu(String name) {
         return siteMenus.get(name);
     }
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -15,17 +15,108 @@
  */
 package org.hippoecm.hst.core.sitemenu;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.hippoecm.hst.configuration.hosting.Mount;
+import org.hippoecm.hst.configuration.hosting.VirtualHosts;
+import org.hippoecm.hst.configuration.sitemenu.HstSiteMenusConfiguration;
 import org.hippoecm.hst.core.request.HstRequestContext;
 
+/**
+ * Creates the {@link HstSiteMenus} for a request from {@link PrecomputedSiteMenus} that are shared by all requests for
+ * the same {@link Mount} and {@link HstSiteMenusConfiguration}, such that the target mounts, sitemap item paths and
+ * links of the menu items are only computed once per hst model. The cache is replaced as soon as a request for a
+ * new hst model arrives. Channel manager requests are not cached as their (preview) mounts are created per request.
+ */
 public class HstSiteMenusManagerImpl implements HstSiteMenusManager{
 
+    public static final String DEFAULT_CACHE_SPEC = "maximumSize=1000";
+
+    private String cacheSpec = DEFAULT_CACHE_SPEC;
+    private volatile ModelCache modelCache;
     
     public HstSiteMenusManagerImpl() {     
     }
+
+    /**
+     * @param cacheSpec the {@link com.google.common.cache.CacheBuilderSpec} for the precomputed site menus of a single
+     *                  hst model, for example <code>maximumSize=1000</code>. Use <code>maximumSize=0</code> to compute
+     *                  the site menus for every request
+     */
+    public void setCacheSpec(final String cacheSpec) {
+        this.cacheSpec = cacheSpec;
+        modelCache = null;
+    }
     
     public HstSiteMenus getSiteMenus(HstRequestContext hstRequestContext){
-        
-       return new HstSiteMenusImpl(hstRequestContext);
-      
+        if (hstRequestContext.getResolvedSiteMapItem() == null || hstRequestContext.isCmsRequest()) {
+            return new HstSiteMenusImpl(hstRequestContext);
+        }
+        final HstSiteMenusConfiguration siteMenusConfiguration = HstSiteMenusImpl.getSiteMenusConfiguration(hstRequestContext);
+        if (siteMenusConfiguration == null) {
+            return new HstSiteMenusImpl(hstRequestContext);
+        }
+        final Mount mount = hstRequestContext.getResolvedMount().getMount();
+        final CacheKey key = new CacheKey(mount, siteMenusConfiguration);
+        final Cache<CacheKey, PrecomputedSiteMenus> cache = getCache(mount.getVirtualHost().getVirtualHosts());
+        PrecomputedSiteMenus precomputedSiteMenus = cache.getIfPresent(key);
+        if (precomputedSiteMenus == null) {
+            // concurrent requests might compute the same menus, which is harmless
+            precomputedSiteMenus = new PrecomputedSiteMenus(siteMenusConfiguration, hstRequestContext);
+            cache.put(key, precomputedSiteMenus);
+        }
+        return new HstSiteMenusImpl(hstRequestContext, precomputedSiteMenus);
+    }
+
+    private Cache<CacheKey, PrecomputedSiteMenus> getCache(final VirtualHosts virtualHosts) {
+        ModelCache current = modelCache;
+        if (current == null || current.virtualHosts != virtualHosts) {
+            current = new ModelCache(virtualHosts, CacheBuilder.from(cacheSpec).<CacheKey, PrecomputedSiteMenus>build());
+            modelCache = current;
+        }
+        return current.cache;
+    }
+
+    private static class ModelCache {
+
+        private final VirtualHosts virtualHosts;
+        private final Cache<CacheKey, PrecomputedSiteMenus> cache;
+
+        private ModelCache(final VirtualHosts virtualHosts, final Cache<CacheKey, PrecomputedSiteMenus> cache) {
+            this.virtualHosts = virtualHosts;
+            this.cache = cache;
+        }
+    }
+
+    /**
+     * Mounts and site menus configurations are immutable model objects, hence compared by identity
+     */
+    private static class CacheKey {
+
+        private final Mount mount;
+        private final HstSiteMenusConfiguration siteMenusConfiguration;
+
+        private CacheKey(final Mount mount, final HstSiteMenusConfiguration siteMenusConfiguration) {
+            this.mount = mount;
+            this.siteMenusConfiguration = siteMenusConfiguration;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) o;
+            return mount == other.mount && siteMenusConfiguration == other.siteMenusConfiguration;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(mount) + System.identityHashCode(siteMenusConfiguration);
+        }
     }
 }
@@ -0,0 +1,199 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.sitemenu;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hippoecm.hst.configuration.hosting.Mount;
+import org.hippoecm.hst.configuration.sitemap.HstSiteMapItem;
+import org.hippoecm.hst.configuration.sitemenu.HstSiteMenuConfiguration;
+import org.hippoecm.hst.configuration.sitemenu.HstSiteMenuItemConfiguration;
+import org.hippoecm.hst.configuration.sitemenu.HstSiteMenusConfiguration;
+import org.hippoecm.hst.core.linking.DefaultHstLinkCreator;
+import org.hippoecm.hst.core.linking.HstLink;
+import org.hippoecm.hst.core.linking.HstLinkCreator;
+import org.hippoecm.hst.core.linking.HstLinkImpl;
+import org.hippoecm.hst.core.request.HstRequestContext;
+import org.hippoecm.hst.util.HstSiteMapUtils;
+import org.hippoecm.hst.util.PathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The immutable, request independent part of the {@link HstSiteMenus} of a {@link HstSiteMenusConfiguration} for a
+ * {@link Mount} : the target mounts, sitemap item paths and links of the menu items. It is created once per model and
+ * mount by the {@link HstSiteMenusManagerImpl}, after which every request only computes which items are visible,
+ * selected and expanded. The links are only precomputed when they are created by a {@link DefaultHstLinkCreator}
+ * without {@link org.hippoecm.hst.core.linking.HstLinkProcessor}, since a link processor can depend on the request.
+ */
+class PrecomputedSiteMenus {
+
+    private static final Logger log = LoggerFactory.getLogger(PrecomputedSiteMenus.class);
+
+    private final List<Menu> siteMenus;
+
+    PrecomputedSiteMenus(final HstSiteMenusConfiguration siteMenusConfiguration, final HstRequestContext hstRequestContext) {
+        final List<Menu> menus = new ArrayList<>();
+        for (HstSiteMenuConfiguration siteMenuConfiguration : siteMenusConfiguration.getSiteMenuConfigurations().values()) {
+            menus.add(new Menu(siteMenuConfiguration, hstRequestContext));
+        }
+        siteMenus = Collections.unmodifiableList(menus);
+    }
+
+    List<Menu> getSiteMenus() {
+        return siteMenus;
+    }
+
+    static class Menu {
+
+        private final String name;
+        private final List<Item> items;
+
+        Menu(final HstSiteMenuConfiguration siteMenuConfiguration, final HstRequestContext hstRequestContext) {
+            name = siteMenuConfiguration.getName();
+            items = createItems(name, siteMenuConfiguration.getSiteMenuConfigurationItems(), hstRequestContext);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        List<Item> getItems() {
+            return items;
+        }
+    }
+
+    static class Item {
+
+        private final HstSiteMenuItemConfiguration configuration;
+        private final List<Item> childItems;
+        private final Mount targetMount;
+        private final String siteMapItemRefId;
+        private final String siteMapItemPath;
+        // the link created once, only when it is a plain HstLinkImpl that is not post processed and can be copied for
+        // every request
+        private final HstLinkImpl link;
+        private final boolean linkPrecomputed;
+
+        Item(final String menuName, final HstSiteMenuItemConfiguration configuration, final HstRequestContext hstRequestContext) {
+            this.configuration = configuration;
+            final String name = configuration.getName();
+
+            // if there is an hst:mountalias, we use the mount belonging to that alias. If there is no mount alias defined,
+            // we use the mount from the request context
+            if (configuration.getMountAlias() != null) {
+                targetMount = hstRequestContext.getMount(configuration.getMountAlias());
+                if (targetMount == null) {
+                    log.warn("Cannot create links for sitemenu item '" + name + "' of menu '" + menuName + "' because could not lookup mount with alias '{}' for current mount '{}'", configuration.getMountAlias(), hstRequestContext.getResolvedMount().getMount());
+                }
+            } else {
+                targetMount = hstRequestContext.getResolvedMount().getMount();
+            }
+
+            String refId = null;
+            String path = null;
+            if (targetMount != null) {
+                final String siteMapItemRefIdOrPath = PathUtils.normalizePath(configuration.getSiteMapItemPath());
+                final HstSiteMapItem siteMapItemByRefId = targetMount.getHstSite().getSiteMap().getSiteMapItemByRefId(siteMapItemRefIdOrPath);
+                if (siteMapItemByRefId != null) {
+                    refId = siteMapItemRefIdOrPath;
+                    path = HstSiteMapUtils.getPath(siteMapItemByRefId);
+                    log.debug("sitemapitem of sitemenu, '{}', found by refid, '{}'. sitemapitem path: " + path, name, siteMapItemRefIdOrPath);
+                } else {
+                    path = siteMapItemRefIdOrPath;
+                    log.debug("sitemapitem of sitemenu, '{}', will be found by path, '{}'.", name, siteMapItemRefIdOrPath);
+                }
+            }
+            siteMapItemRefId = refId;
+            siteMapItemPath = path;
+
+            final HstLinkCreator linkCreator = hstRequestContext.getHstLinkCreator();
+            final boolean requestIndependent = isRequestIndependent(linkCreator);
+            final HstLink created = requestIndependent ? createLink(linkCreator) : null;
+            if (requestIndependent && (created == null || created.getClass() == HstLinkImpl.class)) {
+                link = (HstLinkImpl) created;
+                linkPrecomputed = true;
+            } else {
+                link = null;
+                linkPrecomputed = false;
+            }
+
+            childItems = createItems(menuName, configuration.getChildItemConfigurations(), hstRequestContext);
+        }
+
+        HstSiteMenuItemConfiguration getConfiguration() {
+            return configuration;
+        }
+
+        List<Item> getChildItems() {
+            return childItems;
+        }
+
+        Mount getTargetMount() {
+            return targetMount;
+        }
+
+        String getSiteMapItemPath() {
+            return siteMapItemPath;
+        }
+
+        boolean hasSiteMapItemLink() {
+            return siteMapItemRefId != null || siteMapItemPath != null;
+        }
+
+        /**
+         * @return a new link for this item, or <code>null</code> if it does not link to a sitemap item
+         */
+        HstLink getHstLink(final HstLinkCreator linkCreator) {
+            if (linkPrecomputed) {
+                return link == null ? null : new HstLinkImpl(link);
+            }
+            return createLink(linkCreator);
+        }
+
+        /**
+         * @return <code>true</code> when the links created by <code>linkCreator</code> only depend on the hst model,
+         * which is not known for subclasses of the {@link DefaultHstLinkCreator}
+         */
+        private static boolean isRequestIndependent(final HstLinkCreator linkCreator) {
+            return linkCreator != null && linkCreator.getClass() == DefaultHstLinkCreator.class
+                    && ((DefaultHstLinkCreator) linkCreator).getLinkProcessor() == null;
+        }
+
+        private HstLink createLink(final HstLinkCreator linkCreator) {
+            if (targetMount == null) {
+                return null;
+            }
+            if (siteMapItemRefId != null) {
+                return linkCreator.createByRefId(siteMapItemRefId, targetMount);
+            } else if (siteMapItemPath != null) {
+                return linkCreator.create(siteMapItemPath, targetMount);
+            }
+            return null;
+        }
+    }
+
+    private static List<Item> createItems(final String menuName, final List<HstSiteMenuItemConfiguration> configurations,
+                                          final HstRequestContext hstRequestContext) {
+        final List<Item> items = new ArrayList<>(configurations.size());
+        for (HstSiteMenuItemConfiguration configuration : configurations) {
+            items.add(new Item(menuName, configuration, hstRequestContext));
+        }
+        return Collections.unmodifiableList(items);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.site.content;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import org.apache.commons.lang.StringUtils;
+import org.hippoecm.hst.content.beans.standard.FolderDocumentIndexCache;
+import org.hippoecm.hst.core.jcr.EventListenersContainerListener;
+import org.hippoecm.hst.core.jcr.GenericEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Invalidates the cached document indexes of the folders below which nodes get added or removed, or below which
+ * properties change
+ */
+public class FolderDocumentIndexEventListener extends GenericEventListener implements EventListenersContainerListener {
+
+    private static final Logger log = LoggerFactory.getLogger(FolderDocumentIndexEventListener.class);
+
+    private FolderDocumentIndexCache folderDocumentIndexCache;
+
+    public void setFolderDocumentIndexCache(final FolderDocumentIndexCache folderDocumentIndexCache) {
+        this.folderDocumentIndexCache = folderDocumentIndexCache;
+    }
+
+    @Override
+    public void onEvent(EventIterator events) {
+        while (events.hasNext()) {
+            try {
+                final Event event = events.nextEvent();
+                if (eventIgnorable(event)) {
+                    continue;
+                }
+                if (isPropertyEvent(event)) {
+                    // for instance the availability of a (de)published variant : invalidate through its node
+                    folderDocumentIndexCache.invalidate(StringUtils.substringBeforeLast(event.getPath(), "/"));
+                } else {
+                    folderDocumentIndexCache.invalidate(event.getPath());
+                }
+            } catch (RepositoryException e) {
+                log.warn("Error processing event, clearing all folder document indexes : {}", e.toString());
+                folderDocumentIndexCache.clear();
+                return;
+            }
+        }
+    }
+
+    private static boolean isPropertyEvent(final Event event) {
+        final int type = event.getType();
+        return type == Event.PROPERTY_ADDED || type == Event.PROPERTY_CHANGED || type == Event.PROPERTY_REMOVED;
+    }
+
+    @Override
+    public void onEventListenersContainerStarted() {
+        // do nothing
+    }
+
+    @Override
+    public void onEventListenersContainerRefreshed() {
+        // events might have been missed
+        folderDocumentIndexCache.clear();
+    }
+
+    @Override
+    public void onEventListenersContainerStopped() {
+        folderDocumentIndexCache.clear();
+    }
+
+}
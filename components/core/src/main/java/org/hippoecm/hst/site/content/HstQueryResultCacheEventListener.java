@@ -0,0 +1,74 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.site.content;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import org.hippoecm.hst.content.beans.query.HstQueryResultCache;
+import org.hippoecm.hst.core.jcr.EventListenersContainerListener;
+import org.hippoecm.hst.core.jcr.GenericEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Invalidates the cached query results of the queries with a scope below which content changes
+ */
+public class HstQueryResultCacheEventListener extends GenericEventListener implements EventListenersContainerListener {
+
+    private static final Logger log = LoggerFactory.getLogger(HstQueryResultCacheEventListener.class);
+
+    private HstQueryResultCache hstQueryResultCache;
+
+    public void setHstQueryResultCache(final HstQueryResultCache hstQueryResultCache) {
+        this.hstQueryResultCache = hstQueryResultCache;
+    }
+
+    @Override
+    public void onEvent(EventIterator events) {
+        while (events.hasNext()) {
+            try {
+                final Event event = events.nextEvent();
+                if (eventIgnorable(event)) {
+                    continue;
+                }
+                hstQueryResultCache.invalidate(event.getPath());
+            } catch (RepositoryException e) {
+                log.warn("Error processing event, clearing all cached query results : {}", e.toString());
+                hstQueryResultCache.clear();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onEventListenersContainerStarted() {
+        // do nothing
+    }
+
+    @Override
+    public void onEventListenersContainerRefreshed() {
+        // events might have been missed
+        hstQueryResultCache.clear();
+    }
+
+    @Override
+    public void onEventListenersContainerStopped() {
+        hstQueryResultCache.clear();
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -15,8 +15,6 @@
  */
 package org.hippoecm.hst.site.request;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Properties;
 
 import javax.jcr.RepositoryException;
@@ -26,7 +24,8 @@ import org.hippoecm.hst.configuration.hosting.NotFoundException;
 import org.hippoecm.hst.configuration.site.HstSite;
 import org.hippoecm.hst.configuration.sitemap.HstSiteMap;
 import org.hippoecm.hst.configuration.sitemap.HstSiteMapItem;
-import org.hippoecm.hst.configuration.sitemap.HstSiteMapItemService;
+import org.hippoecm.hst.configuration.sitemap.HstSiteMapService;
+import org.hippoecm.hst.configuration.sitemap.SiteMapMatchingTree;
 import org.hippoecm.hst.container.RequestContextProvider;
 import org.hippoecm.hst.core.linking.HstLink;
 import org.hippoecm.hst.core.linking.HstLinkImpl;
@@ -67,8 +66,6 @@ public class BasicHstSiteMapMatcher implements HstSiteMapMatcher{
         }
 
         HstSite hstSite = mount.getHstSite();
-        Properties params = new Properties();
-        
         pathInfo = PathUtils.normalizePath(pathInfo);
         
         if(linkProcessor != null) {
@@ -77,83 +74,22 @@ public class BasicHstSiteMapMatcher implements HstSiteMapMatcher{
             pathInfo = link.getPath();
         }
         
-        String[] elements = pathInfo.split("/");
-
         final HstSiteMap siteMap = hstSite.getSiteMap();
-        HstSiteMapItem hstSiteMapItem = siteMap.getSiteMapItem(elements[0]);
-        
-        HstSiteMapItem matchedSiteMapItem = null;
-        if(hstSiteMapItem != null && !hstSiteMapItem.isMarkedDeleted()) {
-            matchedSiteMapItem =  resolveMatchingSiteMap(hstSiteMapItem, params, 1, elements);
-        }
-        
-        // still no match, try if there are root components like *.xxx that match
-        if(matchedSiteMapItem == null) {
-            params.clear();
-            // check for partial wildcard (*.xxx) matcher first
-            for(HstSiteMapItem item : siteMap.getSiteMapItems()) {
-                if (item.isMarkedDeleted()) {
-                    continue;
-                }
-                HstSiteMapItemService service = (HstSiteMapItemService)item;
-                if(service.containsWildCard() && service.patternMatch(elements[0], service.getPrefix(), service.getPostfix())) {
-                    String parameter = getStrippedParameter(service, elements[0]);
-                    params.put(String.valueOf(params.size()+1), parameter);
-                    matchedSiteMapItem =  resolveMatchingSiteMap(service, params, 1, elements);
-                    if(matchedSiteMapItem != null) {
-                        // we have a matching sitemap item.
-                        break;
-                    }
-                }
-            }
-        }
-        
-        // still no match, try if there is root components that is *
-        if(matchedSiteMapItem == null) {
-            params.clear();
-            // check for a wildcard (*) matcher :
-            hstSiteMapItem = siteMap.getSiteMapItem(WILDCARD);
-            if(hstSiteMapItem != null && !hstSiteMapItem.isMarkedDeleted()) {
-                params.put(String.valueOf(params.size()+1), elements[0]);
-                matchedSiteMapItem =  resolveMatchingSiteMap(hstSiteMapItem, params, 1, elements);
-            }
-        }
-        
-        // still no match, try if there are root components like **.xxx that match
-        if(matchedSiteMapItem == null) {
-            params.clear();
-         // check for partial wildcard (**.xxx) matcher first
-            for(HstSiteMapItem item : siteMap.getSiteMapItems()) {
-                if (item.isMarkedDeleted()) {
-                    continue;
-                }
-                HstSiteMapItemService service = (HstSiteMapItemService)item;
-                if(service.containsAny() && service.patternMatch(pathInfo, service.getPrefix(), service.getPostfix())) {
-                    String parameter = getStrippedParameter(service, pathInfo);
-                    params.put(String.valueOf(params.size()+1), parameter);
-                    matchedSiteMapItem = item;
-                    // we have a matching sitemap item.
-                    break;
-                }
-            }
+        final SiteMapMatchingTree matchingTree;
+        if (siteMap instanceof HstSiteMapService) {
+            matchingTree = ((HstSiteMapService) siteMap).getMatchingTree();
+        } else {
+            matchingTree = new SiteMapMatchingTree(siteMap.getSiteMapItems());
         }
-        
-        // still no match, try if there is root components that is **
-        if(matchedSiteMapItem == null) {
-            params.clear();
-            // check for a wildcard (**) matcher :
-            HstSiteMapItem hstSiteMapItemAny = siteMap.getSiteMapItem(ANY);
-            if(hstSiteMapItemAny == null || hstSiteMapItemAny.isMarkedDeleted()) {
-                log.info("Did not find a matching sitemap item for path '{}', Mount '{}' and Host '"+resolvedMount.getMount().getVirtualHost().getHostName()+"'" +
-                        ". Return null", pathInfo, resolvedMount.getMount().getParent() == null ? "hst:root" : resolvedMount.getMount().getMountPath() );
-                throw new NotFoundException("PathInfo '"+pathInfo+"' could not be matched");
-            } else {
-                // The ** has the value of the entire pathInfo
-                params.put(String.valueOf(params.size()+1), pathInfo);
-                matchedSiteMapItem = hstSiteMapItemAny;
-            }
-            
+
+        final SiteMapMatchingTree.MatchResult matchResult = matchingTree.match(pathInfo);
+        if (matchResult == null) {
+            log.info("Did not find a matching sitemap item for path '{}', Mount '{}' and Host '"+resolvedMount.getMount().getVirtualHost().getHostName()+"'" +
+                    ". Return null", pathInfo, resolvedMount.getMount().getParent() == null ? "hst:root" : resolvedMount.getMount().getMountPath() );
+            throw new NotFoundException("PathInfo '"+pathInfo+"' could not be matched");
         }
+        final HstSiteMapItem matchedSiteMapItem = matchResult.getSiteMapItem();
+        final Properties params = matchResult.getParameters();
 
         // check wether there is an _index_ sitemap item:
         HstSiteMapItem index = matchedSiteMapItem.getChild(INDEX);
@@ -203,102 +139,6 @@ public class BasicHstSiteMapMatcher implements HstSiteMapMatcher{
         return path;
     }
 
-    private HstSiteMapItem resolveMatchingSiteMap(HstSiteMapItem hstSiteMapItem, Properties params, int position, String[] elements) {
-       return traverseInToSiteMapItem(hstSiteMapItem, params, position, elements, new ArrayList<HstSiteMapItem>());
-    }
-
-    private HstSiteMapItem traverseInToSiteMapItem(HstSiteMapItem hstSiteMapItem, Properties params, int position, String[] elements, List<HstSiteMapItem> checkedSiteMapItems) {
-        HstSiteMapItemService hstSiteMapItemService = (HstSiteMapItemService)hstSiteMapItem;
-        
-        checkedSiteMapItems.add(hstSiteMapItemService);
-        if(position == elements.length) {
-           // we are ready
-           return hstSiteMapItemService;
-       }
-       HstSiteMapItem s; 
-       if( (s = hstSiteMapItemService.getChild(elements[position])) != null && !checkedSiteMapItems.contains(s) && !s.isMarkedDeleted()) {
-           if (s.isAny() || s.isWildCard()) {
-               // this can happen when the pathInfo to match contains _default_ or _any_  : It is a corner case
-               params.put(String.valueOf(params.size()+1), getStrippedParameter((HstSiteMapItemService)s, elements[position]));
-           }
-           return traverseInToSiteMapItem(s, params, ++position, elements, checkedSiteMapItems);
-       } else if( (s = hstSiteMapItemService.getWildCardPatternChild(elements[position], checkedSiteMapItems)) != null  && !s.isMarkedDeleted()) {
-           String parameter = getStrippedParameter((HstSiteMapItemService)s, elements[position]);
-           params.put(String.valueOf(params.size()+1), parameter);
-           return traverseInToSiteMapItem(s, params, ++position, elements, checkedSiteMapItems);
-       } else if( (s = hstSiteMapItemService.getChild(WILDCARD)) != null && !checkedSiteMapItems.contains(s) && !s.isMarkedDeleted()) {
-           params.put(String.valueOf(params.size()+1), elements[position]);
-           return traverseInToSiteMapItem(s, params, ++position, elements, checkedSiteMapItems);
-       } else if( (s = hstSiteMapItemService.getAnyPatternChild(elements, position, checkedSiteMapItems)) != null && !s.isMarkedDeleted()) {
-           StringBuffer remainder = new StringBuffer(elements[position]);
-           while(++position < elements.length) {
-               remainder.append("/").append(elements[position]);
-           }
-           String parameter = getStrippedParameter((HstSiteMapItemService)s, remainder.toString());
-           params.put(String.valueOf(params.size()+1), parameter);
-           return s;
-       } 
-       else if(hstSiteMapItemService.getChild(ANY) != null && !hstSiteMapItemService.getChild(ANY).isMarkedDeleted()) {
-           StringBuffer remainder = new StringBuffer(elements[position]);
-           while(++position < elements.length) {
-               remainder.append("/").append(elements[position]);
-           }
-           params.put(String.valueOf(params.size()+1), remainder.toString());
-           return hstSiteMapItem.getChild(ANY);
-       }  
-       else {
-           // We did not find a match for traversing this sitemap item tree. Traverse up, and try another tree
-           return traverseUp(hstSiteMapItemService, params, position, elements, checkedSiteMapItems);
-       }
-       
-    }
-
-    private HstSiteMapItem traverseUp(HstSiteMapItem hstSiteMapItem, Properties params, int position, String[] elements, List<HstSiteMapItem> checkedSiteMapItems) {
-        HstSiteMapItemService hstSiteMapItemService = (HstSiteMapItemService)hstSiteMapItem;
-        if(hstSiteMapItem == null) {
-           return null;
-       }
-       HstSiteMapItem s; 
-       if(hstSiteMapItem.isWildCard()) {
-           if( (s = hstSiteMapItem.getChild(WILDCARD)) != null && !checkedSiteMapItems.contains(s)){
-               return traverseInToSiteMapItem(hstSiteMapItem, params, position, elements, checkedSiteMapItems);
-           } else if( (s = hstSiteMapItemService.getWildCardPatternChild(elements[position], checkedSiteMapItems)) != null && !checkedSiteMapItems.contains(s)) {
-               return traverseInToSiteMapItem(hstSiteMapItem, params, position, elements, checkedSiteMapItems);
-           }else if(hstSiteMapItem.getChild(ANY) != null) {
-               return traverseInToSiteMapItem(hstSiteMapItem, params,position, elements, checkedSiteMapItems);
-           } else if( (s = hstSiteMapItemService.getAnyPatternChild(elements, position, checkedSiteMapItems)) != null && !checkedSiteMapItems.contains(s)) {
-               return traverseInToSiteMapItem(hstSiteMapItem, params, position, elements, checkedSiteMapItems);
-           } 
-           // as this tree path did not result in a match, remove some params again
-           params.remove(String.valueOf(params.size()));
-           return traverseUp(hstSiteMapItem.getParentItem(),params, --position, elements, checkedSiteMapItems );
-       } else if( (s = hstSiteMapItem.getChild(WILDCARD)) != null && !checkedSiteMapItems.contains(s)){
-           return traverseInToSiteMapItem(hstSiteMapItem, params, position, elements, checkedSiteMapItems);
-       } else if( (s = hstSiteMapItemService.getWildCardPatternChild(elements[position], checkedSiteMapItems)) != null && !checkedSiteMapItems.contains(s)) {
-            return traverseInToSiteMapItem(hstSiteMapItem, params, position, elements, checkedSiteMapItems);
-       } else if(hstSiteMapItem.getChild(ANY) != null ){
-           return traverseInToSiteMapItem(hstSiteMapItem, params,position, elements, checkedSiteMapItems);
-       } else if( (s = hstSiteMapItemService.getAnyPatternChild(elements, position, checkedSiteMapItems)) != null && !checkedSiteMapItems.contains(s)) {
-           return traverseInToSiteMapItem(hstSiteMapItem, params, position, elements, checkedSiteMapItems);
-       } else {    
-           return traverseUp(hstSiteMapItem.getParentItem(),params, --position, elements, checkedSiteMapItems );
-       }
-
-    }
-    
-    private String getStrippedParameter(HstSiteMapItemService s, String parameter) {
-        String removePrefix = s.getPrefix();
-        String removePostfix = s.getPostfix();
-        if(removePrefix != null && parameter.startsWith(removePrefix))  {
-           parameter = parameter.substring(removePrefix.length());
-        }
-        if(removePostfix != null && parameter.endsWith(removePostfix))  {
-           parameter = parameter.substring(0, (parameter.length() - removePostfix.length()));
-        }
-        return parameter;
-    }
-    
-
     public void invalidate() {
         // currently nothing to invalidate
     }
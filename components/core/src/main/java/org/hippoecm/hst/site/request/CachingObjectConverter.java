@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2016 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2013-2017 Hippo B.V. (http://www.onehippo.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
  */
 package org.hippoecm.hst.site.request;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.jcr.Node;
@@ -25,10 +26,12 @@ import com.google.common.base.Optional;
 
 import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.lang.StringUtils;
+import org.hippoecm.hst.cache.CacheDependencies;
 import org.hippoecm.hst.content.beans.ObjectBeanManagerException;
 import org.hippoecm.hst.content.beans.manager.ObjectConverter;
 import org.hippoecm.hst.content.beans.manager.ObjectConverterAware;
 import org.hippoecm.hst.content.beans.standard.HippoBean;
+import org.hippoecm.hst.content.beans.standard.HippoDocumentBean;
 import org.hippoecm.hst.site.HstServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +40,12 @@ import org.slf4j.LoggerFactory;
 /**
  * delegatee is shared by multiple threads. CachingObjectConverter is request bound and used single threaded
  * (thread-safe)
+ * <p>
+ * An object is cached by the key it was asked for, and also by the path of the resulting bean, such that a node is
+ * only converted once per request, also when it is reached through its handle, its identifier or a relative path.
+ * The cache is an LRU of <code>caching.object.converter.maxsize</code> objects, 100 by default. A maximum cache size
+ * of zero or less means the cache is not bounded for the request.
+ * </p>
  */
 class CachingObjectConverter implements ObjectConverter {
 
@@ -72,11 +81,11 @@ class CachingObjectConverter implements ObjectConverter {
         CacheKey key = new CacheKey(session, path);
         Optional<Object> cached = objectCache.get(key);
         if (cached != null) {
-            return cached.orNull();
+            return recordCacheDependency(cached.orNull());
         }
         Object o = delegatee.getObject(session, path);
         setObjectConverter(o);
-        objectCache.put(key, o);
+        cache(key, o);
         return o;
     }
 
@@ -85,11 +94,11 @@ class CachingObjectConverter implements ObjectConverter {
         CacheKey key = new CacheKey(node);
         Optional<Object> cached = objectCache.get(key);
         if (cached != null) {
-            return cached.orNull();
+            return recordCacheDependency(cached.orNull());
         }
         Object o = delegatee.getObject(node);
         setObjectConverter(o);
-        objectCache.put(key, o);
+        cache(key, o);
         return o;
     }
 
@@ -106,11 +115,11 @@ class CachingObjectConverter implements ObjectConverter {
         CacheKey key = new CacheKey(node, relPath);
         Optional<Object> cached = objectCache.get(key);
         if (cached != null) {
-            return cached.orNull();
+            return recordCacheDependency(cached.orNull());
         }
         Object o = delegatee.getObject(node, relPath);
         setObjectConverter(o);
-        objectCache.put(key, o);
+        cache(key, o);
         return o;
     }
 
@@ -119,11 +128,11 @@ class CachingObjectConverter implements ObjectConverter {
         CacheKey key = new CacheKey(session, uuid);
         Optional<Object> cached = objectCache.get(key);
         if (cached != null) {
-            return cached.orNull();
+            return recordCacheDependency(cached.orNull());
         }
         Object o = delegatee.getObject(uuid, session);
         setObjectConverter(o);
-        objectCache.put(key, o);
+        cache(key, o);
         return o;
     }
 
@@ -132,11 +141,11 @@ class CachingObjectConverter implements ObjectConverter {
         CacheKey key = new CacheKey(node, uuid);
         Optional<Object> cached = objectCache.get(key);
         if (cached != null) {
-            return cached.orNull();
+            return recordCacheDependency(cached.orNull());
         }
         Object o = delegatee.getObject(uuid, node);
         setObjectConverter(o);
-        objectCache.put(key, o);
+        cache(key, o);
         return o;
     }
 
@@ -150,6 +159,39 @@ class CachingObjectConverter implements ObjectConverter {
         return delegatee.getPrimaryNodeTypeNameFor(hippoBean);
     }
 
+    /**
+     * The delegatee records the dependency of an object when loading it, but that is possibly for another component
+     * fragment than the one asking for the cached object now (see {@link CacheDependencies})
+     */
+    private Object recordCacheDependency(final Object o) {
+        if (o instanceof HippoBean) {
+            final CacheDependencies dependencies = CacheDependencies.getCurrent();
+            if (dependencies != null) {
+                final String path = ((HippoBean) o).getPath();
+                if (o instanceof HippoDocumentBean) {
+                    dependencies.addSubtree(StringUtils.substringBeforeLast(path, "/"));
+                } else {
+                    dependencies.addNode(path);
+                }
+            }
+        }
+        return o;
+    }
+
+    /**
+     * Caches <code>o</code> for <code>key</code>, and for the path of <code>o</code> if it is a bean that was asked for
+     * by another path or by identifier, which saves a second conversion when the bean node itself is asked for later on
+     */
+    private void cache(final CacheKey key, final Object o) {
+        objectCache.put(key, o);
+        if (o instanceof HippoBean) {
+            final String path = ((HippoBean) o).getPath();
+            if (path != null && !path.equals(key.pathOrUuid)) {
+                objectCache.put(new CacheKey(key.sessionUserId, path), o);
+            }
+        }
+    }
+
     private void setObjectConverter(final Object o) {
         if (o instanceof ObjectConverterAware) {
             ((ObjectConverterAware) o).setObjectConverter(this);
@@ -161,7 +203,11 @@ class CachingObjectConverter implements ObjectConverter {
         private final Map<CacheKey, Optional<Object>> cache;
 
         ObjectCache(final int maxSize) {
-            cache = new LRUMap(maxSize);
+            if (maxSize > 0) {
+                cache = new LRUMap(maxSize);
+            } else {
+                cache = new HashMap<>();
+            }
         }
 
         public Optional<Object> get(final CacheKey key) {
@@ -185,7 +231,11 @@ class CachingObjectConverter implements ObjectConverter {
         final String pathOrUuid;
 
         private CacheKey(final Session session, final String pathOrUuid) {
-            this.sessionUserId = session.getUserID();
+            this(session.getUserID(), pathOrUuid);
+        }
+
+        private CacheKey(final String sessionUserId, final String pathOrUuid) {
+            this.sessionUserId = sessionUserId;
             this.pathOrUuid = pathOrUuid;
         }
 
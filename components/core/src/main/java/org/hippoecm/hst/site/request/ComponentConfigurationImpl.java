@@ -68,8 +68,7 @@ public class ComponentConfigurationImpl implements ComponentConfiguration {
    
     public String getParameter(String name, ResolvedSiteMapItem hstResolvedSiteMapItem) {
         String paramValue = componentConfiguration.getParameter(name);
-        PropertyParser pp = new PropertyParser(hstResolvedSiteMapItem.getParameters());
-        String parsedParamValue = (String)pp.resolveProperty(name, paramValue);
+        String parsedParamValue = resolveProperty(name, paramValue, hstResolvedSiteMapItem);
         log.debug("Return value '{}' for property '{}'", parsedParamValue, name);
         return parsedParamValue;
     }
@@ -86,11 +85,19 @@ public class ComponentConfigurationImpl implements ComponentConfiguration {
     
     public String getLocalParameter(String name, ResolvedSiteMapItem hstResolvedSiteMapItem) {
         String paramValue = componentConfiguration.getLocalParameter(name);
-        PropertyParser pp = new PropertyParser(hstResolvedSiteMapItem.getParameters());
-        String parsedParamValue = (String)pp.resolveProperty(name, paramValue);
+        String parsedParamValue = resolveProperty(name, paramValue, hstResolvedSiteMapItem);
         log.debug("Return value '{}' for property '{}'", parsedParamValue, name);
         return parsedParamValue;
     }
+
+    private static String resolveProperty(String name, String paramValue, ResolvedSiteMapItem hstResolvedSiteMapItem) {
+        if (paramValue == null || !paramValue.contains(PropertyParser.DEFAULT_PLACEHOLDER_PREFIX)) {
+            // nothing to resolve, no need for a PropertyParser
+            return paramValue;
+        }
+        PropertyParser pp = new PropertyParser(hstResolvedSiteMapItem.getParameters());
+        return (String)pp.resolveProperty(name, paramValue);
+    }
     
     public Map<String, String> getRawParameters() {
         return componentConfiguration.getParameters();
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2015 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  *
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -18,13 +18,15 @@ package org.hippoecm.hst.site.request;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.jcr.LoginException;
 import javax.jcr.Repository;
@@ -96,7 +98,7 @@ public class HstRequestContextImpl implements HstMutableRequestContext {
     protected ContentBeansTool contentBeansTool;
     protected HstSiteMenusManager siteMenusManager;
     protected boolean cachingObjectConverterEnabled;
-    protected Map<String, Object> attributes;
+    protected volatile Map<String, Object> attributes;
     protected ContainerConfiguration containerConfiguration;
     protected Subject subject;
     protected Locale preferredLocale;
@@ -113,6 +115,12 @@ public class HstRequestContextImpl implements HstMutableRequestContext {
     private Map<Session, ObjectBeanManager> objectBeanManagers;
     private Map<Session, HstQueryManager> hstQueryManagers;
 
+    private final ThreadLocal<ThreadScope> threadScope = new ThreadLocal<>();
+    // all the sessions taken for thread scopes, logged out on dispose
+    private final Queue<Session> threadScopeSessions = new ConcurrentLinkedQueue<>();
+    // the thread scope sessions that are currently not used by a thread scope
+    private final Queue<Session> idleThreadScopeSessions = new ConcurrentLinkedQueue<>();
+
     private Map<String, Object> unmodifiableAttributes;
 
     private boolean disposed;
@@ -176,25 +184,14 @@ public class HstRequestContextImpl implements HstMutableRequestContext {
     public Session getSession(boolean create) throws RepositoryException {
         checkStateValidity();
 
+        final ThreadScope scope = threadScope.get();
+        if (scope != null) {
+            return scope.getSession(create);
+        }
+
         if (this.session == null) {
             if (create) {
-                final ContextCredentialsProvider credsProvider = getContextCredentialsProvider();
-                if (credsProvider != null) {
-                    final SimpleCredentials defaultCredentials = (SimpleCredentials) credsProvider.getDefaultCredentials(this);
-                    try {
-                        this.session = this.repository.login(defaultCredentials);
-                    } catch (LoginException e) {
-                        log.warn("Login Exception for session for userID {}. Cannot create session.", defaultCredentials.getUserID());
-                        throw e;
-                    }
-                } else {
-                    try {
-                        this.session = this.repository.login();
-                    } catch (LoginException e) {
-                        log.warn("Login Exception for anonymous login.");
-                        throw e;
-                    }
-                }
+                this.session = login();
             }
         } else if (!this.session.isLive()) {
             throw new HstComponentException("Invalid session.");
@@ -202,6 +199,48 @@ public class HstRequestContextImpl implements HstMutableRequestContext {
         return this.session;
     }
 
+    private Session login() throws RepositoryException {
+        final ContextCredentialsProvider credsProvider = getContextCredentialsProvider();
+        if (credsProvider != null) {
+            final SimpleCredentials defaultCredentials = (SimpleCredentials) credsProvider.getDefaultCredentials(this);
+            try {
+                return this.repository.login(defaultCredentials);
+            } catch (LoginException e) {
+                log.warn("Login Exception for session for userID {}. Cannot create session.", defaultCredentials.getUserID());
+                throw e;
+            }
+        } else {
+            try {
+                return this.repository.login();
+            } catch (LoginException e) {
+                log.warn("Login Exception for anonymous login.");
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void beginThreadScope() {
+        checkStateValidity();
+        threadScope.set(new ThreadScope(threadScope.get()));
+    }
+
+    @Override
+    public void endThreadScope() {
+        final ThreadScope scope = threadScope.get();
+        if (scope == null) {
+            return;
+        }
+        if (scope.session != null) {
+            idleThreadScopeSessions.add(scope.session);
+        }
+        if (scope.previous == null) {
+            threadScope.remove();
+        } else {
+            threadScope.set(scope.previous);
+        }
+    }
+
     @Override
     public void setSession(Session session) {
         checkStateValidity();
@@ -392,12 +431,14 @@ public class HstRequestContextImpl implements HstMutableRequestContext {
 
         if (object == null) {
             removeAttribute(name);
+            return;
         }
 
         if (this.attributes == null) {
             synchronized (this) {
                 if (this.attributes == null) {
-                    this.attributes = new HashMap<String, Object>();
+                    // the request can be processed by multiple threads concurrently, see #beginThreadScope()
+                    this.attributes = new ConcurrentHashMap<String, Object>();
                 }
             }
         }
@@ -802,7 +843,7 @@ public class HstRequestContextImpl implements HstMutableRequestContext {
     }
 
     @Override
-    public ObjectBeanManager getObjectBeanManager(final Session session) {
+    public synchronized ObjectBeanManager getObjectBeanManager(final Session session) {
         checkStateValidity();
         if (objectBeanManagers == null) {
             objectBeanManagers = new IdentityHashMap<>();
@@ -826,7 +867,7 @@ public class HstRequestContextImpl implements HstMutableRequestContext {
     }
 
     @Override
-    public HstQueryManager getQueryManager(final Session session) throws IllegalStateException {
+    public synchronized HstQueryManager getQueryManager(final Session session) throws IllegalStateException {
         checkStateValidity();
         if (hstQueryManagers == null) {
             hstQueryManagers = new IdentityHashMap<>();
@@ -840,7 +881,7 @@ public class HstRequestContextImpl implements HstMutableRequestContext {
     }
 
     @Override
-    public void clearObjectAndQueryManagers() {
+    public synchronized void clearObjectAndQueryManagers() {
         checkStateValidity();
         if (objectBeanManagers != null) {
             objectBeanManagers.clear();
@@ -853,6 +894,16 @@ public class HstRequestContextImpl implements HstMutableRequestContext {
     @Override
     public void dispose() {
 
+        for (Session threadScopeSession : threadScopeSessions) {
+            try {
+                threadScopeSession.logout();
+            } catch (Exception e) {
+                log.debug("Failed to logout thread scope session : {}", e.toString());
+            }
+        }
+        threadScopeSessions.clear();
+        idleThreadScopeSessions.clear();
+
         servletContext = null;
         servletRequest = null;
         servletResponse = null;
@@ -921,4 +972,27 @@ public class HstRequestContextImpl implements HstMutableRequestContext {
                     "is not yes finished. Problematic request is '%s'", methodName, getServletRequest()));
         }
     }
+
+    private class ThreadScope {
+
+        private final ThreadScope previous;
+        private Session session;
+
+        private ThreadScope(final ThreadScope previous) {
+            this.previous = previous;
+        }
+
+        private Session getSession(final boolean create) throws RepositoryException {
+            if (session == null) {
+                session = idleThreadScopeSessions.poll();
+                if (session == null && create) {
+                    session = login();
+                    threadScopeSessions.add(session);
+                }
+            } else if (!session.isLive()) {
+                throw new HstComponentException("Invalid session.");
+            }
+            return session;
+        }
+    }
 }
@@ -15,6 +15,10 @@
  */
 package org.hippoecm.hst.site.request;
 
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import org.apache.commons.lang.StringUtils;
 import org.hippoecm.hst.configuration.hosting.MatchException;
 import org.hippoecm.hst.configuration.hosting.Mount;
@@ -38,11 +42,38 @@ public class ResolvedVirtualHostImpl implements ResolvedVirtualHost {
     private PortMount portMount;
     
     private String hostName;
-    
+
+    /**
+     * The matched {@link Mount}s by context path and the part of the request path that the mount matching can
+     * consume, or <code>null</code> when the matched mounts are not cached
+     */
+    private final Cache<String, Optional<MatchedMount>> matchedMounts;
+
+    /**
+     * The depth of the deepest (descendant) {@link Mount} of the root mount: mount matching never consumes more
+     * request path segments than this depth
+     */
+    private final int mountDepth;
+
     public ResolvedVirtualHostImpl(VirtualHost virtualHost, String hostName, PortMount portMount) {
+        this(virtualHost, hostName, portMount, null);
+    }
+
+    /**
+     * @param mountCacheSpec the {@link com.google.common.cache.CacheBuilderSpec} for the cache of matched mounts of
+     *                       this host, or <code>null</code> to match the mount for every request
+     */
+    public ResolvedVirtualHostImpl(VirtualHost virtualHost, String hostName, PortMount portMount, String mountCacheSpec) {
         this.virtualHost = virtualHost;
         this.hostName = hostName;
         this.portMount = portMount;
+        if (mountCacheSpec == null || portMount.getRootMount() == null) {
+            matchedMounts = null;
+            mountDepth = 0;
+        } else {
+            matchedMounts = CacheBuilder.from(mountCacheSpec).build();
+            mountDepth = getDepth(portMount.getRootMount());
+        }
     }
 
     public VirtualHost getVirtualHost() {
@@ -71,8 +102,38 @@ public class ResolvedVirtualHostImpl implements ResolvedVirtualHost {
            }
         }
         
-        String[] requestPathSegments = path.split("/");
+        final String[] requestPathSegments = path.split("/");
+
+        final MatchedMount matchedMount;
+        if (matchedMounts == null) {
+            matchedMount = matchMount(contextPath, requestPathSegments);
+        } else {
+            // the matched mount only depends on the context path and the first 'mountDepth' path segments
+            final String cacheKey = createCacheKey(contextPath, matchingIgnoredPrefix, requestPathSegments);
+            final Optional<MatchedMount> cached = matchedMounts.getIfPresent(cacheKey);
+            if (cached != null) {
+                matchedMount = cached.orNull();
+            } else {
+                matchedMount = matchMount(contextPath, requestPathSegments);
+                matchedMounts.put(cacheKey, Optional.fromNullable(matchedMount));
+            }
+        }
+
+        if(matchedMount == null) {
+            log.warn("Virtual Host '{}' is not (correctly) mounted for portnumber '{}' and contextpath '{}': " +
+                    "We cannot return a ResolvedMount. Return null",
+                    virtualHost.getHostName(), String.valueOf(portMount.getPortNumber()), contextPath);
+            return null;
+        }
+
+        // a new ResolvedMount per request since it is mutable
+        ResolvedMount resolvedMount = new ResolvedMountImpl(matchedMount.mount, this , matchedMount.resolvedMountPath, matchingIgnoredPrefix, portMount.getPortNumber());
+        log.debug("Found ResolvedMount is '{}' and the mount prefix for it is :", resolvedMount.getResolvedMountPath());
+        
+        return resolvedMount;
+    }
 
+    private MatchedMount matchMount(final String contextPath, final String[] requestPathSegments) {
         int position = 0;
         
         Mount mount = portMount.getRootMount();
@@ -98,25 +159,45 @@ public class ResolvedVirtualHostImpl implements ResolvedVirtualHost {
         }
         
         if(mount == null) {
-            log.warn("Virtual Host '{}' is not (correctly) mounted for portnumber '{}' and contextpath '{}': " +
-                    "We cannot return a ResolvedMount. Return null",
-                    virtualHost.getHostName(), String.valueOf(portMount.getPortNumber()), contextPath);
             return null;
         }
         
-        
         // reconstruct the prefix that needs to be stripped of from the request because it belongs to the Mount
         // we thus create the resolvedPathInfoPrefix
         StringBuilder builder = new StringBuilder();
         while(position > 0) {
             builder.insert(0,requestPathSegments[--position]).insert(0,"/");
         }
-        String resolvedMountPath = builder.toString();
-        
-        ResolvedMount resolvedMount = new ResolvedMountImpl(mount, this , resolvedMountPath, matchingIgnoredPrefix, portMount.getPortNumber());
-        log.debug("Found ResolvedMount is '{}' and the mount prefix for it is :", resolvedMount.getResolvedMountPath());
-        
-        return resolvedMount;
+        return new MatchedMount(mount, builder.toString());
+    }
+
+    private String createCacheKey(final String contextPath, final String matchingIgnoredPrefix, final String[] requestPathSegments) {
+        final StringBuilder key = new StringBuilder();
+        key.append(contextPath).append('\n').append(matchingIgnoredPrefix != null).append('\n');
+        final int segments = Math.min(mountDepth, requestPathSegments.length);
+        for (int i = 0; i < segments; i++) {
+            key.append(requestPathSegments[i]).append('/');
+        }
+        return key.toString();
+    }
+
+    private static int getDepth(final Mount mount) {
+        int depth = 0;
+        for (Mount child : mount.getChildMounts()) {
+            depth = Math.max(depth, getDepth(child) + 1);
+        }
+        return depth;
+    }
+
+    private static class MatchedMount {
+
+        private final Mount mount;
+        private final String resolvedMountPath;
+
+        private MatchedMount(final Mount mount, final String resolvedMountPath) {
+            this.mount = mount;
+            this.resolvedMountPath = resolvedMountPath;
+        }
     }
 
     @Deprecated
@@ -15,6 +15,8 @@
  */
 package org.hippoecm.hst.cache;
 
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -28,6 +30,9 @@ import org.springframework.cache.ehcache.EhCacheCache;
 
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListener;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -71,6 +76,29 @@ public class CompositeHstCacheIT extends AbstractSpringTestCase {
         assertTrue(compositeHstCache.isKeyInCache("key1"));
     }
 
+    @Test
+    public void element_is_not_left_cached_when_its_dependencies_are_invalidated_while_putting_it() throws Exception {
+        compositeHstCache.setDependencyTrackingEnabled(true);
+        // invalidates the dependency of the element right after ehcache stored it
+        final CacheEventListener invalidatingListener = new CacheEventListenerAdapter() {
+            @Override
+            public void notifyElementPut(final Ehcache cache, final Element element) {
+                compositeHstCache.invalidate(Collections.singletonList("/content/documents/news"));
+            }
+        };
+        compositeHstCache.ehcache.getCacheEventNotificationService().registerListener(invalidatingListener);
+        try {
+            final CacheDependencies dependencies = new CacheDependencies();
+            dependencies.addSubtree("/content/documents/news");
+            compositeHstCache.put(compositeHstCache.createElement("key", new DependentContent(dependencies)));
+
+            assertFalse(compositeHstCache.isKeyInCache("key"));
+        } finally {
+            compositeHstCache.ehcache.getCacheEventNotificationService().unregisterListener(invalidatingListener);
+            compositeHstCache.setDependencyTrackingEnabled(false);
+        }
+    }
+
     @Test
     public void put_in_primary_cache_also_puts_in_second_level_cache_however_with_different_time_to_live() {
         compositeHstCache.setSecondLevelCache(secondLevelPageCache);
@@ -448,4 +476,17 @@ public class CompositeHstCacheIT extends AbstractSpringTestCase {
 
     }
 
+    private static class DependentContent implements Serializable, CacheDependent {
+
+        private final CacheDependencies cacheDependencies;
+
+        private DependentContent(final CacheDependencies cacheDependencies) {
+            this.cacheDependencies = cacheDependencies;
+        }
+
+        @Override
+        public CacheDependencies getCacheDependencies() {
+            return cacheDependencies;
+        }
+    }
 }
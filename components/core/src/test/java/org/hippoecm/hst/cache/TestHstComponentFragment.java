@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.cache;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.easymock.Capture;
+import org.hippoecm.hst.core.component.HstResponse;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestHstComponentFragment {
+
+    @Test
+    public void fragment_is_only_cacheable_once_its_body_is_captured() {
+        final HstComponentFragment fragment = new HstComponentFragment("key");
+        assertFalse(fragment.isCacheable());
+
+        fragment.setBody("<div>first</div>");
+        fragment.setBody("<div>second</div>");
+        assertTrue(fragment.isCacheable());
+        assertEquals("<div>first</div>", fragment.getBody());
+
+        fragment.markUncacheable();
+        assertFalse(fragment.isCacheable());
+    }
+
+    @Test
+    public void replayed_head_elements_are_clones_of_the_contributed_elements() throws Exception {
+        final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        final Element script = document.createElement("script");
+        script.setAttribute("src", "/site/script.js");
+
+        final HstComponentFragment fragment = new HstComponentFragment("key");
+        fragment.addHeadElement(script, "script");
+        // changes to the contributed element after contribution do not affect the fragment
+        script.setAttribute("src", "/site/other.js");
+
+        final Capture<Element> replayed = new Capture<>();
+        final HstResponse response = createMock(HstResponse.class);
+        response.addHeadElement(capture(replayed), eq("script"));
+        expectLastCall().once();
+        replay(response);
+
+        fragment.replayHeadElements(response);
+
+        verify(response);
+        assertNotSame(script, replayed.getValue());
+        assertEquals("/site/script.js", replayed.getValue().getAttribute("src"));
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.cache.esi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import net.sf.ehcache.constructs.web.Header;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TestESIRemoteIncludes
+ */
+public class TestESIRemoteIncludes {
+
+    private HttpServer server;
+    private String baseURL;
+    private final ConcurrentHashMap<String, AtomicInteger> requestCounts = new ConcurrentHashMap<String, AtomicInteger>();
+    private ExecutorService executor;
+    private ESIPageRenderer renderer;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            requestCounts.putIfAbsent(path, new AtomicInteger());
+            requestCounts.get(path).incrementAndGet();
+
+            int status = HttpServletResponse.SC_OK;
+            String body = path.substring(1);
+
+            if (path.startsWith("/slow")) {
+                sleep(400L);
+            } else if (path.startsWith("/cached")) {
+                exchange.getResponseHeaders().add("Cache-Control", "public, max-age=60");
+            } else if (path.startsWith("/private")) {
+                exchange.getResponseHeaders().add("Cache-Control", "private, max-age=60");
+            } else if (path.startsWith("/error")) {
+                status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+            } else if (path.startsWith("/hanging")) {
+                sleep(2000L);
+            }
+
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.start();
+        baseURL = "http://localhost:" + server.getAddress().getPort();
+
+        executor = Executors.newFixedThreadPool(4);
+        renderer = new ESIPageRenderer();
+        renderer.setRemoteIncludeEnabled(true);
+        renderer.setRemoteIncludeExecutor(executor);
+        renderer.setRemoteFragmentCache(new ESIRemoteFragmentCache("maximumSize=100"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        server.stop(0);
+    }
+
+    @Test
+    public void remote_includes_are_fetched_concurrently_and_written_in_document_order() throws Exception {
+        long start = System.currentTimeMillis();
+        String rendered = render("[<esi:include src=\"" + baseURL + "/slow1\"/>]" +
+                "[<!--esi <esi:include src=\"" + baseURL + "/slow2\"/> -->]" +
+                "[<esi:include src=\"" + baseURL + "/slow3\"/>]");
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals("[slow1][ slow2 ][slow3]", rendered);
+        assertTrue("Remote includes were not fetched concurrently: " + elapsed + " ms", elapsed < 1000L);
+    }
+
+    @Test
+    public void remote_includes_are_fetched_by_the_request_thread_without_executor() throws Exception {
+        renderer.setRemoteIncludeExecutor(null);
+        assertEquals("[cached1][error]",
+                render("[<esi:include src=\"" + baseURL + "/cached1\"/>][<esi:include src=\"" + baseURL + "/error\" alt=\"error\"/>]"));
+    }
+
+    @Test
+    public void remote_fragments_are_cached_as_long_as_their_headers_allow() throws Exception {
+        String page = "<esi:include src=\"" + baseURL + "/cached2\"/><esi:include src=\"" + baseURL + "/private\"/>";
+
+        assertEquals("cached2private", render(page));
+        assertEquals("cached2private", render(page));
+        assertEquals(1, requestCounts.get("/cached2").get());
+        assertEquals(2, requestCounts.get("/private").get());
+    }
+
+    @Test
+    public void alt_text_is_rendered_for_failing_or_timed_out_remote_includes() throws Exception {
+        renderer.setRemoteIncludeTimeout(500L);
+        assertEquals("[failed][timed out][]",
+                render("[<esi:include src=\"" + baseURL + "/error\" alt=\"failed\" onerror=\"continue\"/>]" +
+                        "[<esi:include src=\"" + baseURL + "/hanging\" alt=\"timed out\"/>]" +
+                        "[<esi:include src=\"" + baseURL + "/error\" onerror=\"continue\"/>]"));
+    }
+
+    @Test
+    public void remote_includes_are_ignored_unless_enabled() throws Exception {
+        renderer.setRemoteIncludeEnabled(false);
+        assertEquals("[]", render("[<esi:include src=\"" + baseURL + "/cached3\"/>]"));
+        assertEquals(null, requestCounts.get("/cached3"));
+    }
+
+    @Test
+    public void time_to_live_is_determined_by_cache_headers() throws Exception {
+        assertEquals(60000L, ESIRemoteFragmentCache.getTimeToLiveMillis("public, max-age=60", 0L, 0L));
+        assertEquals(10000L, ESIRemoteFragmentCache.getTimeToLiveMillis("max-age=60, s-maxage=\"10\"", 0L, 0L));
+        assertEquals(0L, ESIRemoteFragmentCache.getTimeToLiveMillis("max-age=60, no-store", 0L, 0L));
+        assertEquals(0L, ESIRemoteFragmentCache.getTimeToLiveMillis("Private", 0L, 0L));
+        assertEquals(30000L, ESIRemoteFragmentCache.getTimeToLiveMillis(null, 130000L, 100000L));
+        assertEquals(0L, ESIRemoteFragmentCache.getTimeToLiveMillis(null, 100000L, 130000L));
+        assertEquals(0L, ESIRemoteFragmentCache.getTimeToLiveMillis(null, 0L, 0L));
+    }
+
+    @Test
+    public void expired_fragments_are_not_returned() throws Exception {
+        ESIRemoteFragmentCache cache = new ESIRemoteFragmentCache("maximumSize=10");
+        cache.put("http://www.example.com/a", "a", 60000L);
+        cache.put("http://www.example.com/b", "b", 1L);
+        cache.put("http://www.example.com/c", "c", 0L);
+        TimeUnit.MILLISECONDS.sleep(10L);
+
+        assertEquals("a", cache.get("http://www.example.com/a"));
+        assertEquals(null, cache.get("http://www.example.com/b"));
+        assertEquals(null, cache.get("http://www.example.com/c"));
+        assertEquals(1L, cache.size());
+    }
+
+    private String render(String body) throws Exception {
+        Collection<Header<? extends Serializable>> headers = new ArrayList<Header<? extends Serializable>>();
+        ESIHstPageInfo pageInfo = new ESIHstPageInfo(HttpServletResponse.SC_OK, "text/html; charset=UTF-8",
+                new ArrayList<Cookie>(), body.getBytes("UTF-8"), "UTF-8", 60, headers);
+        pageInfo.addAllFragmentInfos(new ESIPageScanner().scanFragmentInfos(pageInfo.getUngzippedBodyAsString()));
+
+        StringWriter writer = new StringWriter();
+        renderer.render(writer, new MockHttpServletRequest(), pageInfo);
+        return writer.toString();
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -201,7 +201,8 @@ public class HstComponentsConfigurationModelsIT extends AbstractTestConfiguratio
 
         assertNotSame(hstSiteAfter1, hstSiteAfter2);
 
-        assertNotSame(hstSiteAfter1, hstSiteBefore1);
+        // the hst site for www.unit.test is not affected by the change in 'global' and is reused
+        assertSame(hstSiteAfter1, hstSiteBefore1);
         assertNotSame(hstSiteAfter2, hstSiteBefore2);
 
         final HstComponentsConfiguration componenentConfigsAfter1 = hstSiteAfter1.getComponentsConfiguration();
@@ -230,7 +231,7 @@ public class HstComponentsConfigurationModelsIT extends AbstractTestConfiguratio
 
         assertNotSame(hstSiteSecondAfter1, hstSiteSecondAfter2);
 
-        assertNotSame(hstSiteSecondAfter1, hstSiteBefore1);
+        assertSame(hstSiteSecondAfter1, hstSiteBefore1);
         assertNotSame(hstSiteSecondAfter2, hstSiteBefore2);
 
         final HstComponentsConfiguration componenentConfigsSecondAfter1 = hstSiteSecondAfter1.getComponentsConfiguration();
@@ -257,7 +258,7 @@ public class HstComponentsConfigurationModelsIT extends AbstractTestConfiguratio
 
         assertNotSame(hstSiteThirdAfter1, hstSiteThirdAfter2);
 
-        assertNotSame(hstSiteThirdAfter1, hstSiteBefore1);
+        assertSame(hstSiteThirdAfter1, hstSiteBefore1);
         assertNotSame(hstSiteThirdAfter2, hstSiteBefore2);
 
         final HstComponentsConfiguration componenentConfigsThirdAfter1 = hstSiteThirdAfter1.getComponentsConfiguration();
@@ -139,6 +139,17 @@ public class TestEventCache {
         assertTrue("No OOM", true);
     }
 
+    @Test
+    public void testWeakTaggedCachePutIfAbsent() {
+        final WeakTaggedCache<String, Object, String> weakTaggedCache = new WeakTaggedCache<>();
+        final Object first = new Object();
+        final Object second = new Object();
+        assertTrue(first == weakTaggedCache.putIfAbsent("key", first, new String[]{"tag"}));
+        assertTrue(first == weakTaggedCache.putIfAbsent("key", second, new String[]{"tag"}));
+        weakTaggedCache.evictKeysByTag("tag");
+        assertTrue(second == weakTaggedCache.putIfAbsent("key", second, new String[]{"tag"}));
+    }
+
     @Test
     public void testDummy() {
         final WeakTaggedCache<FinalizableBigKey, FinalizableBigObject, String> weakTaggedCache = new WeakTaggedCache<>();
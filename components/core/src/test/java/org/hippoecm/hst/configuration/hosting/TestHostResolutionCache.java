@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.configuration.hosting;
+
+import org.easymock.EasyMock;
+import org.hippoecm.hst.cache.jmx.HostResolutionCacheStats;
+import org.hippoecm.hst.core.request.ResolvedVirtualHost;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestHostResolutionCache {
+
+    private HostResolutionCacheStats stats;
+    private HostResolutionCache cache;
+    private ResolvedVirtualHost resolvedVirtualHost;
+
+    @Before
+    public void setUp() {
+        stats = new HostResolutionCacheStats();
+        cache = new HostResolutionCache("maximumSize=10", "maximumSize=2", stats);
+        stats.setCurrentCache(cache);
+        resolvedVirtualHost = EasyMock.createNiceMock(ResolvedVirtualHost.class);
+    }
+
+    @Test
+    public void resolved_and_unresolvable_hosts_are_cached_separately() {
+        assertNull(cache.get("www.example.org"));
+        cache.put("www.example.org", resolvedVirtualHost);
+        cache.put("unknown.example.org", null);
+
+        assertSame(resolvedVirtualHost, cache.get("www.example.org").get());
+        assertFalse(cache.get("unknown.example.org").isPresent());
+
+        assertEquals(1, stats.getCacheMisses());
+        assertEquals(2, stats.getCacheHits());
+        assertEquals(1, stats.getNegativeCacheHits());
+        assertEquals(1, stats.getCacheSize());
+        assertEquals(1, stats.getNegativeCacheSize());
+    }
+
+    @Test
+    public void random_hosts_only_evict_unresolvable_hosts() {
+        cache.put("www.example.org", resolvedVirtualHost);
+        for (int i = 0; i < 100; i++) {
+            cache.put("random" + i + ".example.org", null);
+        }
+        assertSame(resolvedVirtualHost, cache.get("www.example.org").get());
+        assertEquals(2, stats.getNegativeCacheSize());
+        assertEquals(98, stats.getNegativeEvictions());
+        assertEquals(0, stats.getEvictions());
+    }
+
+    @Test
+    public void default_host_fallbacks_only_evict_unknown_hosts() {
+        cache.put("www.example.org", resolvedVirtualHost);
+        for (int i = 0; i < 100; i++) {
+            cache.putFallback("random" + i + ".example.org", resolvedVirtualHost);
+        }
+        assertSame(resolvedVirtualHost, cache.get("random99.example.org").get());
+        assertSame(resolvedVirtualHost, cache.get("www.example.org").get());
+        assertEquals(1, stats.getCacheSize());
+        assertEquals(2, stats.getNegativeCacheSize());
+        assertEquals(0, stats.getEvictions());
+        assertEquals(1, stats.getNegativeCacheHits());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.configuration.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.hippoecm.hst.configuration.hosting.Mount;
+import org.hippoecm.hst.configuration.hosting.VirtualHost;
+import org.hippoecm.hst.configuration.hosting.VirtualHosts;
+import org.hippoecm.hst.core.request.ResolvedMount;
+import org.hippoecm.hst.test.AbstractTestConfigurations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+
+public class ParallelModelBuildIT extends AbstractTestConfigurations {
+
+    private HstManagerImpl hstManager;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        hstManager = getComponent(HstManager.class.getName());
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        hstManager.setParallelModelBuildEnabled(false);
+        super.tearDown();
+    }
+
+    @Test
+    public void parallel_model_build_results_in_the_same_model_as_a_sequential_build() throws Exception {
+        hstManager.setParallelModelBuildEnabled(false);
+        hstManager.markStale();
+        final VirtualHosts sequentialModel = hstManager.getVirtualHosts();
+
+        hstManager.setParallelModelBuildEnabled(true);
+        assertNotNull(hstManager.getModelBuildExecutor());
+        hstManager.markStale();
+        final VirtualHosts parallelModel = hstManager.getVirtualHosts();
+
+        assertNotSame(sequentialModel, parallelModel);
+        assertEquals(describe(sequentialModel), describe(parallelModel));
+
+        final ResolvedMount sequentialMount = sequentialModel.matchMount("www.unit.test", "/site", "/");
+        final ResolvedMount parallelMount = parallelModel.matchMount("www.unit.test", "/site", "/");
+        assertEquals(sequentialMount.getMount().getIdentifier(), parallelMount.getMount().getIdentifier());
+    }
+
+    @Test
+    public void repeated_parallel_model_builds_are_deterministic() throws Exception {
+        hstManager.setParallelModelBuildEnabled(true);
+        hstManager.markStale();
+        final List<String> expected = describe(hstManager.getVirtualHosts());
+        for (int i = 0; i < 5; i++) {
+            hstManager.markStale();
+            assertEquals(expected, describe(hstManager.getVirtualHosts()));
+        }
+    }
+
+    /**
+     * @return the host groups, their root hosts and their mounts in model order, such that two models with the same
+     * description only differ in object identity
+     */
+    private static List<String> describe(final VirtualHosts virtualHosts) {
+        final List<String> description = new ArrayList<>();
+        for (String hostGroupName : virtualHosts.getHostGroupNames()) {
+            description.add("hostgroup " + hostGroupName);
+            for (Mount mount : virtualHosts.getMountsByHostGroup(hostGroupName)) {
+                final VirtualHost virtualHost = mount.getVirtualHost();
+                description.add("mount " + mount.getIdentifier() + " " + virtualHost.getHostName() + ":" +
+                        mount.getPort() + mount.getMountPath() + " alias=" + mount.getAlias() +
+                        " types=" + mount.getTypes() + " mountpoint=" + mount.getMountPoint() +
+                        " config=" + (mount.getHstSite() == null ? null : mount.getHstSite().getConfigurationPath()) +
+                        " channel=" + (mount.getChannel() == null ? null : mount.getChannel().getId()));
+            }
+            description.add("channels " + new TreeSet<>(virtualHosts.getChannels(hostGroupName).keySet()));
+        }
+        return description;
+    }
+}
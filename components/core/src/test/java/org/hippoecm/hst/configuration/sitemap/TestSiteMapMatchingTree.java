@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.configuration.sitemap;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.hippoecm.hst.configuration.HstNodeTypes.ANY;
+import static org.hippoecm.hst.configuration.HstNodeTypes.WILDCARD;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestSiteMapMatchingTree {
+
+    @Test
+    public void explicit_item_has_precedence_over_wildcards() {
+        final HstSiteMapItem newsAbout = item("about");
+        final HstSiteMapItem newsDefault = item(WILDCARD);
+        final HstSiteMapItem news = item("news", newsAbout, newsDefault);
+        final SiteMapMatchingTree tree = tree(news, item(WILDCARD), item(ANY));
+
+        assertMatch(tree, "news/about", newsAbout);
+        assertMatch(tree, "news/2017", newsDefault, "2017");
+    }
+
+    @Test
+    public void wildcard_precedence_is_pattern_then_default_then_any_pattern_then_any() {
+        final HstSiteMapItem html = item(WILDCARD + ".html");
+        final HstSiteMapItem defaultItem = item(WILDCARD);
+        final HstSiteMapItem pdf = item(ANY + ".pdf");
+        final HstSiteMapItem any = item(ANY);
+        final SiteMapMatchingTree tree = tree(item("docs", html, defaultItem, pdf, any));
+
+        assertMatch(tree, "docs/page.html", html, "page");
+        assertMatch(tree, "docs/page", defaultItem, "page");
+        assertMatch(tree, "docs/a/b.pdf", pdf, "a/b");
+        assertMatch(tree, "docs/a/b/c", any, "a/b/c");
+    }
+
+    @Test
+    public void backtracking_removes_parameters_of_failed_branches() {
+        final HstSiteMapItem detail = item("detail");
+        final HstSiteMapItem rootAny = item(ANY);
+        final SiteMapMatchingTree tree = tree(item("news", item(WILDCARD, detail)), rootAny);
+
+        assertMatch(tree, "news/2017/detail", detail, "2017");
+        // news/_default_ does not have a child 'other', hence falls back to the root _any_ without the '2017' param
+        assertMatch(tree, "news/2017/other", rootAny, "news/2017/other");
+    }
+
+    @Test
+    public void deleted_items_are_never_matched() {
+        final HstSiteMapItem deleted = deletedItem("news");
+        final HstSiteMapItem deletedWildcard = deletedItem(WILDCARD);
+        final HstSiteMapItem any = item(ANY);
+        final SiteMapMatchingTree tree = tree(deleted, deletedWildcard, any);
+
+        assertMatch(tree, "news", any, "news");
+    }
+
+    @Test
+    public void pattern_prefix_and_postfix_must_not_be_the_entire_element() {
+        final HstSiteMapItem html = item(WILDCARD + ".html");
+        final SiteMapMatchingTree tree = tree(html);
+
+        assertMatch(tree, "a.html", html, "a");
+        assertNull(tree.match(".html"));
+        assertNull(tree.match("a.htm"));
+    }
+
+    @Test
+    public void overlapping_prefix_and_postfix_of_a_default_pattern_do_not_match() {
+        final HstSiteMapItem pattern = item("news-" + WILDCARD + "-news");
+        final HstSiteMapItem any = item(ANY);
+        final SiteMapMatchingTree tree = tree(pattern, any);
+
+        assertMatch(tree, "news-a-news", pattern, "a");
+        assertMatch(tree, "news-news", any, "news-news");
+        assertMatch(tree, "news-", any, "news-");
+    }
+
+    @Test
+    public void overlapping_prefix_and_postfix_of_an_any_pattern_do_not_match() {
+        final HstSiteMapItem pattern = item("news-" + ANY + "-news");
+        final SiteMapMatchingTree tree = tree(item("docs", pattern));
+
+        assertMatch(tree, "docs/news-a/b-news", pattern, "a/b");
+        assertNull(tree.match("docs/news-news"));
+        assertNull(tree.match("docs/news-"));
+    }
+
+    private static SiteMapMatchingTree tree(final HstSiteMapItem... rootItems) {
+        return new SiteMapMatchingTree(Arrays.asList(rootItems));
+    }
+
+    private static void assertMatch(final SiteMapMatchingTree tree, final String pathInfo,
+                                    final HstSiteMapItem expected, final String... expectedParameters) {
+        final SiteMapMatchingTree.MatchResult result = tree.match(pathInfo);
+        assertSame(expected, result.getSiteMapItem());
+        assertArrayEquals(expectedParameters, result.getParameterValues());
+    }
+
+    private static HstSiteMapItem item(final String value, final HstSiteMapItem... children) {
+        return mockItem(value, false, children);
+    }
+
+    private static HstSiteMapItem deletedItem(final String value) {
+        return mockItem(value, true);
+    }
+
+    private static HstSiteMapItem mockItem(final String value, final boolean deleted, final HstSiteMapItem... children) {
+        final List<HstSiteMapItem> childList = Arrays.asList(children);
+        final HstSiteMapItem item = createNiceMock(HstSiteMapItem.class);
+        expect(item.getValue()).andReturn(value).anyTimes();
+        expect(item.getId()).andReturn(value).anyTimes();
+        expect(item.isMarkedDeleted()).andReturn(deleted).anyTimes();
+        expect(item.isWildCard()).andReturn(WILDCARD.equals(value)).anyTimes();
+        expect(item.isAny()).andReturn(ANY.equals(value)).anyTimes();
+        expect(item.containsWildCard()).andReturn(!WILDCARD.equals(value) && value.contains(WILDCARD)).anyTimes();
+        expect(item.containsAny()).andReturn(!ANY.equals(value) && value.contains(ANY)).anyTimes();
+        expect(item.getChildren()).andReturn(childList).anyTimes();
+        for (HstSiteMapItem child : children) {
+            expect(item.getChild(child.getValue())).andReturn(child).anyTimes();
+        }
+        replay(item);
+        return item;
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.container;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.hippoecm.hst.cache.CacheDependencies;
+import org.hippoecm.hst.cache.CompositeHstCache;
+import org.hippoecm.hst.configuration.components.HstComponentConfiguration;
+import org.hippoecm.hst.configuration.hosting.Mount;
+import org.hippoecm.hst.configuration.sitemap.HstSiteMapItem;
+import org.hippoecm.hst.container.ModifiableRequestContextProvider;
+import org.hippoecm.hst.core.component.HstComponentException;
+import org.hippoecm.hst.core.component.HstComponentMetadata;
+import org.hippoecm.hst.core.component.HstRequestImpl;
+import org.hippoecm.hst.core.component.HstResponse;
+import org.hippoecm.hst.core.component.HstURLFactory;
+import org.hippoecm.hst.core.component.ParallelSafe;
+import org.hippoecm.hst.core.request.ResolvedMount;
+import org.hippoecm.hst.core.request.ResolvedSiteMapItem;
+import org.hippoecm.hst.mock.core.request.MockHstRequestContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Renders pages through the {@link AggregationValve} with a component invoker that writes the name of every window
+ * around the flushed output of its child windows : a page with a fragment cacheable 'menu' component and a page with
+ * {@link ParallelSafe} components.
+ */
+public class TestAggregationValve {
+
+    private static final String CACHE_NAME = TestAggregationValve.class.getName();
+    private static final String PAGES_PATH = "/hst:hst/hst:configurations/test/hst:pages";
+    private static final String MENU_DOCUMENT_PATH = "/content/documents/test/menu";
+    private static final String PAGE_OUTPUT = "<page><header></header><menu><item></item></menu></page>";
+    private static final String PARALLEL_PAGE_OUTPUT = "<page><left><leftitem></leftitem></left><right></right><main></main></page>";
+    private static final long TIMEOUT_SECONDS = 10L;
+
+    private CacheManager cacheManager;
+    private CompositeHstCache fragmentCache;
+    private RecordingComponentInvoker componentInvoker;
+    private AggregationValve valve;
+    private ExecutorService executor;
+
+    private HstContainerConfig containerConfig;
+    private HstContainerURL baseURL;
+    private HstURLFactory urlFactory;
+    private ResolvedMount resolvedMount;
+    private ResolvedSiteMapItem resolvedSiteMapItem;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheManager = CacheManager.create();
+        cacheManager.addCache(new Cache(new CacheConfiguration(CACHE_NAME, 100)));
+        fragmentCache = new CompositeHstCache(cacheManager.getEhcache(CACHE_NAME));
+        fragmentCache.setDependencyTrackingEnabled(true);
+
+        componentInvoker = new RecordingComponentInvoker();
+        componentInvoker.onBeforeRender("item", (request, response) -> CacheDependencies.recordNode(MENU_DOCUMENT_PATH));
+        executor = Executors.newFixedThreadPool(4);
+        valve = new AggregationValve();
+        valve.setComponentInvoker(componentInvoker);
+        valve.setComponentWindowResponseAppenders(Collections.emptyList());
+        valve.setFragmentCache(fragmentCache);
+        valve.setFragmentCachingEnabled(true);
+        valve.setParallelBeforeRenderExecutor(executor);
+
+        containerConfig = createNiceMock(HstContainerConfig.class);
+        baseURL = createNiceMock(HstContainerURL.class);
+
+        final HstContainerURLProvider containerURLProvider = createNiceMock(HstContainerURLProvider.class);
+        expect(containerURLProvider.getParameterNameComponentSeparator()).andStubReturn(":");
+        urlFactory = createNiceMock(HstURLFactory.class);
+        expect(urlFactory.getContainerURLProvider()).andStubReturn(containerURLProvider);
+
+        final Mount mount = createNiceMock(Mount.class);
+        expect(mount.getIdentifier()).andStubReturn("mount");
+        resolvedMount = createNiceMock(ResolvedMount.class);
+        expect(resolvedMount.getMount()).andStubReturn(mount);
+
+        final HstSiteMapItem siteMapItem = createNiceMock(HstSiteMapItem.class);
+        expect(siteMapItem.getQualifiedId()).andStubReturn("sitemapitem");
+        resolvedSiteMapItem = createNiceMock(ResolvedSiteMapItem.class);
+        expect(resolvedSiteMapItem.getHstSiteMapItem()).andStubReturn(siteMapItem);
+        expect(resolvedSiteMapItem.getParameters()).andStubReturn(new Properties());
+
+        replay(containerConfig, baseURL, containerURLProvider, urlFactory, mount, resolvedMount, siteMapItem,
+                resolvedSiteMapItem);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        ModifiableRequestContextProvider.clear();
+        cacheManager.removeCache(CACHE_NAME);
+    }
+
+    @Test
+    public void fragment_is_rendered_once_and_served_from_the_fragment_cache_afterwards() throws Exception {
+        assertEquals(PAGE_OUTPUT, render(null));
+        assertEquals(PAGE_OUTPUT, render(null));
+
+        assertEquals(2, componentInvoker.getRenderCount("page"));
+        assertEquals(2, componentInvoker.getRenderCount("header"));
+        assertEquals(1, componentInvoker.getBeforeRenderCount("menu"));
+        assertEquals(1, componentInvoker.getRenderCount("menu"));
+        assertEquals("descendants of a cached fragment are not invoked either",
+                1, componentInvoker.getBeforeRenderCount("item"));
+        assertEquals(1, componentInvoker.getRenderCount("item"));
+    }
+
+    @Test
+    public void fragments_are_not_served_to_other_users() throws Exception {
+        assertEquals(PAGE_OUTPUT, render("alice"));
+        assertEquals(PAGE_OUTPUT, render("bob"));
+        assertEquals(2, componentInvoker.getRenderCount("menu"));
+
+        assertEquals(PAGE_OUTPUT, render("alice"));
+        assertEquals(PAGE_OUTPUT, render(null));
+        assertEquals(3, componentInvoker.getRenderCount("menu"));
+    }
+
+    @Test
+    public void fragment_is_evicted_when_a_dependency_of_a_descendant_changes() throws Exception {
+        render(null);
+        fragmentCache.invalidate(Collections.singleton("/content/documents/test/other"));
+        render(null);
+        assertEquals(1, componentInvoker.getRenderCount("menu"));
+
+        fragmentCache.invalidate(Collections.singleton(MENU_DOCUMENT_PATH));
+        assertEquals(PAGE_OUTPUT, render(null));
+        assertEquals(2, componentInvoker.getRenderCount("menu"));
+        assertEquals(2, componentInvoker.getRenderCount("item"));
+    }
+
+    @Test
+    public void fragment_is_evicted_when_its_component_configuration_changes() throws Exception {
+        render(null);
+        fragmentCache.invalidate(Collections.singleton(PAGES_PATH + "/menu"));
+        render(null);
+        assertEquals(2, componentInvoker.getRenderCount("menu"));
+    }
+
+    @Test
+    public void parallel_safe_subtrees_are_processed_concurrently_parent_first() throws Exception {
+        valve.setParallelBeforeRenderEnabled(true);
+        final List<String> appendedWindows = Collections.synchronizedList(new ArrayList<>());
+        valve.setComponentWindowResponseAppenders(Collections.singletonList(
+                (rootWindow, rootRenderingWindow, window, request, response) -> appendedWindows.add(window.getName())));
+
+        // 'left' and 'right' can only pass the barrier when they are invoked at the same time
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        componentInvoker.onBeforeRender("left", (request, response) -> barrier.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        componentInvoker.onBeforeRender("right", (request, response) -> barrier.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(PARALLEL_PAGE_OUTPUT, renderParallelPage(new MockHttpServletResponse()));
+
+        final List<String> beforeRenderOrder = componentInvoker.getBeforeRenderOrder();
+        assertEquals(5, beforeRenderOrder.size());
+        assertEquals("page", beforeRenderOrder.get(0));
+        assertTrue(beforeRenderOrder.indexOf("left") < beforeRenderOrder.indexOf("leftitem"));
+
+        final Thread testThread = Thread.currentThread();
+        assertSame(testThread, componentInvoker.getBeforeRenderThread("page"));
+        assertSame("the not parallel safe window is processed on the request processing thread",
+                testThread, componentInvoker.getBeforeRenderThread("main"));
+        assertNotEquals(testThread, componentInvoker.getBeforeRenderThread("left"));
+        assertNotEquals(testThread, componentInvoker.getBeforeRenderThread("right"));
+        assertSame("a parallel safe subtree is processed sequentially on one thread",
+                componentInvoker.getBeforeRenderThread("left"), componentInvoker.getBeforeRenderThread("leftitem"));
+
+        assertEquals("response appenders are processed in the order of the sequential processing",
+                Arrays.asList("page", "left", "leftitem", "right", "main"), appendedWindows);
+    }
+
+    @Test
+    public void component_exceptions_of_parallel_safe_windows_end_up_in_the_page_errors() throws Exception {
+        valve.setParallelBeforeRenderEnabled(true);
+        final HstComponentException componentException = new HstComponentException("right failed");
+        componentInvoker.onBeforeRender("right", (request, response) -> {
+            throw componentException;
+        });
+        final AtomicReference<PageErrors> handledPageErrors = new AtomicReference<>();
+        valve.setDefaultPageErrorHandler((pageErrors, request, response) -> {
+            handledPageErrors.set(pageErrors);
+            return PageErrorHandler.Status.HANDLED_BUT_CONTINUE;
+        });
+
+        assertEquals(PARALLEL_PAGE_OUTPUT, renderParallelPage(new MockHttpServletResponse()));
+
+        final PageErrors pageErrors = handledPageErrors.get();
+        assertNotNull(pageErrors);
+        assertEquals(1, pageErrors.getComponentInfos().size());
+        assertEquals(Collections.singletonList(componentException), new ArrayList<>(pageErrors.getAllComponentExceptions()));
+        assertEquals(1, componentInvoker.getBeforeRenderCount("main"));
+    }
+
+    @Test
+    public void failure_of_a_parallel_safe_subtree_is_rethrown_after_all_subtrees_are_processed() throws Exception {
+        valve.setParallelBeforeRenderEnabled(true);
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final AtomicBoolean rightProcessed = new AtomicBoolean();
+        componentInvoker.onBeforeRender("left", (request, response) -> {
+            barrier.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            throw new IllegalStateException("left failed");
+        });
+        componentInvoker.onBeforeRender("right", (request, response) -> {
+            barrier.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            Thread.sleep(100L);
+            rightProcessed.set(true);
+        });
+
+        try {
+            renderParallelPage(new MockHttpServletResponse());
+            fail("the failure of 'left' should be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("left failed", e.getMessage());
+        }
+        assertTrue("'right' is still being processed with the request of the failed page", rightProcessed.get());
+        assertEquals(0, componentInvoker.getBeforeRenderCount("leftitem"));
+        assertEquals(0, componentInvoker.getRenderCount("page"));
+    }
+
+    @Test
+    public void redirect_from_a_parallel_safe_window_skips_rendering() throws Exception {
+        valve.setParallelBeforeRenderEnabled(true);
+        componentInvoker.onBeforeRender("left", (request, response) -> response.sendRedirect("http://www.example.org/other"));
+
+        final MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        assertEquals("", renderParallelPage(servletResponse));
+
+        assertEquals("http://www.example.org/other", servletResponse.getRedirectedUrl());
+        assertEquals("windows below the redirecting window are not processed",
+                0, componentInvoker.getBeforeRenderCount("leftitem"));
+        assertEquals(0, componentInvoker.getRenderCount("page"));
+    }
+
+    /**
+     * Renders the page with the fragment cacheable 'menu' for a new request
+     * @param userName the name of the user principal or <code>null</code> for an anonymous request
+     * @return the output of the page
+     */
+    private String render(final String userName) throws Exception {
+        final HstComponentWindowImpl page = createWindow("page", false, false, null);
+        createWindow("header", false, false, page);
+        final HstComponentWindowImpl menu = createWindow("menu", true, false, page);
+        createWindow("item", false, false, menu);
+        return render(userName, page, new MockHttpServletResponse());
+    }
+
+    /**
+     * Renders the page with the {@link ParallelSafe} 'left' and 'right' subtrees and the sequential 'main' window
+     */
+    private String renderParallelPage(final MockHttpServletResponse servletResponse) throws Exception {
+        final HstComponentWindowImpl page = createWindow("page", false, false, null);
+        final HstComponentWindowImpl left = createWindow("left", false, true, page);
+        createWindow("leftitem", false, true, left);
+        createWindow("right", false, true, page);
+        createWindow("main", false, false, page);
+        return render(null, page, servletResponse);
+    }
+
+    private String render(final String userName, final HstComponentWindow rootWindow,
+                          final MockHttpServletResponse servletResponse) throws Exception {
+        final MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/site/page");
+        if (userName != null) {
+            servletRequest.setUserPrincipal(() -> userName);
+        }
+
+        final MockHstRequestContext requestContext = new MockHstRequestContext();
+        requestContext.setServletRequest(servletRequest);
+        requestContext.setServletResponse(servletResponse);
+        requestContext.setBaseURL(baseURL);
+        requestContext.setURLFactory(urlFactory);
+        requestContext.setResolvedMount(resolvedMount);
+        requestContext.setResolvedSiteMapItem(resolvedSiteMapItem);
+        servletRequest.setAttribute(ContainerConstants.HST_REQUEST_CONTEXT, requestContext);
+        ModifiableRequestContextProvider.set(requestContext);
+
+        final ValveContext valveContext = createNiceMock(ValveContext.class);
+        expect(valveContext.getRequestContext()).andStubReturn(requestContext);
+        expect(valveContext.getRootComponentWindow()).andStubReturn(rootWindow);
+        expect(valveContext.getRequestContainerConfig()).andStubReturn(containerConfig);
+        replay(valveContext);
+
+        try {
+            valve.invoke(valveContext);
+        } finally {
+            ModifiableRequestContextProvider.clear();
+        }
+        return servletResponse.getContentAsString();
+    }
+
+    private static HstComponentWindowImpl createWindow(final String name, final boolean fragmentCacheable,
+                                                       final boolean parallelSafe,
+                                                       final HstComponentWindowImpl parent) {
+        final HstComponentConfiguration componentConfiguration = createNiceMock(HstComponentConfiguration.class);
+        expect(componentConfiguration.getId()).andStubReturn(name);
+        expect(componentConfiguration.getName()).andStubReturn(name);
+        expect(componentConfiguration.getReferenceName()).andStubReturn(name);
+        expect(componentConfiguration.getCanonicalIdentifier()).andStubReturn("id-" + name);
+        expect(componentConfiguration.getCanonicalStoredLocation()).andStubReturn(PAGES_PATH + "/" + name);
+        expect(componentConfiguration.getParameters()).andStubReturn(Collections.emptyMap());
+        expect(componentConfiguration.isFragmentCacheable()).andStubReturn(fragmentCacheable);
+        expect(componentConfiguration.flattened()).andStubAnswer(() -> Stream.of(componentConfiguration));
+        replay(componentConfiguration);
+
+        final HstComponentMetadata componentMetadata = createNiceMock(HstComponentMetadata.class);
+        expect(componentMetadata.hasMethodAnnotatedBy(ParallelSafe.class.getName(), "doBeforeRender"))
+                .andStubReturn(parallelSafe);
+        replay(componentMetadata);
+
+        final String referenceNamespace = parent == null ? "" : parent.getReferenceNamespace() + "r" + name;
+        final HstComponentWindowImpl window = new HstComponentWindowImpl(componentConfiguration, name, null,
+                componentMetadata, parent, referenceNamespace, null);
+        if (parent != null) {
+            parent.addChildWindow(window);
+        }
+        return window;
+    }
+
+    @FunctionalInterface
+    private interface BeforeRenderHook {
+        void invoke(HstRequestImpl request, HstResponse response) throws Exception;
+    }
+
+    /**
+     * Counts the invocations per window name and records the order and threads of the doBeforeRender invocations,
+     * which run the {@link BeforeRenderHook} registered for the window name, if any. The doRender of every window
+     * writes its name around the flushed output of its children.
+     */
+    private static class RecordingComponentInvoker implements HstComponentInvoker {
+
+        private final Map<String, AtomicInteger> beforeRenderCounts = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> renderCounts = new ConcurrentHashMap<>();
+        private final Map<String, BeforeRenderHook> beforeRenderHooks = new ConcurrentHashMap<>();
+        private final Map<String, Thread> beforeRenderThreads = new ConcurrentHashMap<>();
+        private final List<String> beforeRenderOrder = Collections.synchronizedList(new ArrayList<>());
+
+        void onBeforeRender(final String name, final BeforeRenderHook hook) {
+            beforeRenderHooks.put(name, hook);
+        }
+
+        List<String> getBeforeRenderOrder() {
+            return beforeRenderOrder;
+        }
+
+        Thread getBeforeRenderThread(final String name) {
+            return beforeRenderThreads.get(name);
+        }
+
+        int getBeforeRenderCount(final String name) {
+            return getCount(beforeRenderCounts, name);
+        }
+
+        int getRenderCount(final String name) {
+            return getCount(renderCounts, name);
+        }
+
+        public void invokeAction(final HstContainerConfig requestContainerConfig, final ServletRequest servletRequest,
+                                 final ServletResponse servletResponse) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void invokePrepareBeforeRender(final HstContainerConfig requestContainerConfig,
+                                              final ServletRequest servletRequest,
+                                              final ServletResponse servletResponse) {
+        }
+
+        public void invokeBeforeRender(final HstContainerConfig requestContainerConfig,
+                                       final ServletRequest servletRequest,
+                                       final ServletResponse servletResponse) {
+            final String name = getWindowName(servletRequest);
+            increment(beforeRenderCounts, name);
+            beforeRenderOrder.add(name);
+            beforeRenderThreads.put(name, Thread.currentThread());
+            final BeforeRenderHook hook = beforeRenderHooks.get(name);
+            if (hook == null) {
+                return;
+            }
+            final HstRequestImpl request = (HstRequestImpl) servletRequest;
+            try {
+                hook.invoke(request, (HstResponse) servletResponse);
+            } catch (HstComponentException e) {
+                // like the HstComponentInvokerImpl does
+                request.getComponentWindow().addComponentExcpetion(e);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public void invokeRender(final HstContainerConfig requestContainerConfig, final ServletRequest servletRequest,
+                                 final ServletResponse servletResponse) throws ContainerException {
+            final String name = getWindowName(servletRequest);
+            increment(renderCounts, name);
+            final HstResponse response = (HstResponse) servletResponse;
+            try {
+                final PrintWriter writer = response.getWriter();
+                writer.write("<" + name + ">");
+                for (String childName : response.getChildContentNames()) {
+                    response.flushChildContent(childName);
+                }
+                writer.write("</" + name + ">");
+            } catch (IOException e) {
+                throw new ContainerException(e);
+            }
+        }
+
+        public void invokeBeforeServeResource(final HstContainerConfig requestContainerConfig,
+                                              final ServletRequest servletRequest,
+                                              final ServletResponse servletResponse) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void invokeServeResource(final HstContainerConfig requestContainerConfig,
+                                        final ServletRequest servletRequest,
+                                        final ServletResponse servletResponse) {
+            throw new UnsupportedOperationException();
+        }
+
+        private static String getWindowName(final ServletRequest servletRequest) {
+            return ((HstRequestImpl) servletRequest).getComponentWindow().getName();
+        }
+
+        private static void increment(final Map<String, AtomicInteger> counts, final String name) {
+            counts.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
+        }
+
+        private static int getCount(final Map<String, AtomicInteger> counts, final String name) {
+            final AtomicInteger count = counts.get(name);
+            return count == null ? 0 : count.get();
+        }
+    }
+}
@@ -175,5 +175,9 @@ public class TestPageErrors {
         public boolean isSuppressWasteMessage() {
             return false;
         }
+        @Override
+        public boolean isFragmentCacheable() {
+            return false;
+        }
     }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2016 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2014-2017 Hippo B.V. (http://www.onehippo.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 package org.hippoecm.hst.core.container;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.Calendar;
@@ -23,12 +24,15 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
 import com.google.common.cache.CacheBuilder;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.easymock.EasyMock;
 import org.hippoecm.hst.cache.CacheElement;
 import org.hippoecm.hst.cache.HstCache;
@@ -62,12 +66,14 @@ import static org.hippoecm.hst.core.container.WebFileValve.WHITE_LIST_CONTENT_PA
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class TestWebFileValve {
 
     public static final String STYLE_CSS_CONTENTS = "/* example css */";
+    public static final String LARGE_CSS_CONTENTS = StringUtils.repeat(".example { color: red; }\n", 100);
     private MockHstRequest request;
     private MockHstRequestContext requestContext;
     private MockHstResponse response;
@@ -161,6 +167,25 @@ public class TestWebFileValve {
         return fooCss;
     }
 
+    private static WebFile largeCss() {
+        final WebFile largeCss = EasyMock.createMock(WebFile.class);
+        expect(largeCss.getPath()).andReturn("/css/style.css");
+        expect(largeCss.getName()).andReturn("style.css");
+        expect(largeCss.getMimeType()).andReturn("text/css");
+        expect(largeCss.getEncoding()).andReturn("UTF-8");
+        expect(largeCss.getLastModified()).andReturn(Calendar.getInstance());
+
+        final Binary binary = EasyMock.createNiceMock(Binary.class);
+        byte[] data = LARGE_CSS_CONTENTS.getBytes();
+        expect(binary.getSize()).andReturn((long)data.length);
+        expect(binary.getStream()).andReturn(new ByteArrayInputStream(data));
+        expect(largeCss.getBinary()).andReturn(binary);
+
+        replay(largeCss, binary);
+
+        return largeCss;
+    }
+
     private static WebFile whitelist() {
         final WebFile whitelist = EasyMock.createMock(WebFile.class);
         expect(whitelist.getPath()).andReturn("/hst-whitelist.txt");
@@ -425,6 +450,85 @@ public class TestWebFileValve {
         assertNotNull(valve.negativeWebFileCache.getIfPresent(cacheKey));
     }
 
+    @Test
+    public void cached_gzip_encoding_is_served_when_accepted() throws Exception {
+        final CacheableWebFile cacheableWebFile = mockCachedLargeCss();
+        request.setHeader("Accept-Encoding", "deflate, gzip;q=0.8");
+
+        valve.invoke(valveContext);
+
+        final Map<String, List<Object>> headers = response.getHeaders();
+        assertEquals("Content-Encoding header", "gzip", headers.get("Content-Encoding").get(0));
+        assertEquals("Vary header", "Accept-Encoding", headers.get("Vary").get(0));
+        assertEquals("ETag header", cacheableWebFile.getGzipETag(), headers.get("ETag").get(0));
+        final byte[] gzipped = response.getContentAsByteArray();
+        assertEquals("Content-Length header", String.valueOf(gzipped.length), headers.get("Content-Length").get(0));
+        assertTrue("gzip encoding should be smaller", gzipped.length < LARGE_CSS_CONTENTS.length());
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertEquals("written web file", LARGE_CSS_CONTENTS, IOUtils.toString(in));
+        }
+        assertTrue("Next valve should have been invoked", valveContext.isNextValveInvoked());
+    }
+
+    @Test
+    public void identity_encoding_is_served_when_gzip_is_not_accepted() throws Exception {
+        final CacheableWebFile cacheableWebFile = mockCachedLargeCss();
+        request.setHeader("Accept-Encoding", "gzip;q=0, identity");
+
+        valve.invoke(valveContext);
+
+        final Map<String, List<Object>> headers = response.getHeaders();
+        assertNull("Content-Encoding header", headers.get("Content-Encoding"));
+        assertEquals("Vary header", "Accept-Encoding", headers.get("Vary").get(0));
+        assertEquals("ETag header", cacheableWebFile.getETag(), headers.get("ETag").get(0));
+        assertEquals("written web file", LARGE_CSS_CONTENTS, response.getContentAsString());
+    }
+
+    @Test
+    public void explicit_gzip_quality_overrides_the_wildcard() throws Exception {
+        assertFalse(WebFileValve.acceptsGzip("gzip;q=0, *"));
+        assertFalse(WebFileValve.acceptsGzip("*, x-gzip;q=0.0"));
+        assertTrue(WebFileValve.acceptsGzip("gzip;q=0.5, *;q=0"));
+        assertTrue(WebFileValve.acceptsGzip("gzip;q=0, x-gzip"));
+        assertTrue(WebFileValve.acceptsGzip("deflate, *"));
+        assertFalse(WebFileValve.acceptsGzip("deflate, *;q=0"));
+        assertFalse(WebFileValve.acceptsGzip(null));
+    }
+
+    @Test
+    public void matching_etag_results_in_not_modified() throws Exception {
+        final CacheableWebFile cacheableWebFile = mockCachedLargeCss();
+        request.setHeader("Accept-Encoding", "gzip");
+        request.setHeader("If-None-Match", "\"other\", " + cacheableWebFile.getGzipETag());
+
+        valve.invoke(valveContext);
+
+        assertEquals("response code", 304, response.getStatusCode());
+        assertEquals("ETag header", cacheableWebFile.getGzipETag(), response.getHeaders().get("ETag").get(0));
+        assertEquals("nothing should be written to the response", 0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void small_web_files_are_not_gzipped() throws Exception {
+        assertNull(new CacheableWebFile(styleCss(), "bundleVersion").getGzipBinary());
+        assertNull(new CacheableWebFile(largeCss(), "bundleVersion", false).getGzipBinary());
+        assertNotNull(new CacheableWebFile(largeCss(), "bundleVersion").getGzipBinary());
+    }
+
+    private CacheableWebFile mockCachedLargeCss() throws RepositoryException, IOException {
+        mockResolvedSiteMapItem("css/style.css", "bundleVersion", requestContext);
+        expect(webFileBundle.getAntiCacheValue()).andReturn("bundleVersion").anyTimes();
+        expect(webFileBundle.get("/hst-whitelist.txt")).andReturn(whitelist());
+
+        final CacheableWebFile cacheableWebFile = new CacheableWebFile(largeCss(), "bundleVersion");
+        final CacheElement cacheElement = EasyMock.createMock(CacheElement.class);
+        expect(cacheElement.getContent()).andReturn(cacheableWebFile);
+        replay(cacheElement);
+        expect(cache.get("/webfiles/site/css/style.css")).andReturn(cacheElement);
+        replayMocks();
+        return cacheableWebFile;
+    }
+
     private void assertCssIsWritten(final WebFile styleCss, final boolean withCacheHeaders) throws UnsupportedEncodingException {
         final Map<String, List<Object>> headers = response.getHeaders();
         assertEquals("Content-Length header", String.valueOf(styleCss.getBinary().getSize()), headers.get("Content-Length").get(0));
@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.linking;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Optional;
+
+import org.hippoecm.hst.cache.jmx.LinkResolutionCacheStats;
+import org.hippoecm.hst.configuration.sitemap.HstSiteMapItem;
+import org.hippoecm.hst.core.request.ResolvedSiteMapItem;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class LinkResolutionCacheTest {
+
+    private LinkResolutionCacheStats stats;
+    private LinkResolutionCache cache;
+    private LocationMapTree siteMapTree;
+    private LocationMapTree componentDocumentsTree;
+    private AtomicInteger treeLookups;
+
+    @Before
+    public void setUp() {
+        stats = new LinkResolutionCacheStats();
+        cache = new LinkResolutionCache("maximumSize=100", stats);
+        treeLookups = new AtomicInteger();
+        siteMapTree = name -> {
+            treeLookups.incrementAndGet();
+            return null;
+        };
+        componentDocumentsTree = name -> null;
+    }
+
+    @Test
+    public void canonical_resolution_does_not_depend_on_the_current_sitemap_item() {
+        final ResolvedLocationMapTreeItem resolved = new ResolvedLocationMapTreeItemImpl("news/2017", null, false);
+        cache.put(key("news/2017", true, resolvedSiteMapItem("news/_any_", "news/2016")), resolved);
+
+        assertSame(resolved, cache.get(key("news/2017", true, resolvedSiteMapItem("about", "about"))).get());
+        assertNull(cache.get(key("news/2017", false, resolvedSiteMapItem("about", "about"))));
+        assertEquals(1L, stats.getCacheHits());
+        assertEquals(1L, stats.getCacheMisses());
+    }
+
+    @Test
+    public void resolution_for_other_location_map_trees_is_not_shared() {
+        cache.put(key("news/2017", true, null), new ResolvedLocationMapTreeItemImpl("news/2017", null, false));
+
+        final LinkResolutionCache.Key otherModelKey = new LinkResolutionCache.Key(name -> null, componentDocumentsTree,
+                "news/2017", false, true, false, null);
+        assertNull(cache.get(otherModelKey));
+    }
+
+    @Test
+    public void unresolvable_paths_are_resolved_only_once() {
+        final LocationMapResolver resolver = new LocationMapResolver(siteMapTree, componentDocumentsTree);
+        resolver.setResolutionCache(cache);
+        assertNull(resolver.resolve("/unmapped/path/"));
+        final int lookups = treeLookups.get();
+
+        final LocationMapResolver nextResolver = new LocationMapResolver(siteMapTree, componentDocumentsTree);
+        nextResolver.setResolutionCache(cache);
+        assertNull(nextResolver.resolve("unmapped/path"));
+        assertEquals(lookups, treeLookups.get());
+
+        final Optional<ResolvedLocationMapTreeItem> cached = cache.get(key("unmapped/path", false, null));
+        assertNotNull(cached);
+        assertFalse(cached.isPresent());
+    }
+
+    private LinkResolutionCache.Key key(final String path, final boolean canonical,
+                                        final ResolvedSiteMapItem resolvedSiteMapItem) {
+        return new LinkResolutionCache.Key(siteMapTree, componentDocumentsTree, path, false, canonical, false,
+                resolvedSiteMapItem);
+    }
+
+    private static ResolvedSiteMapItem resolvedSiteMapItem(final String siteMapItemId, final String pathInfo) {
+        final HstSiteMapItem siteMapItem = createNiceMock(HstSiteMapItem.class);
+        expect(siteMapItem.getId()).andReturn(siteMapItemId).anyTimes();
+        final ResolvedSiteMapItem resolvedSiteMapItem = createNiceMock(ResolvedSiteMapItem.class);
+        expect(resolvedSiteMapItem.getHstSiteMapItem()).andReturn(siteMapItem).anyTimes();
+        expect(resolvedSiteMapItem.getPathInfo()).andReturn(pathInfo).anyTimes();
+        replay(siteMapItem, resolvedSiteMapItem);
+        return resolvedSiteMapItem;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.sitemenu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hippoecm.hst.configuration.hosting.Mount;
+import org.hippoecm.hst.configuration.hosting.VirtualHost;
+import org.hippoecm.hst.configuration.hosting.VirtualHosts;
+import org.hippoecm.hst.configuration.site.HstSite;
+import org.hippoecm.hst.configuration.sitemap.HstSiteMap;
+import org.hippoecm.hst.configuration.sitemap.HstSiteMapItem;
+import org.hippoecm.hst.configuration.sitemenu.HstSiteMenuConfiguration;
+import org.hippoecm.hst.configuration.sitemenu.HstSiteMenuItemConfiguration;
+import org.hippoecm.hst.configuration.sitemenu.HstSiteMenusConfiguration;
+import org.hippoecm.hst.core.linking.DefaultHstLinkCreator;
+import org.hippoecm.hst.core.linking.HstLink;
+import org.hippoecm.hst.core.linking.HstLinkProcessor;
+import org.hippoecm.hst.core.request.ResolvedMount;
+import org.hippoecm.hst.core.request.ResolvedSiteMapItem;
+import org.hippoecm.hst.mock.core.request.MockHstRequestContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the caching of the {@link PrecomputedSiteMenus} by the {@link HstSiteMenusManagerImpl} for a 'main' menu with
+ * a public 'news' item and a 'members' item with a child 'profile' item that are only visible for the role 'member'.
+ */
+public class TestHstSiteMenusManagerImpl {
+
+    private HstSiteMenusManagerImpl siteMenusManager;
+    private DefaultHstLinkCreator linkCreator;
+    private HstSiteMenusConfiguration siteMenusConfiguration;
+    // the calls to HstSiteMenusConfiguration#getSiteMenuConfigurations(), which is only invoked to precompute the menus
+    private AtomicInteger precomputations;
+    private Model model;
+
+    @Before
+    public void setUp() throws Exception {
+        siteMenusManager = new HstSiteMenusManagerImpl();
+        linkCreator = new DefaultHstLinkCreator();
+
+        final HstSiteMenuItemConfiguration news = createItemConfiguration("news", "news", null);
+        final HstSiteMenuItemConfiguration profile = createItemConfiguration("profile", "members/profile", null);
+        final HstSiteMenuItemConfiguration members = createItemConfiguration("members", "members",
+                Collections.singleton("member"), profile);
+
+        final HstSiteMenuConfiguration main = createNiceMock(HstSiteMenuConfiguration.class);
+        expect(main.getName()).andStubReturn("main");
+        expect(main.getSiteMenuConfigurationItems()).andStubReturn(Arrays.asList(news, members));
+        replay(main);
+
+        precomputations = new AtomicInteger();
+        siteMenusConfiguration = createNiceMock(HstSiteMenusConfiguration.class);
+        expect(siteMenusConfiguration.getSiteMenuConfigurations()).andStubAnswer(() -> {
+            precomputations.incrementAndGet();
+            return Collections.singletonMap("main", main);
+        });
+        replay(siteMenusConfiguration);
+
+        model = new Model();
+    }
+
+    @Test
+    public void site_menus_are_precomputed_once_per_mount_and_configuration() throws Exception {
+        final HstSiteMenus siteMenus1 = siteMenusManager.getSiteMenus(createRequestContext(model, "news"));
+        final HstSiteMenus siteMenus2 = siteMenusManager.getSiteMenus(createRequestContext(model, "news"));
+
+        assertEquals(1, precomputations.get());
+        assertNotSame("every request gets its own site menus", siteMenus1, siteMenus2);
+        assertEquals(Arrays.asList("news"), getItemNames(siteMenus2.getSiteMenu("main").getSiteMenuItems()));
+    }
+
+    @Test
+    public void items_are_filtered_by_role_per_request_over_the_shared_tree() throws Exception {
+        final HstSiteMenu anonymousMenu = siteMenusManager.getSiteMenus(createRequestContext(model, "news")).getSiteMenu("main");
+        final HstSiteMenu memberMenu = siteMenusManager.getSiteMenus(createRequestContext(model, "members/profile", "member")).getSiteMenu("main");
+        final HstSiteMenu otherAnonymousMenu = siteMenusManager.getSiteMenus(createRequestContext(model, "news")).getSiteMenu("main");
+
+        assertEquals(1, precomputations.get());
+        assertEquals(Arrays.asList("news"), getItemNames(anonymousMenu.getSiteMenuItems()));
+        assertEquals(Arrays.asList("news"), getItemNames(otherAnonymousMenu.getSiteMenuItems()));
+        assertEquals(Arrays.asList("news", "members"), getItemNames(memberMenu.getSiteMenuItems()));
+
+        // the selected and expanded items are also per request
+        assertTrue(anonymousMenu.getSiteMenuItems().get(0).isSelected());
+        assertEquals("news", anonymousMenu.getSelectSiteMenuItem().getName());
+        assertFalse(memberMenu.getSiteMenuItems().get(0).isSelected());
+        final HstSiteMenuItem members = memberMenu.getSiteMenuItems().get(1);
+        assertTrue(members.isExpanded());
+        assertTrue(members.getChildMenuItems().get(0).isSelected());
+        assertEquals("profile", memberMenu.getSelectSiteMenuItem().getName());
+    }
+
+    @Test
+    public void cache_is_replaced_when_the_model_changes() throws Exception {
+        final Model newModel = new Model();
+
+        siteMenusManager.getSiteMenus(createRequestContext(model, "news"));
+        siteMenusManager.getSiteMenus(createRequestContext(newModel, "news"));
+        siteMenusManager.getSiteMenus(createRequestContext(newModel, "news"));
+        assertEquals(2, precomputations.get());
+
+        // the menus of the old model are gone
+        siteMenusManager.getSiteMenus(createRequestContext(model, "news"));
+        assertEquals(3, precomputations.get());
+    }
+
+    @Test
+    public void precomputed_links_are_copies_for_every_request() throws Exception {
+        final HstLink link1 = getNewsLink(siteMenusManager.getSiteMenus(createRequestContext(model, "news")));
+        final HstLink link2 = getNewsLink(siteMenusManager.getSiteMenus(createRequestContext(model, "news")));
+
+        assertEquals("news", link1.getPath());
+        assertNotSame(link1, link2);
+        link1.setPath("changed");
+        assertEquals("news", link2.getPath());
+    }
+
+    @Test
+    public void links_are_post_processed_for_every_request() throws Exception {
+        final AtomicInteger postProcessed = new AtomicInteger();
+        linkCreator.setLinkProcessor(new HstLinkProcessor() {
+            @Override
+            public HstLink postProcess(final HstLink link) {
+                link.setPath(link.getPath() + "-" + postProcessed.incrementAndGet());
+                return link;
+            }
+
+            @Override
+            public HstLink preProcess(final HstLink link) {
+                return link;
+            }
+        });
+
+        final HstLink link1 = getNewsLink(siteMenusManager.getSiteMenus(createRequestContext(model, "news")));
+        final HstLink link2 = getNewsLink(siteMenusManager.getSiteMenus(createRequestContext(model, "news")));
+
+        assertEquals("news-1", link1.getPath());
+        assertEquals("news-2", link2.getPath());
+    }
+
+    private static HstLink getNewsLink(final HstSiteMenus siteMenus) {
+        return siteMenus.getSiteMenu("main").getSiteMenuItems().get(0).getHstLink();
+    }
+
+    private static List<String> getItemNames(final List<HstSiteMenuItem> items) {
+        final List<String> names = new ArrayList<>();
+        for (HstSiteMenuItem item : items) {
+            names.add(item.getName());
+        }
+        return names;
+    }
+
+    private static HstSiteMenuItemConfiguration createItemConfiguration(final String name, final String siteMapItemPath,
+                                                                        final Set<String> roles,
+                                                                        final HstSiteMenuItemConfiguration... children) {
+        final HstSiteMenuItemConfiguration configuration = createNiceMock(HstSiteMenuItemConfiguration.class);
+        expect(configuration.getName()).andStubReturn(name);
+        expect(configuration.getSiteMapItemPath()).andStubReturn(siteMapItemPath);
+        expect(configuration.getRoles()).andStubReturn(roles);
+        expect(configuration.getChildItemConfigurations()).andStubReturn(Arrays.asList(children));
+        replay(configuration);
+        return configuration;
+    }
+
+    private MockHstRequestContext createRequestContext(final Model model, final String pathInfo, final String... roles) {
+        final MockHttpServletRequest servletRequest = new MockHttpServletRequest();
+        for (String role : roles) {
+            servletRequest.addUserRole(role);
+        }
+
+        final ResolvedSiteMapItem resolvedSiteMapItem = createNiceMock(ResolvedSiteMapItem.class);
+        expect(resolvedSiteMapItem.getHstSiteMapItem()).andStubReturn(model.siteMapItem);
+        expect(resolvedSiteMapItem.getPathInfo()).andStubReturn(pathInfo);
+        replay(resolvedSiteMapItem);
+
+        final MockHstRequestContext requestContext = new MockHstRequestContext();
+        requestContext.setServletRequest(servletRequest);
+        requestContext.setResolvedMount(model.resolvedMount);
+        requestContext.setResolvedSiteMapItem(resolvedSiteMapItem);
+        requestContext.setHstLinkCreator(linkCreator);
+        return requestContext;
+    }
+
+    /**
+     * The model objects of one hst model : a mount of which the site has the site menus configuration
+     */
+    private class Model {
+
+        private final ResolvedMount resolvedMount;
+        private final HstSiteMapItem siteMapItem;
+
+        private Model() {
+            final VirtualHosts virtualHosts = createNiceMock(VirtualHosts.class);
+            final VirtualHost virtualHost = createNiceMock(VirtualHost.class);
+            expect(virtualHost.getVirtualHosts()).andStubReturn(virtualHosts);
+
+            final HstSiteMap siteMap = createNiceMock(HstSiteMap.class);
+            final HstSite site = createNiceMock(HstSite.class);
+            expect(site.getSiteMap()).andStubReturn(siteMap);
+            expect(site.getSiteMenusConfiguration()).andStubReturn(siteMenusConfiguration);
+            expect(siteMap.getSite()).andStubReturn(site);
+
+            final Mount mount = createNiceMock(Mount.class);
+            expect(mount.getName()).andStubReturn("mount");
+            expect(mount.getVirtualHost()).andStubReturn(virtualHost);
+            expect(mount.getHstSite()).andStubReturn(site);
+
+            resolvedMount = createNiceMock(ResolvedMount.class);
+            expect(resolvedMount.getMount()).andStubReturn(mount);
+
+            siteMapItem = createNiceMock(HstSiteMapItem.class);
+            expect(siteMapItem.getHstSiteMap()).andStubReturn(siteMap);
+
+            replay(virtualHosts, virtualHost, siteMap, site, mount, resolvedMount, siteMapItem);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2016 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2013-2017 Hippo B.V. (http://www.onehippo.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.reset;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
@@ -175,6 +176,29 @@ public class CachingObjectConverterTest {
         }
     }
 
+    @Test
+    public void testThatABeanAskedForByIdentifierIsNotConvertedAgainForItsNode() throws Exception {
+        final String uuid = "8a6f8e0d-8b7b-4b3b-9f5d-1f1e2d3c4b5a";
+        Node node = nodes[0];
+        expect(node.getPath()).andReturn("/content/documents/news").anyTimes();
+        HippoFolder folderBean = new HippoFolder() {
+            @Override
+            public String getPath() {
+                return "/content/documents/news";
+            }
+        };
+        expect(objectConverter.getObject(uuid, session)).andReturn(folderBean).once();
+
+        CachingObjectConverter cachingObjectConverter = createCachingObjectConverter();
+
+        Object obj1 = cachingObjectConverter.getObject(uuid, session);
+        Object obj2 = cachingObjectConverter.getObject(node);
+
+        assertSame(folderBean, obj1);
+        assertSame(folderBean, obj2);
+        verify(objectConverter);
+    }
+
     private CachingObjectConverter createCachingObjectConverter() {
         return createCachingObjectConverter(-1);
     }
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -16,13 +16,23 @@
 package org.hippoecm.hst.site.request;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jcr.Repository;
+import javax.jcr.Session;
 
 import org.junit.Test;
 
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -62,5 +72,47 @@ public class TestHstRequestContextImpl {
         assertTrue(requestContext.attributes.isEmpty());
         assertTrue(attributes.isEmpty());
     }
-    
+
+    @Test
+    public void testThreadScopeSessions() throws Exception {
+        final Session requestSession = createMock(Session.class);
+        expect(requestSession.isLive()).andReturn(true).anyTimes();
+        final Session threadScopeSession = createMock(Session.class);
+        expect(threadScopeSession.isLive()).andReturn(true).anyTimes();
+        threadScopeSession.logout();
+        expectLastCall().once();
+        final Repository repository = createMock(Repository.class);
+        expect(repository.login()).andReturn(requestSession).andReturn(threadScopeSession);
+        replay(requestSession, threadScopeSession, repository);
+
+        final HstRequestContextImpl requestContext = new HstRequestContextImpl(repository);
+        assertSame(requestSession, requestContext.getSession());
+
+        requestContext.beginThreadScope();
+        assertSame(threadScopeSession, requestContext.getSession());
+        assertSame(threadScopeSession, requestContext.getSession());
+        requestContext.endThreadScope();
+        assertSame(requestSession, requestContext.getSession());
+
+        // a thread scope on another thread reuses the idle thread scope session instead of logging in again
+        final AtomicReference<Session> otherThreadSession = new AtomicReference<>();
+        final Thread otherThread = new Thread(() -> {
+            requestContext.beginThreadScope();
+            try {
+                otherThreadSession.set(requestContext.getSession());
+            } catch (Exception e) {
+                fail(e.toString());
+            } finally {
+                requestContext.endThreadScope();
+            }
+        });
+        otherThread.start();
+        otherThread.join();
+        assertSame(threadScopeSession, otherThreadSession.get());
+
+        // only the thread scope sessions are logged out by the request context
+        requestContext.dispose();
+        verify(requestSession, threadScopeSession, repository);
+    }
+
 }
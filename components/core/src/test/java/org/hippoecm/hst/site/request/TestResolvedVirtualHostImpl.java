@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.site.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hippoecm.hst.configuration.hosting.Mount;
+import org.hippoecm.hst.configuration.hosting.PortMount;
+import org.hippoecm.hst.configuration.hosting.VirtualHost;
+import org.hippoecm.hst.configuration.hosting.VirtualHosts;
+import org.hippoecm.hst.core.request.ResolvedMount;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestResolvedVirtualHostImpl {
+
+    private Mount archive;
+    private VirtualHost virtualHost;
+    private PortMount portMount;
+
+    @Before
+    public void setUp() {
+        archive = mount("archive", null);
+        final Mount news = mount("news", null, archive);
+        final Mount root = mount("hst:root", null, news);
+        portMount = createNiceMock(PortMount.class);
+        expect(portMount.getRootMount()).andReturn(root).anyTimes();
+        replay(portMount);
+        final VirtualHosts virtualHosts = createNiceMock(VirtualHosts.class);
+        expect(virtualHosts.getCmsPreviewPrefix()).andReturn("_cmsinternal").anyTimes();
+        replay(virtualHosts);
+        virtualHost = createNiceMock(VirtualHost.class);
+        expect(virtualHost.getVirtualHosts()).andReturn(virtualHosts).anyTimes();
+        replay(virtualHost);
+    }
+
+    @Test
+    public void cached_mounts_match_like_uncached_mounts() throws Exception {
+        final ResolvedVirtualHostImpl uncached = new ResolvedVirtualHostImpl(virtualHost, "www.example.org", portMount);
+        final ResolvedVirtualHostImpl cached = new ResolvedVirtualHostImpl(virtualHost, "www.example.org", portMount,
+                "maximumSize=10");
+
+        for (String requestPath : Arrays.asList("", "/", "/about", "/news", "/news/2017", "/news/archive",
+                "/news/archive/2017/01", "/_cmsinternal", "/_cmsinternal/news/archive/2017")) {
+            for (int i = 0; i < 2; i++) {
+                final ResolvedMount expected = uncached.matchMount("/site", requestPath);
+                final ResolvedMount actual = cached.matchMount("/site", requestPath);
+                assertSame(requestPath, expected.getMount(), actual.getMount());
+                assertEquals(requestPath, expected.getResolvedMountPath(), actual.getResolvedMountPath());
+                assertEquals(requestPath, expected.getMatchingIgnoredPrefix(), actual.getMatchingIgnoredPrefix());
+            }
+        }
+    }
+
+    @Test
+    public void request_paths_with_the_same_mount_prefix_share_the_matched_mount() throws Exception {
+        final ResolvedVirtualHostImpl cached = new ResolvedVirtualHostImpl(virtualHost, "www.example.org", portMount,
+                "maximumSize=10");
+
+        final ResolvedMount first = cached.matchMount("/site", "/news/archive/2017");
+        final ResolvedMount second = cached.matchMount("/site", "/news/archive/2018");
+        assertSame(archive, first.getMount());
+        assertSame(archive, second.getMount());
+        assertEquals("/news/archive", second.getResolvedMountPath());
+        assertNull(second.getMatchingIgnoredPrefix());
+        // resolved mounts are mutable hence never shared between requests
+        assertNotSame(first, second);
+
+        final ResolvedMount preview = cached.matchMount("/site", "/_cmsinternal/news/archive/2017");
+        assertSame(archive, preview.getMount());
+        assertEquals("_cmsinternal", preview.getMatchingIgnoredPrefix());
+    }
+
+    @Test
+    public void mounts_for_another_context_path_are_not_matched() throws Exception {
+        final Mount rootWithOtherContext = createNiceMock(Mount.class);
+        final Mount otherContext = createNiceMock(Mount.class);
+        expect(otherContext.getName()).andReturn("other").anyTimes();
+        expect(otherContext.getContextPath()).andReturn("/other").anyTimes();
+        expect(otherContext.getParent()).andReturn(rootWithOtherContext).anyTimes();
+        expect(otherContext.getChildMounts()).andReturn(Collections.<Mount>emptyList()).anyTimes();
+        expect(rootWithOtherContext.getChildMounts()).andReturn(Collections.singletonList(otherContext)).anyTimes();
+        expect(rootWithOtherContext.getChildMount("other")).andReturn(otherContext).anyTimes();
+        replay(otherContext, rootWithOtherContext);
+        final PortMount otherPortMount = createNiceMock(PortMount.class);
+        expect(otherPortMount.getRootMount()).andReturn(rootWithOtherContext).anyTimes();
+        replay(otherPortMount);
+        final ResolvedVirtualHostImpl cached = new ResolvedVirtualHostImpl(virtualHost, "www.example.org",
+                otherPortMount, "maximumSize=10");
+
+        assertSame(otherContext, cached.matchMount("/other", "/other/page").getMount());
+        assertSame(rootWithOtherContext, cached.matchMount("/site", "/other/page").getMount());
+        assertEquals("", cached.matchMount("/site", "/other/page").getResolvedMountPath());
+    }
+
+    private static Mount mount(final String name, final String contextPath, final Mount... children) {
+        final Mount mount = createNiceMock(Mount.class);
+        final List<Mount> childMounts = new ArrayList<>(Arrays.asList(children));
+        expect(mount.getName()).andReturn(name).anyTimes();
+        expect(mount.getContextPath()).andReturn(contextPath).anyTimes();
+        expect(mount.getChildMounts()).andReturn(Collections.unmodifiableList(childMounts)).anyTimes();
+        for (Mount child : children) {
+            expect(mount.getChildMount(child.getName())).andReturn(child).anyTimes();
+        }
+        replay(mount);
+        return mount;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.restapi;
+
+import java.io.IOException;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * A {@link NodeVisitor} that can write its output straight to a {@link JsonGenerator}, instead of building a map
+ * first. Use {@link StreamingNodeVisitorAdapter#adapt(NodeVisitor)} to stream the output of any {@link NodeVisitor}.
+ */
+public interface StreamingNodeVisitor extends NodeVisitor {
+
+    /**
+     * Writes the entries that {@link #visit(ResourceContext, Node, java.util.Map)} puts into its response as fields of
+     * the JSON object that <code>generator</code> is currently writing, such that both result in the same JSON.
+     */
+    void visit(ResourceContext context, Node node, JsonGenerator generator) throws RepositoryException, IOException;
+
+    /**
+     * @return <code>false</code> when {@link #visit(ResourceContext, Node, JsonGenerator)} does not produce the same
+     * JSON as {@link #visit(ResourceContext, Node, java.util.Map)}, for example because a subclass only customizes the
+     * map based visiting, in which case the map based visiting must be used
+     */
+    boolean isStreamingSupported();
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.restapi;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Streams the output of a map based {@link NodeVisitor} : the visitor builds its response map as before, after which
+ * the map is written to the {@link JsonGenerator}.
+ */
+public class StreamingNodeVisitorAdapter implements StreamingNodeVisitor {
+
+    private final NodeVisitor delegate;
+
+    public StreamingNodeVisitorAdapter(final NodeVisitor delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return <code>visitor</code> itself when it supports streaming, and an adapter for it otherwise
+     */
+    public static StreamingNodeVisitor adapt(final NodeVisitor visitor) {
+        if (visitor instanceof StreamingNodeVisitor && ((StreamingNodeVisitor) visitor).isStreamingSupported()) {
+            return (StreamingNodeVisitor) visitor;
+        }
+        return new StreamingNodeVisitorAdapter(visitor);
+    }
+
+    /**
+     * Writes the entries of <code>response</code> as fields of the JSON object that <code>generator</code> is currently
+     * writing.
+     */
+    public static void writeFields(final JsonGenerator generator, final Map<String, Object> response) throws IOException {
+        for (Map.Entry<String, Object> entry : response.entrySet()) {
+            generator.writeFieldName(entry.getKey());
+            generator.writeObject(entry.getValue());
+        }
+    }
+
+    @Override
+    public String getNodeType() {
+        return delegate.getNodeType();
+    }
+
+    @Override
+    public void visit(final ResourceContext context, final Node node, final Map<String, Object> response)
+            throws RepositoryException {
+        delegate.visit(context, node, response);
+    }
+
+    @Override
+    public void visit(final ResourceContext context, final Node node, final JsonGenerator generator)
+            throws RepositoryException, IOException {
+        final Map<String, Object> response = new LinkedHashMap<>();
+        delegate.visit(context, node, response);
+        writeFields(generator, response);
+    }
+
+    @Override
+    public boolean isStreamingSupported() {
+        return true;
+    }
+}
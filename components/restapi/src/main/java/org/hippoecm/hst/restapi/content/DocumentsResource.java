@@ -16,6 +16,8 @@
 
 package org.hippoecm.hst.restapi.content;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -35,13 +37,20 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.apache.commons.lang.StringUtils;
 import org.hippoecm.hst.container.RequestContextProvider;
 import org.hippoecm.hst.restapi.AbstractResource;
 import org.hippoecm.hst.restapi.NodeVisitor;
 import org.hippoecm.hst.restapi.ResourceContext;
+import org.hippoecm.hst.restapi.StreamingNodeVisitor;
+import org.hippoecm.hst.restapi.StreamingNodeVisitorAdapter;
 import org.hippoecm.hst.restapi.content.search.SearchResult;
 import org.hippoecm.hst.util.SearchInputParsingUtils;
 import org.onehippo.cms7.services.contenttype.ContentType;
@@ -68,6 +77,9 @@ public class DocumentsResource extends AbstractResource {
     private static final int DEFAULT_MAX_SEARCH_RESULT_ITEMS = 100;
     private int maxSearchResultItems = DEFAULT_MAX_SEARCH_RESULT_ITEMS;
 
+    private ObjectMapper objectMapper;
+    private boolean streamingEnabled;
+
     public enum SortOrder { ASCENDING, ASC, DESCENDING, DESC }
 
     @Override
@@ -81,6 +93,24 @@ public class DocumentsResource extends AbstractResource {
         }
     }
 
+    /**
+     * @param objectMapper the mapper to create the {@link JsonGenerator} for streamed documents with, streaming is
+     *                     disabled when not set
+     */
+    public void setObjectMapper(final ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param streamingEnabled whether documents are written straight to the response while visiting their nodes,
+     *                         instead of being visited into a map first. Disabled by default: when streaming, the
+     *                         status 200 has already been sent when a repository exception occurs while visiting,
+     *                         hence the client gets a truncated, invalid JSON response instead of an error response.
+     */
+    public void setStreamingEnabled(final boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+
     private int parseMax(final String maxString) throws IllegalArgumentException {
         int max = maxSearchResultItems;
 
@@ -275,9 +305,13 @@ public class DocumentsResource extends AbstractResource {
                         context.getRequestContext().getResolvedMount().getMount().getMountPath()));
             }
 
-            final Map<String, Object> response = new LinkedHashMap<>();
-
             final NodeVisitor visitor = context.getVisitor(node);
+
+            if (streamingEnabled && objectMapper != null) {
+                return Response.status(200).entity(new StreamingDocument(context, visitor, node)).build();
+            }
+
+            final Map<String, Object> response = new LinkedHashMap<>();
             visitor.visit(context, node, response);
 
             return Response.status(200).entity(response).build();
@@ -290,4 +324,35 @@ public class DocumentsResource extends AbstractResource {
             return buildErrorResponse(500, re);
         }
     }
-}
\ No newline at end of file
+
+    private class StreamingDocument implements StreamingOutput {
+
+        private final ResourceContext context;
+        private final StreamingNodeVisitor visitor;
+        private final Node node;
+
+        private StreamingDocument(final ResourceContext context, final NodeVisitor visitor, final Node node) {
+            this.context = context;
+            this.visitor = StreamingNodeVisitorAdapter.adapt(visitor);
+            this.node = node;
+        }
+
+        @Override
+        public void write(final OutputStream output) throws IOException {
+            final JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // leave the output invalid instead of completing it when visiting fails half way
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            try {
+                generator.writeStartObject();
+                visitor.visit(context, node, generator);
+                generator.writeEndObject();
+            } catch (RepositoryException e) {
+                logException("Exception while streaming document", e);
+                throw new WebApplicationException(e);
+            } finally {
+                generator.close();
+            }
+        }
+    }
+}
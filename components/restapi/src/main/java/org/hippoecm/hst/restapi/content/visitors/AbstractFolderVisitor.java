@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2016-2017 Hippo B.V. (http://www.onehippo.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,11 +15,14 @@
  */
 package org.hippoecm.hst.restapi.content.visitors;
 
+import java.io.IOException;
 import java.util.Map;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import org.hippoecm.hst.restapi.ResourceContext;
 
 public abstract class AbstractFolderVisitor extends AbstractNodeVisitor {
@@ -28,4 +31,9 @@ public abstract class AbstractFolderVisitor extends AbstractNodeVisitor {
     protected void visitChildren(final ResourceContext context, final Node node, final Map<String, Object> destination) throws RepositoryException {
         // do not traverse folders otherwise you might end up traversing almost the entire repository
     }
+
+    @Override
+    protected void visitChildren(final ResourceContext context, final Node node, final JsonGenerator generator) throws RepositoryException, IOException {
+        // do not traverse folders otherwise you might end up traversing almost the entire repository
+    }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2016-2017 Hippo B.V. (http://www.onehippo.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,9 @@
 
 package org.hippoecm.hst.restapi.content.visitors;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,8 +28,12 @@ import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import org.hippoecm.hst.restapi.NodeVisitor;
 import org.hippoecm.hst.restapi.ResourceContext;
+import org.hippoecm.hst.restapi.StreamingNodeVisitor;
+import org.hippoecm.hst.restapi.StreamingNodeVisitorAdapter;
 import org.hippoecm.repository.util.NodeIterable;
 import org.hippoecm.repository.util.PropertyIterable;
 import org.onehippo.cms7.services.contenttype.ContentType;
@@ -40,7 +46,24 @@ import static javax.jcr.PropertyType.DECIMAL;
 import static javax.jcr.PropertyType.DOUBLE;
 import static javax.jcr.PropertyType.LONG;
 
-public abstract class AbstractNodeVisitor implements NodeVisitor {
+/**
+ * Base class of the built-in visitors, which supports both map based and streaming visiting. Subclasses that only
+ * override the map based variant of a visiting method, and not its streaming variant, are visited through the map based
+ * variant : see {@link #isStreamingSupported()}. Overriding {@link #visitNode(ResourceContext, Node, Map)},
+ * {@link #getValueRepresentation(Value)}, {@link #skipProperty(ResourceContext, ContentTypeProperty, Property)} or
+ * {@link #skipChild(ResourceContext, ContentTypeChild, Node)} applies to both variants.
+ */
+public abstract class AbstractNodeVisitor implements StreamingNodeVisitor {
+
+    private final boolean streamingSupported =
+            overridesStreamingVariant("visit", ResourceContext.class, Node.class)
+            && overridesStreamingVariant("visitNodeItems", ResourceContext.class, Node.class)
+            && overridesStreamingVariant("visitProperties", ResourceContext.class, Node.class)
+            && overridesStreamingVariant("visitProperty", ResourceContext.class, ContentTypeProperty.class, Property.class)
+            && overridesStreamingVariant("visitChildren", ResourceContext.class, Node.class);
+
+    private final boolean defaultVisit =
+            getDeclaringClass("visit", ResourceContext.class, Node.class, JsonGenerator.class) == AbstractNodeVisitor.class;
 
     @Override
     public void visit(final ResourceContext context, final Node node, final Map<String, Object> response) throws RepositoryException {
@@ -48,7 +71,7 @@ public abstract class AbstractNodeVisitor implements NodeVisitor {
         final ContentTypeChild nodeType = parentContentType.getChildren().get(node.getName());
 
         final Map<String, Object> nodeResponse = new LinkedHashMap<>();
-        if (nodeType != null && nodeType.isMultiple() || nodeType == null && node.getDefinition().allowsSameNameSiblings()) {
+        if (isMultiple(nodeType, node)) {
             List<Object> siblings = (List<Object>) response.get(node.getName());
             if (siblings == null) {
                 siblings = new ArrayList<>();
@@ -101,22 +124,34 @@ public abstract class AbstractNodeVisitor implements NodeVisitor {
     protected void visitProperties(final ResourceContext context, final Node node, final Map<String, Object> response)
             throws RepositoryException {
         for (Property property : new PropertyIterable(node.getProperties())) {
-            final ContentType parentContentType = context.getContentTypes().getContentTypeForNode(property.getParent());
-            final ContentTypeProperty propertyType = parentContentType.getProperties().get(property.getName());
-
-            if (propertyType != null                                  // explicit and non-residual property type
-                    && !propertyType.isDerivedItem()                  // defined in a (inherited) document type
-                    && !skipProperty(context, propertyType, property) // not marked to be skipped
-            ) {
+            final ContentTypeProperty propertyType = getPropertyTypeToVisit(context, property);
+            if (propertyType != null) {
                 visitProperty(context, propertyType, property, response);
             }
         }
     }
 
+    /**
+     * @return the property type of <code>property</code> when it must be visited, <code>null</code> otherwise
+     */
+    private ContentTypeProperty getPropertyTypeToVisit(final ResourceContext context, final Property property)
+            throws RepositoryException {
+        final ContentType parentContentType = context.getContentTypes().getContentTypeForNode(property.getParent());
+        final ContentTypeProperty propertyType = parentContentType.getProperties().get(property.getName());
+
+        if (propertyType != null                                  // explicit and non-residual property type
+                && !propertyType.isDerivedItem()                  // defined in a (inherited) document type
+                && !skipProperty(context, propertyType, property) // not marked to be skipped
+        ) {
+            return propertyType;
+        }
+        return null;
+    }
+
     protected void visitProperty(final ResourceContext context, final ContentTypeProperty propertyType,
                                  final Property property, final Map<String, Object> response)
             throws RepositoryException {
-        if ((propertyType != null && propertyType.isMultiple()) || propertyType == null && property.getDefinition().isMultiple()) {
+        if (isMultiple(propertyType, property)) {
             final Value[] jcrValues = property.getValues();
             final Object[] representations = new Object[jcrValues.length];
             for (int i = 0; i < jcrValues.length; i++) {
@@ -152,18 +187,7 @@ public abstract class AbstractNodeVisitor implements NodeVisitor {
             throws RepositoryException {
         for (Node child : new NodeIterable(node.getNodes())) {
             final ContentType nodeContentType = context.getContentTypes().getContentTypeForNode(node);
-            final ContentTypeChild childType = nodeContentType.getChildren().get(child.getName());
-
-            // test explicit and non-residual child type
-            if (childType == null) {
-                continue;
-            }
-            // test defined in a (inherited) document type or has primary visitor
-            if (childType.isDerivedItem() && context.getPrimaryNodeTypeVisitor(child) == null) {
-                continue;
-            }
-            // test whether marked to be skipped
-            if (skipChild(context, childType, child)) {
+            if (!isChildToVisit(context, nodeContentType, child)) {
                 continue;
             }
 
@@ -172,6 +196,190 @@ public abstract class AbstractNodeVisitor implements NodeVisitor {
         }
     }
 
+    private boolean isChildToVisit(final ResourceContext context, final ContentType nodeContentType, final Node child)
+            throws RepositoryException {
+        final ContentTypeChild childType = nodeContentType.getChildren().get(child.getName());
+
+        // test explicit and non-residual child type
+        if (childType == null) {
+            return false;
+        }
+        // test defined in a (inherited) document type or has primary visitor
+        if (childType.isDerivedItem() && context.getPrimaryNodeTypeVisitor(child) == null) {
+            return false;
+        }
+        // test whether marked to be skipped
+        return !skipChild(context, childType, child);
+    }
+
+    @Override
+    public boolean isStreamingSupported() {
+        return streamingSupported;
+    }
+
+    @Override
+    public void visit(final ResourceContext context, final Node node, final JsonGenerator generator)
+            throws RepositoryException, IOException {
+        final ContentType parentContentType = context.getContentTypes().getContentTypeForNode(node.getParent());
+        final ContentTypeChild nodeType = parentContentType.getChildren().get(node.getName());
+
+        if (isMultiple(nodeType, node)) {
+            generator.writeArrayFieldStart(node.getName());
+            visitElement(context, node, generator);
+            generator.writeEndArray();
+        } else {
+            generator.writeFieldName(node.getName());
+            visitElement(context, node, generator);
+        }
+    }
+
+    private void visitElement(final ResourceContext context, final Node node, final JsonGenerator generator)
+            throws RepositoryException, IOException {
+        generator.writeStartObject();
+        visitNode(context, node, generator);
+        visitNodeItems(context, node, generator);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Streaming variant of {@link #visitNode(ResourceContext, Node, Map)}, which writes what that method puts in an
+     * empty map.
+     */
+    protected void visitNode(final ResourceContext context, final Node node, final JsonGenerator generator)
+            throws RepositoryException, IOException {
+        final Map<String, Object> response = new LinkedHashMap<>();
+        visitNode(context, node, response);
+        StreamingNodeVisitorAdapter.writeFields(generator, response);
+    }
+
+    protected void visitNodeItems(final ResourceContext context, final Node node, final JsonGenerator generator)
+            throws RepositoryException, IOException {
+        final LazyObjectFieldGenerator items = new LazyObjectFieldGenerator(generator, "items");
+        visitProperties(context, node, items);
+        visitChildren(context, node, items);
+        items.end();
+    }
+
+    /**
+     * Streaming variant of {@link #visitProperties(ResourceContext, Node, Map)}
+     */
+    protected void visitProperties(final ResourceContext context, final Node node, final JsonGenerator generator)
+            throws RepositoryException, IOException {
+        for (Property property : new PropertyIterable(node.getProperties())) {
+            final ContentTypeProperty propertyType = getPropertyTypeToVisit(context, property);
+            if (propertyType != null) {
+                visitProperty(context, propertyType, property, generator);
+            }
+        }
+    }
+
+    protected void visitProperty(final ResourceContext context, final ContentTypeProperty propertyType,
+                                 final Property property, final JsonGenerator generator)
+            throws RepositoryException, IOException {
+        if (isMultiple(propertyType, property)) {
+            generator.writeArrayFieldStart(property.getName());
+            for (Value jcrValue : property.getValues()) {
+                generator.writeObject(getValueRepresentation(jcrValue));
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeFieldName(property.getName());
+            generator.writeObject(getValueRepresentation(property.getValue()));
+        }
+    }
+
+    /**
+     * Streaming variant of {@link #visitChildren(ResourceContext, Node, Map)}. Same-named siblings are written
+     * together at the position of the first of them, like they are grouped in a map based response.
+     */
+    protected void visitChildren(final ResourceContext context, final Node node, final JsonGenerator generator)
+            throws RepositoryException, IOException {
+        final ContentType nodeContentType = context.getContentTypes().getContentTypeForNode(node);
+        final Map<String, List<Node>> childrenByName = new LinkedHashMap<>();
+        for (Node child : new NodeIterable(node.getNodes())) {
+            if (isChildToVisit(context, nodeContentType, child)) {
+                List<Node> siblings = childrenByName.get(child.getName());
+                if (siblings == null) {
+                    siblings = new ArrayList<>(1);
+                    childrenByName.put(child.getName(), siblings);
+                }
+                siblings.add(child);
+            }
+        }
+
+        for (Map.Entry<String, List<Node>> entry : childrenByName.entrySet()) {
+            final ContentTypeChild childType = nodeContentType.getChildren().get(entry.getKey());
+            visitSiblings(context, childType, entry.getValue(), generator);
+        }
+    }
+
+    private void visitSiblings(final ResourceContext context, final ContentTypeChild childType,
+                               final List<Node> siblings, final JsonGenerator generator)
+            throws RepositoryException, IOException {
+        if (siblings.size() == 1) {
+            final Node child = siblings.get(0);
+            StreamingNodeVisitorAdapter.adapt(context.getVisitor(child)).visit(context, child, generator);
+            return;
+        }
+
+        final List<NodeVisitor> visitors = new ArrayList<>(siblings.size());
+        boolean streamable = childType.isMultiple();
+        for (Node child : siblings) {
+            final NodeVisitor visitor = context.getVisitor(child);
+            streamable &= visitor instanceof AbstractNodeVisitor && ((AbstractNodeVisitor) visitor).isStreamingSupported()
+                    && ((AbstractNodeVisitor) visitor).defaultVisit;
+            visitors.add(visitor);
+        }
+
+        if (streamable) {
+            generator.writeArrayFieldStart(siblings.get(0).getName());
+            for (int i = 0; i < siblings.size(); i++) {
+                ((AbstractNodeVisitor) visitors.get(i)).visitElement(context, siblings.get(i), generator);
+            }
+            generator.writeEndArray();
+        } else {
+            final Map<String, Object> response = new LinkedHashMap<>();
+            for (int i = 0; i < siblings.size(); i++) {
+                visitors.get(i).visit(context, siblings.get(i), response);
+            }
+            StreamingNodeVisitorAdapter.writeFields(generator, response);
+        }
+    }
+
+    private static boolean isMultiple(final ContentTypeChild nodeType, final Node node) throws RepositoryException {
+        return nodeType != null && nodeType.isMultiple() || nodeType == null && node.getDefinition().allowsSameNameSiblings();
+    }
+
+    private static boolean isMultiple(final ContentTypeProperty propertyType, final Property property)
+            throws RepositoryException {
+        return (propertyType != null && propertyType.isMultiple()) || propertyType == null && property.getDefinition().isMultiple();
+    }
+
+    /**
+     * @return whether the streaming variant of method <code>name</code> is overridden in the same class as or a subclass
+     * of the class that overrides its map based variant, hence whether both variants produce the same output
+     */
+    private boolean overridesStreamingVariant(final String name, final Class<?>... parameterTypes) {
+        final Class<?>[] mapParameterTypes = Arrays.copyOf(parameterTypes, parameterTypes.length + 1);
+        mapParameterTypes[parameterTypes.length] = Map.class;
+        final Class<?>[] streamingParameterTypes = Arrays.copyOf(parameterTypes, parameterTypes.length + 1);
+        streamingParameterTypes[parameterTypes.length] = JsonGenerator.class;
+
+        return getDeclaringClass(name, mapParameterTypes).isAssignableFrom(getDeclaringClass(name, streamingParameterTypes));
+    }
+
+    private Class<?> getDeclaringClass(final String name, final Class<?>... parameterTypes) {
+        for (Class<?> clazz = getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            try {
+                clazz.getDeclaredMethod(name, parameterTypes);
+                return clazz;
+            } catch (NoSuchMethodException e) {
+                // try the superclass
+            }
+        }
+        throw new IllegalStateException("Method '" + name + "' is not declared by " + getClass().getName());
+    }
+
 
 
     protected Object getValueRepresentation(final Value jcrValue) throws RepositoryException {
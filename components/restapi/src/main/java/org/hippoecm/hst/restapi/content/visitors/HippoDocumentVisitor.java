@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2016-2017 Hippo B.V. (http://www.onehippo.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,12 +15,15 @@
  */
 package org.hippoecm.hst.restapi.content.visitors;
 
+import java.io.IOException;
 import java.util.Map;
 
 import javax.jcr.Node;
 import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import org.hippoecm.hst.restapi.ResourceContext;
 import org.hippoecm.repository.translation.HippoTranslationNodeType;
 import org.onehippo.cms7.services.contenttype.ContentTypeProperty;
@@ -41,6 +44,12 @@ public class HippoDocumentVisitor extends DefaultNodeVisitor {
         visitNodeItems(context, node, response);
     }
 
+    @Override
+    public void visit(final ResourceContext context, final Node node, final JsonGenerator generator) throws RepositoryException, IOException {
+        visitNode(context, node, generator);
+        visitNodeItems(context, node, generator);
+    }
+
     protected void visitNode(final ResourceContext context, final Node node, final Map<String, Object> response)
             throws RepositoryException {
         super.visitNode(context, node, response);
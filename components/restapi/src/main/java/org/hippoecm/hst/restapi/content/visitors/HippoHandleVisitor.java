@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2016-2017 Hippo B.V. (http://www.onehippo.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,13 +16,17 @@
 
 package org.hippoecm.hst.restapi.content.visitors;
 
+import java.io.IOException;
 import java.util.Map;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import org.hippoecm.hst.restapi.NodeVisitor;
 import org.hippoecm.hst.restapi.ResourceContext;
+import org.hippoecm.hst.restapi.StreamingNodeVisitorAdapter;
 import org.hippoecm.repository.api.HippoNode;
 
 import static org.hippoecm.repository.api.HippoNodeType.NT_HANDLE;
@@ -48,4 +52,19 @@ public class HippoHandleVisitor extends AbstractNodeVisitor {
         NodeVisitor variantVisitor = context.getVisitor(variant);
         variantVisitor.visit(context, variant, response);
     }
+
+    @Override
+    public void visit(final ResourceContext context, final Node node, final JsonGenerator generator) throws RepositoryException, IOException {
+        final String nodeName = node.getName();
+
+        generator.writeStringField("id", node.getIdentifier());
+        generator.writeStringField("name", nodeName);
+
+        if (node instanceof HippoNode) {
+            generator.writeStringField("displayName", ((HippoNode)node).getDisplayName());
+        }
+
+        final Node variant = node.getNode(nodeName);
+        StreamingNodeVisitorAdapter.adapt(context.getVisitor(variant)).visit(context, variant, generator);
+    }
 }
\ No newline at end of file
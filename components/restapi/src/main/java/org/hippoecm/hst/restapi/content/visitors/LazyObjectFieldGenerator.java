@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hippoecm.hst.restapi.content.visitors;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+
+/**
+ * Generator that only starts writing an object field once the first field is written into it, such that an object
+ * without fields is left out entirely, like an empty map is left out of a map based response.
+ */
+class LazyObjectFieldGenerator extends JsonGeneratorDelegate {
+
+    private final String fieldName;
+    private boolean started;
+
+    LazyObjectFieldGenerator(final JsonGenerator generator, final String fieldName) {
+        super(generator);
+        this.fieldName = fieldName;
+    }
+
+    @Override
+    public void writeFieldName(final String name) throws IOException {
+        start();
+        super.writeFieldName(name);
+    }
+
+    @Override
+    public void writeFieldName(final SerializableString name) throws IOException {
+        start();
+        super.writeFieldName(name);
+    }
+
+    /**
+     * Ends the object field, if it has been started.
+     */
+    void end() throws IOException {
+        if (started) {
+            delegate.writeEndObject();
+        }
+    }
+
+    private void start() throws IOException {
+        if (!started) {
+            started = true;
+            delegate.writeObjectFieldStart(fieldName);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import javax.jcr.Session;
 
 import org.apache.commons.lang.StringUtils;
 import org.hippoecm.hst.restapi.AbstractRestApiIT;
+import org.hippoecm.hst.restapi.content.DocumentsResource;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -123,6 +124,31 @@ public class DocumentsResourceIT extends AbstractRestApiIT {
         }
     }
 
+    @Test
+    public void streamed_document_equals_mapped_document() throws Exception {
+        final Session session = createSession("admin", "admin");
+        try {
+            final Node medusaNews = session.getNode("/unittestcontent/documents/myhippoproject/news/2015/12/the-medusa-news");
+            final String path = "/documents/" + medusaNews.getIdentifier();
+            final DocumentsResource documentsResource = getComponentManager().getComponent("documentsResource",
+                    "org.hippoecm.hst.restapi");
+
+            final String mapped = render(mockGetRequestResponse("http", "onehippo.io", path, null)).getContentAsString();
+            documentsResource.setStreamingEnabled(true);
+            final String streamed;
+            try {
+                streamed = render(mockGetRequestResponse("http", "onehippo.io", path, null)).getContentAsString();
+            } finally {
+                documentsResource.setStreamingEnabled(false);
+            }
+
+            assertTrue(StringUtils.isNotEmpty(streamed));
+            assertEquals(mapped, streamed);
+        } finally {
+            session.logout();
+        }
+    }
+
     @Test
     public void test_search_result_contains_handle_uuids() throws Exception {
         Session liveUser = createLiveUserSession();
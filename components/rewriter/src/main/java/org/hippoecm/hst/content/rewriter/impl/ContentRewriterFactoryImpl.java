@@ -1,5 +1,5 @@
 /*
- *  Copyright 2015 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2015-2017 Hippo B.V. (http://www.onehippo.com)
  *
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
  */
 package org.hippoecm.hst.content.rewriter.impl;
 
+import org.hippoecm.hst.cache.HstCache;
 import org.hippoecm.hst.content.rewriter.ContentRewriter;
 import org.hippoecm.hst.content.rewriter.ContentRewriterFactory;
 import org.slf4j.Logger;
@@ -24,6 +25,8 @@ public class ContentRewriterFactoryImpl implements ContentRewriterFactory {
 
     private static Logger log = LoggerFactory.getLogger(ContentRewriterFactoryImpl.class);
     private String defaultContentRewriterClassName;
+    private HstCache rewrittenContentCache;
+    private boolean rewrittenContentCachingEnabled;
 
     @SuppressWarnings("unused")
     public String getDefaultContentRewriterClassName() {
@@ -33,12 +36,28 @@ public class ContentRewriterFactoryImpl implements ContentRewriterFactory {
         this.defaultContentRewriterClassName = defaultContentRewriterClassName;
     }
 
+    /**
+     * @param rewrittenContentCache the cache set on the created {@link SimpleContentRewriter}s when
+     *                              {@link #setRewrittenContentCachingEnabled(boolean) enabled}
+     */
+    public void setRewrittenContentCache(HstCache rewrittenContentCache) {
+        this.rewrittenContentCache = rewrittenContentCache;
+    }
+
+    public void setRewrittenContentCachingEnabled(boolean rewrittenContentCachingEnabled) {
+        this.rewrittenContentCachingEnabled = rewrittenContentCachingEnabled;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public ContentRewriter<String> createContentRewriter() {
         try {
             Class<ContentRewriter<String>> clazz = (Class<ContentRewriter<String>>) Class.forName(defaultContentRewriterClassName);
-            return clazz.newInstance();
+            final ContentRewriter<String> contentRewriter = clazz.newInstance();
+            if (rewrittenContentCachingEnabled && contentRewriter instanceof SimpleContentRewriter) {
+                ((SimpleContentRewriter) contentRewriter).setRewrittenContentCache(rewrittenContentCache);
+            }
+            return contentRewriter;
         } catch (ClassNotFoundException|InstantiationException|IllegalAccessException e) {
             String error = "Cannot load the ContentRewriter class " + defaultContentRewriterClassName;
             log.error(error, e);
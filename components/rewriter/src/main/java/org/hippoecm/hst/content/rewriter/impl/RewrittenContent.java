@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.content.rewriter.impl;
+
+import java.io.Serializable;
+
+import org.hippoecm.hst.cache.CacheDependencies;
+import org.hippoecm.hst.cache.CacheDependent;
+
+/**
+ * The cached result of rewriting rich text by a {@link SimpleContentRewriter}, together with the repository paths the
+ * result depends on : the rich text node itself and the documents and binaries its internal links refer to.
+ */
+public class RewrittenContent implements Serializable, CacheDependent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String content;
+    private final CacheDependencies cacheDependencies;
+
+    public RewrittenContent(final String content, final CacheDependencies cacheDependencies) {
+        this.content = content;
+        this.cacheDependencies = cacheDependencies;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    @Override
+    public CacheDependencies getCacheDependencies() {
+        return cacheDependencies;
+    }
+}
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -16,10 +16,15 @@
 package org.hippoecm.hst.content.rewriter.impl;
 
 import org.apache.commons.lang.StringUtils;
+import org.hippoecm.hst.cache.CacheDependencies;
+import org.hippoecm.hst.cache.CacheElement;
+import org.hippoecm.hst.cache.HstCache;
 import org.hippoecm.hst.configuration.hosting.Mount;
 import org.hippoecm.hst.content.rewriter.ImageVariant;
 import org.hippoecm.hst.core.linking.HstLink;
 import org.hippoecm.hst.core.request.HstRequestContext;
+import org.hippoecm.hst.core.request.ResolvedSiteMapItem;
+import org.hippoecm.hst.util.HstRequestUtils;
 import org.hippoecm.hst.utils.SimpleHtmlExtractor;
 import org.hippoecm.repository.api.HippoNodeType;
 import org.slf4j.Logger;
@@ -29,8 +34,11 @@ import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
+import javax.servlet.http.HttpServletRequest;
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.util.Objects;
 import java.util.regex.Pattern;
 
 /**
@@ -74,11 +82,36 @@ public class SimpleContentRewriter extends AbstractContentRewriter<String> {
     protected static final Pattern BODY_TAG_PATTERN = Pattern.compile("<body[\\s\\/>]", Pattern.CASE_INSENSITIVE);
 
     private boolean rewritingBinaryLink = false;
+
+    private HstCache rewrittenContentCache;
+
+    /**
+     * The dependencies of the content being rewritten when the result is going to be cached, <code>null</code> otherwise
+     */
+    private CacheDependencies rewriteDependencies;
     
     public SimpleContentRewriter() {
 
     }
 
+    /**
+     * Sets the cache for the rewritten content of <code>HippoHtml</code> nodes, which is shared by all content rewriter
+     * instances. When <code>null</code>, which is the default, content is rewritten on every invocation.
+     */
+    public void setRewrittenContentCache(final HstCache rewrittenContentCache) {
+        this.rewrittenContentCache = rewrittenContentCache;
+    }
+
+    /**
+     * Whether the rewritten content of <code>hippoHtmlNode</code> can be cached for the current request. Content is
+     * not cached for cms requests, nor for subclasses, since they might rewrite links depending on other request
+     * state than the one taken into account by the cache key. Subclasses that only override the link creation can
+     * override this method to enable caching.
+     */
+    protected boolean isRewrittenContentCacheable(final Node hippoHtmlNode, final HstRequestContext requestContext) {
+        return getClass() == SimpleContentRewriter.class && !requestContext.isCmsRequest();
+    }
+
     @Override
     public String rewrite(final String html, final HstRequestContext requestContext) {
         return getInnerHtml(html);
@@ -110,109 +143,110 @@ public class SimpleContentRewriter extends AbstractContentRewriter<String> {
                           final Mount targetMount) {
 
         // strip off html & body tag
-        String rewrittenHtml = getInnerHtml(html);
-        if (StringUtils.isEmpty(rewrittenHtml)) {
-            return rewrittenHtml;
+        final String innerHtml = getInnerHtml(html);
+        if (StringUtils.isEmpty(innerHtml)) {
+            return innerHtml;
         }
 
-        // only create if really needed
-        StringBuilder sb = null;
-        int globalOffset = 0;
-        String documentLinkHref;
-
-        while (rewrittenHtml.indexOf(LINK_TAG, globalOffset) > -1) {
-            int offset = rewrittenHtml.indexOf(LINK_TAG, globalOffset);
-
-            int hrefIndexStart = rewrittenHtml.indexOf(HREF_ATTR_NAME, offset);
-            if (hrefIndexStart == -1) {
-                break;
-            }
-
-            if (sb == null) {
-                sb = new StringBuilder(rewrittenHtml.length());
-            }
-
-            hrefIndexStart += HREF_ATTR_NAME.length();
-            offset = hrefIndexStart;
-            int endTag = rewrittenHtml.indexOf(END_TAG, offset);
-            boolean appended = false;
-            if (hrefIndexStart < endTag) {
-                int hrefIndexEnd = rewrittenHtml.indexOf(ATTR_END, hrefIndexStart);
-                if (hrefIndexEnd > hrefIndexStart) {
-                    final String documentPath = rewrittenHtml.substring(hrefIndexStart, hrefIndexEnd);
-
-                    offset = endTag;
-                    sb.append(rewrittenHtml.substring(globalOffset, hrefIndexStart));
-
-                    documentLinkHref = rewriteDocumentLink(documentPath, hippoHtmlNode, requestContext, targetMount);
-                    if (documentLinkHref != null) {
-                        sb.append(documentLinkHref);
-                    }
-
-                    sb.append(rewrittenHtml.substring(hrefIndexEnd, endTag));
-                    appended = true;
-                }
-            }
-            if (!appended && offset > globalOffset) {
-                sb.append(rewrittenHtml.substring(globalOffset, offset));
-            }
-            globalOffset = offset;
+        final CacheKey cacheKey = createCacheKey(innerHtml, hippoHtmlNode, requestContext, targetMount);
+        if (cacheKey == null) {
+            return rewriteInnerHtml(innerHtml, hippoHtmlNode, requestContext, targetMount);
         }
 
-        if (sb != null) {
-            sb.append(rewrittenHtml.substring(globalOffset, rewrittenHtml.length()));
-            rewrittenHtml = String.valueOf(sb);
-            sb = null;
+        final CacheElement cacheElement = rewrittenContentCache.get(cacheKey);
+        if (cacheElement != null && cacheElement.getContent() instanceof RewrittenContent) {
+            final RewrittenContent rewrittenContent = (RewrittenContent) cacheElement.getContent();
+            recordCacheDependencies(rewrittenContent.getCacheDependencies());
+            return rewrittenContent.getContent();
         }
 
-        globalOffset = 0;
-        String binaryLinkSrc;
-
-        while (rewrittenHtml.indexOf(IMG_TAG, globalOffset) > -1) {
-            int offset = rewrittenHtml.indexOf(IMG_TAG, globalOffset);
+        rewriteDependencies = new CacheDependencies();
+        try {
+            rewriteDependencies.addSubtree(hippoHtmlNode.getPath());
+            final String rewrittenHtml = rewriteInnerHtml(innerHtml, hippoHtmlNode, requestContext, targetMount);
+            rewrittenContentCache.put(rewrittenContentCache.createElement(cacheKey,
+                    new RewrittenContent(rewrittenHtml, rewriteDependencies)));
+            recordCacheDependencies(rewriteDependencies);
+            return rewrittenHtml;
+        } catch (RepositoryException e) {
+            log.warn("Unable to cache rewritten content of '{}' : {}", hippoHtmlNode, e.toString());
+            return rewriteInnerHtml(innerHtml, hippoHtmlNode, requestContext, targetMount);
+        } finally {
+            rewriteDependencies = null;
+        }
+    }
 
-            int srcIndexStart = rewrittenHtml.indexOf(SRC_ATTR_NAME, offset);
+    /**
+     * Rewrites the <code>href</code> attributes of anchor tags and the <code>src</code> attributes of image tags in a
+     * single pass over <code>html</code>. The html is only copied when at least one attribute is rewritten.
+     */
+    private String rewriteInnerHtml(final String html, final Node hippoHtmlNode, final HstRequestContext requestContext,
+                                    final Mount targetMount) {
+        // only create if really needed
+        StringBuilder sb = null;
+        int copiedUntil = 0;
+        int tagStart = html.indexOf('<');
+
+        while (tagStart > -1) {
+            final boolean linkTag = html.startsWith(LINK_TAG, tagStart);
+            if (!linkTag && !html.startsWith(IMG_TAG, tagStart)) {
+                tagStart = html.indexOf('<', tagStart + 1);
+                continue;
+            }
 
-            if (srcIndexStart == -1) {
+            final int endTag = html.indexOf(END_TAG, tagStart);
+            if (endTag == -1) {
                 break;
             }
 
-            if (sb == null) {
-                sb = new StringBuilder(rewrittenHtml.length());
-            }
-            srcIndexStart += SRC_ATTR_NAME.length();
-            offset = srcIndexStart;
-            int endTag = rewrittenHtml.indexOf(END_TAG, offset);
-            boolean appended = false;
-            if (srcIndexStart < endTag) {
-                int srcIndexEnd = rewrittenHtml.indexOf(ATTR_END, srcIndexStart);
-                if (srcIndexEnd > srcIndexStart) {
-                    String srcPath = rewrittenHtml.substring(srcIndexStart, srcIndexEnd);
-                    
-                    offset = endTag;
-                    sb.append(rewrittenHtml.substring(globalOffset, srcIndexStart));
-
-                    binaryLinkSrc = rewriteBinaryLink(srcPath, hippoHtmlNode, requestContext, targetMount);
-                    if (binaryLinkSrc != null) {
-                        sb.append(binaryLinkSrc);
+            final String attrName = linkTag ? HREF_ATTR_NAME : SRC_ATTR_NAME;
+            int valueStart = indexOf(html, attrName, tagStart, endTag);
+            if (valueStart > -1) {
+                valueStart += attrName.length();
+                final int valueEnd = html.indexOf(ATTR_END, valueStart);
+                if (valueEnd > valueStart && valueEnd < endTag) {
+                    final String reference = html.substring(valueStart, valueEnd);
+                    final String rewrittenReference;
+                    if (linkTag) {
+                        rewrittenReference = rewriteDocumentLink(reference, hippoHtmlNode, requestContext, targetMount);
+                    } else {
+                        rewrittenReference = rewriteBinaryLink(reference, hippoHtmlNode, requestContext, targetMount);
                     }
 
-                    sb.append(rewrittenHtml.substring(srcIndexEnd, endTag));
-                    appended = true;
+                    if (!reference.equals(rewrittenReference)) {
+                        if (sb == null) {
+                            sb = new StringBuilder(html.length() + 256);
+                        }
+                        sb.append(html, copiedUntil, valueStart);
+                        if (rewrittenReference != null) {
+                            sb.append(rewrittenReference);
+                        }
+                        copiedUntil = valueEnd;
+                    }
                 }
             }
-            if (!appended && offset > globalOffset) {
-                sb.append(rewrittenHtml.substring(globalOffset, offset));
-            }
-            globalOffset = offset;
+
+            tagStart = html.indexOf('<', endTag);
         }
 
         if (sb == null) {
-            return rewrittenHtml;
-        } else {
-            sb.append(rewrittenHtml.substring(globalOffset, rewrittenHtml.length()));
-            return sb.toString();
+            return html;
+        }
+        sb.append(html, copiedUntil, html.length());
+        return sb.toString();
+    }
+
+    /**
+     * @return the index of <code>str</code> in <code>html</code> between <code>fromIndex</code> and
+     * <code>toIndex</code> (exclusive) or <code>-1</code> if not present
+     */
+    private static int indexOf(final String html, final String str, final int fromIndex, final int toIndex) {
+        for (int i = fromIndex; i <= toIndex - str.length(); i++) {
+            if (html.startsWith(str, i)) {
+                return i;
+            }
         }
+        return -1;
     }
 
     private static String getInnerHtml(final String html) {
@@ -347,6 +381,7 @@ public class SimpleContentRewriter extends AbstractContentRewriter<String> {
                     }
                     final String uuid = mirrorNode.getProperty(HippoNodeType.HIPPO_DOCBASE).getString();
                     Node referencedNode = mirrorNode.getSession().getNodeByIdentifier(uuid);
+                    addRewriteDependency(referencedNode);
                     if (!referencedNode.isNodeType(HippoNodeType.NT_HANDLE)) {
                         log.info("Unable to rewrite path '{}' for node '{}' to proper binary url : Expected link to a " +
                                 "node of type hippo:handle but was of type '{}'.",
@@ -392,6 +427,7 @@ public class SimpleContentRewriter extends AbstractContentRewriter<String> {
                     if (mirrorNode.hasProperty(HippoNodeType.HIPPO_DOCBASE)) {
                         String uuid = mirrorNode.getProperty(HippoNodeType.HIPPO_DOCBASE).getString();
                         Node referencedNode = mirrorNode.getSession().getNodeByIdentifier(uuid);
+                        addRewriteDependency(referencedNode);
                         if (referencedNode.isNodeType(HippoNodeType.NT_HANDLE)) {
                             if (!referencedNode.hasNode(referencedNode.getName())) {
                                 log.info("Unable to rewrite path '{}' for node '{}' to proper url because no (readable) document" +
@@ -449,6 +485,39 @@ public class SimpleContentRewriter extends AbstractContentRewriter<String> {
         }
     }
 
+    private void addRewriteDependency(final Node referencedNode) throws RepositoryException {
+        if (rewriteDependencies != null) {
+            rewriteDependencies.addSubtree(referencedNode.getPath());
+        }
+    }
+
+    private static void recordCacheDependencies(final CacheDependencies dependencies) {
+        final CacheDependencies current = CacheDependencies.getCurrent();
+        if (current != null && dependencies != null) {
+            current.addAll(dependencies);
+        }
+    }
+
+    /**
+     * @return the key for the rewritten <code>innerHtml</code> or <code>null</code> if it must not be cached
+     */
+    private CacheKey createCacheKey(final String innerHtml, final Node hippoHtmlNode, final HstRequestContext requestContext,
+                                    final Mount targetMount) {
+        if (rewrittenContentCache == null || hippoHtmlNode == null || requestContext == null
+                || requestContext.getServletRequest() == null || requestContext.getResolvedMount() == null
+                || !isRewrittenContentCacheable(hippoHtmlNode, requestContext)) {
+            return null;
+        }
+        try {
+            return new CacheKey(innerHtml, hippoHtmlNode.getIdentifier(), requestContext, targetMount,
+                    isCanonicalLinks(), isFullyQualifiedLinks(), getImageVariant());
+        } catch (RepositoryException e) {
+            log.debug("Not caching rewritten content because identifier of '{}' cannot be determined : {}",
+                    hippoHtmlNode, e.toString());
+            return null;
+        }
+    }
+
     private static boolean isValidBinariesPath(final String nodePath, final String relPath) {
         final String[] binaryPathSegments = relPath.split("/");
         if (binaryPathSegments.length == 3 && "{_document}".equals(binaryPathSegments[1])) {
@@ -476,4 +545,88 @@ public class SimpleContentRewriter extends AbstractContentRewriter<String> {
         return false;
     }
 
+    /**
+     * Key of rewritten content. Next to the rich text itself (which changes with every edit) and its node, the
+     * rewritten links depend on the target mount, the rewriter settings and the request they are created for : the
+     * mount, host and context path of the request and, for non canonical links, the matched sitemap item.
+     */
+    static final class CacheKey implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String html;
+        private final String nodeIdentifier;
+        private final boolean preview;
+        private final boolean canonical;
+        private final boolean fullyQualified;
+        private final String imageVariant;
+        private final String targetMountIdentifier;
+        private final String mountIdentifier;
+        private final String requestHost;
+        private final String contextPath;
+        private final String siteMapItemId;
+        private final String pathInfo;
+        private final int hashCode;
+
+        CacheKey(final String html, final String nodeIdentifier, final HstRequestContext requestContext,
+                 final Mount targetMount, final boolean canonical, final boolean fullyQualified,
+                 final ImageVariant imageVariant) {
+            this.html = html;
+            this.nodeIdentifier = nodeIdentifier;
+            this.preview = requestContext.isPreview();
+            this.canonical = canonical;
+            this.fullyQualified = fullyQualified;
+            if (imageVariant == null) {
+                this.imageVariant = null;
+            } else {
+                this.imageVariant = imageVariant.getName() + imageVariant.getReplaces() + imageVariant.isFallback();
+            }
+            this.targetMountIdentifier = (targetMount == null ? null : targetMount.getIdentifier());
+            this.mountIdentifier = requestContext.getResolvedMount().getMount().getIdentifier();
+            final HttpServletRequest request = requestContext.getServletRequest();
+            this.requestHost = HstRequestUtils.getFarthestRequestScheme(request) + "://"
+                    + HstRequestUtils.getFarthestRequestHost(request);
+            this.contextPath = request.getContextPath();
+            final ResolvedSiteMapItem resolvedSiteMapItem = requestContext.getResolvedSiteMapItem();
+            if (canonical || resolvedSiteMapItem == null) {
+                this.siteMapItemId = null;
+                this.pathInfo = null;
+            } else {
+                this.siteMapItemId = resolvedSiteMapItem.getHstSiteMapItem().getQualifiedId();
+                this.pathInfo = resolvedSiteMapItem.getPathInfo();
+            }
+            this.hashCode = Objects.hash(html, nodeIdentifier, preview, canonical, fullyQualified, this.imageVariant,
+                    targetMountIdentifier, mountIdentifier, requestHost, contextPath, siteMapItemId, pathInfo);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) o;
+            return hashCode == other.hashCode
+                    && preview == other.preview
+                    && canonical == other.canonical
+                    && fullyQualified == other.fullyQualified
+                    && Objects.equals(nodeIdentifier, other.nodeIdentifier)
+                    && Objects.equals(mountIdentifier, other.mountIdentifier)
+                    && Objects.equals(targetMountIdentifier, other.targetMountIdentifier)
+                    && Objects.equals(requestHost, other.requestHost)
+                    && Objects.equals(contextPath, other.contextPath)
+                    && Objects.equals(siteMapItemId, other.siteMapItemId)
+                    && Objects.equals(pathInfo, other.pathInfo)
+                    && Objects.equals(imageVariant, other.imageVariant)
+                    && html.equals(other.html);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
 }
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -21,17 +21,24 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jcr.Node;
 
 import org.apache.commons.lang.StringUtils;
 import org.easymock.EasyMock;
+import org.hippoecm.hst.cache.CacheElement;
+import org.hippoecm.hst.cache.HstCache;
 import org.hippoecm.hst.configuration.hosting.Mount;
 import org.hippoecm.hst.content.rewriter.ContentRewriter;
 import org.hippoecm.hst.core.linking.HstLink;
 import org.hippoecm.hst.core.request.HstRequestContext;
+import org.hippoecm.hst.core.request.ResolvedMount;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
 
 public class TestSimpleContentRewriter {
 
@@ -195,4 +202,81 @@ public class TestSimpleContentRewriter {
         assertTrue(html.contains("href=\"javascript:openPopup('http://www.onehippo.org/external/foo/bar?a=b');\""));
         assertTrue(html.contains("src=\"javascript:openPopup('http://upload.wikimedia.org/wikipedia/commons/3/31/Red-dot-5px.png');\""));
     }
+
+    @Test
+    public void testLinksAndImagesAreRewrittenInOnePass() {
+        ContentRewriter<String> rewriter = new SimpleContentRewriter() {
+            @Override
+            protected String rewriteDocumentLink(String documentLinkReference, Node hippoHtmlNode, HstRequestContext requestContext, Mount mount) {
+                return "/site/" + documentLinkReference;
+            }
+            @Override
+            protected String rewriteBinaryLink(String binaryLinkReference, Node hippoHtmlNode, HstRequestContext requestContext, Mount mount) {
+                return "/site/binaries/" + binaryLinkReference;
+            }
+        };
+
+        String html = rewriter.rewrite("<p><a href=\"news\">News</a> <img alt=\"\" src=\"logo.png/{_document}/hippogallery:original\"/>" +
+                "<a name=\"anchor\">Anchor</a><b>bold</b><a title=\"x\" href=\"events\" >Events</a></p>", node, requestContext, mount);
+        assertEquals("<p><a href=\"/site/news\">News</a> <img alt=\"\" src=\"/site/binaries/logo.png/{_document}/hippogallery:original\"/>" +
+                "<a name=\"anchor\">Anchor</a><b>bold</b><a title=\"x\" href=\"/site/events\" >Events</a></p>", html);
+    }
+
+    @Test
+    public void testRewrittenContentIsCached() throws Exception {
+        final Map<Object, CacheElement> cachedElements = new HashMap<>();
+        final HstCache cache = EasyMock.createNiceMock(HstCache.class);
+        EasyMock.expect(cache.createElement(EasyMock.anyObject(), EasyMock.anyObject())).andAnswer(() -> {
+            final CacheElement element = EasyMock.createNiceMock(CacheElement.class);
+            EasyMock.expect(element.getKey()).andReturn(EasyMock.getCurrentArguments()[0]).anyTimes();
+            EasyMock.expect(element.getContent()).andReturn(EasyMock.getCurrentArguments()[1]).anyTimes();
+            EasyMock.replay(element);
+            return element;
+        }).anyTimes();
+        cache.put(EasyMock.anyObject(CacheElement.class));
+        EasyMock.expectLastCall().andAnswer(() -> {
+            final CacheElement element = (CacheElement) EasyMock.getCurrentArguments()[0];
+            cachedElements.put(element.getKey(), element);
+            return null;
+        }).anyTimes();
+        EasyMock.expect(cache.get(EasyMock.anyObject())).andAnswer(() -> cachedElements.get(EasyMock.getCurrentArguments()[0])).anyTimes();
+
+        final Node htmlNode = EasyMock.createNiceMock(Node.class);
+        EasyMock.expect(htmlNode.getIdentifier()).andReturn("cafebabe-cafe-babe-cafe-babecafebabe").anyTimes();
+        EasyMock.expect(htmlNode.getPath()).andReturn("/content/documents/news/news/news/myhippoproject:body").anyTimes();
+        final Mount requestMount = EasyMock.createNiceMock(Mount.class);
+        EasyMock.expect(requestMount.getIdentifier()).andReturn("mount-id").anyTimes();
+        final ResolvedMount resolvedMount = EasyMock.createNiceMock(ResolvedMount.class);
+        EasyMock.expect(resolvedMount.getMount()).andReturn(requestMount).anyTimes();
+        final HstRequestContext cachingRequestContext = EasyMock.createNiceMock(HstRequestContext.class);
+        EasyMock.expect(cachingRequestContext.getServletRequest()).andReturn(new MockHttpServletRequest()).anyTimes();
+        EasyMock.expect(cachingRequestContext.getResolvedMount()).andReturn(resolvedMount).anyTimes();
+        EasyMock.replay(cache, htmlNode, requestMount, resolvedMount, cachingRequestContext);
+
+        final AtomicInteger rewrittenLinks = new AtomicInteger();
+        final SimpleContentRewriter rewriter = new SimpleContentRewriter() {
+            @Override
+            protected boolean isRewrittenContentCacheable(Node hippoHtmlNode, HstRequestContext requestContext) {
+                return true;
+            }
+            @Override
+            protected String rewriteDocumentLink(String documentLinkReference, Node hippoHtmlNode, HstRequestContext requestContext, Mount mount) {
+                rewrittenLinks.incrementAndGet();
+                return "/site/" + documentLinkReference;
+            }
+        };
+        rewriter.setRewrittenContentCache(cache);
+
+        assertEquals("<a href=\"/site/news\">News</a>", rewriter.rewrite("<a href=\"news\">News</a>", htmlNode, cachingRequestContext, (Mount) null));
+        assertEquals("<a href=\"/site/news\">News</a>", rewriter.rewrite("<a href=\"news\">News</a>", htmlNode, cachingRequestContext, (Mount) null));
+        assertEquals(1, rewrittenLinks.get());
+
+        assertEquals("<a href=\"/site/events\">Events</a>", rewriter.rewrite("<a href=\"events\">Events</a>", htmlNode, cachingRequestContext, (Mount) null));
+        assertEquals(2, rewrittenLinks.get());
+
+        rewriter.setCanonicalLinks(true);
+        rewriter.rewrite("<a href=\"news\">News</a>", htmlNode, cachingRequestContext, (Mount) null);
+        assertEquals(3, rewrittenLinks.get());
+        assertEquals(3, cachedElements.size());
+    }
 }
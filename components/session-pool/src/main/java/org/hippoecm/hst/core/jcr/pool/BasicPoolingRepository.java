@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2015 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -333,8 +333,10 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
         
         Session session = null;
         
+        final long borrowStart = System.nanoTime();
         try {
             session = (Session) sessionPool.borrowObject();
+            borrowWaitTimes.record(System.nanoTime() - borrowStart);
             
             // If client retrieves a session, then register it as a disposable. 
             if (pooledSessionLifecycleManagement != null && pooledSessionLifecycleManagement.isActive()) {
@@ -435,7 +437,16 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
     /**
      * The object pool that internally manages our sessions.
      */
-    private GenericObjectPool sessionPool;
+    private ConfigurableObjectPool sessionPool;
+    /**
+     * The type of {@link #sessionPool}, {@link PoolingRepository#POOL_TYPE_GENERIC} for a {@link GenericObjectPool}
+     * or {@link PoolingRepository#POOL_TYPE_LOCK_FREE} for a {@link LockFreeSessionPool}.
+     */
+    private String poolType = POOL_TYPE_GENERIC;
+    /**
+     * The times it took to borrow a session from {@link #sessionPool}.
+     */
+    private final WaitTimeHistogram borrowWaitTimes = new WaitTimeHistogram();
     /**
      * The maximum number of active sessions that can be allocated from
      * this pool at the same time, or negative for no limit.
@@ -582,35 +593,46 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
 
         // Initialize the object pool
         
-        sessionPool = new GenericObjectPool(new SessionFactory());
+        if (POOL_TYPE_LOCK_FREE.equalsIgnoreCase(poolType)) {
+            sessionPool = new LockFreeSessionPool(new SessionFactory());
+        } else {
+            sessionPool = new ConfigurableGenericObjectPool(new SessionFactory());
+        }
+        configureSessionPool();
+        borrowWaitTimes.reset();
 
-        sessionPool.setMaxActive(maxActive);
-        sessionPool.setMaxIdle(maxIdle);
-        sessionPool.setMinIdle(minIdle);
-        
+        if (initialSize > 0) {
+            try {
+                PoolUtils.prefill(sessionPool, initialSize);
+            } catch (Exception e) {
+                throw new RepositoryException("Failed to prefill initial sessions.", e);
+            }
+        }
+    }
+
+    private void configureSessionPool() {
         byte whenExhaustedActionFlag = GenericObjectPool.WHEN_EXHAUSTED_BLOCK;
         String whenExhaustedActionParam = new StringBuilder().append(this.getWhenExhaustedAction()).toString();
-        
+
         if (WHEN_EXHAUSTED_FAIL.equalsIgnoreCase(whenExhaustedActionParam)) {
             whenExhaustedActionFlag = GenericObjectPool.WHEN_EXHAUSTED_FAIL;
         } else if (WHEN_EXHAUSTED_GROW.equalsIgnoreCase(whenExhaustedActionParam)) {
             whenExhaustedActionFlag = GenericObjectPool.WHEN_EXHAUSTED_GROW;
         }
-        
-        sessionPool.setWhenExhaustedAction(whenExhaustedActionFlag);
-        sessionPool.setMaxWait(maxWait);
-        sessionPool.setTestOnBorrow(testOnBorrow);
-        sessionPool.setTestOnReturn(testOnReturn);
-        sessionPool.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
-        sessionPool.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
-        sessionPool.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
-        sessionPool.setTestWhileIdle(testWhileIdle);
 
-        if (initialSize > 0) {
-            try {
-                PoolUtils.prefill(sessionPool, initialSize);
-            } catch (Exception e) {
-                throw new RepositoryException("Failed to prefill initial sessions.", e);
+        if (sessionPool != null) {
+            sessionPool.setMaxActive(maxActive);
+            sessionPool.setMaxIdle(maxIdle);
+            sessionPool.setMinIdle(minIdle);
+            sessionPool.setWhenExhaustedAction(whenExhaustedActionFlag);
+            sessionPool.setMaxWait(maxWait);
+            sessionPool.setTestOnBorrow(testOnBorrow);
+            sessionPool.setTestOnReturn(testOnReturn);
+            sessionPool.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
+            sessionPool.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
+            sessionPool.setTestWhileIdle(testWhileIdle);
+            if (sessionPool.getTimeBetweenEvictionRunsMillis() != timeBetweenEvictionRunsMillis) {
+                sessionPool.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
             }
         }
     }
@@ -696,10 +718,7 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
      */
     public void setMaxActive(int maxActive) {
         this.maxActive = maxActive;
-
-        if (sessionPool != null) {
-            sessionPool.setMaxActive(maxActive);
-        }
+        configureSessionPool();
     }
 
     /**
@@ -723,10 +742,7 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
      */
     public void setMaxIdle(int maxIdle) {
         this.maxIdle = maxIdle;
-
-        if (sessionPool != null) {
-            sessionPool.setMaxIdle(maxIdle);
-        }
+        configureSessionPool();
     }
 
     /**
@@ -747,10 +763,7 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
      */
     public void setMinIdle(int minIdle) {
         this.minIdle = minIdle;
-
-        if (sessionPool != null) {
-            sessionPool.setMinIdle(minIdle);
-        }
+        configureSessionPool();
     }
 
     /**
@@ -801,10 +814,7 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
      */
     public void setMaxWait(long maxWait) {
         this.maxWait = maxWait;
-
-        if (sessionPool != null) {
-            sessionPool.setMaxWait(maxWait);
-        }
+        configureSessionPool();
     }
 
     /**
@@ -829,10 +839,7 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
      */
     public void setTestOnBorrow(boolean testOnBorrow) {
         this.testOnBorrow = testOnBorrow;
-
-        if (sessionPool != null) {
-            sessionPool.setTestOnBorrow(testOnBorrow);
-        }
+        configureSessionPool();
     }
 
     /**
@@ -856,10 +863,7 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
      */
     public void setTestOnReturn(boolean testOnReturn) {
         this.testOnReturn = testOnReturn;
-
-        if (sessionPool != null) {
-            sessionPool.setTestOnReturn(testOnReturn);
-        }
+        configureSessionPool();
     }
 
     /**
@@ -881,10 +885,7 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
      */
     public void setTimeBetweenEvictionRunsMillis(long timeBetweenEvictionRunsMillis) {
         this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
-
-        if (sessionPool != null) {
-            sessionPool.setTimeBetweenEvictionRunsMillis(timeBetweenEvictionRunsMillis);
-        }
+        configureSessionPool();
     }
 
     /**
@@ -907,10 +908,7 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
      */
     public void setNumTestsPerEvictionRun(int numTestsPerEvictionRun) {
         this.numTestsPerEvictionRun = numTestsPerEvictionRun;
-
-        if (sessionPool != null) {
-            sessionPool.setNumTestsPerEvictionRun(numTestsPerEvictionRun);
-        }
+        configureSessionPool();
     }
 
     /**
@@ -932,10 +930,7 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
      */
     public void setMinEvictableIdleTimeMillis(long minEvictableIdleTimeMillis) {
         this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
-
-        if (sessionPool != null) {
-            sessionPool.setMinEvictableIdleTimeMillis(minEvictableIdleTimeMillis);
-        }
+        configureSessionPool();
     }
 
     /**
@@ -959,10 +954,7 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
      */
     public void setTestWhileIdle(boolean testWhileIdle) {
         this.testWhileIdle = testWhileIdle;
-
-        if (sessionPool != null) {
-            sessionPool.setTestWhileIdle(testWhileIdle);
-        }
+        configureSessionPool();
     }
 
     /**
@@ -1036,6 +1028,38 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
      */
     public void setWhenExhaustedAction(String whenExhaustedAction) {
         this.whenExhaustedAction = (whenExhaustedAction != null ? whenExhaustedAction.trim() : WHEN_EXHAUSTED_BLOCK);
+        configureSessionPool();
+    }
+
+    public String getPoolType() {
+        return poolType;
+    }
+
+    /**
+     * <p>Sets the {@link #poolType}.</p>
+     * <p>
+     * Note: this method has no effect once the pool has been initialized.</p>
+     *
+     * @param poolType {@link PoolingRepository#POOL_TYPE_GENERIC} or {@link PoolingRepository#POOL_TYPE_LOCK_FREE}
+     */
+    public void setPoolType(String poolType) {
+        this.poolType = (poolType != null ? poolType.trim() : POOL_TYPE_GENERIC);
+    }
+
+    public double getBorrowWaitTimeMillis50thPercentile() {
+        return borrowWaitTimes.getPercentileMillis(50);
+    }
+
+    public double getBorrowWaitTimeMillis95thPercentile() {
+        return borrowWaitTimes.getPercentileMillis(95);
+    }
+
+    public double getBorrowWaitTimeMillis99thPercentile() {
+        return borrowWaitTimes.getPercentileMillis(99);
+    }
+
+    public void resetBorrowWaitTimes() {
+        borrowWaitTimes.reset();
     }
     
     public PoolingCounter getPoolingCounter() {
@@ -1055,6 +1079,16 @@ public class BasicPoolingRepository implements PoolingRepository, PoolingReposit
         }
     }
 
+    /**
+     * The commons-pool {@link GenericObjectPool}, which already has all the setters of {@link ConfigurableObjectPool}
+     */
+    private static class ConfigurableGenericObjectPool extends GenericObjectPool implements ConfigurableObjectPool {
+
+        private ConfigurableGenericObjectPool(final PoolableObjectFactory factory) {
+            super(factory);
+        }
+    }
+
     private class SessionFactory implements PoolableObjectFactory {
         
         public void activateObject(Object object) throws RepositoryException {
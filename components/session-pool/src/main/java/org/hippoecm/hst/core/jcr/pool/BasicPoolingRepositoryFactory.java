@@ -53,11 +53,15 @@ import javax.naming.spi.ObjectFactory;
  *             timeBetweenEvictionRunsMillis="60000"
  *             numTestsPerEvictionRun="1"
  *             minEvictableIdleTimeMillis="60000"
- *             refreshOnPassivate="true" />
+ *             refreshOnPassivate="true"
+ *             poolType="generic" />
  *   ...
  * &lt;/Context>
  * </pre></code>
  * <BR/>
+ * The <code>poolType</code> is either <code>generic</code> (default) or <code>lockfree</code>, see
+ * {@link PoolingRepository#POOL_TYPE_LOCK_FREE}.
+ * <BR/>
  * In addition, you should modify the web application deployment descriptor (/WEB-INF/web.xml) to
  * declare the JNDI name under which you will look up preconfigured repository in the above like the following:
  * <code><pre>
@@ -158,6 +162,8 @@ public class BasicPoolingRepositoryFactory implements ObjectFactory {
                 poolingRepository.setMaxRefreshIntervalOnPassivate(Long.parseLong(value));
             } else if (type.equals("whenExhaustedAction")) {
                 poolingRepository.setWhenExhaustedAction(value);
+            } else if (type.equals("poolType")) {
+                poolingRepository.setPoolType(value);
             }
         }
 
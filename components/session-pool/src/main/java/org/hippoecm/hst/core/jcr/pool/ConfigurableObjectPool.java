@@ -0,0 +1,51 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.jcr.pool;
+
+import org.apache.commons.pool.ObjectPool;
+import org.apache.commons.pool.impl.GenericObjectPool;
+
+/**
+ * The subset of the {@link GenericObjectPool} configuration that {@link BasicPoolingRepository} applies to its session
+ * pool, whichever the type of the pool.
+ */
+interface ConfigurableObjectPool extends ObjectPool {
+
+    void setMaxActive(int maxActive);
+
+    void setMaxIdle(int maxIdle);
+
+    void setMinIdle(int minIdle);
+
+    void setWhenExhaustedAction(byte whenExhaustedAction);
+
+    void setMaxWait(long maxWait);
+
+    void setTestOnBorrow(boolean testOnBorrow);
+
+    void setTestOnReturn(boolean testOnReturn);
+
+    void setTestWhileIdle(boolean testWhileIdle);
+
+    void setNumTestsPerEvictionRun(int numTestsPerEvictionRun);
+
+    void setMinEvictableIdleTimeMillis(long minEvictableIdleTimeMillis);
+
+    long getTimeBetweenEvictionRunsMillis();
+
+    void setTimeBetweenEvictionRunsMillis(long timeBetweenEvictionRunsMillis);
+
+}
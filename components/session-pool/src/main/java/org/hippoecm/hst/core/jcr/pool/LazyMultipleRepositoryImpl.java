@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -19,12 +19,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
 
 import javax.jcr.Credentials;
@@ -39,24 +43,43 @@ import org.hippoecm.hst.core.ResourceVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl {
+/**
+ * {@link MultipleRepository} that creates a session pool on demand for credentials it does not have a pool for yet.
+ * <p>
+ * Only threads that request a session for the same credentials wait for each other while a pool gets created. Pools
+ * of user IDs matching the disposable user ID pattern are closed by a background thread once they are not in use any
+ * more, which only competes with the logins on that same pool.
+ * </p>
+ */
+public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl implements LazyMultipleRepositoryMXBean {
     
     private static final Logger log = LoggerFactory.getLogger(LazyMultipleRepositoryImpl.class);
     
-    private Map<String, Map<String, PoolingRepository>> repositoriesMapByCredsDomain = Collections.synchronizedMap(new HashMap<String, Map<String, PoolingRepository>>());
+    private final ConcurrentMap<String, Map<String, PoolingRepository>> repositoriesMapByCredsDomain = new ConcurrentHashMap<String, Map<String, PoolingRepository>>();
+
+    // the lock to wait for while another thread creates the pool for the same credentials
+    private final ConcurrentMap<CredentialsWrapper, Object> creationLocks = new ConcurrentHashMap<CredentialsWrapper, Object>();
+
+    // logins on a disposable pool hold the read lock, the disposer only marks the pool for disposal with the write lock
+    private final Map<PoolingRepository, ReadWriteLock> disposalLocks = new ConcurrentHashMap<PoolingRepository, ReadWriteLock>();
     
-    private BasicPoolingRepositoryFactory poolingRepositoryFactory;
-    private Map<String, String> defaultConfigMap;
+    private volatile BasicPoolingRepositoryFactory poolingRepositoryFactory;
+    private volatile Map<String, String> defaultConfigMap;
     private boolean pooledSessionLifecycleManagementActive = true;
     private String credentialsDomainSeparator = String.valueOf('\uFFFF');
     
     private long timeBetweenEvictionRunsMillis;
     private Pattern disposableUserIDPatternObject;
-    private InactiveRepositoryDisposer inactiveRepositoryDisposer;
+    private volatile InactiveRepositoryDisposer inactiveRepositoryDisposer;
     
-    private ResourceLifecycleManagement [] lazyResourceLifecycleManagements;
+    private volatile ResourceLifecycleManagement [] lazyResourceLifecycleManagements;
     
     private ThreadLocal<Set<String>> tlCurrentCredsDomains = new ThreadLocal<Set<String>>();
+
+    private final AtomicLong createdRepositoryCount = new AtomicLong();
+    private final AtomicLong disposedRepositoryCount = new AtomicLong();
+    private final AtomicLong totalCreationTimeNanos = new AtomicLong();
+    private final AtomicLong maxCreationTimeNanos = new AtomicLong();
     
     public LazyMultipleRepositoryImpl(Credentials defaultCredentials, Map<String, String> defaultConfigMap) {
         super(defaultCredentials);
@@ -76,7 +99,7 @@ public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl {
         this.defaultConfigMap = trimWhiteSpaceValues(defaultConfigMap);
     }
     
-    public synchronized void setPoolingRepositoryFactory(BasicPoolingRepositoryFactory poolingRepositoryFactory) {
+    public void setPoolingRepositoryFactory(BasicPoolingRepositoryFactory poolingRepositoryFactory) {
         this.poolingRepositoryFactory = poolingRepositoryFactory;
     }
 
@@ -87,7 +110,7 @@ public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl {
         return Collections.unmodifiableMap(defaultConfigMap);
     }
 
-    public synchronized void setDefaultConfigMap(Map<String, String> defaultConfigMap) {
+    public void setDefaultConfigMap(Map<String, String> defaultConfigMap) {
         this.defaultConfigMap = trimWhiteSpaceValues(defaultConfigMap);
     }
 
@@ -132,44 +155,17 @@ public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl {
     }
     
     public Map<String, Map<String, PoolingRepository>> cloneRepositoriesMapByCredsDomain() {
-        Map<String, Map<String, PoolingRepository>> clonedRepositoriesMapByCredsDomain = new HashMap<String, Map<String, PoolingRepository>>();
-        
-        List<String> credsDomains = new LinkedList<String>();
-        
-        if (repositoriesMapByCredsDomain == null || repositoriesMapByCredsDomain.isEmpty()) {
+        if (repositoriesMapByCredsDomain.isEmpty()) {
             return Collections.emptyMap();
         }
         
-        synchronized (repositoriesMapByCredsDomain) {
-            Iterator<String> it = repositoriesMapByCredsDomain.keySet().iterator();
-            while (it.hasNext()) {
-                credsDomains.add(it.next());
-            }
-        }
+        Map<String, Map<String, PoolingRepository>> clonedRepositoriesMapByCredsDomain = new HashMap<String, Map<String, PoolingRepository>>();
         
-        for (String credsDomain : credsDomains) {
-            Map<String, PoolingRepository> repoMap = repositoriesMapByCredsDomain.get(credsDomain);
+        for (Map.Entry<String, Map<String, PoolingRepository>> entry : repositoriesMapByCredsDomain.entrySet()) {
+            Map<String, PoolingRepository> repoMap = entry.getValue();
             
-            if (repoMap != null && !repoMap.isEmpty()) {
-                List<String> userIDs = new LinkedList<String>();
-                
-                synchronized (repoMap) {
-                    Iterator<String> it = repoMap.keySet().iterator();
-                    while (it.hasNext()) {
-                        userIDs.add(it.next());
-                    }
-                }
-                
-                Map<String, PoolingRepository> clonedRepoMap = new HashMap<String, PoolingRepository>();
-                
-                for (String userID : userIDs) {
-                    PoolingRepository repo = repoMap.get(userID);
-                    if (repo != null) {
-                        clonedRepoMap.put(userID, repo);
-                    }
-                }
-                
-                clonedRepositoriesMapByCredsDomain.put(credsDomain, clonedRepoMap);
+            if (!repoMap.isEmpty()) {
+                clonedRepositoriesMapByCredsDomain.put(entry.getKey(), new HashMap<String, PoolingRepository>(repoMap));
             }
         }
         
@@ -189,14 +185,7 @@ public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl {
                     session = repository.login(credentialsWrapper.getCredentials());
                 } else {
                     // closable pool. get session only if the pool is not marked to be closing.
-                    if (!repository.isMarkedForDisposal()) {
-                        synchronized (this) {
-                            if (!repository.isMarkedForDisposal()) {
-                                session = repository.login(credentialsWrapper.getCredentials());
-                                setCurrentThreadRepository(repository);
-                            }
-                        }
-                    }
+                    session = loginUnlessMarkedForDisposal(repository, credentialsWrapper);
                 }
             }
             
@@ -219,26 +208,83 @@ public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl {
         return session;
     }
 
-    private synchronized Session getSessionFromRepositoryCreatedOnDemand(CredentialsWrapper credentialsWrapper) throws Exception {
-        Session session;
-        PoolingRepository repository = (PoolingRepository) repositoryMap.get(credentialsWrapper);
+    /**
+     * @return a session of the disposable <code>repository</code>, or <code>null</code> when the pool is (being)
+     * disposed
+     */
+    private Session loginUnlessMarkedForDisposal(PoolingRepository repository, CredentialsWrapper credentialsWrapper) throws RepositoryException {
+        ReadWriteLock disposalLock = disposalLocks.get(repository);
+        
+        if (disposalLock == null) {
+            // already disposed
+            return null;
+        }
         
-        if (repository != null && !repository.isMarkedForDisposal()) {
-            session = repository.login(credentialsWrapper.getCredentials());
+        disposalLock.readLock().lock();
+        try {
+            if (repository.isMarkedForDisposal()) {
+                return null;
+            }
+            Session session = repository.login(credentialsWrapper.getCredentials());
             setCurrentThreadRepository(repository);
             return session;
+        } finally {
+            disposalLock.readLock().unlock();
         }
+    }
+
+    private Session getSessionFromRepositoryCreatedOnDemand(CredentialsWrapper credentialsWrapper) throws Exception {
+        Object creationLock = new Object();
+        Object existingCreationLock = creationLocks.putIfAbsent(credentialsWrapper, creationLock);
+        
+        if (existingCreationLock != null) {
+            creationLock = existingCreationLock;
+        }
+        
+        try {
+            synchronized (creationLock) {
+                return createRepositoryAndLogin(credentialsWrapper);
+            }
+        } finally {
+            // threads that obtain a new lock find the created pool in the repositoryMap
+            creationLocks.remove(credentialsWrapper, creationLock);
+        }
+    }
+
+    private Session createRepositoryAndLogin(CredentialsWrapper credentialsWrapper) throws Exception {
+        Session session;
+        PoolingRepository repository = (PoolingRepository) repositoryMap.get(credentialsWrapper);
+        
+        if (repository != null) {
+            // created by another thread in the meantime
+            if (!repository.isDisposableWhenNotInUse()) {
+                session = repository.login(credentialsWrapper.getCredentials());
+                setCurrentThreadRepository(repository);
+                return session;
+            }
+            
+            session = loginUnlessMarkedForDisposal(repository, credentialsWrapper);
+            
+            if (session != null) {
+                return session;
+            }
+        }
+        
+        final long start = System.nanoTime();
         
         Map<String, String> configMap = new HashMap<String, String>(defaultConfigMap);
         String userID = credentialsWrapper.getUserID();
         configMap.put("defaultCredentialsUserID", userID);
         configMap.put("defaultCredentialsPassword", credentialsWrapper.getPassword());
         
-        if (poolingRepositoryFactory == null) {
-            poolingRepositoryFactory = new BasicPoolingRepositoryFactory();
+        BasicPoolingRepositoryFactory factory = poolingRepositoryFactory;
+        
+        if (factory == null) {
+            factory = new BasicPoolingRepositoryFactory();
+            poolingRepositoryFactory = factory;
         }
         
-        repository = poolingRepositoryFactory.getObjectInstanceByConfigMap(configMap);
+        repository = factory.getObjectInstanceByConfigMap(configMap);
         
         if (disposableUserIDPatternObject != null && disposableUserIDPatternObject.matcher(userID).matches()) {
             ((BasicPoolingRepository) repository).setDisposableWhenNotInUse(true);
@@ -258,29 +304,121 @@ public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl {
         // before registering this new created repository into the maps.
         session = repository.login(credentialsWrapper.getCredentials());
         setCurrentThreadRepository(repository);
-
-        String credentialsDomain = StringUtils.substringAfter(userID, credentialsDomainSeparator);
-        Map<String, PoolingRepository> credsDomainRepos = repositoriesMapByCredsDomain.get(credentialsDomain);
         
-        if (credsDomainRepos == null) {
-            credsDomainRepos = Collections.synchronizedMap(new HashMap<String, PoolingRepository>());
+        if (repository.isDisposableWhenNotInUse()) {
+            disposalLocks.put(repository, new ReentrantReadWriteLock());
         }
+
+        String credentialsDomain = StringUtils.substringAfter(userID, credentialsDomainSeparator);
+        Map<String, PoolingRepository> credsDomainRepos;
         
-        credsDomainRepos.put(userID, repository);
-        
-        repositoriesMapByCredsDomain.put(credentialsDomain, credsDomainRepos);
+        do {
+            credsDomainRepos = repositoriesMapByCredsDomain.get(credentialsDomain);
+            
+            if (credsDomainRepos == null) {
+                repositoriesMapByCredsDomain.putIfAbsent(credentialsDomain, new ConcurrentHashMap<String, PoolingRepository>());
+                credsDomainRepos = repositoriesMapByCredsDomain.get(credentialsDomain);
+            }
+            
+            credsDomainRepos.put(userID, repository);
+            // the disposer removes the map of a credentials domain once it is empty, add it again if that just happened
+        } while (repositoriesMapByCredsDomain.get(credentialsDomain) != credsDomainRepos);
         
         lazyResourceLifecycleManagements = null;
         repositoryMap.put(credentialsWrapper, repository);
         
+        final long creationTimeNanos = System.nanoTime() - start;
+        createdRepositoryCount.incrementAndGet();
+        totalCreationTimeNanos.addAndGet(creationTimeNanos);
+        maxCreationTimeNanos.accumulateAndGet(creationTimeNanos, Math::max);
+        
         if (timeBetweenEvictionRunsMillis > 0L && inactiveRepositoryDisposer == null) {
-            inactiveRepositoryDisposer = new InactiveRepositoryDisposer();
-            inactiveRepositoryDisposer.start();
+            startInactiveRepositoryDisposer();
         }
         
         return session;
     }
 
+    private synchronized void startInactiveRepositoryDisposer() {
+        if (inactiveRepositoryDisposer == null) {
+            InactiveRepositoryDisposer disposer = new InactiveRepositoryDisposer();
+            disposer.start();
+            inactiveRepositoryDisposer = disposer;
+        }
+    }
+
+    @Override
+    public int getRepositoryCount() {
+        int count = 0;
+        for (Map<String, PoolingRepository> repoMap : repositoriesMapByCredsDomain.values()) {
+            count += repoMap.size();
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Integer> getRepositoryCountPerCredentialsDomain() {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (Map.Entry<String, Map<String, PoolingRepository>> entry : repositoriesMapByCredsDomain.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().size());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Integer> getActiveSessionsPerUser() {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (Map<String, PoolingRepository> repoMap : repositoriesMapByCredsDomain.values()) {
+            for (Map.Entry<String, PoolingRepository> entry : repoMap.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().getNumActive());
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Integer> getIdleSessionsPerUser() {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (Map<String, PoolingRepository> repoMap : repositoriesMapByCredsDomain.values()) {
+            for (Map.Entry<String, PoolingRepository> entry : repoMap.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().getNumIdle());
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public long getCreatedRepositoryCount() {
+        return createdRepositoryCount.get();
+    }
+
+    @Override
+    public long getDisposedRepositoryCount() {
+        return disposedRepositoryCount.get();
+    }
+
+    @Override
+    public double getAverageCreationTimeMillis() {
+        long created = createdRepositoryCount.get();
+        if (created == 0L) {
+            return 0.0;
+        }
+        return (double) totalCreationTimeNanos.get() / created / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public double getMaxCreationTimeMillis() {
+        return (double) maxCreationTimeNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public void resetStatistics() {
+        createdRepositoryCount.set(0L);
+        disposedRepositoryCount.set(0L);
+        totalCreationTimeNanos.set(0L);
+        maxCreationTimeNanos.set(0L);
+    }
+
     public synchronized void close() {
         super.close();
         if (inactiveRepositoryDisposer != null) {
@@ -387,13 +525,11 @@ public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl {
                         continue;
                     }
                     
-                    synchronized (repoMap) {
-                        for (PoolingRepository repository : repoMap.values()) {
-                            ResourceLifecycleManagement resourceLifecycleManagement = repository.getResourceLifecycleManagement();
-                            
-                            if (resourceLifecycleManagement != null) {
-                                resourceLifecycleManagements.add(resourceLifecycleManagement);
-                            }
+                    for (PoolingRepository repository : repoMap.values()) {
+                        ResourceLifecycleManagement resourceLifecycleManagement = repository.getResourceLifecycleManagement();
+                        
+                        if (resourceLifecycleManagement != null) {
+                            resourceLifecycleManagements.add(resourceLifecycleManagement);
                         }
                     }
                 }
@@ -427,15 +563,13 @@ public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl {
             stopped = interrupted;
             
             while (!stopped) {
-                Map<String, Map<String, PoolingRepository>> clonedRepositoriesMapByCredsDomain = cloneRepositoriesMapByCredsDomain();
-                
                 List<PoolingRepository> reposToClose = new ArrayList<PoolingRepository>();
                 
-                for (Map.Entry<String, Map<String, PoolingRepository>> entry1 : clonedRepositoriesMapByCredsDomain.entrySet()) {
+                for (Map.Entry<String, Map<String, PoolingRepository>> entry1 : repositoriesMapByCredsDomain.entrySet()) {
                     String credsDomain = entry1.getKey();
-                    Map<String, PoolingRepository> clonedRepoMap = entry1.getValue();
+                    Map<String, PoolingRepository> repoMap = entry1.getValue();
                     
-                    for (Map.Entry<String, PoolingRepository> entry2: clonedRepoMap.entrySet()) {
+                    for (Map.Entry<String, PoolingRepository> entry2: repoMap.entrySet()) {
                         String userID = entry2.getKey();
                         BasicPoolingRepository poolingRepo = (BasicPoolingRepository) entry2.getValue();
                         
@@ -444,22 +578,28 @@ public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl {
                         }
                         
                         if (poolingRepo.getNumIdle() <= 0 && poolingRepo.getNumActive() <= 0) {
-                            synchronized (LazyMultipleRepositoryImpl.this) {
+                            ReadWriteLock disposalLock = disposalLocks.get(poolingRepo);
+                            
+                            // do not wait for threads logging in to the pool, it is in use then anyway
+                            if (disposalLock == null || !disposalLock.writeLock().tryLock()) {
+                                continue;
+                            }
+                            
+                            try {
                                 if (poolingRepo.getNumIdle() <= 0 && poolingRepo.getNumActive() <= 0) {
                                     poolingRepo.setMarkedForDisposal(true);
+                                    disposalLocks.remove(poolingRepo);
                                     removeRepository(poolingRepo.getDefaultCredentials());
                                     reposToClose.add(poolingRepo);
                                     
-                                    Map<String, PoolingRepository> repoMap = repositoriesMapByCredsDomain.get(credsDomain);
+                                    repoMap.remove(userID, poolingRepo);
                                     
-                                    if (repoMap != null) {
-                                        repoMap.remove(userID);
-                                        
-                                        if (repoMap.isEmpty()) {
-                                            repositoriesMapByCredsDomain.remove(credsDomain);
-                                        }
+                                    if (repoMap.isEmpty()) {
+                                        repositoriesMapByCredsDomain.remove(credsDomain, repoMap);
                                     }
                                 }
+                            } finally {
+                                disposalLock.writeLock().unlock();
                             }
                         }
                     }
@@ -468,6 +608,7 @@ public class LazyMultipleRepositoryImpl extends MultipleRepositoryImpl {
                 for (PoolingRepository repo : reposToClose) {
                     try {
                         repo.close();
+                        disposedRepositoryCount.incrementAndGet();
                     } catch (Exception e) {
                         if (log.isDebugEnabled()) {
                             log.warn("Failed to close an inactive pooling repository.", e);
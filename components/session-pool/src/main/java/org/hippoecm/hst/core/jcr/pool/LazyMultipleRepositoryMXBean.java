@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.jcr.pool;
+
+import java.util.Map;
+
+/**
+ * Statistics of the session pools that a {@link LazyMultipleRepositoryImpl} creates on demand
+ */
+public interface LazyMultipleRepositoryMXBean {
+
+    /**
+     * @return the number of session pools that are currently created on demand
+     */
+    int getRepositoryCount();
+
+    /**
+     * @return the number of session pools that are currently created on demand per credentials domain
+     */
+    Map<String, Integer> getRepositoryCountPerCredentialsDomain();
+
+    /**
+     * @return the number of active sessions per user ID of the session pools created on demand
+     */
+    Map<String, Integer> getActiveSessionsPerUser();
+
+    /**
+     * @return the number of idle sessions per user ID of the session pools created on demand
+     */
+    Map<String, Integer> getIdleSessionsPerUser();
+
+    /**
+     * @return the number of session pools created on demand since the start or the last reset
+     */
+    long getCreatedRepositoryCount();
+
+    /**
+     * @return the number of inactive session pools disposed since the start or the last reset
+     */
+    long getDisposedRepositoryCount();
+
+    /**
+     * @return the average time it took to create a session pool including its first session, since the start or the
+     * last reset
+     */
+    double getAverageCreationTimeMillis();
+
+    /**
+     * @return the longest time it took to create a session pool including its first session, since the start or the
+     * last reset
+     */
+    double getMaxCreationTimeMillis();
+
+    void resetStatistics();
+}
@@ -0,0 +1,620 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.jcr.pool;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.pool.ObjectPool;
+import org.apache.commons.pool.PoolableObjectFactory;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ *     {@link ObjectPool} implementation without global locks on the borrow and return paths, as an alternative for the
+ *     commons-pool {@link GenericObjectPool} whose borrow and return are synchronized on the pool. It supports the
+ *     subset of the {@link GenericObjectPool} configuration used by {@link BasicPoolingRepository} with the same
+ *     semantics: <code>maxActive</code>, <code>maxIdle</code>, <code>minIdle</code>, <code>whenExhaustedAction</code>,
+ *     <code>maxWait</code>, <code>testOnBorrow</code>, <code>testOnReturn</code>, <code>testWhileIdle</code> and the
+ *     idle object eviction runs.
+ * </p>
+ * <p>
+ *     Idle objects are kept in a lock-free deque, most recently returned first. Every thread remembers the object it
+ *     returned last and tries to claim that one first on its next borrow, which for a pool of JCR sessions also
+ *     improves the chance of hitting a warm session cache. Threads only reference that object weakly, such that worker
+ *     threads do not keep the objects of a closed pool reachable. An object is claimed by a compare-and-set of its state,
+ *     hence an object can be referenced both from a thread and from the deque without ever being handed out twice.
+ *     The <code>maxActive</code> limit is enforced with a non-fair {@link Semaphore}.
+ * </p>
+ */
+public class LockFreeSessionPool implements ConfigurableObjectPool {
+
+    private static final Logger log = LoggerFactory.getLogger(LockFreeSessionPool.class);
+
+    private static final int IDLE = 0;
+    private static final int IN_USE = 1;
+    private static final int EVICTING = 2;
+    private static final int DESTROYED = 3;
+
+    /**
+     * The maximum time a thread blocks on the pool before it checks whether the pool has been closed
+     */
+    private static final long MAX_WAIT_SLICE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static Timer evictionTimer;
+    private static int evictionTimerUsage;
+
+    private final PoolableObjectFactory factory;
+
+    private final ConcurrentLinkedDeque<PooledEntry> idleEntries = new ConcurrentLinkedDeque<>();
+    private final ConcurrentHashMap<IdentityKey, PooledEntry> entries = new ConcurrentHashMap<>();
+    private final ThreadLocal<WeakReference<PooledEntry>> lastReturnedEntry = new ThreadLocal<>();
+    private final AtomicInteger numActive = new AtomicInteger();
+    private final AtomicInteger numIdle = new AtomicInteger();
+    private final ResizableSemaphore activePermits;
+
+    private volatile boolean closed;
+
+    private volatile int maxActive = GenericObjectPool.DEFAULT_MAX_ACTIVE;
+    private volatile int maxIdle = GenericObjectPool.DEFAULT_MAX_IDLE;
+    private volatile int minIdle = GenericObjectPool.DEFAULT_MIN_IDLE;
+    private volatile byte whenExhaustedAction = GenericObjectPool.DEFAULT_WHEN_EXHAUSTED_ACTION;
+    private volatile long maxWait = GenericObjectPool.DEFAULT_MAX_WAIT;
+    private volatile boolean testOnBorrow = GenericObjectPool.DEFAULT_TEST_ON_BORROW;
+    private volatile boolean testOnReturn = GenericObjectPool.DEFAULT_TEST_ON_RETURN;
+    private volatile boolean testWhileIdle = GenericObjectPool.DEFAULT_TEST_WHILE_IDLE;
+    private volatile int numTestsPerEvictionRun = GenericObjectPool.DEFAULT_NUM_TESTS_PER_EVICTION_RUN;
+    private volatile long minEvictableIdleTimeMillis = GenericObjectPool.DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS;
+    private long timeBetweenEvictionRunsMillis = GenericObjectPool.DEFAULT_TIME_BETWEEN_EVICTION_RUNS_MILLIS;
+    private TimerTask evictor;
+
+    public LockFreeSessionPool(final PoolableObjectFactory factory) {
+        this.factory = factory;
+        activePermits = new ResizableSemaphore(permitLimit(maxActive));
+    }
+
+    public Object borrowObject() throws Exception {
+        assertOpen();
+        final boolean holdsPermit = acquirePermit();
+        numActive.incrementAndGet();
+        try {
+            final PooledEntry entry = claimOrCreate();
+            entry.holdsPermit = holdsPermit;
+            return entry.object;
+        } catch (Exception | Error e) {
+            numActive.decrementAndGet();
+            if (holdsPermit) {
+                activePermits.release();
+            }
+            throw e;
+        }
+    }
+
+    public void returnObject(final Object object) throws Exception {
+        final PooledEntry entry = getEntry(object);
+        if (entry == null) {
+            log.warn("Destroying object '{}' which has not been borrowed from this pool.", object);
+            factory.destroyObject(object);
+            return;
+        }
+        if (!entry.state.compareAndSet(IN_USE, EVICTING)) {
+            throw new IllegalStateException("Object has already been returned to this pool or is invalid.");
+        }
+        // read before the entry becomes idle and can be claimed by another thread
+        final boolean holdsPermit = entry.holdsPermit;
+
+        try {
+            boolean keep = !closed;
+            if (keep && testOnReturn && !factory.validateObject(object)) {
+                keep = false;
+            }
+            if (keep) {
+                try {
+                    factory.passivateObject(object);
+                } catch (Exception e) {
+                    keep = false;
+                }
+            }
+            if (keep && reserveIdleSlot()) {
+                entry.lastReturned = System.currentTimeMillis();
+                makeIdle(entry, false);
+                setLastReturnedEntry(entry);
+            } else {
+                destroy(entry);
+            }
+        } finally {
+            releaseActive(holdsPermit);
+        }
+    }
+
+    public void invalidateObject(final Object object) throws Exception {
+        final PooledEntry entry = getEntry(object);
+        if (entry == null) {
+            factory.destroyObject(object);
+            return;
+        }
+        if (entry.state.compareAndSet(IN_USE, EVICTING)) {
+            releaseActive(entry.holdsPermit);
+        }
+        destroy(entry);
+    }
+
+    public void addObject() throws Exception {
+        assertOpen();
+        final PooledEntry entry = create();
+        try {
+            factory.passivateObject(entry.object);
+        } catch (Exception e) {
+            destroy(entry);
+            throw e;
+        }
+        if (reserveIdleSlot()) {
+            entry.lastReturned = System.currentTimeMillis();
+            makeIdle(entry, false);
+        } else {
+            destroy(entry);
+        }
+    }
+
+    public int getNumIdle() {
+        return numIdle.get();
+    }
+
+    public int getNumActive() {
+        return numActive.get();
+    }
+
+    public void clear() {
+        PooledEntry entry;
+        while ((entry = idleEntries.pollFirst()) != null) {
+            entry.queued.set(false);
+            if (entry.state.compareAndSet(IDLE, EVICTING)) {
+                numIdle.decrementAndGet();
+                destroy(entry);
+            }
+        }
+    }
+
+    public void close() {
+        closed = true;
+        setTimeBetweenEvictionRunsMillis(-1L);
+        clear();
+    }
+
+    public void setFactory(final PoolableObjectFactory factory) {
+        throw new UnsupportedOperationException("The factory of a LockFreeSessionPool cannot be replaced.");
+    }
+
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    public synchronized void setMaxActive(final int maxActive) {
+        final int oldLimit = permitLimit(this.maxActive);
+        final int newLimit = permitLimit(maxActive);
+        this.maxActive = maxActive;
+        if (newLimit > oldLimit) {
+            activePermits.release(newLimit - oldLimit);
+        } else if (newLimit < oldLimit) {
+            activePermits.reducePermits(oldLimit - newLimit);
+        }
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public void setMaxIdle(final int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(final int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public byte getWhenExhaustedAction() {
+        return whenExhaustedAction;
+    }
+
+    /**
+     * @param whenExhaustedAction one of {@link GenericObjectPool#WHEN_EXHAUSTED_BLOCK},
+     * {@link GenericObjectPool#WHEN_EXHAUSTED_FAIL} or {@link GenericObjectPool#WHEN_EXHAUSTED_GROW}
+     */
+    public void setWhenExhaustedAction(final byte whenExhaustedAction) {
+        this.whenExhaustedAction = whenExhaustedAction;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(final long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public boolean getTestOnBorrow() {
+        return testOnBorrow;
+    }
+
+    public void setTestOnBorrow(final boolean testOnBorrow) {
+        this.testOnBorrow = testOnBorrow;
+    }
+
+    public boolean getTestOnReturn() {
+        return testOnReturn;
+    }
+
+    public void setTestOnReturn(final boolean testOnReturn) {
+        this.testOnReturn = testOnReturn;
+    }
+
+    public boolean getTestWhileIdle() {
+        return testWhileIdle;
+    }
+
+    public void setTestWhileIdle(final boolean testWhileIdle) {
+        this.testWhileIdle = testWhileIdle;
+    }
+
+    public int getNumTestsPerEvictionRun() {
+        return numTestsPerEvictionRun;
+    }
+
+    public void setNumTestsPerEvictionRun(final int numTestsPerEvictionRun) {
+        this.numTestsPerEvictionRun = numTestsPerEvictionRun;
+    }
+
+    public long getMinEvictableIdleTimeMillis() {
+        return minEvictableIdleTimeMillis;
+    }
+
+    public void setMinEvictableIdleTimeMillis(final long minEvictableIdleTimeMillis) {
+        this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+    }
+
+    public synchronized long getTimeBetweenEvictionRunsMillis() {
+        return timeBetweenEvictionRunsMillis;
+    }
+
+    public synchronized void setTimeBetweenEvictionRunsMillis(final long timeBetweenEvictionRunsMillis) {
+        this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+        if (evictor != null) {
+            cancelEvictor(evictor);
+            evictor = null;
+        }
+        if (timeBetweenEvictionRunsMillis > 0 && !closed) {
+            evictor = new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        evict();
+                    } catch (Exception e) {
+                        log.warn("Failed to evict idle objects from the pool. {}", e.toString());
+                    }
+                }
+            };
+            scheduleEvictor(evictor, timeBetweenEvictionRunsMillis);
+        }
+    }
+
+    /**
+     * Examines <code>numTestsPerEvictionRun</code> idle objects, starting with the ones that have been idle the longest,
+     * destroys the ones that have been idle for more than <code>minEvictableIdleTimeMillis</code> or that fail
+     * validation when <code>testWhileIdle</code> is set and finally creates idle objects up to <code>minIdle</code>.
+     */
+    void evict() throws Exception {
+        if (closed) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final int numTests = getNumTests();
+        final List<PooledEntry> kept = new ArrayList<>();
+        for (int examined = 0; examined < numTests; ) {
+            final PooledEntry entry = idleEntries.pollLast();
+            if (entry == null) {
+                break;
+            }
+            entry.queued.set(false);
+            if (!entry.state.compareAndSet(IDLE, EVICTING)) {
+                // claimed by a thread through its last returned entry, it will be queued again when returned
+                continue;
+            }
+            examined++;
+            numIdle.decrementAndGet();
+
+            boolean evict = minEvictableIdleTimeMillis > 0 && now - entry.lastReturned > minEvictableIdleTimeMillis;
+            if (!evict && testWhileIdle) {
+                try {
+                    factory.activateObject(entry.object);
+                    if (factory.validateObject(entry.object)) {
+                        factory.passivateObject(entry.object);
+                    } else {
+                        evict = true;
+                    }
+                } catch (Exception e) {
+                    evict = true;
+                }
+            }
+            if (evict) {
+                destroy(entry);
+            } else {
+                kept.add(entry);
+            }
+        }
+        // queue the kept entries again as the ones idle the longest, in their original order
+        for (int i = kept.size() - 1; i >= 0; i--) {
+            numIdle.incrementAndGet();
+            makeIdle(kept.get(i), true);
+        }
+        ensureMinIdle();
+    }
+
+    private void ensureMinIdle() throws Exception {
+        while (!closed && numIdle.get() < minIdle
+                && (maxActive < 0 || numActive.get() + numIdle.get() < maxActive)) {
+            addObject();
+        }
+    }
+
+    private int getNumTests() {
+        final int idle = numIdle.get();
+        if (numTestsPerEvictionRun >= 0) {
+            return Math.min(numTestsPerEvictionRun, idle);
+        }
+        return (int) Math.ceil(idle / Math.abs((double) numTestsPerEvictionRun));
+    }
+
+    /**
+     * @return <code>true</code> if a permit was acquired and <code>false</code> if the pool is allowed to grow
+     * beyond <code>maxActive</code>
+     */
+    private boolean acquirePermit() {
+        if (activePermits.tryAcquire()) {
+            return true;
+        }
+        if (whenExhaustedAction == GenericObjectPool.WHEN_EXHAUSTED_GROW) {
+            return false;
+        }
+        if (whenExhaustedAction == GenericObjectPool.WHEN_EXHAUSTED_FAIL) {
+            throw new NoSuchElementException("Pool exhausted");
+        }
+
+        final long wait = maxWait;
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait);
+        try {
+            while (true) {
+                final long slice = wait > 0 ? Math.min(MAX_WAIT_SLICE_NANOS, deadline - System.nanoTime()) : MAX_WAIT_SLICE_NANOS;
+                if (slice > 0 && activePermits.tryAcquire(slice, TimeUnit.NANOSECONDS)) {
+                    if (closed) {
+                        activePermits.release();
+                        throw new IllegalStateException("Pool closed");
+                    }
+                    return true;
+                }
+                if (closed) {
+                    throw new IllegalStateException("Pool closed");
+                }
+                if (wait > 0 && System.nanoTime() - deadline >= 0) {
+                    throw new NoSuchElementException("Timeout waiting for idle object");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NoSuchElementException("Interrupted while waiting for idle object");
+        }
+    }
+
+    private PooledEntry claimOrCreate() throws Exception {
+        while (true) {
+            PooledEntry entry = claimIdle();
+            final boolean created = entry == null;
+            if (created) {
+                entry = create();
+            }
+            try {
+                factory.activateObject(entry.object);
+                if (testOnBorrow && !factory.validateObject(entry.object)) {
+                    throw new Exception("ValidateObject failed");
+                }
+                return entry;
+            } catch (Exception e) {
+                destroy(entry);
+                if (created) {
+                    throw new NoSuchElementException("Could not create a validated object, cause: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private PooledEntry claimIdle() {
+        PooledEntry entry = getLastReturnedEntry();
+        if (entry != null) {
+            if (entry.state.compareAndSet(IDLE, IN_USE)) {
+                numIdle.decrementAndGet();
+                return entry;
+            }
+            if (entry.state.get() == DESTROYED) {
+                lastReturnedEntry.remove();
+            }
+        }
+        while ((entry = idleEntries.pollFirst()) != null) {
+            entry.queued.set(false);
+            if (entry.state.compareAndSet(IDLE, IN_USE)) {
+                numIdle.decrementAndGet();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private PooledEntry create() throws Exception {
+        final PooledEntry entry = new PooledEntry(factory.makeObject());
+        entries.put(new IdentityKey(entry.object), entry);
+        return entry;
+    }
+
+    private PooledEntry getEntry(final Object object) {
+        final PooledEntry entry = getLastReturnedEntry();
+        if (entry != null && entry.object == object) {
+            return entry;
+        }
+        return entries.get(new IdentityKey(object));
+    }
+
+    private PooledEntry getLastReturnedEntry() {
+        final WeakReference<PooledEntry> reference = lastReturnedEntry.get();
+        return reference == null ? null : reference.get();
+    }
+
+    private void setLastReturnedEntry(final PooledEntry entry) {
+        if (getLastReturnedEntry() != entry) {
+            lastReturnedEntry.set(new WeakReference<>(entry));
+        }
+    }
+
+    private boolean reserveIdleSlot() {
+        while (true) {
+            final int idle = numIdle.get();
+            final int max = maxIdle;
+            if (max >= 0 && idle >= max) {
+                return false;
+            }
+            if (numIdle.compareAndSet(idle, idle + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Marks the <code>entry</code> idle and queues it unless it still is in the queue : the idle count must have been
+     * incremented already
+     */
+    private void makeIdle(final PooledEntry entry, final boolean idleLongest) {
+        entry.state.set(IDLE);
+        if (entry.queued.compareAndSet(false, true)) {
+            if (idleLongest) {
+                idleEntries.offerLast(entry);
+            } else {
+                idleEntries.offerFirst(entry);
+            }
+        }
+    }
+
+    private void releaseActive(final boolean holdsPermit) {
+        numActive.decrementAndGet();
+        if (holdsPermit) {
+            activePermits.release();
+        }
+    }
+
+    private void destroy(final PooledEntry entry) {
+        entry.state.set(DESTROYED);
+        entries.remove(new IdentityKey(entry.object));
+        try {
+            factory.destroyObject(entry.object);
+        } catch (Exception e) {
+            log.debug("Failed to destroy object. {}", e.toString());
+        }
+    }
+
+    private void assertOpen() {
+        if (closed) {
+            throw new IllegalStateException("Pool not open");
+        }
+    }
+
+    private static int permitLimit(final int maxActive) {
+        return maxActive < 0 ? Integer.MAX_VALUE : maxActive;
+    }
+
+    private static synchronized void scheduleEvictor(final TimerTask task, final long period) {
+        if (evictionTimer == null) {
+            evictionTimer = new Timer("LockFreeSessionPool-Evictor", true);
+        }
+        evictionTimerUsage++;
+        evictionTimer.schedule(task, period, period);
+    }
+
+    private static synchronized void cancelEvictor(final TimerTask task) {
+        task.cancel();
+        if (--evictionTimerUsage == 0) {
+            evictionTimer.cancel();
+            evictionTimer = null;
+        }
+    }
+
+    private static final class PooledEntry {
+
+        private final Object object;
+        private final AtomicInteger state = new AtomicInteger(IN_USE);
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private volatile boolean holdsPermit;
+        private volatile long lastReturned;
+
+        private PooledEntry(final Object object) {
+            this.object = object;
+        }
+    }
+
+    private static final class IdentityKey {
+
+        private final Object object;
+
+        private IdentityKey(final Object object) {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof IdentityKey && ((IdentityKey) o).object == object;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(object);
+        }
+    }
+
+    private static final class ResizableSemaphore extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        private ResizableSemaphore(final int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(final int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
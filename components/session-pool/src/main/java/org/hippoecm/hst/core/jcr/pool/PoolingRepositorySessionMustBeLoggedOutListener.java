@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2015 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -22,11 +22,12 @@ import javax.jcr.RepositoryException;
 import javax.jcr.observation.Event;
 import javax.jcr.observation.EventIterator;
 
+import org.hippoecm.hst.core.jcr.CoalescableEventListener;
 import org.hippoecm.hst.core.jcr.GenericEventListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class PoolingRepositorySessionMustBeLoggedOutListener extends GenericEventListener {
+public class PoolingRepositorySessionMustBeLoggedOutListener extends GenericEventListener implements CoalescableEventListener {
 
     static Logger log = LoggerFactory.getLogger(PoolingRepositorySessionMustBeLoggedOutListener.class);
 
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -23,10 +23,14 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
 
 import javax.jcr.Credentials;
 import javax.jcr.Repository;
@@ -190,6 +194,52 @@ public class TestLazyMultiplePoolingRepository {
 
         disposableWikiRepo = multipleRepository.getRepositoryByCredentials(disposableWikiCreds);
         assertNull(disposableWikiRepo);
+        assertEquals(1L, ((LazyMultipleRepositoryImpl) multipleRepository).getDisposedRepositoryCount());
+    }
+
+    @Test
+    public void testConcurrentCreationOnDemand() throws Exception {
+        final LazyMultipleRepositoryImpl lazyRepository = (LazyMultipleRepositoryImpl) multipleRepository;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        Thread [] workers = new Thread[8];
+
+        for (int i = 0; i < workers.length; i++) {
+            final SimpleCredentials creds = (i % 2 == 0 ? defaultCreds : wikiCreds);
+            workers[i] = new Thread() {
+                public void run() {
+                    try {
+                        startLatch.await();
+                        Session session = lazyRepository.login(new SimpleCredentials(creds.getUserID(), creds.getPassword()));
+                        session.logout();
+                    } catch (Throwable th) {
+                        failures.add(th);
+                    }
+                }
+            };
+            workers[i].start();
+        }
+
+        startLatch.countDown();
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertTrue("Failures while logging in: " + failures, failures.isEmpty());
+        // only one pool per credentials, whichever thread created it
+        assertEquals(2, multipleRepository.getRepositoryMap().size());
+        assertEquals(2, lazyRepository.getRepositoryCount());
+        assertEquals(2L, lazyRepository.getCreatedRepositoryCount());
+        assertEquals(Integer.valueOf(1), lazyRepository.getRepositoryCountPerCredentialsDomain().get("onehippo.org"));
+        assertEquals(Integer.valueOf(1), lazyRepository.getRepositoryCountPerCredentialsDomain().get("wiki.onehippo.org"));
+        assertEquals(Integer.valueOf(0), lazyRepository.getActiveSessionsPerUser().get(defaultCreds.getUserID()));
+        assertTrue(lazyRepository.getMaxCreationTimeMillis() > 0.0);
+        assertTrue(lazyRepository.getAverageCreationTimeMillis() <= lazyRepository.getMaxCreationTimeMillis());
+
+        lazyRepository.resetStatistics();
+        assertEquals(0L, lazyRepository.getCreatedRepositoryCount());
     }
 
     @Test
@@ -0,0 +1,220 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.core.jcr.pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.pool.BasePoolableObjectFactory;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestLockFreeSessionPool {
+
+    private CountingFactory factory;
+    private LockFreeSessionPool pool;
+
+    @Before
+    public void setUp() {
+        factory = new CountingFactory();
+        pool = new LockFreeSessionPool(factory);
+        pool.setMaxActive(2);
+        pool.setMaxIdle(2);
+        pool.setWhenExhaustedAction(GenericObjectPool.WHEN_EXHAUSTED_FAIL);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void thread_reuses_its_last_returned_object() throws Exception {
+        final Object first = pool.borrowObject();
+        final Object second = pool.borrowObject();
+        pool.returnObject(second);
+        pool.returnObject(first);
+        assertSame(first, pool.borrowObject());
+        assertEquals(1, pool.getNumActive());
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(2, factory.created.get());
+    }
+
+    @Test
+    public void exhausted_pool_fails_or_grows() throws Exception {
+        pool.borrowObject();
+        pool.borrowObject();
+        try {
+            pool.borrowObject();
+            fail("Pool should have been exhausted");
+        } catch (NoSuchElementException expected) {
+        }
+        assertEquals(2, pool.getNumActive());
+
+        pool.setWhenExhaustedAction(GenericObjectPool.WHEN_EXHAUSTED_GROW);
+        final Object grown = pool.borrowObject();
+        assertEquals(3, pool.getNumActive());
+        pool.returnObject(grown);
+        assertEquals(2, pool.getNumActive());
+    }
+
+    @Test
+    public void blocked_borrow_times_out_after_max_wait() throws Exception {
+        pool.setWhenExhaustedAction(GenericObjectPool.WHEN_EXHAUSTED_BLOCK);
+        pool.setMaxWait(50L);
+        pool.borrowObject();
+        pool.borrowObject();
+        final long start = System.currentTimeMillis();
+        try {
+            pool.borrowObject();
+            fail("Borrowing should have timed out");
+        } catch (NoSuchElementException expected) {
+        }
+        assertTrue(System.currentTimeMillis() - start >= 50L);
+    }
+
+    @Test
+    public void returned_objects_beyond_max_idle_are_destroyed() throws Exception {
+        pool.setMaxActive(-1);
+        pool.setMaxIdle(1);
+        final Object first = pool.borrowObject();
+        final Object second = pool.borrowObject();
+        final Object third = pool.borrowObject();
+        pool.returnObject(first);
+        pool.returnObject(second);
+        pool.returnObject(third);
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(2, factory.destroyed.get());
+        assertEquals(3, factory.passivated.get());
+    }
+
+    @Test
+    public void invalid_idle_object_is_replaced_on_borrow() throws Exception {
+        pool.setTestOnBorrow(true);
+        final Object first = pool.borrowObject();
+        pool.returnObject(first);
+        factory.valid.set(false);
+        try {
+            pool.borrowObject();
+            fail("A newly created object that does not validate cannot be borrowed");
+        } catch (NoSuchElementException expected) {
+        }
+        factory.valid.set(true);
+        assertNotSame(first, pool.borrowObject());
+        assertEquals(0, pool.getNumIdle());
+        assertEquals(1, pool.getNumActive());
+    }
+
+    @Test
+    public void eviction_destroys_objects_idle_for_too_long_and_ensures_min_idle() throws Exception {
+        pool.setMinEvictableIdleTimeMillis(1L);
+        pool.setNumTestsPerEvictionRun(-1);
+        pool.setMinIdle(1);
+        final Object first = pool.borrowObject();
+        final Object second = pool.borrowObject();
+        pool.returnObject(first);
+        pool.returnObject(second);
+        Thread.sleep(10L);
+        pool.evict();
+        assertEquals(2, factory.destroyed.get());
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(3, factory.created.get());
+    }
+
+    @Test
+    public void concurrent_borrowers_never_share_an_object() throws Exception {
+        pool.setMaxActive(4);
+        pool.setMaxIdle(4);
+        pool.setWhenExhaustedAction(GenericObjectPool.WHEN_EXHAUSTED_BLOCK);
+        pool.setMaxWait(-1L);
+
+        final Set<Object> inUse = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        final AtomicBoolean shared = new AtomicBoolean();
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(16);
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    for (int j = 0; j < 1000; j++) {
+                        final Object object = pool.borrowObject();
+                        if (!inUse.add(object)) {
+                            shared.set(true);
+                        }
+                        inUse.remove(object);
+                        pool.returnObject(object);
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        done.await();
+
+        assertFalse(shared.get());
+        assertEquals(0, failures.get());
+        assertEquals(0, pool.getNumActive());
+        assertTrue(factory.created.get() - factory.destroyed.get() <= 4);
+    }
+
+    private static class CountingFactory extends BasePoolableObjectFactory {
+
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger destroyed = new AtomicInteger();
+        private final AtomicInteger passivated = new AtomicInteger();
+        private final AtomicBoolean valid = new AtomicBoolean(true);
+
+        @Override
+        public Object makeObject() {
+            created.incrementAndGet();
+            return new Object();
+        }
+
+        @Override
+        public void destroyObject(final Object obj) {
+            destroyed.incrementAndGet();
+        }
+
+        @Override
+        public boolean validateObject(final Object obj) {
+            return valid.get();
+        }
+
+        @Override
+        public void passivateObject(final Object obj) {
+            passivated.incrementAndGet();
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2014 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -19,16 +19,21 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.nodetype.NodeType;
 
 import org.apache.commons.lang.StringUtils;
+import org.hippoecm.hst.cache.CacheDependencies;
 import org.hippoecm.hst.content.beans.NodeAware;
 import org.hippoecm.hst.content.beans.ObjectBeanManagerException;
 import org.hippoecm.hst.content.beans.standard.HippoBean;
+import org.hippoecm.hst.content.beans.standard.HippoDocumentBean;
 import org.hippoecm.hst.service.ServiceFactory;
 import org.hippoecm.repository.api.HippoNodeType;
 import org.hippoecm.repository.util.JcrUtils;
@@ -41,6 +46,11 @@ public class ObjectConverterImpl implements ObjectConverter {
     protected Map<String, Class<? extends HippoBean>> jcrPrimaryNodeTypeBeanPairs;
     protected Map<Class<? extends HippoBean>, String> jcrBeanPrimaryNodeTypePairs;
     protected String [] fallBackJcrNodeTypes;
+
+    /**
+     * Fallback node type resolved per combination of primary and mixin node types, the empty string if there is none
+     */
+    private final ConcurrentMap<String, String> fallBackObjectTypes = new ConcurrentHashMap<>();
     
     public ObjectConverterImpl(Map<String, Class<? extends HippoBean>> jcrPrimaryNodeTypeBeanPairs, String [] fallBackJcrNodeTypes) {
         this.jcrPrimaryNodeTypeBeanPairs = jcrPrimaryNodeTypeBeanPairs;
@@ -160,17 +170,10 @@ public class ObjectConverterImpl implements ObjectConverter {
                     return null;
                 }
                 // no exact match, try a fallback type
-                for (String fallBackJcrPrimaryNodeType : this.fallBackJcrNodeTypes) {
-                    
-                    if(!node.isNodeType(fallBackJcrPrimaryNodeType)) {
-                        continue;
-                    }
-                    // take the first fallback type
+                final String fallBackJcrPrimaryNodeType = getFallBackObjectType(node, jcrPrimaryNodeType);
+                if (fallBackJcrPrimaryNodeType != null) {
                     proxyInterfacesOrDelegateeClass = this.jcrPrimaryNodeTypeBeanPairs.get(fallBackJcrPrimaryNodeType);
-                    if(proxyInterfacesOrDelegateeClass != null) {
-                    	log.debug("No bean found for {}, using fallback class  {} instead", jcrPrimaryNodeType, proxyInterfacesOrDelegateeClass);
-                        break;
-                    }
+                    log.debug("No bean found for {}, using fallback class  {} instead", jcrPrimaryNodeType, proxyInterfacesOrDelegateeClass);
                 }
             }
             
@@ -182,6 +185,7 @@ public class ObjectConverterImpl implements ObjectConverter {
                 if (object instanceof ObjectConverterAware) {
                     ((ObjectConverterAware) object).setObjectConverter(this);
                 }
+                recordCacheDependency(node, object);
                 return object;
             }
             path = node.getPath();
@@ -194,6 +198,23 @@ public class ObjectConverterImpl implements ObjectConverter {
         return null;
     }
 
+    /**
+     * When the current request collects {@link CacheDependencies}, a document depends on its entire handle while any
+     * other bean (for example a folder) only depends on the node itself and its direct children
+     */
+    private void recordCacheDependency(final Node node, final Object object) throws RepositoryException {
+        final CacheDependencies dependencies = CacheDependencies.getCurrent();
+        if (dependencies == null) {
+            return;
+        }
+        final String path = node.getPath();
+        if (object instanceof HippoDocumentBean) {
+            dependencies.addSubtree(StringUtils.substringBeforeLast(path, "/"));
+        } else {
+            dependencies.addNode(path);
+        }
+    }
+
     public String getPrimaryObjectType(Node node) throws ObjectBeanManagerException {
         String jcrPrimaryNodeType;
         String path;
@@ -216,18 +237,11 @@ public class ObjectConverterImpl implements ObjectConverter {
                     return null;
                 }
                 // no exact match, try a fallback type
-                for (String fallBackJcrPrimaryNodeType : this.fallBackJcrNodeTypes) {
-                    
-                    if(!node.isNodeType(fallBackJcrPrimaryNodeType)) {
-                        continue;
-                    }
-                    // take the first fallback type
-                    isObjectType = jcrPrimaryNodeTypeBeanPairs.containsKey(fallBackJcrPrimaryNodeType);
-                    if(isObjectType) {
-                    	log.debug("No primary node type found for {}, using fallback type {} instead", jcrPrimaryNodeType, fallBackJcrPrimaryNodeType);
-                    	jcrPrimaryNodeType = fallBackJcrPrimaryNodeType;
-                        break;
-                    }
+                final String fallBackJcrPrimaryNodeType = getFallBackObjectType(node, jcrPrimaryNodeType);
+                if (fallBackJcrPrimaryNodeType != null) {
+                    log.debug("No primary node type found for {}, using fallback type {} instead", jcrPrimaryNodeType, fallBackJcrPrimaryNodeType);
+                    jcrPrimaryNodeType = fallBackJcrPrimaryNodeType;
+                    isObjectType = true;
                 }
             }
             
@@ -244,6 +258,43 @@ public class ObjectConverterImpl implements ObjectConverter {
         return null;
     }
     
+    /**
+     * Returns the first fallback node type of <code>node</code> that a bean class is mapped to, or <code>null</code> if
+     * there is none. Since that only depends on the node types of <code>node</code>, the outcome is memoized per
+     * combination of primary and mixin node types.
+     */
+    private String getFallBackObjectType(final Node node, final String jcrPrimaryNodeType) throws RepositoryException {
+        if (fallBackJcrNodeTypes == null) {
+            return null;
+        }
+        final String nodeTypesKey = getNodeTypesKey(node, jcrPrimaryNodeType);
+        String objectType = fallBackObjectTypes.get(nodeTypesKey);
+        if (objectType == null) {
+            objectType = "";
+            for (String fallBackJcrPrimaryNodeType : fallBackJcrNodeTypes) {
+                // take the first fallback type
+                if (node.isNodeType(fallBackJcrPrimaryNodeType) && jcrPrimaryNodeTypeBeanPairs.containsKey(fallBackJcrPrimaryNodeType)) {
+                    objectType = fallBackJcrPrimaryNodeType;
+                    break;
+                }
+            }
+            fallBackObjectTypes.putIfAbsent(nodeTypesKey, objectType);
+        }
+        return objectType.isEmpty() ? null : objectType;
+    }
+
+    private static String getNodeTypesKey(final Node node, final String jcrPrimaryNodeType) throws RepositoryException {
+        final NodeType[] mixinNodeTypes = node.getMixinNodeTypes();
+        if (mixinNodeTypes.length == 0) {
+            return jcrPrimaryNodeType;
+        }
+        final StringBuilder key = new StringBuilder(jcrPrimaryNodeType);
+        for (NodeType mixinNodeType : mixinNodeTypes) {
+            key.append(' ').append(mixinNodeType.getName());
+        }
+        return key.toString();
+    }
+
     private void checkUUID(String uuid) throws ObjectBeanManagerException{
         try {
             UUID.fromString(uuid);
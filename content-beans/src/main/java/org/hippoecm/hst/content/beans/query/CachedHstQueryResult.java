@@ -0,0 +1,141 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.content.beans.query;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.hippoecm.hst.content.beans.manager.ObjectConverter;
+import org.hippoecm.hst.content.beans.standard.HippoBeanIterator;
+import org.hippoecm.hst.content.beans.standard.HippoBeanIteratorImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link HstQueryResult} for a {@link HstQueryResultCache.Entry}, which fetches the hits by identifier from the session
+ * of the current request
+ */
+class CachedHstQueryResult implements HstQueryResult {
+
+    private static final Logger log = LoggerFactory.getLogger(CachedHstQueryResult.class);
+
+    private final ObjectConverter objectConverter;
+    private final Session session;
+    private final HstQueryResultCache.Entry entry;
+
+    CachedHstQueryResult(final ObjectConverter objectConverter, final Session session,
+                         final HstQueryResultCache.Entry entry) {
+        this.objectConverter = objectConverter;
+        this.session = session;
+        this.entry = entry;
+    }
+
+    @Override
+    public int getSize() {
+        return entry.getIdentifiers().size();
+    }
+
+    @Override
+    public int getTotalSize() {
+        return entry.getTotalSize();
+    }
+
+    @Override
+    public HippoBeanIterator getHippoBeans() {
+        return new HippoBeanIteratorImpl(objectConverter, createNodeIterator());
+    }
+
+    NodeIterator createNodeIterator() {
+        return new IdentifierNodeIterator(session, entry.getIdentifiers());
+    }
+
+    /**
+     * Iterates the nodes for a list of identifiers, skipping the nodes that got removed in the meantime like a query
+     * result skips the hits that are no longer accessible
+     */
+    private static class IdentifierNodeIterator implements NodeIterator {
+
+        private final Session session;
+        private final List<String> identifiers;
+        private int index;
+        private long position;
+        private Node next;
+
+        private IdentifierNodeIterator(final Session session, final List<String> identifiers) {
+            this.session = session;
+            this.identifiers = identifiers;
+        }
+
+        @Override
+        public Node nextNode() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Node node = next;
+            next = null;
+            position++;
+            return node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && index < identifiers.size()) {
+                final String identifier = identifiers.get(index++);
+                try {
+                    next = session.getNodeByIdentifier(identifier);
+                } catch (ItemNotFoundException e) {
+                    log.debug("Skipping cached query hit '{}' that does not exist any more", identifier);
+                } catch (RepositoryException e) {
+                    log.warn("Skipping cached query hit '{}' : {}", identifier, e.toString());
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Object next() {
+            return nextNode();
+        }
+
+        @Override
+        public void skip(final long skipNum) {
+            for (long i = 0; i < skipNum; i++) {
+                nextNode();
+            }
+        }
+
+        @Override
+        public long getSize() {
+            return identifiers.size();
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
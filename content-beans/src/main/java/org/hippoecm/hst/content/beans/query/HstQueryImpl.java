@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2015 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.util.List;
 
 import javax.jcr.LoginException;
 import javax.jcr.Node;
+import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.query.InvalidQueryException;
@@ -27,6 +28,7 @@ import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
 import javax.jcr.query.QueryResult;
 
+import org.hippoecm.hst.cache.CacheDependencies;
 import org.hippoecm.hst.container.RequestContextProvider;
 import org.hippoecm.hst.content.beans.manager.ObjectConverter;
 import org.hippoecm.hst.content.beans.query.exceptions.QueryException;
@@ -36,6 +38,7 @@ import org.hippoecm.hst.content.beans.query.filter.FilterImpl;
 import org.hippoecm.hst.content.beans.query.filter.IsNodeTypeFilter;
 import org.hippoecm.hst.content.beans.query.filter.NodeTypeFilter;
 import org.hippoecm.hst.content.beans.standard.HippoBean;
+import org.hippoecm.repository.api.HippoNodeIterator;
 import org.hippoecm.repository.api.HippoNodeType;
 import org.hippoecm.repository.util.DateTools;
 import org.slf4j.LoggerFactory;
@@ -56,6 +59,7 @@ public class HstQueryImpl implements HstQuery {
     private IsNodeTypeFilter isNodeTypeFilter;
     private Session session;
     private DateTools.Resolution defaultResolution;
+    private HstQueryResultCache resultCache;
 
     /**
      * 
@@ -93,6 +97,10 @@ public class HstQueryImpl implements HstQuery {
         this.defaultResolution = defaultResolution;
     }
 
+    void setResultCache(final HstQueryResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     @Override
     public void addOrderByAscending(String fieldNameAttribute) {
         orderByList.add("@"+fieldNameAttribute + " ascending");
@@ -286,6 +294,10 @@ public class HstQueryImpl implements HstQuery {
         try {
             String query = getQuery();
 
+            if (resultCache != null && resultCache.isCacheable(limit)) {
+                return executeCached(query);
+            }
+
             QueryManager jcrQueryManager = getQueryManager();
 
             Query jcrQuery = jcrQueryManager.createQuery(query, "xpath");
@@ -299,6 +311,7 @@ public class HstQueryImpl implements HstQuery {
             }
 
             QueryResult queryResult = jcrQuery.execute();
+            recordCacheDependencies();
             return new HstQueryResultImpl(objectConverter, queryResult);
         } catch (InvalidQueryException e) {
             throw new QueryException(e.getMessage(), e);
@@ -311,6 +324,60 @@ public class HstQueryImpl implements HstQuery {
         return null;
     }
 
+    private HstQueryResult executeCached(final String query) throws RepositoryException, QueryException {
+        final Session querySession = scopes.get(0).getSession();
+        final String key = HstQueryResultCache.createKey(query, querySession.getUserID(), offset, limit);
+        HstQueryResultCache.Entry entry = resultCache.get(key);
+        if (entry == null) {
+            final long generation = resultCache.getGeneration();
+            final Query jcrQuery = getQueryManager().createQuery(query, "xpath");
+            if (offset > -1) {
+                jcrQuery.setOffset(offset);
+            }
+            jcrQuery.setLimit(limit);
+            entry = createCacheEntry(query, jcrQuery.execute());
+            resultCache.put(key, entry, generation);
+        }
+        recordCacheDependencies();
+        return new CachedHstQueryResult(objectConverter, querySession, entry);
+    }
+
+    private HstQueryResultCache.Entry createCacheEntry(final String query, final QueryResult queryResult) throws RepositoryException {
+        final NodeIterator nodes = queryResult.getNodes();
+        int totalSize = -1;
+        if (nodes instanceof HippoNodeIterator) {
+            totalSize = (int) ((HippoNodeIterator) nodes).getTotalSize();
+        }
+        final List<String> identifiers = new ArrayList<>();
+        while (nodes.hasNext()) {
+            final Node node = nodes.nextNode();
+            if (node != null) {
+                identifiers.add(node.getIdentifier());
+            }
+        }
+        if (totalSize == -1) {
+            totalSize = identifiers.size();
+        }
+        final List<String> scopePaths = new ArrayList<>(scopes.size());
+        for (Node scope : scopes) {
+            scopePaths.add(scope.getPath());
+        }
+        return new HstQueryResultCache.Entry(query, scopePaths, identifiers, totalSize);
+    }
+
+    /**
+     * The result of a query depends on everything below its scopes
+     */
+    private void recordCacheDependencies() throws RepositoryException {
+        final CacheDependencies dependencies = CacheDependencies.getCurrent();
+        if (dependencies == null) {
+            return;
+        }
+        for (Node scope : scopes) {
+            dependencies.addSubtree(scope.getPath());
+        }
+    }
+
     private QueryManager getQueryManager() throws RepositoryException, QueryException {
         if (scopes.isEmpty()) {
             throw new QueryException("Unable to get QueryManager");
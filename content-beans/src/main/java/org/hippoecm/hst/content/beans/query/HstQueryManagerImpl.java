@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -43,6 +43,7 @@ public class HstQueryManagerImpl implements HstQueryManager {
     private final ObjectConverter objectConverter;
     private final Session session;
     private final DateTools.Resolution defaultResolution;
+    private final HstQueryResultCache resultCache;
 
     /**
      * @deprecated since 2.24.13 / 2.16.01. Use {@link #HstQueryManagerImpl(Session, ObjectConverter, DateTools.Resolution)}
@@ -58,9 +59,20 @@ public class HstQueryManagerImpl implements HstQueryManager {
     public HstQueryManagerImpl(final Session session,
                                final ObjectConverter objectConverter,
                                final DateTools.Resolution resolution) {
+        this(session, objectConverter, resolution, null);
+    }
+
+    /**
+     * @param resultCache the cache for the results of the created queries, or <code>null</code> to always execute them
+     */
+    public HstQueryManagerImpl(final Session session,
+                               final ObjectConverter objectConverter,
+                               final DateTools.Resolution resolution,
+                               final HstQueryResultCache resultCache) {
         this.session = session;
         this.objectConverter = objectConverter;
         defaultResolution = resolution;
+        this.resultCache = resultCache;
     }
 
     @Override
@@ -101,7 +113,9 @@ public class HstQueryManagerImpl implements HstQueryManager {
         } else {
             isNodeTypeFilter = new IsNodeTypeFilter(primaryNodeTypeNameForBean);
         }
-        return new HstQueryImpl(session, this.objectConverter, scope, isNodeTypeFilter);
+        HstQueryImpl query = new HstQueryImpl(session, this.objectConverter, scope, isNodeTypeFilter);
+        query.setResultCache(resultCache);
+        return query;
     }
     
    
@@ -195,6 +209,7 @@ public class HstQueryManagerImpl implements HstQueryManager {
         IsNodeTypeFilter isNodeTypeFilter = new IsNodeTypeFilter(nodeType);
         HstQueryImpl query = new HstQueryImpl(session, this.objectConverter, scope, isNodeTypeFilter);
         query.setDefaultResolution(defaultResolution);
+        query.setResultCache(resultCache);
         return query;
     }
 
@@ -249,6 +264,7 @@ public class HstQueryManagerImpl implements HstQueryManager {
     private HstQuery createQuery(Node scope, NodeTypeFilter filter) throws QueryException {
         HstQueryImpl query  = new HstQueryImpl(session, this.objectConverter, scope, filter);
         query.setDefaultResolution(defaultResolution);
+        query.setResultCache(resultCache);
         return query;
     }
 
@@ -0,0 +1,274 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.content.beans.query;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+
+/**
+ * <p>
+ *     Cache of the results of {@link HstQuery#execute()}, shared by all {@link HstQueryManagerImpl}s. A result is
+ *     cached per query string, jcr user, offset and limit as the identifiers of the hits and the total size, such that
+ *     the beans are created from the session of the request that uses the cached result. The cache is disabled by
+ *     default : it must only be enabled when the cached results get invalidated through {@link #invalidate(String)}
+ *     for every change below the scopes of the queries.
+ * </p>
+ * <p>
+ *     The results are kept in a Guava {@link Cache} configured with a {@link com.google.common.cache.CacheBuilderSpec}
+ *     string, for example <code>maximumSize=1000</code>. The results are also indexed per scope path of their query,
+ *     such that an invalidation only checks the distinct scope paths instead of every cached result.
+ * </p>
+ */
+public class HstQueryResultCache implements HstQueryResultCacheMXBean {
+
+    public static final String DEFAULT_CACHE_SPEC = "maximumSize=1000";
+
+    public static final int DEFAULT_MAX_RESULT_SIZE = 1000;
+
+    private volatile boolean enabled;
+    private volatile int maxResultSize = DEFAULT_MAX_RESULT_SIZE;
+
+    private final Cache<String, Entry> entries;
+    // scope path -> the cached results of the queries with that scope, with their cache keys. The results are indexed
+    // by identity, such that removing an evicted or replaced result never unindexes a newer result for the same key
+    private final ConcurrentMap<String, ConcurrentMap<Entry, String>> entriesByScopePath = new ConcurrentHashMap<>();
+    // incremented on every invalidation, such that a result of a query executed during an invalidation does not get cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong invalidatedEntries = new AtomicLong();
+
+    public HstQueryResultCache() {
+        this(DEFAULT_CACHE_SPEC);
+    }
+
+    public HstQueryResultCache(final String cacheSpec) {
+        entries = CacheBuilder.from(cacheSpec)
+                .removalListener((RemovalListener<String, Entry>) notification -> {
+                    if (notification.getValue() != null) {
+                        unindex(notification.getValue());
+                    }
+                }).build();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    public int getMaxResultSize() {
+        return maxResultSize;
+    }
+
+    /**
+     * @param maxResultSize the maximum limit of a query for its results to be cached : queries without limit or with a
+     *                      larger limit are always executed
+     */
+    public void setMaxResultSize(final int maxResultSize) {
+        this.maxResultSize = maxResultSize;
+    }
+
+    /**
+     * @return <code>true</code> when the cache is enabled and the results of a query with <code>limit</code> can be
+     * cached
+     */
+    boolean isCacheable(final int limit) {
+        return enabled && limit > -1 && limit <= maxResultSize;
+    }
+
+    static String createKey(final String query, final String userID, final int offset, final int limit) {
+        return userID + '\n' + offset + '\n' + limit + '\n' + query;
+    }
+
+    /**
+     * @return the current generation, to pass to {@link #put(String, Entry, long)} for a query that is executed after
+     * this call
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    Entry get(final String key) {
+        final Entry entry = entries.getIfPresent(key);
+        if (entry == null) {
+            cacheMisses.incrementAndGet();
+            return null;
+        }
+        cacheHits.incrementAndGet();
+        entry.hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Caches <code>entry</code>, unless the cache got invalidated after <code>generation</code> was retrieved
+     */
+    void put(final String key, final Entry entry, final long generation) {
+        if (!enabled || generation != this.generation.get()) {
+            return;
+        }
+        // index before caching, such that an invalidation from now on finds the entry
+        for (String scopePath : entry.scopePaths) {
+            entriesByScopePath.compute(scopePath, (path, scopeEntries) -> {
+                if (scopeEntries == null) {
+                    scopeEntries = new ConcurrentHashMap<>();
+                }
+                scopeEntries.put(entry, key);
+                return scopeEntries;
+            });
+        }
+        entries.put(key, entry);
+        if (generation != this.generation.get()) {
+            // invalidated while caching : the invalidation might have missed the entry
+            entries.asMap().remove(key, entry);
+        }
+    }
+
+    private void unindex(final Entry entry) {
+        for (String scopePath : entry.scopePaths) {
+            entriesByScopePath.computeIfPresent(scopePath, (path, scopeEntries) -> {
+                scopeEntries.remove(entry);
+                return scopeEntries.isEmpty() ? null : scopeEntries;
+            });
+        }
+    }
+
+    /**
+     * Invalidates the cached results of the queries with a scope that contains <code>path</code>, or that is below
+     * <code>path</code> in case the scope itself got moved or removed
+     */
+    public void invalidate(final String path) {
+        generation.incrementAndGet();
+        for (Map.Entry<String, ConcurrentMap<Entry, String>> scope : entriesByScopePath.entrySet()) {
+            final String scopePath = scope.getKey();
+            if (!isSameOrDescendant(path, scopePath) && !isSameOrDescendant(scopePath, path)) {
+                continue;
+            }
+            for (Map.Entry<Entry, String> scopeEntry : scope.getValue().entrySet()) {
+                if (entries.asMap().remove(scopeEntry.getValue(), scopeEntry.getKey())) {
+                    invalidatedEntries.incrementAndGet();
+                } else {
+                    // already evicted or replaced
+                    unindex(scopeEntry.getKey());
+                }
+            }
+        }
+    }
+
+    private static boolean isSameOrDescendant(final String path, final String ancestorPath) {
+        if ("/".equals(ancestorPath)) {
+            return true;
+        }
+        return path.startsWith(ancestorPath)
+                && (path.length() == ancestorPath.length() || path.charAt(ancestorPath.length()) == '/');
+    }
+
+    @Override
+    public void clear() {
+        generation.incrementAndGet();
+        entries.invalidateAll();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        long hitNr = cacheHits.get();
+        long missNr = cacheMisses.get();
+        if (hitNr == 0 && missNr == 0) {
+            return 0;
+        }
+        return ( (hitNr * 1.0D) / (hitNr + missNr));
+    }
+
+    @Override
+    public int getCacheSize() {
+        return (int) entries.size();
+    }
+
+    @Override
+    public long getInvalidatedEntries() {
+        return invalidatedEntries.get();
+    }
+
+    @Override
+    public Map<String, Long> getHitsPerQuery() {
+        final Map<String, Long> hitsPerQuery = new TreeMap<>();
+        for (Entry entry : entries.asMap().values()) {
+            final Long hits = hitsPerQuery.get(entry.query);
+            hitsPerQuery.put(entry.query, hits == null ? entry.hits.get() : hits + entry.hits.get());
+        }
+        return hitsPerQuery;
+    }
+
+    @Override
+    public void reset() {
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        invalidatedEntries.set(0);
+    }
+
+    /**
+     * The immutable result of a query
+     */
+    static class Entry {
+
+        private final String query;
+        private final List<String> scopePaths;
+        private final List<String> identifiers;
+        private final int totalSize;
+        private final AtomicLong hits = new AtomicLong();
+
+        Entry(final String query, final List<String> scopePaths, final List<String> identifiers, final int totalSize) {
+            this.query = query;
+            this.scopePaths = Collections.unmodifiableList(scopePaths);
+            this.identifiers = Collections.unmodifiableList(identifiers);
+            this.totalSize = totalSize;
+        }
+
+        List<String> getIdentifiers() {
+            return identifiers;
+        }
+
+        int getTotalSize() {
+            return totalSize;
+        }
+    }
+}
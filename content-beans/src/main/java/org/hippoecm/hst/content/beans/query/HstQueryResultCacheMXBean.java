@@ -0,0 +1,41 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.content.beans.query;
+
+import java.util.Map;
+
+public interface HstQueryResultCacheMXBean {
+
+    boolean isEnabled();
+    long getCacheHits();
+    long getCacheMisses();
+    double getCacheHitRate();
+    int getCacheSize();
+
+    /**
+     * @return the number of cached results removed because of changes below the scopes of their queries
+     */
+    long getInvalidatedEntries();
+
+    /**
+     * @return the number of cache hits per query string, for the queries that currently have a cached result. The
+     * hits of the results of a query for different users, offsets and limits are added up
+     */
+    Map<String, Long> getHitsPerQuery();
+
+    void reset();
+    void clear();
+}
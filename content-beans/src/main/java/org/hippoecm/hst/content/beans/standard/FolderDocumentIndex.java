@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.content.beans.standard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+
+import org.hippoecm.hst.content.beans.ObjectBeanManagerException;
+import org.hippoecm.hst.content.beans.manager.ObjectConverter;
+import org.hippoecm.repository.api.HippoNodeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable index of the document handles directly below a folder node, in repository order and in the order of
+ * {@link HippoItem#compareTo(HippoBean)} of the documents they contain. The sort keys are read from the jcr nodes,
+ * such that a window of documents can be selected without converting the other documents to beans. The sorted order
+ * is only available when none of the bean classes of the documents overrides {@link HippoItem#compareTo(HippoBean)},
+ * see {@link #isSortable()}.
+ */
+class FolderDocumentIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(FolderDocumentIndex.class);
+
+    private static final ClassValue<Boolean> NATURAL_ORDER = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(final Class<?> beanClass) {
+            try {
+                return beanClass.getMethod("compareTo", HippoBean.class).getDeclaringClass() == HippoItem.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    private static final Comparator<Entry> DOCUMENT_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(final Entry entry1, final Entry entry2) {
+            // in sync with HippoItem#compareTo : first on name, then on path
+            int val = entry1.name.compareTo(entry2.name);
+            if (val != 0) {
+                return val;
+            }
+            return entry1.path.compareTo(entry2.path);
+        }
+    };
+
+    private final List<Entry> entries;
+    private final List<Entry> sortedEntries;
+
+    private FolderDocumentIndex(final List<Entry> entries, final boolean sortable) {
+        this.entries = entries;
+        if (sortable) {
+            final List<Entry> sorted = new ArrayList<>(entries);
+            Collections.sort(sorted, DOCUMENT_ORDER);
+            this.sortedEntries = sorted;
+        } else {
+            this.sortedEntries = null;
+        }
+    }
+
+    /**
+     * Creates the index of the handles below <code>folder</code> that contain a document with the name of the handle
+     * which <code>objectConverter</code> binds to a {@link HippoDocumentBean}, which are the children that
+     * {@link HippoFolder#getDocuments()} returns a document for.
+     */
+    static FolderDocumentIndex build(final Node folder, final ObjectConverter objectConverter) throws RepositoryException {
+        final List<Entry> entries = new ArrayList<>();
+        boolean sortable = true;
+        for (NodeIterator nodes = folder.getNodes(); nodes.hasNext(); ) {
+            final Node child = nodes.nextNode();
+            if (child == null || !child.isNodeType(HippoNodeType.NT_HANDLE)) {
+                continue;
+            }
+            final String name = child.getName();
+            if (!child.hasNode(name)) {
+                continue;
+            }
+            final Class<?> beanClass = getDocumentBeanClass(child, objectConverter);
+            if (beanClass == null) {
+                continue;
+            }
+            sortable &= NATURAL_ORDER.get(beanClass);
+            // the document bean is backed by the first variant, which has the path of the handle followed by its name
+            entries.add(new Entry(child.getIdentifier(), name, child.getPath() + "/" + name));
+        }
+        return new FolderDocumentIndex(Collections.unmodifiableList(entries), sortable);
+    }
+
+    /**
+     * @return the bean class <code>objectConverter</code> binds the document of <code>handle</code> to, or
+     * <code>null</code> when that is not a {@link HippoDocumentBean}
+     */
+    private static Class<?> getDocumentBeanClass(final Node handle, final ObjectConverter objectConverter)
+            throws RepositoryException {
+        try {
+            final String objectType = objectConverter.getPrimaryObjectType(handle);
+            if (objectType == null) {
+                return null;
+            }
+            final Class<?> beanClass = objectConverter.getAnnotatedClassFor(objectType);
+            if (beanClass == null || !HippoDocumentBean.class.isAssignableFrom(beanClass)) {
+                log.info("Cannot index HippoDocument for '{}'. Skip it.", handle.getPath());
+                return null;
+            }
+            return beanClass;
+        } catch (ObjectBeanManagerException e) {
+            log.info("Cannot index HippoDocument for '{}'. Skip it : {}", handle.getPath(), e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of indexed documents
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return <code>true</code> when the documents can be sorted by the index, which is when their bean classes do not
+     * override {@link HippoItem#compareTo(HippoBean)}
+     */
+    boolean isSortable() {
+        return sortedEntries != null;
+    }
+
+    /**
+     * @param from (inclusive)
+     * @param to (exclusive)
+     * @param sorted whether the window must be taken from the documents sorted according
+     *               {@link HippoItem#compareTo(HippoBean)} instead of from the documents in repository order
+     * @return the identifiers of the handles of the documents between <code>from</code> and <code>to</code>
+     * @throws IndexOutOfBoundsException for an invalid window
+     * @throws IllegalStateException when <code>sorted</code> is <code>true</code> for an index that is not
+     * {@link #isSortable() sortable}
+     */
+    List<String> getHandleIdentifiers(final int from, final int to, final boolean sorted) {
+        if (sorted && !isSortable()) {
+            throw new IllegalStateException("The documents cannot be sorted by the index");
+        }
+        final List<Entry> window = (sorted ? sortedEntries : entries).subList(from, to);
+        final List<String> identifiers = new ArrayList<>(window.size());
+        for (Entry entry : window) {
+            identifiers.add(entry.identifier);
+        }
+        return identifiers;
+    }
+
+    private static class Entry {
+
+        private final String identifier;
+        private final String name;
+        private final String path;
+
+        private Entry(final String identifier, final String name, final String path) {
+            this.identifier = identifier;
+            this.name = name;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.content.beans.standard;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of the sorted document indexes of large folders, shared by all {@link HippoFolder} beans and kept per folder
+ * path and per jcr user, as different users can read different documents. A new instance does not cache anything
+ * until it gets enabled : it must only be enabled when the folder indexes get invalidated through
+ * {@link #invalidate(String)} for every node that is added below or removed from the content, and for the node of
+ * every property that changes, like the availability of a published or depublished document variant. The HST
+ * container registers an enabled instance (<code>folderDocumentIndexCache.enabled = true</code>) together with an
+ * event listener that does so.
+ */
+public class FolderDocumentIndexCache {
+
+    public static final int DEFAULT_MINIMUM_FOLDER_SIZE = 500;
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private volatile boolean enabled;
+    private volatile int minimumFolderSize = DEFAULT_MINIMUM_FOLDER_SIZE;
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    // folder path -> jcr user id -> index, evicting the least recently used folders
+    private volatile Cache<String, ConcurrentMap<String, FolderDocumentIndex>> indexes = createIndexes(DEFAULT_MAX_SIZE);
+    // incremented on every invalidation, such that an index built during an invalidation does not get cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    public int getMinimumFolderSize() {
+        return minimumFolderSize;
+    }
+
+    /**
+     * @param minimumFolderSize the number of documents a folder must contain for its index to be cached
+     */
+    public void setMinimumFolderSize(final int minimumFolderSize) {
+        this.minimumFolderSize = minimumFolderSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize the maximum number of folders to cache indexes for. Changing it discards the cached indexes.
+     */
+    public void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+        generation.incrementAndGet();
+        indexes = createIndexes(maxSize);
+    }
+
+    private static Cache<String, ConcurrentMap<String, FolderDocumentIndex>> createIndexes(final int maxSize) {
+        return CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * @return the current generation, to pass to {@link #put(String, String, FolderDocumentIndex, long)} for an index
+     * that is built after this call
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    FolderDocumentIndex get(final String folderPath, final String userID) {
+        final ConcurrentMap<String, FolderDocumentIndex> userIndexes = indexes.getIfPresent(folderPath);
+        if (userIndexes == null) {
+            return null;
+        }
+        return userIndexes.get(userID);
+    }
+
+    /**
+     * Caches <code>index</code>, unless the cache got invalidated after <code>generation</code> was retrieved
+     */
+    void put(final String folderPath, final String userID, final FolderDocumentIndex index, final long generation) {
+        if (!enabled || generation != this.generation.get()) {
+            return;
+        }
+        final ConcurrentMap<String, FolderDocumentIndex> userIndexes =
+                indexes.asMap().computeIfAbsent(folderPath, key -> new ConcurrentHashMap<>());
+        userIndexes.put(userID, index);
+        if (generation != this.generation.get()) {
+            // invalidated while caching : the index might be stale already
+            userIndexes.remove(userID, index);
+        }
+    }
+
+    /**
+     * Invalidates the indexes of the folders that can be affected by a change of the node at <code>path</code> : the
+     * folder itself, a child of the folder or a document variant below a child of the folder. For a changed property,
+     * <code>path</code> must be the path of the node of the property.
+     */
+    public void invalidate(final String path) {
+        generation.incrementAndGet();
+        final Cache<String, ConcurrentMap<String, FolderDocumentIndex>> currentIndexes = indexes;
+        if (currentIndexes.size() == 0) {
+            return;
+        }
+        currentIndexes.invalidate(path);
+        final String parentPath = StringUtils.substringBeforeLast(path, "/");
+        currentIndexes.invalidate(parentPath);
+        currentIndexes.invalidate(StringUtils.substringBeforeLast(parentPath, "/"));
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        indexes.invalidateAll();
+    }
+
+    public int size() {
+        return (int) indexes.size();
+    }
+}
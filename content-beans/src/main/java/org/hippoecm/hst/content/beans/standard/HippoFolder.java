@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -21,12 +21,15 @@ import java.util.List;
 import java.util.Locale;
 import java.util.NoSuchElementException;
 
+import javax.jcr.ItemNotFoundException;
 import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
 
 import org.apache.commons.lang.LocaleUtils;
 import org.hippoecm.hst.content.beans.Node;
 import org.hippoecm.hst.content.beans.ObjectBeanManagerException;
+import org.hippoecm.hst.site.HstServices;
+import org.hippoecm.repository.api.HippoNode;
 import org.hippoecm.repository.api.HippoNodeType;
 import org.hippoecm.repository.translation.HippoTranslationNodeType;
 import org.slf4j.Logger;
@@ -106,7 +109,25 @@ public class HippoFolder extends HippoItem implements HippoFolderBean {
         return getDocuments(from,to,false);
     }
     
+    /**
+     * Unless all documents of this folder have already been loaded, only the documents between <code>from</code> and
+     * <code>to</code> are converted to beans : the documents are selected and sorted through a {@link FolderDocumentIndex}
+     * of their handles, which is cached by the {@link FolderDocumentIndexCache} for large folders. When
+     * <code>sorted</code> and a document bean class overrides {@link #compareTo(HippoBean)}, all documents are converted
+     * and sorted instead.
+     */
     public List<HippoDocumentBean> getDocuments(int from, int to, boolean sorted) {
+        if (this.hippoDocuments == null) {
+            FolderDocumentIndex index = getDocumentIndex();
+            if (index != null && (!sorted || index.isSortable())) {
+                try {
+                    return getDocuments(index.getHandleIdentifiers(from, to, sorted));
+                } catch (IndexOutOfBoundsException e) {
+                    log.warn("Invalid sublist for getDocuments '{}'. Return empty list.", e.getMessage());
+                    return new ArrayList<HippoDocumentBean>();
+                }
+            }
+        }
         List<HippoDocumentBean> documents = getDocuments(sorted);
         try {
             return documents.subList(from, to); 
@@ -116,6 +137,63 @@ public class HippoFolder extends HippoItem implements HippoFolderBean {
         }
     }
 
+    private List<HippoDocumentBean> getDocuments(List<String> handleIdentifiers) {
+        List<HippoDocumentBean> documents = new ArrayList<HippoDocumentBean>(handleIdentifiers.size());
+        for (String handleIdentifier : handleIdentifiers) {
+            try {
+                HippoDocumentBean hippoDocument = getHippoDocument(this.node.getSession().getNodeByIdentifier(handleIdentifier));
+                if (hippoDocument != null) {
+                    documents.add(hippoDocument);
+                }
+            } catch (ItemNotFoundException e) {
+                log.debug("Document handle '{}' has been removed from '{}'. Skip it.", handleIdentifier, getPath());
+            } catch (RepositoryException e) {
+                log.warn("Repository Exception : {}", e);
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * @return the index of the documents in this folder, or <code>null</code> when the documents cannot be indexed,
+     * for example because the folder is virtual
+     */
+    private FolderDocumentIndex getDocumentIndex() {
+        if (this.node == null || this.objectConverter == null) {
+            return null;
+        }
+        try {
+            if (this.node instanceof HippoNode && ((HippoNode) this.node).isVirtual()) {
+                return null;
+            }
+            FolderDocumentIndexCache indexCache = getDocumentIndexCache();
+            if (indexCache == null || !indexCache.isEnabled()) {
+                return FolderDocumentIndex.build(this.node, this.objectConverter);
+            }
+            String folderPath = this.node.getPath();
+            String userID = this.node.getSession().getUserID();
+            FolderDocumentIndex index = indexCache.get(folderPath, userID);
+            if (index == null) {
+                long generation = indexCache.getGeneration();
+                index = FolderDocumentIndex.build(this.node, this.objectConverter);
+                if (index.size() >= indexCache.getMinimumFolderSize()) {
+                    indexCache.put(folderPath, userID, index, generation);
+                }
+            }
+            return index;
+        } catch (RepositoryException e) {
+            log.warn("Cannot index the documents of '{}' : {}", getPath(), e.toString());
+            return null;
+        }
+    }
+
+    private static FolderDocumentIndexCache getDocumentIndexCache() {
+        if (!HstServices.isAvailable()) {
+            return null;
+        }
+        return HstServices.getComponentManager().getComponent(FolderDocumentIndexCache.class.getName());
+    }
+
     @SuppressWarnings("unchecked")
     public <T> List<T> getDocuments(Class<T> beanMappingClass) {
         List<HippoDocumentBean> documents = getDocuments();
@@ -0,0 +1,188 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.content.beans.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link HstQueryResultCache} and {@link CachedHstQueryResult}.
+ */
+public class TestHstQueryResultCache {
+
+    private static final String NEWS_QUERY = "//*[(@hippo:paths='news-id')] order by @jcr:score descending ";
+    private static final String EVENTS_QUERY = "//*[(@hippo:paths='events-id')] order by @jcr:score descending ";
+
+    @Test
+    public void testOnlyLimitedQueriesOfEnabledCacheAreCacheable() {
+        HstQueryResultCache cache = new HstQueryResultCache();
+        assertFalse(cache.isCacheable(5));
+        cache.setEnabled(true);
+        cache.setMaxResultSize(100);
+        assertTrue(cache.isCacheable(5));
+        assertTrue(cache.isCacheable(100));
+        assertFalse(cache.isCacheable(101));
+        assertFalse(cache.isCacheable(-1));
+    }
+
+    @Test
+    public void testResultsAreCachedPerUserOffsetAndLimit() {
+        HstQueryResultCache cache = new HstQueryResultCache();
+        cache.setEnabled(true);
+        String key = HstQueryResultCache.createKey(NEWS_QUERY, "liveuser", -1, 5);
+        cache.put(key, newsEntry(), cache.getGeneration());
+
+        assertNotNull(cache.get(key));
+        assertNotNull(cache.get(key));
+        assertNull(cache.get(HstQueryResultCache.createKey(NEWS_QUERY, "admin", -1, 5)));
+        assertNull(cache.get(HstQueryResultCache.createKey(NEWS_QUERY, "liveuser", 5, 5)));
+        assertNull(cache.get(HstQueryResultCache.createKey(NEWS_QUERY, "liveuser", -1, 10)));
+
+        assertEquals(2, cache.getCacheHits());
+        assertEquals(3, cache.getCacheMisses());
+        assertEquals(Collections.singletonMap(NEWS_QUERY, 2L), cache.getHitsPerQuery());
+    }
+
+    @Test
+    public void testCachedResultIsInvalidatedByChangesBelowItsScopes() {
+        HstQueryResultCache cache = new HstQueryResultCache();
+        cache.setEnabled(true);
+        String key = HstQueryResultCache.createKey(NEWS_QUERY, "liveuser", -1, 5);
+
+        cache.put(key, newsEntry(), cache.getGeneration());
+        cache.invalidate("/content/documents/events/event/event/title");
+        cache.invalidate("/content/documents/newsletter");
+        assertNotNull(cache.get(key));
+
+        cache.invalidate("/content/documents/news/2017/item/item/title");
+        assertNull(cache.get(key));
+
+        cache.put(key, newsEntry(), cache.getGeneration());
+        // the scope itself or one of its ancestors gets moved or removed
+        cache.invalidate("/content/documents");
+        assertNull(cache.get(key));
+        assertEquals(2, cache.getInvalidatedEntries());
+    }
+
+    @Test
+    public void testInvalidationOnlyRemovesResultsOfAffectedScopes() {
+        HstQueryResultCache cache = new HstQueryResultCache();
+        cache.setEnabled(true);
+        String newsKey = HstQueryResultCache.createKey(NEWS_QUERY, "liveuser", -1, 5);
+        String eventsKey = HstQueryResultCache.createKey(EVENTS_QUERY, "liveuser", -1, 5);
+        String bothKey = HstQueryResultCache.createKey(NEWS_QUERY + EVENTS_QUERY, "liveuser", -1, 5);
+        cache.put(newsKey, newsEntry(), cache.getGeneration());
+        cache.put(eventsKey, new HstQueryResultCache.Entry(EVENTS_QUERY,
+                Collections.singletonList("/content/documents/events"), Arrays.asList("id-3"), 1), cache.getGeneration());
+        cache.put(bothKey, new HstQueryResultCache.Entry(NEWS_QUERY + EVENTS_QUERY,
+                Arrays.asList("/content/documents/news", "/content/documents/events"), Arrays.asList("id-1", "id-3"), 2),
+                cache.getGeneration());
+
+        cache.invalidate("/content/documents/events/event");
+        assertNotNull(cache.get(newsKey));
+        assertNull(cache.get(eventsKey));
+        assertNull(cache.get(bothKey));
+        assertEquals(2, cache.getInvalidatedEntries());
+    }
+
+    @Test
+    public void testReplacedResultIsStillInvalidated() {
+        HstQueryResultCache cache = new HstQueryResultCache();
+        cache.setEnabled(true);
+        String key = HstQueryResultCache.createKey(NEWS_QUERY, "liveuser", -1, 5);
+        cache.put(key, newsEntry(), cache.getGeneration());
+        cache.put(key, newsEntry(), cache.getGeneration());
+
+        cache.invalidate("/content/documents/news/item");
+        assertNull(cache.get(key));
+        assertEquals(1, cache.getInvalidatedEntries());
+    }
+
+    @Test
+    public void testResultOfQueryExecutedDuringInvalidationIsNotCached() {
+        HstQueryResultCache cache = new HstQueryResultCache();
+        cache.setEnabled(true);
+        String key = HstQueryResultCache.createKey(NEWS_QUERY, "liveuser", -1, 5);
+        long generation = cache.getGeneration();
+        cache.invalidate("/content/documents/news/item");
+
+        cache.put(key, newsEntry(), generation);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResultsAreEvicted() {
+        // a single segment for a strict least recently used order
+        HstQueryResultCache cache = new HstQueryResultCache("maximumSize=2,concurrencyLevel=1");
+        cache.setEnabled(true);
+
+        cache.put("a", newsEntry(), cache.getGeneration());
+        cache.put("b", newsEntry(), cache.getGeneration());
+        assertNotNull(cache.get("a"));
+        cache.put("c", newsEntry(), cache.getGeneration());
+
+        assertEquals(2, cache.getCacheSize());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testCachedResultSkipsRemovedHits() throws RepositoryException {
+        Node first = createMock(Node.class);
+        Node third = createMock(Node.class);
+        Session session = createMock(Session.class);
+        expect(session.getNodeByIdentifier("id-1")).andReturn(first);
+        expect(session.getNodeByIdentifier("id-2")).andThrow(new ItemNotFoundException("id-2"));
+        expect(session.getNodeByIdentifier("id-3")).andReturn(third);
+        replay(session);
+
+        HstQueryResultCache.Entry entry = new HstQueryResultCache.Entry(NEWS_QUERY,
+                Collections.singletonList("/content/documents/news"), Arrays.asList("id-1", "id-2", "id-3"), 42);
+        CachedHstQueryResult result = new CachedHstQueryResult(null, session, entry);
+        assertEquals(3, result.getSize());
+        assertEquals(42, result.getTotalSize());
+
+        NodeIterator nodes = result.createNodeIterator();
+        assertSame(first, nodes.nextNode());
+        assertSame(third, nodes.nextNode());
+        assertFalse(nodes.hasNext());
+        assertEquals(2, nodes.getPosition());
+    }
+
+    private static HstQueryResultCache.Entry newsEntry() {
+        return new HstQueryResultCache.Entry(NEWS_QUERY, Collections.singletonList("/content/documents/news"),
+                Arrays.asList("id-1", "id-2"), 2);
+    }
+}
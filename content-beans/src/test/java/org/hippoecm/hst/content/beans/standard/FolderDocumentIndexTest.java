@@ -0,0 +1,252 @@
+/*
+ *  Copyright 2017 Hippo B.V. (http://www.onehippo.com)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.hippoecm.hst.content.beans.standard;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+
+import org.hippoecm.hst.content.beans.manager.ObjectConverter;
+import org.hippoecm.repository.api.HippoNodeType;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link FolderDocumentIndex} and {@link FolderDocumentIndexCache}.
+ */
+public class FolderDocumentIndexTest {
+
+    private static final String DOCUMENT_TYPE = "test:document";
+
+    @Test
+    public void testDocumentsInRepositoryAndSortedOrder() throws Exception {
+        FolderDocumentIndex index = FolderDocumentIndex.build(createFolder("/content/news",
+                createHandle("/content/news", "id-c", "c", true),
+                createFolderChild("/content/news", "subfolder"),
+                createHandle("/content/news", "id-a", "a", true),
+                createHandle("/content/news", "id-empty", "empty", false),
+                createHandle("/content/news", "id-b", "b", true)), createObjectConverter());
+
+        assertEquals(3, index.size());
+        assertTrue(index.isSortable());
+        assertEquals(Arrays.asList("id-c", "id-a", "id-b"), index.getHandleIdentifiers(0, 3, false));
+        assertEquals(Arrays.asList("id-a", "id-b", "id-c"), index.getHandleIdentifiers(0, 3, true));
+        assertEquals(Arrays.asList("id-b"), index.getHandleIdentifiers(1, 2, true));
+        assertEquals(Arrays.asList("id-a"), index.getHandleIdentifiers(1, 2, false));
+        try {
+            index.getHandleIdentifiers(2, 4, true);
+            fail("Expected IndexOutOfBoundsException for a window beyond the documents");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOnlyHandlesOfDocumentBeansAreIndexed() throws Exception {
+        Map<String, String> objectTypes = new HashMap<>();
+        objectTypes.put("folder", "hippostd:folder");
+        objectTypes.put("unmapped", null);
+        FolderDocumentIndex index = FolderDocumentIndex.build(createFolder("/content/news",
+                createHandle("/content/news", "id-b", "b", true),
+                createHandle("/content/news", "id-folder", "folder", true),
+                createHandle("/content/news", "id-unmapped", "unmapped", true),
+                createHandle("/content/news", "id-a", "a", true)),
+                createObjectConverter(objectTypes));
+
+        assertEquals("handles that are not bound to a document bean would shift the windows", 2, index.size());
+        assertEquals(Arrays.asList("id-b", "id-a"), index.getHandleIdentifiers(0, 2, false));
+        assertEquals(Arrays.asList("id-a", "id-b"), index.getHandleIdentifiers(0, 2, true));
+    }
+
+    @Test
+    public void testDocumentsOfBeansOverridingCompareToAreNotSorted() throws Exception {
+        FolderDocumentIndex index = FolderDocumentIndex.build(createFolder("/content/news",
+                createHandle("/content/news", "id-b", "b", true),
+                createHandle("/content/news", "id-a", "a", true)),
+                createObjectConverter(Collections.singletonMap("a", "test:ordereddocument")));
+
+        assertFalse(index.isSortable());
+        assertEquals(Arrays.asList("id-b", "id-a"), index.getHandleIdentifiers(0, 2, false));
+        try {
+            index.getHandleIdentifiers(0, 2, true);
+            fail("Expected IllegalStateException for documents that are sorted by their beans");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCachedIndexIsInvalidatedByChangesOfItsChildren() throws Exception {
+        FolderDocumentIndexCache cache = new FolderDocumentIndexCache();
+        cache.setEnabled(true);
+        FolderDocumentIndex index = FolderDocumentIndex.build(createFolder("/content/news"), createObjectConverter());
+
+        cache.put("/content/news", "liveuser", index, cache.getGeneration());
+        assertNotNull(cache.get("/content/news", "liveuser"));
+        assertNull(cache.get("/content/news", "admin"));
+
+        // a node below a document does not affect the documents of the folder
+        cache.invalidate("/content/news/handle/handle/body");
+        cache.invalidate("/content/news/handle/handle/body/link");
+        assertNotNull(cache.get("/content/news", "liveuser"));
+
+        // a property of a document variant, like its availability, is invalidated through the variant node
+        cache.invalidate("/content/news/handle/handle");
+        assertNull(cache.get("/content/news", "liveuser"));
+
+        cache.put("/content/news", "liveuser", index, cache.getGeneration());
+
+        // a document variant
+        cache.invalidate("/content/news/handle/handle[2]");
+        assertNull(cache.get("/content/news", "liveuser"));
+
+        cache.put("/content/news", "liveuser", index, cache.getGeneration());
+        // a document handle
+        cache.invalidate("/content/news/handle");
+        assertNull(cache.get("/content/news", "liveuser"));
+
+        cache.put("/content/news", "liveuser", index, cache.getGeneration());
+        // the folder itself
+        cache.invalidate("/content/news");
+        assertNull(cache.get("/content/news", "liveuser"));
+    }
+
+    @Test
+    public void testIndexBuiltDuringInvalidationIsNotCached() throws Exception {
+        FolderDocumentIndexCache cache = new FolderDocumentIndexCache();
+        cache.setEnabled(true);
+        long generation = cache.getGeneration();
+        FolderDocumentIndex index = FolderDocumentIndex.build(createFolder("/content/news"), createObjectConverter());
+        cache.invalidate("/content/news/handle");
+
+        cache.put("/content/news", "liveuser", index, generation);
+        assertNull(cache.get("/content/news", "liveuser"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedFoldersAreEvicted() throws Exception {
+        FolderDocumentIndexCache cache = new FolderDocumentIndexCache();
+        cache.setEnabled(true);
+        cache.setMaxSize(2);
+        FolderDocumentIndex index = FolderDocumentIndex.build(createFolder("/content/news"), createObjectConverter());
+
+        cache.put("/content/a", "liveuser", index, cache.getGeneration());
+        cache.put("/content/b", "liveuser", index, cache.getGeneration());
+        assertNotNull(cache.get("/content/a", "liveuser"));
+        cache.put("/content/c", "liveuser", index, cache.getGeneration());
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("/content/a", "liveuser"));
+        assertNull(cache.get("/content/b", "liveuser"));
+        assertNotNull(cache.get("/content/c", "liveuser"));
+    }
+
+    @Test
+    public void testDisabledCacheDoesNotCache() throws Exception {
+        FolderDocumentIndexCache cache = new FolderDocumentIndexCache();
+        FolderDocumentIndex index = FolderDocumentIndex.build(createFolder("/content/news"), createObjectConverter());
+
+        cache.put("/content/news", "liveuser", index, cache.getGeneration());
+        assertNull(cache.get("/content/news", "liveuser"));
+    }
+
+    private static ObjectConverter createObjectConverter() throws Exception {
+        return createObjectConverter(Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * @param objectTypes the object types of the documents per handle name, {@link #DOCUMENT_TYPE} by default
+     */
+    private static ObjectConverter createObjectConverter(final Map<String, String> objectTypes) throws Exception {
+        ObjectConverter objectConverter = createNiceMock(ObjectConverter.class);
+        expect(objectConverter.getPrimaryObjectType(anyObject(Node.class))).andStubAnswer(() -> {
+            String name = ((Node) getCurrentArguments()[0]).getName();
+            return objectTypes.containsKey(name) ? objectTypes.get(name) : DOCUMENT_TYPE;
+        });
+        expect(objectConverter.getAnnotatedClassFor(DOCUMENT_TYPE)).andStubReturn(HippoDocument.class);
+        expect(objectConverter.getAnnotatedClassFor("test:ordereddocument")).andStubReturn(OrderedDocument.class);
+        expect(objectConverter.getAnnotatedClassFor("hippostd:folder")).andStubReturn(HippoFolder.class);
+        replay(objectConverter);
+        return objectConverter;
+    }
+
+    private static Node createFolder(String path, Node... children) throws RepositoryException {
+        Node folder = createNiceMock(Node.class);
+        expect(folder.getPath()).andReturn(path).anyTimes();
+        expect(folder.getNodes()).andReturn(createNodeIterator(Arrays.asList(children)));
+        replay(folder);
+        return folder;
+    }
+
+    private static Node createHandle(String folderPath, String identifier, String name, boolean hasDocument)
+            throws RepositoryException {
+        Node handle = createNiceMock(Node.class);
+        expect(handle.getIdentifier()).andReturn(identifier).anyTimes();
+        expect(handle.getName()).andReturn(name).anyTimes();
+        expect(handle.getPath()).andReturn(folderPath + "/" + name).anyTimes();
+        expect(handle.isNodeType(HippoNodeType.NT_HANDLE)).andReturn(true).anyTimes();
+        expect(handle.hasNode(name)).andReturn(hasDocument).anyTimes();
+        replay(handle);
+        return handle;
+    }
+
+    private static Node createFolderChild(String folderPath, String name) throws RepositoryException {
+        Node child = createNiceMock(Node.class);
+        expect(child.getName()).andReturn(name).anyTimes();
+        expect(child.getPath()).andReturn(folderPath + "/" + name).anyTimes();
+        expect(child.isNodeType(HippoNodeType.NT_HANDLE)).andReturn(false).anyTimes();
+        replay(child);
+        return child;
+    }
+
+    private static NodeIterator createNodeIterator(List<Node> nodes) {
+        NodeIterator iterator = createNiceMock(NodeIterator.class);
+        if (!nodes.isEmpty()) {
+            expect(iterator.hasNext()).andReturn(true).times(nodes.size());
+        }
+        expect(iterator.hasNext()).andReturn(false).anyTimes();
+        for (Node node : nodes) {
+            expect(iterator.nextNode()).andReturn(node);
+        }
+        replay(iterator);
+        return iterator;
+    }
+
+    public static class OrderedDocument extends HippoDocument {
+
+        @Override
+        public int compareTo(final HippoBean hippoBean) {
+            return -super.compareTo(hippoBean);
+        }
+    }
+}
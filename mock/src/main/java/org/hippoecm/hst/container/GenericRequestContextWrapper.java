@@ -1,5 +1,5 @@
 /**
- * Copyright 2015-2016 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2015-2017 Hippo B.V. (http://www.onehippo.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -201,6 +201,16 @@ public class GenericRequestContextWrapper implements  HstMutableRequestContext {
         context.clearObjectAndQueryManagers();
     }
 
+    @Override
+    public void beginThreadScope() {
+        context.beginThreadScope();
+    }
+
+    @Override
+    public void endThreadScope() {
+        context.endThreadScope();
+    }
+
     @Override
     public ServletContext getServletContext() {
         return context.getServletContext();
@@ -61,6 +61,7 @@ public class MockHstComponentConfiguration implements HstComponentConfiguration,
     private boolean async;
     private String asyncMode;
     private boolean compositeCacheable;
+    private boolean fragmentCacheable;
     private List<String> variants;
     private List<String> mountVariants;
     private String lockedBy;
@@ -293,6 +294,15 @@ public class MockHstComponentConfiguration implements HstComponentConfiguration,
         return false;
     }
 
+    @Override
+    public boolean isFragmentCacheable() {
+        return fragmentCacheable;
+    }
+
+    public void setFragmentCacheable(boolean fragmentCacheable) {
+        this.fragmentCacheable = fragmentCacheable;
+    }
+
     public void setCompositeCacheable(boolean compositeCacheable) {
         this.compositeCacheable = compositeCacheable;
     }
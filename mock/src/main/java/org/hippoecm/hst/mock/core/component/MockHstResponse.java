@@ -1,5 +1,5 @@
 /**
- * Copyright 2012-2016 Hippo B.V. (http://www.onehippo.com)
+ * Copyright 2012-2017 Hippo B.V. (http://www.onehippo.com)
  * 
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,16 +24,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.hippoecm.hst.core.component.HstResponse;
 import org.hippoecm.hst.core.component.HstURL;
+import org.hippoecm.hst.util.DocumentBuilderUtils;
 import org.hippoecm.hst.util.KeyValue;
 import org.w3c.dom.Comment;
-import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 /**
@@ -143,29 +138,11 @@ public class MockHstResponse extends MockHstResponseBase implements HstResponse
     }
 
     public Element createElement(String tagName) {
-        DocumentBuilderFactory dbfac = DocumentBuilderFactory.newInstance();
-        DocumentBuilder docBuilder;
-        
-        try {
-            docBuilder = dbfac.newDocumentBuilder();
-            Document doc = docBuilder.newDocument();
-            return doc.createElement(tagName);
-        } catch (ParserConfigurationException e) {
-            throw new DOMException((short) 0, "Initialization failure");
-        }
+        return DocumentBuilderUtils.newDocument().createElement(tagName);
     }
 
     public Comment createComment(String comment) {
-        DocumentBuilderFactory dbfac = DocumentBuilderFactory.newInstance();
-        DocumentBuilder docBuilder;
-        
-        try {
-            docBuilder = dbfac.newDocumentBuilder();
-            Document doc = docBuilder.newDocument();
-            return doc.createComment(comment);
-        } catch (ParserConfigurationException e) {
-            throw new DOMException((short) 0, "Initialization failure");
-        }
+        return DocumentBuilderUtils.newDocument().createComment(comment);
     }
 
     public void addHeadElement(Element element, String keyHint) {
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2008-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2008-2017 Hippo B.V. (http://www.onehippo.com)
  *
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -594,6 +594,15 @@ public class MockHstRequestContext implements HstMutableRequestContext {
         checkStateValidity();
     }
 
+    @Override
+    public void beginThreadScope() {
+        checkStateValidity();
+    }
+
+    @Override
+    public void endThreadScope() {
+    }
+
     @Override
     public void dispose() {
         attributes = null;
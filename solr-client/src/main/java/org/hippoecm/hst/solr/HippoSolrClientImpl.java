@@ -1,5 +1,5 @@
 /*
- *  Copyright 2012-2016 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2012-2017 Hippo B.V. (http://www.onehippo.com)
  *
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -46,7 +46,7 @@ public class HippoSolrClientImpl implements HippoSolrClient {
     private SolrServer solrServer;
 
     private volatile List<ContentBeanBinder> defaultContentBeanBinders;
-    private DocumentObjectBinder documentObjectBinder;
+    private volatile DocumentObjectBinder documentObjectBinder;
 
 
     @SuppressWarnings("UnusedDeclaration")
@@ -69,6 +69,15 @@ public class HippoSolrClientImpl implements HippoSolrClient {
         return HippoQueryParser.getInstance();
     }
 
+    @Override
+    public DocumentObjectBinder getDocumentObjectBinder() {
+        if (documentObjectBinder == null) {
+            // an extra binder created by a concurrent call is harmless
+            documentObjectBinder = new DocumentObjectBinder();
+        }
+        return documentObjectBinder;
+    }
+
     @Override
     public List<ContentBeanBinder> getContentBeanBinders() {
         if (defaultContentBeanBinders != null) {
@@ -123,10 +132,7 @@ public class HippoSolrClientImpl implements HippoSolrClient {
 
             @Override
             public org.apache.solr.client.solrj.beans.DocumentObjectBinder getBinder() {
-                if (documentObjectBinder == null) {
-                    return new DocumentObjectBinder();
-                }
-                return documentObjectBinder;
+                return getDocumentObjectBinder();
             }
         };
 
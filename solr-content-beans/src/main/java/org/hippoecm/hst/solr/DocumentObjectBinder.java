@@ -1,5 +1,5 @@
 /*
- *  Copyright 2012-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2012-2017 Hippo B.V. (http://www.onehippo.com)
  *
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -17,6 +17,9 @@ package org.hippoecm.hst.solr;
 
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Method;
@@ -50,7 +53,11 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A class to map objects to and from solr documents.
- *
+ * <p>
+ * The annotated getters and their setters of a class are only looked up once and are invoked through
+ * {@link MethodHandle}s, hence a binder should be shared, see {@link HippoSolrClient#getDocumentObjectBinder()}.
+ * A binder is thread-safe.
+ * </p>
  */
 public class DocumentObjectBinder extends org.apache.solr.client.solrj.beans.DocumentObjectBinder {
 
@@ -353,14 +360,19 @@ public class DocumentObjectBinder extends org.apache.solr.client.solrj.beans.Doc
         List<DocField> fields = infocache.get(clazz);
         if (fields == null) {
             synchronized (infocache) {
+                fields = infocache.get(clazz);
+                if (fields != null) {
+                    // collected by another thread
+                    return fields;
+                }
                 fields = collectInfo(clazz);
-                infocache.put(clazz, fields);
-
                 HashMap<String, DocField> byMap = new HashMap<String, DocField>(fields.size());
                 for (DocField f : fields) {
                     byMap.put(f.name, f);
                 }
+                // the map must be available once the fields are, as appendCompoundFields needs it
                 infocacheMap.put(clazz, byMap);
+                infocache.put(clazz, fields);
             }
         }
         return fields;
@@ -505,9 +517,17 @@ public class DocumentObjectBinder extends org.apache.solr.client.solrj.beans.Doc
     }
 
     private static class DocField {
+
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
         private String name;
         private Method getter;
         private Method setter;
+        // the getter and setter compiled to handles of a generic type, or null when they cannot be accessed as such
+        private MethodHandle getterHandle;
+        private MethodHandle setterHandle;
+        private Class<?> setterParameterType;
         private Class type;
         private boolean ignoreInCompound = false;
         private boolean isArray = false, isList = false;
@@ -543,6 +563,24 @@ public class DocumentObjectBinder extends org.apache.solr.client.solrj.beans.Doc
                     log.debug("There is no public setter for '{}' so that field will never be populated from a solr response.", getter.getName());
                 }
             }
+            getterHandle = unreflect(getter, GETTER_TYPE);
+            if (setter != null) {
+                setterHandle = unreflect(setter, SETTER_TYPE);
+                setterParameterType = setter.getParameterTypes()[0];
+            }
+        }
+
+        /**
+         * @return a handle for <code>method</code> adapted to <code>type</code>, or <code>null</code> if the method is
+         * not accessible, in which case it is invoked reflectively
+         */
+        private static MethodHandle unreflect(final Method method, final MethodType type) {
+            try {
+                return MethodHandles.publicLookup().unreflect(method).asType(type);
+            } catch (IllegalAccessException e) {
+                log.debug("Cannot create method handle for '{}', invoke it reflectively : {}", method, e.toString());
+                return null;
+            }
         }
 
         private void storeName(IndexField annotation) {
@@ -674,23 +712,26 @@ public class DocumentObjectBinder extends org.apache.solr.client.solrj.beans.Doc
             }
             try {
                 if (setter != null) {
-                    Object formatted = formatValueToField(setter, v);
+                    Object formatted = formatValueToField(v);
                     if (formatted != null) {
-                        setter.invoke(obj, formatted);
+                        if (setterHandle != null) {
+                            setterHandle.invokeExact(obj, formatted);
+                        } else {
+                            setter.invoke(obj, formatted);
+                        }
                     }
                 }
-            } catch (Exception e) {
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
                 throw new RuntimeException("Exception while setting value : " + v + " on " + setter, e);
             }
         }
 
 
-        private Object formatValueToField(Method setter, Object v) {
-            if (setter.getParameterTypes().length != 1 ) {
-                throw new IllegalArgumentException("Setter method '"+setter+"' is supposed to have a single argument");
-            }
+        private Object formatValueToField(Object v) {
             try {
-                if (setter.getParameterTypes()[0].equals(Calendar.class)) {
+                if (setterParameterType.equals(Calendar.class)) {
                     // try to convert v to calendar
                     Calendar cal = Calendar.getInstance();
                     if (v instanceof String) {
@@ -701,7 +742,7 @@ public class DocumentObjectBinder extends org.apache.solr.client.solrj.beans.Doc
                     }
                     return cal;
                 }
-                if (setter.getParameterTypes()[0].equals(Date.class)) {
+                if (setterParameterType.equals(Date.class)) {
                     // try to convert v to date
                     Calendar cal = null;
                     if (v instanceof String) {
@@ -722,8 +763,13 @@ public class DocumentObjectBinder extends org.apache.solr.client.solrj.beans.Doc
 
             if (getter != null) {
                 try {
+                    if (getterHandle != null) {
+                        return (Object) getterHandle.invokeExact(obj);
+                    }
                     return getter.invoke(obj, (Object[]) null);
-                } catch (Exception e) {
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
                     throw new RuntimeException("Exception while getting value: " + getter, e);
                 }
             }
@@ -1,5 +1,5 @@
 /*
- *  Copyright 2012-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2012-2017 Hippo B.V. (http://www.onehippo.com)
  *
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -61,4 +61,13 @@ public interface HippoSolrClient {
      * @return the {@link List} of {@link org.hippoecm.hst.solr.content.beans.ContentBeanBinder} and empty list of no providers are available
      */
     List<ContentBeanBinder> getContentBeanBinders();
+
+    /**
+     * @return the {@link DocumentObjectBinder} used to bind the results of the {@link HippoQuery}s of this client. As
+     * a binder caches the metadata of the classes it binds, implementations should return the same instance for every
+     * call. The default implementation returns a new binder for backwards compatibility
+     */
+    default DocumentObjectBinder getDocumentObjectBinder() {
+        return new DocumentObjectBinder();
+    }
 }
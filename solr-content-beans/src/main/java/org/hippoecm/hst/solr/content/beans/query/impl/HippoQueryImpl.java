@@ -1,5 +1,5 @@
 /*
- *  Copyright 2012-2013 Hippo B.V. (http://www.onehippo.com)
+ *  Copyright 2012-2017 Hippo B.V. (http://www.onehippo.com)
  *
  *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
@@ -115,7 +115,7 @@ public class HippoQueryImpl implements HippoQuery {
             throw new SolrServerException(e);
         }
 
-        return new HippoQueryResultImpl(rsp, new DocumentObjectBinder(), client);
+        return new HippoQueryResultImpl(rsp, client.getDocumentObjectBinder(), client);
     }
 
 